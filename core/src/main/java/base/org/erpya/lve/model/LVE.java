@@ -17,6 +17,7 @@ package org.erpya.lve.model;
 
 import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -28,19 +29,21 @@ import org.adempiere.core.domains.models.I_C_BPartner;
 import org.adempiere.core.domains.models.I_C_Invoice;
 import org.adempiere.core.domains.models.I_C_Order;
 import org.adempiere.core.domains.models.I_I_BPartner;
+import org.adempiere.core.domains.models.I_I_BankStatement;
 import org.adempiere.core.domains.models.I_I_Invoice;
 import org.adempiere.core.domains.models.I_M_InOut;
 import org.compiere.model.MAllocationHdr;
 import org.compiere.model.MBPartner;
 import org.compiere.model.MClient;
+import org.compiere.model.MConversionRate;
 import org.compiere.model.MDocType;
 import org.compiere.model.MInOut;
 import org.compiere.model.MInvoice;
 import org.compiere.model.MInvoiceLine;
 import org.compiere.model.MMovement;
 import org.compiere.model.MOrder;
-import org.compiere.model.MOrderLine;
 import org.compiere.model.MPayment;
+import org.compiere.model.MPeriodControl;
 import org.compiere.model.MTax;
 import org.compiere.model.ModelValidationEngine;
 import org.compiere.model.ModelValidator;
@@ -48,10 +51,18 @@ import org.compiere.model.PO;
 import org.compiere.model.Query;
 import org.compiere.process.DocumentEngine;
 import org.compiere.util.CLogger;
+import org.compiere.util.CacheMgt;
 import org.compiere.util.Env;
 import org.compiere.util.Util;
 import org.erpya.lve.util.AllocationManager;
+import org.erpya.lve.util.CreditMemoSourceResolver;
+import org.erpya.lve.util.DeferredRefresh;
+import org.erpya.lve.util.InvoiceDaySummary;
+import org.erpya.lve.util.InvoicePriceRecalculation;
 import org.erpya.lve.util.LVEUtil;
+import org.erpya.lve.util.OverpaymentLedger;
+import org.erpya.lve.util.PendingShipmentNoteIndicator;
+import org.erpya.lve.util.ReconciliationCandidate;
 import org.spin.model.MWHWithholding;
 import org.erpya.lve.util.DocumentTypeSequence;
 
@@ -75,6 +86,10 @@ public class LVE implements ModelValidator {
 			.getCLogger(LVE.class);
 	/** Client */
 	private int clientId = -1;
+	/**	POS Payment Type Allocation (table of POS, it can be not installed)	*/
+	private static final String TABLE_POSPaymentTypeAllocation = "C_POSPaymentTypeAllocation";
+	/**	Cache of brackets of variable rate (I.S.L.R.) from withholding	*/
+	private static final String CACHE_VariableRateBrackets = "LVE_VariableRateBrackets";
 	
 	/**Allocations to Re-Post*/
 	private Map<Integer, AllocationManager> allocationToRepost = new HashMap<Integer, AllocationManager>(); 
@@ -100,10 +115,19 @@ public class LVE implements ModelValidator {
 		engine.addModelChange(MInvoiceLine.Table_Name, this);
 		engine.addModelChange(MOrder.Table_Name, this);
 		engine.addModelChange(MPayment.Table_Name, this);
+		engine.addModelChange(MPeriodControl.Table_Name, this);
+		engine.addModelChange(MAllocationHdr.Table_Name, this);
+		engine.addModelChange(MConversionRate.Table_Name, this);
+		engine.addModelChange(I_I_BankStatement.Table_Name, this);
+		engine.addModelChange(TABLE_POSPaymentTypeAllocation, this);
+		engine.addModelChange(MLVEListVersion.Table_Name, this);
+		engine.addModelChange(MLVEListLine.Table_Name, this);
 		
 		LVEImport importValidator = new LVEImport(); 
 		engine.addImportValidate(I_I_Invoice.Table_Name,importValidator);
 		engine.addImportValidate(I_I_BPartner.Table_Name, importValidator);
+		//	Days of daily summary not refreshed before stop
+		InvoiceDaySummary.refreshPending(client != null? client.getAD_Client_ID(): 0);
 	}
 
 	@Override
@@ -125,18 +149,7 @@ public class LVE implements ModelValidator {
 			if (po.get_TableName().equals(MInvoice.Table_Name)) {
 				MInvoice invoice = (MInvoice) po;
 				if(!invoice.isReversal()) {
-					Optional.ofNullable((MOrder) invoice.getC_Order()).ifPresent(salesOrder -> {
-						MDocType orderDocumentType = MDocType.get(salesOrder.getCtx(), salesOrder.getC_DocTypeTarget_ID());
-						if(orderDocumentType.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsReCalculatePriceOnInvoice)) {
-							Arrays.asList(invoice.getLines(true))
-								.stream()
-								.filter(invoiceLine -> invoiceLine.getM_Product_ID() > 0)
-								.forEach(invoiceLine -> {
-									invoiceLine.setPrice(invoice.getM_PriceList_ID(), invoice.getC_BPartner_ID());
-									invoiceLine.saveEx();
-								});
-						}
-					});
+					InvoicePriceRecalculation.newInstance(invoice).recalculate();
 				}
 			}
 		} else if(timing == TIMING_BEFORE_COMPLETE) {
@@ -149,18 +162,8 @@ public class LVE implements ModelValidator {
 				} else {
 					//	For credit memo and invoice to allocated
 					MDocType documentType = MDocType.get(invoice.getCtx(), invoice.getC_DocTypeTarget_ID());
-					Optional.ofNullable((MOrder) invoice.getC_Order()).ifPresent(salesOrder -> {
-						MDocType orderDocumentType = MDocType.get(salesOrder.getCtx(), salesOrder.getC_DocTypeTarget_ID());
-						if(orderDocumentType.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsReCalculatePriceOnInvoice)) {
-							Arrays.asList(invoice.getLines(true))
-								.stream()
-								.filter(invoiceLine -> invoiceLine.getM_Product_ID() > 0)
-								.forEach(invoiceLine -> {
-									invoiceLine.setPrice(invoice.getM_PriceList_ID(), invoice.getC_BPartner_ID());
-									invoiceLine.saveEx();
-								});
-						}
-					});
+					//	Only if it was not re-priced on prepare
+					InvoicePriceRecalculation.newInstance(invoice).recalculate();
 					//	For credit Memo
 					if(invoice.get_ValueAsInt(LVEUtil.COLUMNNAME_InvoiceToAllocate_ID) == 0 
 							&& (documentType.getDocBaseType().equals(MDocType.DOCBASETYPE_APCreditMemo) || documentType.getDocBaseType().equals(MDocType.DOCBASETYPE_ARCreditMemo))) {
@@ -168,52 +171,7 @@ public class LVE implements ModelValidator {
 							MDocType returnOrderSubType = MDocType.get(invoice.getCtx(), returnOrder.getC_DocType_ID());
 							if(!Util.isEmpty(returnOrderSubType.getDocSubTypeSO())
 									&& returnOrderSubType.getDocSubTypeSO().equals(MDocType.DOCSUBTYPESO_ReturnMaterial)) {
-								Map<Integer, Integer> invoiceToAllocate = new HashMap<>();
-								Map<Integer, Integer> invoiceLinesAllocated = new HashMap<>();
-								List<MInvoiceLine> creditMemoLines = Arrays.asList(invoice.getLines());
-								if(creditMemoLines.stream().filter(invoiceLine -> invoiceLine.get_ValueAsInt(LVEUtil.COLUMNNAME_InvoiceToAllocate_ID) != 0).count() == 0) {
-									creditMemoLines
-									.stream()
-									.filter(creditMemoLine -> creditMemoLine.getC_OrderLine_ID() != 0)
-									.forEach(creditMemoLine -> {
-										MOrderLine returnOrderLine = (MOrderLine) creditMemoLine.getC_OrderLine();
-										if(returnOrderLine.get_ValueAsInt("Ref_InvoiceLine_ID") != 0) {
-											MInvoiceLine sourceInvoiceLine = new MInvoiceLine(creditMemoLine.getCtx(), returnOrderLine.get_ValueAsInt("Ref_InvoiceLine_ID"), creditMemoLine.get_TrxName());
-											invoiceToAllocate.put(sourceInvoiceLine.getC_Invoice_ID(), creditMemoLine.getC_InvoiceLine_ID());
-											invoiceLinesAllocated.put(creditMemoLine.getC_InvoiceLine_ID(), sourceInvoiceLine.getC_Invoice_ID());
-										} else {
-											Optional.ofNullable((MInvoiceLine) new Query(creditMemoLine.getCtx(), 
-													MInvoiceLine.Table_Name, 
-													"EXISTS (SELECT 1 "
-													+ "FROM C_OrderLine oLine "
-													+ "INNER JOIN M_InOutLine iol ON (oLine.Ref_InOutLine_ID = iol.M_InOutLine_ID) "
-													+ "WHERE oLine.C_OrderLine_ID = ? AND iol.C_OrderLine_ID = C_InvoiceLine.C_OrderLine_ID "
-													+ ") "
-													+ "AND EXISTS(SELECT 1 FROM C_Invoice i WHERE i.C_Invoice_ID = C_InvoiceLine.C_Invoice_ID AND i.DocStatus IN ('CO','CL'))"
-													, 
-													creditMemoLine.get_TrxName())
-												.setParameters(creditMemoLine.getC_OrderLine_ID())
-												.first()).ifPresent(sourceInvoiceLine -> {
-														invoiceToAllocate.put(sourceInvoiceLine.getC_Invoice_ID(), creditMemoLine.getC_InvoiceLine_ID());
-														invoiceLinesAllocated.put(creditMemoLine.getC_InvoiceLine_ID(), sourceInvoiceLine.getC_Invoice_ID());
-												});
-										}
-									});
-								}
-								//	Set from parent or child
-								if(invoiceToAllocate.size() == 1) {
-									invoice.set_ValueOfColumn(LVEUtil.COLUMNNAME_InvoiceToAllocate_ID, invoiceToAllocate.keySet().stream().findFirst().get());
-									invoice.saveEx();
-								} else if(invoiceToAllocate.size() > 0) {
-									creditMemoLines
-										.forEach(invoiceLine -> {
-											int invoiceToAllocateId = invoiceLinesAllocated.get(invoiceLine.getC_InvoiceLine_ID());
-											if(invoiceToAllocateId != 0) {
-												invoiceLine.set_ValueOfColumn(LVEUtil.COLUMNNAME_InvoiceToAllocate_ID, invoiceToAllocateId);
-												invoiceLine.saveEx();
-											}
-										});
-								}
+								CreditMemoSourceResolver.newInstance(invoice).resolve();
 							}
 						});
 					}
@@ -513,6 +471,87 @@ public class LVE implements ModelValidator {
 							&& invoice.testAllocation()){
 					invoice.save();
 				}
+				//	Invoiced quantity of shipment notes can change
+				if(invoice.is_ValueChanged(MInvoice.COLUMNNAME_DocStatus)
+						&& invoice.getC_Order_ID() > 0) {
+					PendingShipmentNoteIndicator.invalidate(invoice.getAD_Client_ID(), invoice.getAD_Org_ID(), invoice.get_TrxName());
+				}
+				//	Converted amount or status for overpayment
+				if(invoice.is_ValueChanged(MInvoice.COLUMNNAME_DocStatus)) {
+					OverpaymentLedger.refresh(invoice);
+				}
+				//	Daily summary for fiscal reports
+				if(invoice.is_ValueChanged(MInvoice.COLUMNNAME_DocStatus)
+						|| (invoice.isProcessed()
+								&& (invoice.is_ValueChanged(MInvoice.COLUMNNAME_DocumentNo)
+										|| invoice.is_ValueChanged(LVEUtil.COLUMNNAME_ControlNo)
+										|| invoice.is_ValueChanged(MInvoice.COLUMNNAME_DateInvoiced)))) {
+					InvoiceDaySummary.refresh(invoice);
+				}
+			} else if (po.get_TableName().equals(MOrder.Table_Name)) {
+				MOrder order = (MOrder) po;
+				if(order.is_ValueChanged(MOrder.COLUMNNAME_DocStatus)
+						|| order.is_ValueChanged(MOrder.COLUMNNAME_DateOrdered)
+						|| order.is_ValueChanged(MOrder.COLUMNNAME_C_DocTypeTarget_ID)) {
+					MDocType documentType = MDocType.get(order.getCtx(), order.getC_DocTypeTarget_ID());
+					if(documentType.get_ValueAsBoolean(LVEUtil.COLUMNNAME_LVE_IsShipmentNote)) {
+						PendingShipmentNoteIndicator.invalidate(order.getAD_Client_ID(), order.getAD_Org_ID(), order.get_TrxName());
+					}
+				}
+			} else if (po.get_TableName().equals(MPeriodControl.Table_Name)) {
+				if(po.is_ValueChanged(MPeriodControl.COLUMNNAME_PeriodStatus)) {
+					PendingShipmentNoteIndicator.invalidateAll(po.get_TrxName());
+				}
+			} else if (po.get_TableName().equals(MAllocationHdr.Table_Name)) {
+				//	Paid amount for overpayment
+				if(po.is_ValueChanged(MAllocationHdr.COLUMNNAME_DocStatus)) {
+					OverpaymentLedger.refresh((MAllocationHdr) po);
+				}
+			}
+		}
+		//	Overpayment for invoices affected by rate
+		if((type == TYPE_AFTER_NEW
+				|| type == TYPE_AFTER_CHANGE
+				|| type == TYPE_AFTER_DELETE)
+				&& po.get_TableName().equals(MConversionRate.Table_Name)) {
+			OverpaymentLedger.refresh((MConversionRate) po);
+		}
+		//	Payments open for reconciliation
+		if(po.get_TableName().equals(MPayment.Table_Name)) {
+			MPayment payment = (MPayment) po;
+			if(type == TYPE_AFTER_NEW
+					|| (type == TYPE_AFTER_CHANGE && ReconciliationCandidate.isRefreshRequired(payment))) {
+				ReconciliationCandidate.refresh(payment);
+			} else if(type == TYPE_AFTER_DELETE) {
+				ReconciliationCandidate.remove(payment);
+			}
+		} else if(po.get_TableName().equals(I_I_BankStatement.Table_Name)) {
+			if(type == TYPE_AFTER_NEW
+					|| type == TYPE_AFTER_DELETE
+					|| (type == TYPE_AFTER_CHANGE && po.is_ValueChanged(I_I_BankStatement.COLUMNNAME_C_Payment_ID))) {
+				List<Integer> paymentIds = new ArrayList<Integer>();
+				if(po.get_ValueAsInt(I_I_BankStatement.COLUMNNAME_C_Payment_ID) > 0) {
+					paymentIds.add(po.get_ValueAsInt(I_I_BankStatement.COLUMNNAME_C_Payment_ID));
+				}
+				if(po.get_ValueOldAsInt(I_I_BankStatement.COLUMNNAME_C_Payment_ID) > 0) {
+					paymentIds.add(po.get_ValueOldAsInt(I_I_BankStatement.COLUMNNAME_C_Payment_ID));
+				}
+				ReconciliationCandidate.refreshStaged(paymentIds, po.get_TrxName());
+			}
+		} else if(po.get_TableName().equals(TABLE_POSPaymentTypeAllocation)) {
+			//	Payment method allocated of POS withholding (POSOrderIVABase)
+			if(type == TYPE_AFTER_NEW
+					|| type == TYPE_AFTER_CHANGE
+					|| type == TYPE_AFTER_DELETE) {
+				DeferredRefresh.afterCommit(po.get_TrxName(), () -> CacheMgt.get().reset(TABLE_POSPaymentTypeAllocation));
+			}
+		} else if(po.get_TableName().equals(MLVEListVersion.Table_Name)
+				|| po.get_TableName().equals(MLVEListLine.Table_Name)) {
+			//	Brackets of variable rate (VariableRateBrackets)
+			if(type == TYPE_AFTER_NEW
+					|| type == TYPE_AFTER_CHANGE
+					|| type == TYPE_AFTER_DELETE) {
+				DeferredRefresh.afterCommit(po.get_TrxName(), () -> CacheMgt.get().reset(CACHE_VariableRateBrackets));
 			}
 		}
 		
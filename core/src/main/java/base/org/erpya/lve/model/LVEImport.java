@@ -21,13 +21,14 @@ import org.compiere.model.MBPartner;
 import org.compiere.model.MBPartnerLocation;
 import org.compiere.model.MInvoice;
 import org.compiere.model.MInvoiceLine;
-import org.compiere.model.Query;
+import org.compiere.model.MSysConfig;
 import org.adempiere.core.domains.models.X_I_BPartner;
 import org.adempiere.core.domains.models.X_I_Invoice;
 import org.compiere.process.ImportBPartner;
 import org.compiere.process.ImportInvoice;
 import org.compiere.util.CLogger;
 import org.compiere.util.DB;
+import org.compiere.util.Env;
 import org.compiere.util.Msg;
 import org.erpya.lve.util.LVEUtil;
 
@@ -38,6 +39,8 @@ import org.erpya.lve.util.LVEUtil;
 public class LVEImport implements ImportValidator{
 	/**	Logger							*/
 	protected CLogger			log = CLogger.getCLogger (getClass());
+	/**	Valid Business Partner Value (RIF / C.I.): a key and from 5 to 10 numbers	*/
+	private static final String BPARTNER_VALUE_PATTERN = "^[JVEGXjvegx][0-9]{5,10}$";
 	
 
 	@Override
@@ -60,12 +63,10 @@ public class LVEImport implements ImportValidator{
 								&& timing == ImportValidator.TIMING_BEFORE_IMPORT) {
 						X_I_Invoice impInvoice = (X_I_Invoice)importModel;
 						MInvoiceLine invoiceLine = (MInvoiceLine) targetModel;
-						MInvoice sourceInvoice = new Query(impInvoice.getCtx(), MInvoice.Table_Name, "C_BPartner_ID = ? AND DocumentNo = ?", impInvoice.get_TrxName())
-													.setParameters(impInvoice.getC_BPartner_ID(),impInvoice.get_ValueAsString(LVEUtil.COLUMNNAME_AffectedDocumentNo))
-													.first();
-						if (sourceInvoice!=null
-								&& sourceInvoice.get_ID()>0)
-							invoiceLine.set_ValueOfColumn(LVEUtil.COLUMNNAME_InvoiceToAllocate_ID, sourceInvoice.get_ID());
+						//	Resolved for all records after validate
+						int invoiceToAllocateId = impInvoice.get_ValueAsInt(LVEUtil.COLUMNNAME_InvoiceToAllocate_ID);
+						if (invoiceToAllocateId > 0)
+							invoiceLine.set_ValueOfColumn(LVEUtil.COLUMNNAME_InvoiceToAllocate_ID, invoiceToAllocateId);
 					}
 				}else if (process instanceof ImportBPartner) {
 					X_I_BPartner impBPartner = (X_I_BPartner)importModel;
@@ -89,12 +90,63 @@ public class LVEImport implements ImportValidator{
 					}
 				}
 			}else {
-				if (process instanceof ImportBPartner) {
+				if (process instanceof ImportInvoice) {
+					if (timing == ImportValidator.TIMING_AFTER_VALIDATE) {
+						//Set Invoice to Allocate from Affected Document No, the business partner is resolved on validate.
+						//It is resolved again on each validation (Affected Document No can be corrected) and cleared if not found
+						StringBuilder sql = new StringBuilder ("UPDATE I_Invoice i "
+												+ "SET InvoiceToAllocate_ID=(SELECT MIN(inv.C_Invoice_ID) FROM C_Invoice inv"
+																			+ " WHERE inv.C_BPartner_ID=i.C_BPartner_ID AND inv.DocumentNo=i.AffectedDocumentNo"
+																			+ " AND inv.AD_Client_ID=i.AD_Client_ID) "
+												+ "WHERE AffectedDocumentNo IS NOT NULL AND C_BPartner_ID IS NOT NULL"
+												+ " AND I_IsImported<>'Y'").append(((ImportInvoice)process).getWhereClause());
+						int no = DB.executeUpdateEx(sql.toString(), process.get_TrxName());
+						log.fine("Set Invoice to Allocate=" + no);
+					}
+				}else if (process instanceof ImportBPartner) {
 					StringBuilder sql;
 					int no = 0;
 					String clientCheck = ((ImportBPartner)process).getWhereClause();
 					
 					if (timing == ImportValidator.TIMING_BEFORE_VALIDATE) {
+						//Validate Value and Tax ID (RIF / C.I.) when it is enabled
+						if (MSysConfig.getBooleanValue(LVEUtil.ENABLE_CODE_TYPE_VALIDATION, false, Env.getAD_Client_ID(process.getCtx()))) {
+							sql = new StringBuilder ("UPDATE I_BPartner i "
+													+ "SET I_IsImported='E', I_ErrorMsg=I_ErrorMsg||'ERR=" + Msg.parseTranslation(process.getCtx(), "@LVEInvalidBPValue@") + ", ' "
+													+ "WHERE (COALESCE(TRIM(Value),'') !~ '" + BPARTNER_VALUE_PATTERN + "'"
+													+ " OR COALESCE(TRIM(TaxID),'') !~ '" + BPARTNER_VALUE_PATTERN + "')"
+													+ " AND I_IsImported<>'Y'").append(clientCheck);
+							no = DB.executeUpdateEx(sql.toString(), process.get_TrxName());
+							log.config("Invalid Value / Tax ID=" + no);
+						}
+						
+						//Normalize Value: only numbers and keys in upper case
+						sql = new StringBuilder ("UPDATE I_BPartner i "
+												+ "SET Value=" + getNormalizedValueSQL("Value") + " "
+												+ "WHERE Value IS NOT NULL AND Value<>" + getNormalizedValueSQL("Value")
+												+ " AND I_IsImported<>'Y'").append(clientCheck);
+						no = DB.executeUpdateEx(sql.toString(), process.get_TrxName());
+						log.fine("Normalized Value=" + no);
+						
+						//Normalize Tax ID: key and at least 9 numbers (zeros on left)
+						String taxIdSQL = getNormalizedValueSQL("TaxID");
+						String numbersSQL = "REGEXP_REPLACE(TaxID,'[^0-9]','','g')";
+						sql = new StringBuilder ("UPDATE I_BPartner i "
+												+ "SET TaxID=SUBSTR(" + taxIdSQL + ",1,1)"
+														+ "||CASE WHEN LENGTH(" + numbersSQL + ")<9 THEN LPAD(" + numbersSQL + ",9,'0') ELSE " + numbersSQL + " END "
+												+ "WHERE " + taxIdSQL + "<>''"
+												+ " AND I_IsImported<>'Y'").append(clientCheck);
+						no = DB.executeUpdateEx(sql.toString(), process.get_TrxName());
+						log.fine("Normalized Tax ID=" + no);
+						
+						//Value and Tax ID with different key
+						sql = new StringBuilder ("UPDATE I_BPartner i "
+												+ "SET I_IsImported='E', I_ErrorMsg=I_ErrorMsg||'ERR=" + Msg.parseTranslation(process.getCtx(), "@" + LVEUtil.MESSAGE_LVE_ValueTaxIdMismatch + "@") + ", ' "
+												+ "WHERE Value<>'' AND TaxID<>'' AND SUBSTR(Value,1,1)<>SUBSTR(TaxID,1,1)"
+												+ " AND I_IsImported<>'Y'").append(clientCheck);
+						no = DB.executeUpdateEx(sql.toString(), process.get_TrxName());
+						log.config("Value / Tax ID Mismatch=" + no);
+						
 						//Set Withholding Tax
 						sql = new StringBuilder ("UPDATE I_BPartner i "
 												+ "SET WithholdingTaxRate_ID=(SELECT LVE_List_ID FROM LVE_List l"
@@ -155,5 +207,12 @@ public class LVEImport implements ImportValidator{
 		
 	}
 	
-
+	/**
+	 * Get SQL for normalize a Business Partner Value (RIF / C.I.), same rule of {@link LVEUtil#processBusinessPartnerValue(java.util.Properties, int, int, String)}
+	 * @param columnName
+	 * @return
+	 */
+	private String getNormalizedValueSQL(String columnName) {
+		return "UPPER(REGEXP_REPLACE(" + columnName + ",'[^0-9JVEGXjvegx]','','g'))";
+	}
 }
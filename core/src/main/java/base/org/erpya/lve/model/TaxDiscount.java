@@ -23,6 +23,7 @@ import java.util.List;
 
 import org.adempiere.core.domains.models.I_C_Invoice;
 import org.adempiere.core.domains.models.I_C_Order;
+import org.adempiere.core.domains.models.I_C_Tax;
 import org.compiere.model.MClient;
 import org.compiere.model.MInvoice;
 import org.compiere.model.MInvoiceLine;
@@ -35,6 +36,7 @@ import org.compiere.model.MTaxCategory;
 import org.compiere.model.ModelValidationEngine;
 import org.compiere.model.ModelValidator;
 import org.compiere.model.PO;
+import org.compiere.util.CCache;
 import org.compiere.util.CLogger;
 import org.compiere.util.Env;
 import org.compiere.util.TimeUtil;
@@ -57,6 +59,8 @@ public class TaxDiscount implements ModelValidator {
 	/** Client */
 	private int clientId = -1;
 	boolean notProcessed = true;
+	/**	Discount Tax by Tax Category, Date and Rate	*/
+	private static CCache<String, Integer> discountTaxCache = new CCache<String, Integer>(I_C_Tax.Table_Name + "_Discount", 40, 60);	//	60 minutes
 	
 	@Override
 	public void initialize(ModelValidationEngine engine, MClient client) {
@@ -70,6 +74,8 @@ public class TaxDiscount implements ModelValidator {
 		//	Add Timing change in C_Order and C_Invoice
 		engine.addDocValidate(I_C_Order.Table_Name, this);
 		engine.addDocValidate(I_C_Invoice.Table_Name, this);
+		//	Reset discount taxes
+		engine.addModelChange(I_C_Tax.Table_Name, this);
 	}
 
 	@Override
@@ -122,6 +128,13 @@ public class TaxDiscount implements ModelValidator {
 
 	@Override
 	public String modelChange(PO po, int type) throws Exception {
+		if(type == TYPE_AFTER_NEW
+				|| type == TYPE_AFTER_CHANGE
+				|| type == TYPE_AFTER_DELETE) {
+			if(po.get_TableName().equals(I_C_Tax.Table_Name)) {
+				discountTaxCache.reset();
+			}
+		}
 		return null;
 	}
 	
@@ -182,12 +195,18 @@ public class TaxDiscount implements ModelValidator {
 					&& taxToApply.doubleValue() > 0) {
 				taxId = getDiscountTaxId(order.get_TrxName(), tax.getC_TaxCategory_ID(), order.getDateOrdered(), taxToApply);
 			}
+			int currentTaxId = line.getC_Tax_ID();
 			if(taxId > 0) {
-				line.setC_Tax_ID(taxId);
+				if(taxId != currentTaxId) {
+					line.setC_Tax_ID(taxId);
+				}
 			} else {
 				line.setTax();
 			}
-			line.saveEx();
+			//	Save only if tax is changed
+			if(line.getC_Tax_ID() != currentTaxId) {
+				line.saveEx();
+			}
 		}
 	}
 	
@@ -250,13 +269,19 @@ public class TaxDiscount implements ModelValidator {
 					&& taxToApply.doubleValue() > 0) {
 				taxId = getDiscountTaxId(invoice.get_TrxName(), tax.getC_TaxCategory_ID(), invoice.getDateInvoiced(), taxToApply);
 			}
+			int currentTaxId = line.getC_Tax_ID();
 			if(taxId > 0) {
-				line.setC_Tax_ID(taxId);
+				if(taxId != currentTaxId) {
+					line.setC_Tax_ID(taxId);
+				}
 			} else {
 				line.setTax();
 			}
-			line.setTaxAmt();
-			line.saveEx();
+			//	Save only if tax is changed
+			if(line.getC_Tax_ID() != currentTaxId) {
+				line.setTaxAmt();
+				line.saveEx();
+			}
 		}
 	}
 	
@@ -306,13 +331,19 @@ public class TaxDiscount implements ModelValidator {
 					&& sourceTaxList.size() > 0) {
 				taxId = sourceTaxList.get(0).getC_Tax_ID();
 			}
+			int currentTaxId = line.getC_Tax_ID();
 			if(taxId > 0) {
-				line.setC_Tax_ID(taxId);
+				if(taxId != currentTaxId) {
+					line.setC_Tax_ID(taxId);
+				}
 			} else {
 				line.setTax();
 			}
-			line.setTaxAmt();
-			line.saveEx();
+			//	Save only if tax is changed
+			if(line.getC_Tax_ID() != currentTaxId) {
+				line.setTaxAmt();
+				line.saveEx();
+			}
 		}
 	}
 	
@@ -357,7 +388,7 @@ public class TaxDiscount implements ModelValidator {
 	}
 	
 	/**
-	 * Get Tax to apply
+	 * Get Tax to apply from cache
 	 * @param trxName
 	 * @param taxCategoryId
 	 * @param dateDoc
@@ -365,6 +396,24 @@ public class TaxDiscount implements ModelValidator {
 	 * @return
 	 */
 	private int getDiscountTaxId(String trxName, int taxCategoryId, Timestamp dateDoc, BigDecimal taxToApply) {
+		//	Day of document as milliseconds, without create a formatter on each lookup
+		String key = taxCategoryId + "|" + TimeUtil.getDay(dateDoc).getTime() + "|" + taxToApply.setScale(2, RoundingMode.HALF_UP).toPlainString();
+		Integer discountTaxId = discountTaxCache.get(key);
+		if(discountTaxId == null) {
+			discountTaxId = findDiscountTaxId(taxCategoryId, dateDoc, taxToApply);
+			discountTaxCache.put(key, discountTaxId);
+		}
+		return discountTaxId;
+	}
+	
+	/**
+	 * Find Tax to apply from all taxes
+	 * @param taxCategoryId
+	 * @param dateDoc
+	 * @param taxToApply
+	 * @return
+	 */
+	private int findDiscountTaxId(int taxCategoryId, Timestamp dateDoc, BigDecimal taxToApply) {
 		MTax [] allTaxes = MTax.getAll(Env.getCtx());
 		int discountTaxId = 0;
 		for(MTax tax : allTaxes) {
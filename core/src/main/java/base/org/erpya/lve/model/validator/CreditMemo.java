@@ -15,10 +15,14 @@
 package org.erpya.lve.model.validator;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.adempiere.core.domains.models.I_C_Invoice;
 import org.adempiere.exceptions.AdempiereException;
@@ -32,6 +36,7 @@ import org.compiere.model.ModelValidationEngine;
 import org.compiere.model.ModelValidator;
 import org.compiere.model.PO;
 import org.compiere.util.CLogger;
+import org.compiere.util.DB;
 import org.compiere.util.Env;
 import org.compiere.util.Msg;
 import org.erpya.lve.util.LVEUtil;
@@ -88,39 +93,42 @@ public class CreditMemo implements ModelValidator {
 						&& !creditMemo.isReversal()
 						&& documentType.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsFiscalDocument)
 						&& !documentType.get_ValueAsBoolean(LVEUtil.LVE_AllowOverdraftReference)) {
+					//	Group by source invoice in credit memo currency
 					Map<Integer, BigDecimal> documentsToAllocate = new HashMap<>();
 					Arrays.asList(creditMemo.getLines())
 					.stream()
 					.filter(creditMemoLine -> creditMemoLine.get_ValueAsInt(LVEUtil.COLUMNNAME_InvoiceToAllocate_ID) != 0)
 					.forEach(creditMemoLine -> {
-						MInvoice sourceInvoice = new MInvoice(creditMemoLine.getCtx(), creditMemoLine.get_ValueAsInt(LVEUtil.COLUMNNAME_InvoiceToAllocate_ID), creditMemoLine.get_TrxName());
 						BigDecimal amountToAllocate = creditMemoLine.getLineNetAmt();
 						//	Add Tax if exists
 						if(creditMemoLine.getC_Tax_ID() > 0) {
 							MTax tax = MTax.get(creditMemoLine.getCtx(), creditMemoLine.getC_Tax_ID());
 							amountToAllocate = amountToAllocate.add(tax.calculateTax(amountToAllocate, creditMemoLine.isTaxIncluded(), creditMemoLine.getPrecision()));
 						}
-						//	Convert It
-						amountToAllocate = MConversionRate.convert(creditMemo.getCtx(), amountToAllocate, creditMemo.getC_Currency_ID(), sourceInvoice.getC_Currency_ID(), creditMemo.getDateAcct(), creditMemo.getC_ConversionType_ID(), creditMemo.getAD_Client_ID(), creditMemo.getAD_Org_ID());
-						if(documentsToAllocate.containsKey(sourceInvoice.getC_Invoice_ID())) {
-							amountToAllocate = amountToAllocate.add(documentsToAllocate.get(sourceInvoice.getC_Invoice_ID()));
-						}
-						documentsToAllocate.put(sourceInvoice.getC_Invoice_ID(), amountToAllocate);
+						documentsToAllocate.merge(creditMemoLine.get_ValueAsInt(LVEUtil.COLUMNNAME_InvoiceToAllocate_ID), amountToAllocate, BigDecimal::add);
 					});
+					if(documentsToAllocate.isEmpty()) {
+						return null;
+					}
 					//	Validate
 					StringBuffer message = new StringBuffer();
-					documentsToAllocate.entrySet().forEach(entry -> {
-						MInvoice sourceInvoice = new MInvoice(creditMemo.getCtx(), entry.getKey(), creditMemo.get_TrxName());
-						BigDecimal openAmount = Optional.ofNullable(sourceInvoice.getOpenAmt()).orElse(Env.ZERO);
-						if(openAmount.compareTo(entry.getValue()) < 0) {
+					Map<Integer, BigDecimal> rates = new HashMap<>();
+					getSourceInvoices(creditMemo, documentsToAllocate.keySet()).forEach(sourceInvoice -> {
+						BigDecimal rate = rates.computeIfAbsent(sourceInvoice.getCurrencyId(), currencyToId -> getConversionRate(creditMemo, currencyToId));
+						MCurrency currency = MCurrency.get(creditMemo.getCtx(), sourceInvoice.getCurrencyId());
+						BigDecimal amountToAllocate = documentsToAllocate.get(sourceInvoice.getInvoiceId())
+								.multiply(rate)
+								.setScale(currency.getStdPrecision(), RoundingMode.HALF_UP);
+						BigDecimal openAmount = sourceInvoice.getOpenAmount();
+						if(openAmount.compareTo(amountToAllocate) < 0) {
 							message.append(Msg.getMsg(creditMemo.getCtx(), "LVE.InvoiceOverdraft",
 									new Object[] {
 											sourceInvoice.getDocumentNo(),
 											sourceInvoice.getGrandTotal(),
 											openAmount,
-											entry.getValue(),
-											MCurrency.get(sourceInvoice.getCtx(), sourceInvoice.getC_Currency_ID()).getISO_Code(),
-											openAmount.subtract(entry.getValue())
+											amountToAllocate,
+											currency.getISO_Code(),
+											openAmount.subtract(amountToAllocate)
 									}));
 						}
 					});
@@ -132,4 +140,89 @@ public class CreditMemo implements ModelValidator {
 		}
 		return null;
 	}
+
+	/**
+	 * Get conversion rate from credit memo currency to source invoice currency
+	 * @param creditMemo
+	 * @param currencyToId
+	 * @return
+	 */
+	private BigDecimal getConversionRate(MInvoice creditMemo, int currencyToId) {
+		if(creditMemo.getC_Currency_ID() == currencyToId) {
+			return Env.ONE;
+		}
+		BigDecimal rate = MConversionRate.getRate(creditMemo.getC_Currency_ID(), currencyToId, creditMemo.getDateAcct(), 
+				creditMemo.getC_ConversionType_ID(), creditMemo.getAD_Client_ID(), creditMemo.getAD_Org_ID());
+		if(rate == null) {
+			throw new AdempiereException(MConversionRate.getErrorMessage(creditMemo.getCtx(), "ErrorConvertingCurrencyToBaseCurrency",
+					creditMemo.getC_Currency_ID(), currencyToId, creditMemo.getC_ConversionType_ID(), creditMemo.getDateAcct(), creditMemo.get_TrxName()));
+		}
+		return rate;
+	}
+	
+	/**
+	 * Get open amount and currency of all source invoices in one query
+	 * @param creditMemo
+	 * @param invoiceIds
+	 * @return
+	 */
+	private List<SourceInvoice> getSourceInvoices(MInvoice creditMemo, Set<Integer> invoiceIds) {
+		List<SourceInvoice> sourceInvoices = new ArrayList<>();
+		String sql = "SELECT i.C_Invoice_ID, i.DocumentNo, i.GrandTotal, i.C_Currency_ID, "
+				+ "COALESCE(invoiceOpen(i.C_Invoice_ID, 0), 0) AS OpenAmt "
+				+ "FROM C_Invoice i "
+				+ "WHERE i.C_Invoice_ID IN(" + invoiceIds.stream().map(String::valueOf).collect(Collectors.joining(", ")) + ")";
+		DB.runResultSet(creditMemo.get_TrxName(), sql, List.of(), resultSet -> {
+			while(resultSet.next()) {
+				sourceInvoices.add(new SourceInvoice(resultSet.getInt("C_Invoice_ID"), 
+						resultSet.getString("DocumentNo"), 
+						resultSet.getBigDecimal("GrandTotal"), 
+						resultSet.getInt("C_Currency_ID"), 
+						resultSet.getBigDecimal("OpenAmt")));
+			}
+		}).onFailure(throwable -> {
+			throw new AdempiereException(throwable);
+		});
+		return sourceInvoices;
+	}
+	
+	/**
+	 * Values of source invoice used for overdraft validation
+	 */
+	private static class SourceInvoice {
+		
+		public SourceInvoice(int invoiceId, String documentNo, BigDecimal grandTotal, int currencyId, BigDecimal openAmount) {
+			this.invoiceId = invoiceId;
+			this.documentNo = documentNo;
+			this.grandTotal = grandTotal;
+			this.currencyId = currencyId;
+			this.openAmount = openAmount;
+		}
+		
+		private int invoiceId;
+		private String documentNo;
+		private BigDecimal grandTotal;
+		private int currencyId;
+		private BigDecimal openAmount;
+		
+		public int getInvoiceId() {
+			return invoiceId;
+		}
+		
+		public String getDocumentNo() {
+			return documentNo;
+		}
+		
+		public BigDecimal getGrandTotal() {
+			return grandTotal;
+		}
+		
+		public int getCurrencyId() {
+			return currencyId;
+		}
+		
+		public BigDecimal getOpenAmount() {
+			return openAmount;
+		}
+	}
 }
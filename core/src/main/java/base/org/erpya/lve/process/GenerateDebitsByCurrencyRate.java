@@ -21,9 +21,14 @@ import java.math.BigDecimal;
 import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.Arrays;
-import java.util.Optional;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BinaryOperator;
+import java.util.stream.Collectors;
 
 import org.adempiere.exceptions.AdempiereException;
 import org.compiere.model.MAllocationHdr;
@@ -33,20 +38,35 @@ import org.compiere.model.MInvoice;
 import org.compiere.model.MInvoiceLine;
 import org.compiere.model.MOrgInfo;
 import org.compiere.model.MPriceList;
+import org.compiere.model.MSysConfig;
 import org.compiere.process.DocAction;
+import org.compiere.util.DB;
 import org.compiere.util.Env;
 import org.compiere.util.Msg;
+import org.compiere.util.Trx;
 import org.erpya.lve.model.MLVEAutoDebitNoteSetting;
 import org.erpya.lve.util.LVEUtil;
 
 /** Generated Process for (Generate Debits By Currency Rate)
+ *  Each invoice is processed in a own transaction and the progress is reported by chunks.
+ *  The invoices are processed one by one: the debit notes of a document type take the DocumentNo and
+ *  ControlNo from the same sequence rows, then parallel transactions only wait for the lock of
+ *  those rows (and the context of process is not thread safe).
+ *  Invoices with a debit note completed since the selection of this run (process instance) are skipped,
+ *  it allows resume a failed run. Debit notes of previous selections are excluded by the smart browse.
  *  @author ADempiere (generated) 
  *  @version Release 3.9.3
  */
 public class GenerateDebitsByCurrencyRate extends GenerateDebitsByCurrencyRateAbstract
 {
 	private final static String COLUMNNAME_DebitAmt = "IWOP_InvoiceAmt";
-	Optional<MLVEAutoDebitNoteSetting> maybeSettings = Optional.empty();
+	/**	Settings by Document Type	*/
+	private Map<Integer, MLVEAutoDebitNoteSetting> settingsByDocumentType = new HashMap<>();
+	/**	Created	*/
+	private int created = 0;
+	/**	Errors	*/
+	private int errors = 0;
+	
 	@Override
 	protected void prepare()
 	{
@@ -56,147 +76,223 @@ public class GenerateDebitsByCurrencyRate extends GenerateDebitsByCurrencyRateAb
 	@Override
 	protected String doIt() throws Exception
 	{
-		getSelectionValues().entrySet().forEach(row -> {
-			MInvoice invoice = MInvoice.get(getCtx(), row.getKey());
-			maybeSettings = Optional.ofNullable(MLVEAutoDebitNoteSetting.get(getCtx(), invoice.getC_DocTypeTarget_ID()));
-			maybeSettings.orElseGet(() -> {
+		Map<Integer, BigDecimal> debitAmounts = new HashMap<>();
+		getSelectionValues().entrySet().forEach(row -> debitAmounts.put(row.getKey(), (BigDecimal) row.getValue().get(COLUMNNAME_DebitAmt)));
+		if(debitAmounts.isEmpty()) {
+			return "";
+		}
+		loadSettings(debitAmounts.keySet());
+		//	Resume
+		Set<Integer> alreadyGenerated = getInvoicesWithDebitNote(debitAmounts.keySet());
+		List<Integer> invoiceIds = debitAmounts.keySet()
+				.stream()
+				.filter(invoiceId -> !alreadyGenerated.contains(invoiceId))
+				.sorted()
+				.collect(Collectors.toList());
+		if(alreadyGenerated.size() > 0) {
+			addLog("@Skipped@ (@AlreadyExists@): " + alreadyGenerated.size());
+		}
+		int chunkSize = Math.max(MSysConfig.getIntValue(LVEUtil.SYSCONFIG_LVE_GenerateDebitsChunkSize, 100, getAD_Client_ID()), 1);
+		for(int fromIndex = 0; fromIndex < invoiceIds.size(); fromIndex += chunkSize) {
+			List<Integer> chunk = invoiceIds.subList(fromIndex, Math.min(fromIndex + chunkSize, invoiceIds.size()));
+			for(int invoiceId : chunk) {
+				try {
+					addLog(processInvoice(invoiceId, debitAmounts.get(invoiceId)));
+					created++;
+				} catch (Exception e) {
+					errors++;
+					MInvoice invoice = MInvoice.get(getCtx(), invoiceId);
+					addLog("@Error@ @C_Invoice_ID@ " + invoice.getDocumentNo() + ": " + e.getLocalizedMessage());
+					log.severe("C_Invoice_ID=" + invoiceId + " " + e.getLocalizedMessage());
+				}
+			}
+			statusUpdate(Msg.parseTranslation(getCtx(), "@Processed@ " + (fromIndex + chunk.size()) + " / " + invoiceIds.size()));
+		}
+		return "@Created@ = " + created + (errors > 0? " @Errors@ = " + errors: "");
+	}
+	
+	/**
+	 * Load settings for all document types of selection, fail before process any invoice
+	 * @param invoiceIds
+	 */
+	private void loadSettings(Set<Integer> invoiceIds) {
+		String sql = "SELECT DISTINCT C_DocTypeTarget_ID FROM C_Invoice WHERE C_Invoice_ID IN(" + getInClause(invoiceIds) + ")";
+		DB.runResultSet(get_TrxName(), sql, List.of(), resultSet -> {
+			while(resultSet.next()) {
+				int documentTypeId = resultSet.getInt("C_DocTypeTarget_ID");
+				MLVEAutoDebitNoteSetting settings = MLVEAutoDebitNoteSetting.get(getCtx(), documentTypeId);
+				if(settings == null) {
+					throw new AdempiereException("@NotFound@ @LVE_AutoDebitNoteSetting_ID@");
+				}
+				settingsByDocumentType.put(documentTypeId, settings);
+			}
+		}).onFailure(throwable -> {
+			throw new AdempiereException(throwable);
+		});
+	}
+	
+	/**
+	 * Get invoices with a debit note generated since the selection of this run (process instance)
+	 * @param invoiceIds
+	 * @return
+	 */
+	private Set<Integer> getInvoicesWithDebitNote(Set<Integer> invoiceIds) {
+		Set<Integer> invoicesWithDebitNote = new HashSet<>();
+		String sql = "SELECT DISTINCT " + LVEUtil.COLUMNNAME_LVE_AutoDebitInvoice_ID + " FROM C_Invoice "
+				+ "WHERE " + LVEUtil.COLUMNNAME_LVE_AutoDebitInvoice_ID + " IN(" + getInClause(invoiceIds) + ") "
+				+ "AND DocStatus IN('CO', 'CL') "
+				+ "AND Created >= (SELECT pi.Created FROM AD_PInstance pi WHERE pi.AD_PInstance_ID = ?)";
+		DB.runResultSet(get_TrxName(), sql, List.of(getAD_PInstance_ID()), resultSet -> {
+			while(resultSet.next()) {
+				invoicesWithDebitNote.add(resultSet.getInt(1));
+			}
+		}).onFailure(throwable -> {
+			throw new AdempiereException(throwable);
+		});
+		return invoicesWithDebitNote;
+	}
+	
+	/**
+	 * Get IDs separated by comma
+	 * @param ids
+	 * @return
+	 */
+	private String getInClause(Set<Integer> ids) {
+		return ids.stream().map(String::valueOf).collect(Collectors.joining(", "));
+	}
+	
+	/**
+	 * Create debit note and allocation for a invoice in a new transaction
+	 * @param invoiceId
+	 * @param debitAmt
+	 * @return log message
+	 */
+	private String processInvoice(int invoiceId, BigDecimal debitAmt) {
+		StringBuffer message = new StringBuffer();
+		Trx.run(transactionName -> {
+			MInvoice invoice = new MInvoice(getCtx(), invoiceId, transactionName);
+			MLVEAutoDebitNoteSetting settings = settingsByDocumentType.get(invoice.getC_DocTypeTarget_ID());
+			if(settings == null) {
 				throw new AdempiereException("@NotFound@ @LVE_AutoDebitNoteSetting_ID@");
-			});
-			BigDecimal debitAmt = (BigDecimal) row.getValue().get(COLUMNNAME_DebitAmt);
-			Optional<MInvoice> maybeDebitNote = Optional.ofNullable(createDebitNoteFromInvoice(invoice, debitAmt));
-			maybeDebitNote
-				.ifPresent(debitNote ->{
-					Optional<MAllocationHdr> maybeAllocation = Optional.ofNullable(allocatedDebitNote(debitNote));
-					maybeAllocation.ifPresent(allocation ->{
-						addLog("@Created@ @C_Invoice_ID@ " +debitNote.getDocumentNo());
-						addLog("@Created@ @C_AllocationHdr_ID@ " +allocation.getDocumentNo());
-					});
-				});
+			}
+			MInvoice debitNote = createDebitNoteFromInvoice(invoice, debitAmt, settings, transactionName);
+			MAllocationHdr allocation = allocatedDebitNote(debitNote, settings, transactionName);
+			message.append("@Created@ @C_Invoice_ID@ ").append(debitNote.getDocumentNo())
+				.append(", @C_AllocationHdr_ID@ ").append(allocation.getDocumentNo());
 		});
-		return "";
+		return message.toString();
 	}
 	
 	/**
 	 * Create Debt Note
 	 * @param invoiceFrom
 	 * @param debitAmt
+	 * @param settings
+	 * @param transactionName
 	 * @return
 	 */
-	private MInvoice createDebitNoteFromInvoice(MInvoice invoiceFrom, BigDecimal debitAmt){
+	private MInvoice createDebitNoteFromInvoice(MInvoice invoiceFrom, BigDecimal debitAmt, MLVEAutoDebitNoteSetting settings, String transactionName) {
+		final MOrgInfo orgInfo = MOrgInfo.get(getCtx(), invoiceFrom.getAD_Org_ID(), transactionName);
+		final MCurrency fiscalCurrency = MCurrency.get(getCtx(), orgInfo.get_ValueAsInt(LVEUtil.COLUMNNAME_LVE_FiscalCurrency_ID));
+		MInvoice debitNote = new MInvoice(getCtx(), 0, transactionName);
+		MInvoice.copyValues(invoiceFrom, debitNote);
 		
-		AtomicReference<MInvoice> documentReturn = new AtomicReference<MInvoice>(null);
+		//Get Default Fiscal Currency Price List
+		MPriceList priceList = MPriceList.get(getCtx(), settings.getM_PriceList_ID(), transactionName);
+		if(priceList == null) {
+			throw new AdempiereException("@NotFound@ @IsDefault@ @M_PriceList_ID@");
+		}
+		debitNote.setM_PriceList_ID(priceList.get_ID());
+		debitNote.setC_Currency_ID(priceList.getC_Currency_ID());
 		
-		maybeSettings.orElseGet(() -> {
-			throw new AdempiereException("@NotFound@ @LVE_AutoDebitNoteSetting_ID@");
-		});
-		maybeSettings.ifPresent(settings -> {
-			final MOrgInfo orgInfo = MOrgInfo.get(getCtx(), invoiceFrom.getAD_Org_ID(), get_TrxName());
-			final MCurrency fiscalCurrency = MCurrency.get(getCtx(), orgInfo.get_ValueAsInt(LVEUtil.COLUMNNAME_LVE_FiscalCurrency_ID));
-			MInvoice debitNote = new MInvoice(getCtx(), 0, get_TrxName());
-			MInvoice.copyValues(invoiceFrom, debitNote);
-			
-			//Get Default Fiscal Currency Price List
-			Optional<MPriceList> maybePriceList = Optional.ofNullable(MPriceList.get(getCtx(), settings.getM_PriceList_ID(), get_TrxName()));
-			maybePriceList.orElseGet(() -> {
-				throw new AdempiereException("@NotFound@ @IsDefault@ @M_PriceList_ID@");
-			});
-			maybePriceList.ifPresent(priceList -> {
-				debitNote.setM_PriceList_ID(priceList.get_ID());
-				debitNote.setC_Currency_ID(priceList.getC_Currency_ID());
-			});
-			
-			//Sales Transaction Blank Document Number and Control Number
-			debitNote.setDocumentNo(invoiceFrom.isSOTrx() ? null : getDocumentNo());
-			debitNote.set_ValueOfColumn(LVEUtil.COLUMNNAME_ControlNo, invoiceFrom.isSOTrx() ? null : getControlNo());
-			debitNote.setDocStatus(MInvoice.DOCSTATUS_Drafted);
-			debitNote.setProcessed(false);
-			debitNote.setPosted(false);
-			debitNote.setDateAcct(getDateAcct());
-			debitNote.setDateInvoiced(getDateInvoiced());
-			debitNote.setC_ConversionType_ID(getConversionTypeId());
-			debitNote.setC_DocTypeTarget_ID(settings.getLVE_DebitNoteDocType_ID());
-			debitNote.setC_DocType_ID(settings.getLVE_DebitNoteDocType_ID());
-			debitNote.set_ValueOfColumn(LVEUtil.COLUMNNAME_LVE_AutoDebitInvoice_ID, invoiceFrom.get_ID());
-			debitNote.set_ValueOfColumn(LVEUtil.COLUMNNAME_InvoiceToAllocate_ID, invoiceFrom.get_ID());
-			debitNote.saveEx();
-			
-			//Create Lines for Debit Note
-			boolean detailDebitNote = settings.isLVE_IsCopyLinesFromInvoice();
-			int debitChargeId = settings.getLVE_DebitNoteCharge_ID();
-			BinaryOperator<BigDecimal> sumValue = (previous, currentValue) -> previous.add(currentValue);
-			AtomicReference<BigDecimal> amt = new AtomicReference<BigDecimal>(debitAmt);
-			
-			if (detailDebitNote) {
-				debitNote.copyLinesFrom(invoiceFrom, false, false);
-				AtomicReference<BigDecimal> lineAmt = new AtomicReference<BigDecimal>(Env.ZERO);
-				final BigDecimal totalLines = new BigDecimal(debitNote.getLines().length);
-				AtomicReference<BigDecimal> currentLine = new AtomicReference<BigDecimal>(Env.ZERO);
-				Arrays.asList(debitNote.getLines())
-					  .stream()
-					  .forEach(debitNoteLine -> {
-						  currentLine.accumulateAndGet(Env.ONE, sumValue);
-						  BigDecimal lineRate = debitNoteLine.getLineNetAmt()
-								  						.divide(debitNote.getTotalLines(), MathContext.DECIMAL128);
-						  
-						  lineAmt.set(debitAmt.multiply(lineRate).setScale(fiscalCurrency.getStdPrecision(), RoundingMode.HALF_UP));
-						  
-						  debitNoteLine.setPrice(lineAmt.get());
-						  amt.accumulateAndGet(lineAmt.get().negate(), sumValue);
-						  if (currentLine.get().compareTo(totalLines) ==0 
-								  && amt.get().abs().compareTo(Env.ZERO) != 0)
-						  	debitNoteLine.setPrice(lineAmt.get().add(amt.get()));
-						  debitNoteLine.setQty(Env.ONE);
-						  debitNoteLine.saveEx();
-					  });
-			}else {
-				MInvoiceLine invoiceLine = new MInvoiceLine(debitNote);
-				invoiceLine.setC_Charge_ID(debitChargeId);
-				invoiceLine.setQty(BigDecimal.ONE);
-				invoiceLine.setPrice(amt.get());
-				invoiceLine.saveEx();
-			}
-			
-			debitNote.processIt(MInvoice.ACTION_Complete);
-			debitNote.saveEx();
-			documentReturn.set(debitNote);
-		});
+		//Sales Transaction Blank Document Number and Control Number
+		debitNote.setDocumentNo(invoiceFrom.isSOTrx() ? null : getDocumentNo());
+		debitNote.set_ValueOfColumn(LVEUtil.COLUMNNAME_ControlNo, invoiceFrom.isSOTrx() ? null : getControlNo());
+		debitNote.setDocStatus(MInvoice.DOCSTATUS_Drafted);
+		debitNote.setProcessed(false);
+		debitNote.setPosted(false);
+		debitNote.setDateAcct(getDateAcct());
+		debitNote.setDateInvoiced(getDateInvoiced());
+		debitNote.setC_ConversionType_ID(getConversionTypeId());
+		debitNote.setC_DocTypeTarget_ID(settings.getLVE_DebitNoteDocType_ID());
+		debitNote.setC_DocType_ID(settings.getLVE_DebitNoteDocType_ID());
+		debitNote.set_ValueOfColumn(LVEUtil.COLUMNNAME_LVE_AutoDebitInvoice_ID, invoiceFrom.get_ID());
+		debitNote.set_ValueOfColumn(LVEUtil.COLUMNNAME_InvoiceToAllocate_ID, invoiceFrom.get_ID());
+		debitNote.saveEx();
+		
+		//Create Lines for Debit Note
+		boolean detailDebitNote = settings.isLVE_IsCopyLinesFromInvoice();
+		int debitChargeId = settings.getLVE_DebitNoteCharge_ID();
+		BinaryOperator<BigDecimal> sumValue = (previous, currentValue) -> previous.add(currentValue);
+		AtomicReference<BigDecimal> amt = new AtomicReference<BigDecimal>(debitAmt);
 		
+		if (detailDebitNote) {
+			debitNote.copyLinesFrom(invoiceFrom, false, false);
+			AtomicReference<BigDecimal> lineAmt = new AtomicReference<BigDecimal>(Env.ZERO);
+			final BigDecimal totalLines = new BigDecimal(debitNote.getLines().length);
+			AtomicReference<BigDecimal> currentLine = new AtomicReference<BigDecimal>(Env.ZERO);
+			Arrays.asList(debitNote.getLines())
+				  .stream()
+				  .forEach(debitNoteLine -> {
+					  currentLine.accumulateAndGet(Env.ONE, sumValue);
+					  BigDecimal lineRate = debitNoteLine.getLineNetAmt()
+							  						.divide(debitNote.getTotalLines(), MathContext.DECIMAL128);
+					  
+					  lineAmt.set(debitAmt.multiply(lineRate).setScale(fiscalCurrency.getStdPrecision(), RoundingMode.HALF_UP));
+					  
+					  debitNoteLine.setPrice(lineAmt.get());
+					  amt.accumulateAndGet(lineAmt.get().negate(), sumValue);
+					  if (currentLine.get().compareTo(totalLines) ==0 
+							  && amt.get().abs().compareTo(Env.ZERO) != 0)
+					  	debitNoteLine.setPrice(lineAmt.get().add(amt.get()));
+					  debitNoteLine.setQty(Env.ONE);
+					  debitNoteLine.saveEx();
+				  });
+		}else {
+			MInvoiceLine invoiceLine = new MInvoiceLine(debitNote);
+			invoiceLine.setC_Charge_ID(debitChargeId);
+			invoiceLine.setQty(BigDecimal.ONE);
+			invoiceLine.setPrice(amt.get());
+			invoiceLine.saveEx();
+		}
 		
-		return documentReturn.get();
+		if(!debitNote.processIt(MInvoice.ACTION_Complete)) {
+			throw new AdempiereException(debitNote.getProcessMsg());
+		}
+		debitNote.saveEx();
+		return debitNote;
 	}
 	
 	/**
-	 * 
+	 * Create and complete allocation of debit note against allocation charge
 	 * @param debitNote
+	 * @param settings
+	 * @param transactionName
 	 */
-	private MAllocationHdr allocatedDebitNote(MInvoice debitNote) {
+	private MAllocationHdr allocatedDebitNote(MInvoice debitNote, MLVEAutoDebitNoteSetting settings, String transactionName) {
 		//		Create automatic Allocation
-		AtomicReference<MAllocationHdr> allocationResult = new AtomicReference<MAllocationHdr>(null);
-		maybeSettings.ifPresent(settings -> {
-			MAllocationHdr allocationHdr = new MAllocationHdr (getCtx(), false, debitNote.getDateAcct(), debitNote.getC_Currency_ID(),
-					Msg.translate(getCtx(), "C_Invoice_ID")	+ ": " + debitNote.getDocumentNo(), get_TrxName());
-			allocationHdr.setAD_Org_ID(debitNote.getAD_Org_ID());
-			allocationHdr.setDateAcct(debitNote.getDateAcct());
-			allocationHdr.saveEx(get_TrxName());
-	
-			//	Original Allocation
-			MAllocationLine allocationLine = new MAllocationLine (allocationHdr, debitNote.getTotalLines(), Env.ZERO, Env.ZERO, Env.ZERO);
-			allocationLine.setDocInfo(debitNote.getC_BPartner_ID(), 0, 0);
-			allocationLine.setC_Invoice_ID(debitNote.get_ID());
-			allocationLine.saveEx(get_TrxName());
-	
-			allocationLine = new MAllocationLine (allocationHdr, debitNote.getTotalLines(), Env.ZERO, Env.ZERO, Env.ZERO);
-			allocationLine.setDocInfo(debitNote.getC_BPartner_ID(), 0, 0);
-			allocationLine.setC_Charge_ID(settings.getLVE_AllocationCharge_ID());
-			allocationLine.saveEx(get_TrxName());
-	
-			if (!allocationHdr.processIt(DocAction.ACTION_Complete)) {
-				throw new AdempiereException(allocationHdr.getProcessMsg());
-			}
-	
-			allocationHdr.saveEx(get_TrxName());
-			allocationResult.set(allocationHdr);
-		});
-		return allocationResult.get();
+		MAllocationHdr allocationHdr = new MAllocationHdr (getCtx(), false, debitNote.getDateAcct(), debitNote.getC_Currency_ID(),
+				Msg.translate(getCtx(), "C_Invoice_ID")	+ ": " + debitNote.getDocumentNo(), transactionName);
+		allocationHdr.setAD_Org_ID(debitNote.getAD_Org_ID());
+		allocationHdr.setDateAcct(debitNote.getDateAcct());
+		allocationHdr.saveEx(transactionName);
+
+		//	Original Allocation
+		MAllocationLine allocationLine = new MAllocationLine (allocationHdr, debitNote.getTotalLines(), Env.ZERO, Env.ZERO, Env.ZERO);
+		allocationLine.setDocInfo(debitNote.getC_BPartner_ID(), 0, 0);
+		allocationLine.setC_Invoice_ID(debitNote.get_ID());
+		allocationLine.saveEx(transactionName);
+
+		allocationLine = new MAllocationLine (allocationHdr, debitNote.getTotalLines(), Env.ZERO, Env.ZERO, Env.ZERO);
+		allocationLine.setDocInfo(debitNote.getC_BPartner_ID(), 0, 0);
+		allocationLine.setC_Charge_ID(settings.getLVE_AllocationCharge_ID());
+		allocationLine.saveEx(transactionName);
+
+		if (!allocationHdr.processIt(DocAction.ACTION_Complete)) {
+			throw new AdempiereException(allocationHdr.getProcessMsg());
+		}
+
+		allocationHdr.saveEx(transactionName);
+		return allocationHdr;
 	}
-}
\ No newline at end of file
+}
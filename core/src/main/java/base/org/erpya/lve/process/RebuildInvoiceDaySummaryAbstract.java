@@ -0,0 +1,97 @@
+/******************************************************************************
+ * Product: ADempiere ERP & CRM Smart Business Solution                       *
+ * Copyright (C) 2006-2017 ADempiere Foundation, All Rights Reserved.         *
+ * This program is free software, you can redistribute it and/or modify it    *
+ * under the terms version 2 of the GNU General Public License as published   *
+ * or (at your option) any later version.                                     *
+ * by the Free Software Foundation. This program is distributed in the hope   *
+ * that it will be useful, but WITHOUT ANY WARRANTY, without even the implied *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.           *
+ * See the GNU General Public License for more details.                       *
+ * You should have received a copy of the GNU General Public License along    *
+ * with this program, if not, write to the Free Software Foundation, Inc.,    *
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.                     *
+ * For the text or an alternative of this public license, you may reach us    *
+ * or via info@adempiere.net                                                  *
+ * or https://github.com/adempiere/adempiere/blob/develop/license.html        *
+ *****************************************************************************/
+package org.erpya.lve.process;
+
+import java.sql.Timestamp;
+
+import org.compiere.process.SvrProcess;
+
+/** Generated Process for (Rebuild Invoice Day Summary)
+ *  @author ADempiere (generated) 
+ *  @version Release 3.9.4
+ */
+public abstract class RebuildInvoiceDaySummaryAbstract extends SvrProcess {
+	/** Process Value 	*/
+	private static final String VALUE_FOR_PROCESS = "LVE_RebuildInvoiceDaySummary";
+	/** Process Name 	*/
+	private static final String NAME_FOR_PROCESS = "Rebuild Invoice Day Summary";
+	/** Process Id 	*/
+	private static final int ID_FOR_PROCESS = 54800;
+	/**	Parameter Name for Organization	*/
+	public static final String AD_ORG_ID = "AD_Org_ID";
+	/**	Parameter Name for Date Invoiced	*/
+	public static final String DATEINVOICED = "DateInvoiced";
+	/**	Parameter Value for Organization	*/
+	private int orgId;
+	/**	Parameter Value for Date Invoiced	*/
+	private Timestamp dateInvoiced;
+	/**	Parameter Value for Date Invoiced(To)	*/
+	private Timestamp dateInvoicedTo;
+
+	@Override
+	protected void prepare() {
+		orgId = getParameterAsInt(AD_ORG_ID);
+		dateInvoiced = getParameterAsTimestamp(DATEINVOICED);
+		dateInvoicedTo = getParameterToAsTimestamp(DATEINVOICED);
+	}
+
+	/**	 Getter Parameter Value for Organization	*/
+	protected int getOrgId() {
+		return orgId;
+	}
+
+	/**	 Setter Parameter Value for Organization	*/
+	protected void setOrgId(int orgId) {
+		this.orgId = orgId;
+	}
+
+	/**	 Getter Parameter Value for Date Invoiced	*/
+	protected Timestamp getDateInvoiced() {
+		return dateInvoiced;
+	}
+
+	/**	 Setter Parameter Value for Date Invoiced	*/
+	protected void setDateInvoiced(Timestamp dateInvoiced) {
+		this.dateInvoiced = dateInvoiced;
+	}
+
+	/**	 Getter Parameter Value for Date Invoiced(To)	*/
+	protected Timestamp getDateInvoicedTo() {
+		return dateInvoicedTo;
+	}
+
+	/**	 Setter Parameter Value for Date Invoiced(To)	*/
+	protected void setDateInvoicedTo(Timestamp dateInvoicedTo) {
+		this.dateInvoicedTo = dateInvoicedTo;
+	}
+
+	/**	 Getter Parameter Value for Process ID	*/
+	public static final int getProcessId() {
+		return ID_FOR_PROCESS;
+	}
+
+	/**	 Getter Parameter Value for Process Value	*/
+	public static final String getProcessValue() {
+		return VALUE_FOR_PROCESS;
+	}
+
+	/**	 Getter Parameter Value for Process Name	*/
+	public static final String getProcessName() {
+		return NAME_FOR_PROCESS;
+	}
+}
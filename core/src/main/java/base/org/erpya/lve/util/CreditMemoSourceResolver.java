@@ -0,0 +1,138 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.compiere.model.MInvoice;
+import org.compiere.util.CLogger;
+import org.compiere.util.DB;
+
+/**
+ * Resolve the source invoice of all lines of a credit memo generated from a return order.
+ * The source is taken from the referenced invoice line of return order line or from
+ * the completed invoice of the referenced shipment line, all in a single statement.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class CreditMemoSourceResolver {
+
+	/**
+	 * Constructor from credit memo
+	 * @param creditMemo
+	 */
+	private CreditMemoSourceResolver(MInvoice creditMemo) {
+		if(creditMemo == null) {
+			throw new AdempiereException("@C_Invoice_ID@ @NotFound@");
+		}
+		this.creditMemo = creditMemo;
+	}
+
+	/**	Credit Memo	*/
+	private MInvoice creditMemo;
+	/** Logger */
+	private static CLogger log = CLogger.getCLogger(CreditMemoSourceResolver.class);
+	/**	Source Invoice for a credit memo line (alias cml)	*/
+	private static final String SQL_SOURCE_INVOICE = "COALESCE("
+			//	From invoice line referenced on return order line
+			+ "(SELECT ril.C_Invoice_ID FROM C_OrderLine rol "
+			+ "INNER JOIN C_InvoiceLine ril ON(ril.C_InvoiceLine_ID = rol.Ref_InvoiceLine_ID) "
+			+ "WHERE rol.C_OrderLine_ID = cml.C_OrderLine_ID), "
+			//	From completed invoice of shipment line referenced on return order line
+			+ "(SELECT MIN(sil.C_Invoice_ID) FROM C_OrderLine rol "
+			+ "INNER JOIN M_InOutLine iol ON(iol.M_InOutLine_ID = rol.Ref_InOutLine_ID) "
+			+ "INNER JOIN C_InvoiceLine sil ON(sil.C_OrderLine_ID = iol.C_OrderLine_ID) "
+			+ "INNER JOIN C_Invoice si ON(si.C_Invoice_ID = sil.C_Invoice_ID) "
+			+ "WHERE rol.C_OrderLine_ID = cml.C_OrderLine_ID "
+			+ "AND si.DocStatus IN('CO', 'CL')))";
+
+	/**
+	 * Create instance from credit memo
+	 * @param creditMemo
+	 * @return
+	 */
+	public static CreditMemoSourceResolver newInstance(MInvoice creditMemo) {
+		return new CreditMemoSourceResolver(creditMemo);
+	}
+
+	/**
+	 * Get source invoice for each credit memo line
+	 * @return map of C_InvoiceLine_ID -> source C_Invoice_ID
+	 */
+	public Map<Integer, Integer> getSourceInvoices() {
+		Map<Integer, Integer> sourceInvoices = new HashMap<Integer, Integer>();
+		String sql = "SELECT cml.C_InvoiceLine_ID, " + SQL_SOURCE_INVOICE + " AS SourceInvoice_ID "
+				+ "FROM C_InvoiceLine cml "
+				+ "WHERE cml.C_Invoice_ID = ? "
+				+ "AND cml.C_OrderLine_ID IS NOT NULL";
+		List<Object> parameters = List.of(creditMemo.getC_Invoice_ID());
+		DB.runResultSet(creditMemo.get_TrxName(), sql, parameters, resultSet -> {
+			while(resultSet.next()) {
+				int sourceInvoiceId = resultSet.getInt("SourceInvoice_ID");
+				if(sourceInvoiceId > 0) {
+					sourceInvoices.put(resultSet.getInt("C_InvoiceLine_ID"), sourceInvoiceId);
+				}
+			}
+		}).onFailure(throwable -> {
+			throw new AdempiereException(throwable);
+		});
+		return sourceInvoices;
+	}
+
+	/**
+	 * Set Invoice to Allocate for credit memo and lines.
+	 * If all lines come from a single invoice it is set on header, else it is set by line
+	 * @return quantity of lines updated
+	 */
+	public int resolve() {
+		//	Already allocated manually
+		if(Arrays.asList(creditMemo.getLines())
+				.stream()
+				.anyMatch(creditMemoLine -> creditMemoLine.get_ValueAsInt(LVEUtil.COLUMNNAME_InvoiceToAllocate_ID) != 0)) {
+			return 0;
+		}
+		Map<Integer, Integer> sourceInvoices = getSourceInvoices();
+		if(sourceInvoices.isEmpty()) {
+			return 0;
+		}
+		long sourceInvoiceQuantity = sourceInvoices.values().stream().distinct().count();
+		int updated = 0;
+		if(sourceInvoiceQuantity == 1) {
+			int invoiceToAllocateId = sourceInvoices.values().stream().findFirst().get();
+			updated = DB.executeUpdateEx("UPDATE C_InvoiceLine SET InvoiceToAllocate_ID = ? "
+					+ "WHERE C_Invoice_ID = ? "
+					+ "AND COALESCE(InvoiceToAllocate_ID, 0) = 0",
+					new Object[] {invoiceToAllocateId, creditMemo.getC_Invoice_ID()}, creditMemo.get_TrxName());
+			//	Reload lines before save, the header is not propagated again to lines
+			creditMemo.getLines(true);
+			creditMemo.set_ValueOfColumn(LVEUtil.COLUMNNAME_InvoiceToAllocate_ID, invoiceToAllocateId);
+			creditMemo.saveEx();
+		} else {
+			updated = DB.executeUpdateEx("UPDATE C_InvoiceLine cml SET InvoiceToAllocate_ID = " + SQL_SOURCE_INVOICE + " "
+					+ "WHERE cml.C_Invoice_ID = ? "
+					+ "AND cml.C_OrderLine_ID IS NOT NULL "
+					+ "AND COALESCE(cml.InvoiceToAllocate_ID, 0) = 0",
+					new Object[] {creditMemo.getC_Invoice_ID()}, creditMemo.get_TrxName());
+			//	Reload lines
+			creditMemo.getLines(true);
+		}
+		log.fine("Credit Memo Lines Allocated=" + updated);
+		return updated;
+	}
+}
@@ -0,0 +1,120 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+import org.compiere.util.CLogger;
+import org.compiere.util.Trx;
+import org.compiere.util.TrxEventListener;
+
+/**
+ * Refresh of summary tables out of the document transaction: the action is run only after
+ * commit of document transaction (it is discarded on rollback) and the refresh of a key is
+ * run on a background thread with own transaction. The keys pending are not queued again,
+ * then many documents of the same key (e.g. organization and day) are refreshed once.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class DeferredRefresh {
+
+	/**	Pending keys	*/
+	private static final Set<String> pendingKeys = ConcurrentHashMap.newKeySet();
+	/**	Worker	*/
+	private static final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "LVE-DeferredRefresh");
+		thread.setDaemon(true);
+		return thread;
+	});
+	/** Logger */
+	private static CLogger log = CLogger.getCLogger(DeferredRefresh.class);
+
+	/**
+	 * Run action after commit of transaction, if the transaction is null or it is not found then is run now
+	 * @param transactionName
+	 * @param action
+	 */
+	public static void afterCommit(String transactionName, Runnable action) {
+		Trx transaction = transactionName == null? null: Trx.get(transactionName, false);
+		if(transaction == null) {
+			action.run();
+			return;
+		}
+		transaction.addTrxEventListener(new TrxEventListener() {
+			@Override
+			public void afterCommit(Trx trx, boolean success) {
+				if(success) {
+					action.run();
+				}
+			}
+
+			@Override
+			public void afterRollback(Trx trx, boolean success) {
+				//	Nothing was changed
+			}
+
+			@Override
+			public void afterClose(Trx trx) {
+				//	Nothing to release
+			}
+		});
+	}
+
+	/**
+	 * Queue refresh of a key after commit of transaction
+	 * @param transactionName document transaction
+	 * @param key key of refresh, it is ignored if it is pending
+	 * @param refresh refresh to run, it receive a new transaction name
+	 */
+	public static void submitAfterCommit(String transactionName, String key, Consumer<String> refresh) {
+		afterCommit(transactionName, () -> submit(key, refresh));
+	}
+
+	/**
+	 * Queue refresh of a key on background
+	 * @param key key of refresh, it is ignored if it is pending
+	 * @param refresh refresh to run, it receive a new transaction name
+	 */
+	public static void submit(String key, Consumer<String> refresh) {
+		queue(key, () -> Trx.run(transactionName -> refresh.accept(transactionName)));
+	}
+
+	/**
+	 * Queue a task of a key on worker
+	 * @param key key of task, it is ignored if it is pending
+	 * @param task
+	 * @return true if it is queued, false if the key is pending
+	 */
+	static boolean queue(String key, Runnable task) {
+		if(!pendingKeys.add(key)) {
+			return false;
+		}
+		worker.submit(() -> {
+			//	Remove before run, a change after start is queued again
+			pendingKeys.remove(key);
+			try {
+				task.run();
+			} catch (Exception e) {
+				log.log(Level.SEVERE, "Refresh " + key, e);
+			}
+		});
+		return true;
+	}
+}
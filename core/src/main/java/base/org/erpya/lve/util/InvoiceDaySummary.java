@@ -0,0 +1,183 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.compiere.model.MInvoice;
+import org.compiere.util.CLogger;
+import org.compiere.util.DB;
+import org.compiere.util.TimeUtil;
+
+/**
+ * Daily summary of invoice lines by organization (of invoice), day, transaction, document number sequence and
+ * control number sequence used by view LVE_RV_C_Invoice_Day_Summary. The days of each invoice
+ * are summarized again when the invoice is completed, reversed or voided, then the report does
+ * not aggregate all invoice lines of history.
+ * The summary of a day is refreshed after commit of invoice on background (many invoices of the same
+ * day are summarized once) and the rows are written with INSERT ... ON CONFLICT over the unique key
+ * of table, then two refresh of the same day don't duplicate rows. The day to summarize is saved on
+ * LVE_InvoiceDaySummaryPending with the invoice transaction and it is removed by the refresh, then
+ * the days not refreshed when the server is stopped are refreshed again on start.
+ * The table is kept only for PostgreSQL, the view of Oracle summarize the invoice lines.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class InvoiceDaySummary {
+
+	/**	Table Name	*/
+	public static final String Table_Name = "LVE_InvoiceDaySummary";
+	/**	Days pending for summary	*/
+	public static final String Table_Name_Pending = "LVE_InvoiceDaySummaryPending";
+	/** Logger */
+	private static CLogger log = CLogger.getCLogger(InvoiceDaySummary.class);
+	/**	Key of summary	*/
+	private static final String KEY_COLUMNS = "AD_Client_ID, AD_Org_ID, DateInvoiced, IsSOTrx, DocNoSequence_ID, ControlNoSequence_ID, IsFiscalDocument, DocBaseType";
+	/**	Summary from invoice lines	*/
+	private static final String SQL_SUMMARY = "SELECT i.AD_Client_ID, i.AD_Org_ID, firstOf(il.DateInvoiced, 'DD') AS DateInvoiced, "
+			+ "il.IsSOTrx, COALESCE(dt.DefiniteSequence_ID, dt.DocNoSequence_ID, 0) AS DocNoSequence_ID, COALESCE(dt.ControlNoSequence_ID, 0) AS ControlNoSequence_ID, "
+			+ "COALESCE(dt.IsFiscalDocument, 'N') AS IsFiscalDocument, dt.DocBaseType, "
+			+ "SUM(il.LineNetAmt) AS LineNetAmt, SUM(il.LineListAmt) AS LineListAmt, SUM(il.LineLimitAmt) AS LineLimitAmt, "
+			+ "SUM(il.LineDiscountAmt) AS LineDiscountAmt, SUM(il.LineOverLimitAmt) AS LineOverLimitAmt, "
+			+ "MIN(CASE WHEN i.IsFiscalDocument = 'Y' THEN i.DocumentNo ELSE NULL END) AS BeginingDocumentNo, "
+			+ "MAX(CASE WHEN i.IsFiscalDocument = 'Y' THEN i.DocumentNo ELSE '' END) AS EndingDocumentNo, "
+			+ "MIN(CASE WHEN i.IsFiscalDocument = 'Y' THEN i.ControlNo ELSE NULL END) AS BeginingControlNo, "
+			+ "MAX(CASE WHEN i.IsFiscalDocument = 'Y' THEN i.ControlNo ELSE '' END) AS EndingControlNo, "
+			+ "SUM(currencyBase(il.LineNetAmt, i.C_Currency_ID, i.DateAcct, i.C_ConversionType_ID, i.AD_Client_ID, i.AD_Org_ID)) AS ConvertedAmt "
+			+ "FROM RV_C_InvoiceLine il "
+			+ "INNER JOIN C_Invoice i ON(i.C_Invoice_ID = il.C_Invoice_ID) "
+			+ "INNER JOIN C_DocType dt ON(dt.C_DocType_ID = il.C_DocTypeTarget_ID) "
+			+ "WHERE il.DocStatus IN('CO', 'CL', 'RE') "
+			+ "AND i.AD_Client_ID = ? "
+			+ "AND il.DateInvoiced >= ? "
+			+ "AND il.DateInvoiced < ? ";
+	/**	Group of summary	*/
+	private static final String SQL_GROUP_BY = "GROUP BY i.AD_Client_ID, i.AD_Org_ID, firstOf(il.DateInvoiced, 'DD'), il.IsSOTrx, "
+			+ "COALESCE(dt.DefiniteSequence_ID, dt.DocNoSequence_ID, 0), COALESCE(dt.ControlNoSequence_ID, 0), COALESCE(dt.IsFiscalDocument, 'N'), dt.DocBaseType";
+
+	/**
+	 * Queue summary of the day of invoice after commit, if the invoice date is changed then the previous day is summarized too
+	 * @param invoice
+	 */
+	public static void refresh(MInvoice invoice) {
+		if(!DB.isPostgreSQL()) {
+			return;
+		}
+		Timestamp dateInvoiced = TimeUtil.getDay(invoice.getDateInvoiced());
+		refreshAfterCommit(invoice.getAD_Client_ID(), invoice.getAD_Org_ID(), dateInvoiced, invoice.get_TrxName());
+		if(invoice.is_ValueChanged(MInvoice.COLUMNNAME_DateInvoiced)
+				&& invoice.get_ValueOld(MInvoice.COLUMNNAME_DateInvoiced) != null) {
+			Timestamp previousDateInvoiced = TimeUtil.getDay((Timestamp) invoice.get_ValueOld(MInvoice.COLUMNNAME_DateInvoiced));
+			if(!previousDateInvoiced.equals(dateInvoiced)) {
+				refreshAfterCommit(invoice.getAD_Client_ID(), invoice.getAD_Org_ID(), previousDateInvoiced, invoice.get_TrxName());
+			}
+		}
+	}
+
+	/**
+	 * Save a organization and day as pending with transaction and queue summary after commit of transaction
+	 * @param clientId
+	 * @param organizationId
+	 * @param day
+	 * @param transactionName
+	 */
+	private static void refreshAfterCommit(int clientId, int organizationId, Timestamp day, String transactionName) {
+		DB.executeUpdateEx("INSERT INTO " + Table_Name_Pending + "(AD_Client_ID, AD_Org_ID, DateInvoiced) VALUES(?, ?, ?) "
+				+ "ON CONFLICT DO NOTHING", new Object[]{clientId, organizationId, day}, transactionName);
+		DeferredRefresh.afterCommit(transactionName, () -> submit(clientId, organizationId, day));
+	}
+
+	/**
+	 * Queue summary of a organization and day on background
+	 * @param clientId
+	 * @param organizationId
+	 * @param day
+	 */
+	private static void submit(int clientId, int organizationId, Timestamp day) {
+		String key = Table_Name + "|" + clientId + "|" + organizationId + "|" + day.getTime();
+		DeferredRefresh.submit(key, refreshTransactionName -> rebuild(clientId, organizationId, day, day, refreshTransactionName));
+	}
+
+	/**
+	 * Queue summary of days pending (e.g. the server was stopped before refresh)
+	 * @param clientId client of pending days, 0 for all clients
+	 */
+	public static void refreshPending(int clientId) {
+		if(!DB.isPostgreSQL()) {
+			return;
+		}
+		DeferredRefresh.submit(Table_Name_Pending + "|" + clientId, transactionName -> {
+			DB.runResultSet(transactionName, "SELECT p.AD_Client_ID, p.AD_Org_ID, p.DateInvoiced FROM " + Table_Name_Pending + " p "
+					+ "WHERE ? IN(0, p.AD_Client_ID)", Arrays.asList(clientId), resultSet -> {
+				while(resultSet.next()) {
+					submit(resultSet.getInt(1), resultSet.getInt(2), resultSet.getTimestamp(3));
+				}
+			}).onFailure(throwable -> log.log(Level.WARNING, "Pending Invoice Day Summary", throwable));
+		});
+	}
+
+	/**
+	 * Summarize again a range of days, the pending days of range are removed
+	 * @param clientId
+	 * @param organizationId optional, 0 for all organizations
+	 * @param dateFrom first day
+	 * @param dateTo last day
+	 * @param transactionName
+	 * @return quantity of rows inserted or updated
+	 */
+	public static int rebuild(int clientId, int organizationId, Timestamp dateFrom, Timestamp dateTo, String transactionName) {
+		Timestamp dayFrom = TimeUtil.getDay(dateFrom);
+		Timestamp dayTo = TimeUtil.addDays(TimeUtil.getDay(dateTo), 1);
+		List<Object> parameters = new ArrayList<Object>();
+		parameters.add(clientId);
+		parameters.add(dayFrom);
+		parameters.add(dayTo);
+		StringBuffer summaryClause = new StringBuffer(SQL_SUMMARY);
+		StringBuffer deleteClause = new StringBuffer("DELETE FROM " + Table_Name + " s WHERE s.AD_Client_ID = ? AND s.DateInvoiced >= ? AND s.DateInvoiced < ?");
+		StringBuffer pendingClause = new StringBuffer("DELETE FROM " + Table_Name_Pending + " s WHERE s.AD_Client_ID = ? AND s.DateInvoiced >= ? AND s.DateInvoiced < ?");
+		if(organizationId > 0) {
+			summaryClause.append("AND i.AD_Org_ID = ? ");
+			deleteClause.append(" AND s.AD_Org_ID = ?");
+			pendingClause.append(" AND s.AD_Org_ID = ?");
+			parameters.add(organizationId);
+		}
+		summaryClause.append(SQL_GROUP_BY);
+		//	Pending days are summarized now, a invoice committed after it is saved as pending again
+		DB.executeUpdateEx(pendingClause.toString(), parameters.toArray(), transactionName);
+		//	Insert or update groups of summary
+		int updated = DB.executeUpdateEx("INSERT INTO " + Table_Name + "(" + KEY_COLUMNS + ", "
+				+ "LineNetAmt, LineListAmt, LineLimitAmt, LineDiscountAmt, LineOverLimitAmt, BeginingDocumentNo, EndingDocumentNo, BeginingControlNo, EndingControlNo, ConvertedAmt, Updated) "
+				+ "SELECT " + KEY_COLUMNS + ", "
+				+ "LineNetAmt, LineListAmt, LineLimitAmt, LineDiscountAmt, LineOverLimitAmt, BeginingDocumentNo, EndingDocumentNo, BeginingControlNo, EndingControlNo, ConvertedAmt, SysDate "
+				+ "FROM (" + summaryClause + ") summary "
+				+ "ON CONFLICT (" + KEY_COLUMNS + ") DO UPDATE SET "
+				+ "LineNetAmt = EXCLUDED.LineNetAmt, LineListAmt = EXCLUDED.LineListAmt, LineLimitAmt = EXCLUDED.LineLimitAmt, "
+				+ "LineDiscountAmt = EXCLUDED.LineDiscountAmt, LineOverLimitAmt = EXCLUDED.LineOverLimitAmt, "
+				+ "BeginingDocumentNo = EXCLUDED.BeginingDocumentNo, EndingDocumentNo = EXCLUDED.EndingDocumentNo, "
+				+ "BeginingControlNo = EXCLUDED.BeginingControlNo, EndingControlNo = EXCLUDED.EndingControlNo, "
+				+ "ConvertedAmt = EXCLUDED.ConvertedAmt, Updated = EXCLUDED.Updated", parameters.toArray(), transactionName);
+		//	Remove groups without invoices (e.g. voided)
+		List<Object> deleteParameters = new ArrayList<Object>(parameters);
+		deleteParameters.addAll(parameters);
+		deleteClause.append(" AND (" + KEY_COLUMNS + ") NOT IN(SELECT " + KEY_COLUMNS + " FROM (" + summaryClause + ") summary)");
+		int deleted = DB.executeUpdateEx(deleteClause.toString(), deleteParameters.toArray(), transactionName);
+		log.fine("Invoice Day Summary Rebuilt=" + updated + ", Removed=" + deleted);
+		return updated;
+	}
+}
@@ -0,0 +1,292 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.compiere.model.MDocType;
+import org.compiere.model.MInvoice;
+import org.compiere.model.MInvoiceLine;
+import org.compiere.model.MOrder;
+import org.compiere.model.MPriceList;
+import org.compiere.model.MPriceListVersion;
+import org.compiere.util.CCache;
+import org.compiere.util.CLogger;
+import org.compiere.util.DB;
+import org.compiere.util.Util;
+
+/**
+ * Re-price invoice lines from price list when the document type of order has
+ * the flag IsReCalculatePriceOnInvoice. The prices of all products are read once
+ * from the valid price list version and only the lines with a different price are saved,
+ * rounded to price precision of price list. The lines with a UOM different to UOM of product,
+ * the price lists that enforce price limit and the discount schemas are priced by standard pricing.
+ * The invoice is marked as re-priced for the current transaction, then it is not
+ * re-priced again between prepare and complete.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class InvoicePriceRecalculation {
+
+	/**
+	 * Constructor from invoice
+	 * @param invoice
+	 */
+	private InvoicePriceRecalculation(MInvoice invoice) {
+		if(invoice == null) {
+			throw new AdempiereException("@C_Invoice_ID@ @NotFound@");
+		}
+		this.invoice = invoice;
+	}
+
+	/**	Invoice	*/
+	private MInvoice invoice;
+	/**	Invoices re-priced: Invoice ID -> Transaction Name	*/
+	private static CCache<Integer, String> repricedInvoices = new CCache<Integer, String>(MInvoice.Table_Name + "_Repriced", 100, 10);	//	10 minutes
+	/** Logger */
+	private static CLogger log = CLogger.getCLogger(InvoicePriceRecalculation.class);
+
+	/**
+	 * Create instance from invoice
+	 * @param invoice
+	 * @return
+	 */
+	public static InvoicePriceRecalculation newInstance(MInvoice invoice) {
+		return new InvoicePriceRecalculation(invoice);
+	}
+
+	/**
+	 * Verify if the order document type require recalculate price on invoice
+	 * @return
+	 */
+	public boolean isRequired() {
+		if(invoice.isReversal()
+				|| invoice.getC_Order_ID() <= 0) {
+			return false;
+		}
+		MOrder salesOrder = (MOrder) invoice.getC_Order();
+		if(salesOrder == null
+				|| salesOrder.getC_Order_ID() <= 0) {
+			return false;
+		}
+		MDocType orderDocumentType = MDocType.get(salesOrder.getCtx(), salesOrder.getC_DocTypeTarget_ID());
+		return orderDocumentType.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsReCalculatePriceOnInvoice);
+	}
+
+	/**
+	 * Verify if the invoice was re-priced for current transaction
+	 * @return
+	 */
+	public boolean isAlreadyRecalculated() {
+		String transactionName = invoice.get_TrxName();
+		if(Util.isEmpty(transactionName)) {
+			return false;
+		}
+		return transactionName.equals(repricedInvoices.get(invoice.getC_Invoice_ID()));
+	}
+
+	/**
+	 * Recalculate price for all product lines
+	 * @return quantity of lines saved
+	 */
+	public int recalculate() {
+		if(!isRequired()
+				|| isAlreadyRecalculated()) {
+			return 0;
+		}
+		List<MInvoiceLine> productLines = Arrays.asList(invoice.getLines(true));
+		MPriceList priceList = MPriceList.get(invoice.getCtx(), invoice.getM_PriceList_ID(), invoice.get_TrxName());
+		Map<Integer, ProductPrice> prices = getProductPrices(priceList);
+		boolean isStandardPricing = isDiscountSchemaApplied()
+				|| (priceList != null && priceList.isEnforcePriceLimit());
+		AtomicInteger changedLines = new AtomicInteger();
+		productLines
+			.stream()
+			.filter(invoiceLine -> invoiceLine.getM_Product_ID() > 0)
+			.forEach(invoiceLine -> {
+				ProductPrice price = prices.get(invoiceLine.getM_Product_ID());
+				//	Discount schema, breaks, limits, UOM conversion or prices from base list are resolved by standard pricing
+				if(price == null
+						|| isStandardPricing
+						|| invoiceLine.getC_UOM_ID() != price.getC_UOM_ID()) {
+					invoiceLine.setPrice(invoice.getM_PriceList_ID(), invoice.getC_BPartner_ID());
+				} else {
+					setPrice(invoiceLine, price, priceList.getPricePrecision());
+				}
+				if(invoiceLine.is_Changed()) {
+					invoiceLine.saveEx();
+					changedLines.incrementAndGet();
+				}
+			});
+		//	Mark it
+		if(!Util.isEmpty(invoice.get_TrxName())) {
+			repricedInvoices.put(invoice.getC_Invoice_ID(), invoice.get_TrxName());
+		}
+		log.fine("Lines Re-Priced=" + changedLines.get());
+		return changedLines.get();
+	}
+
+	/**
+	 * Set price only if it is changed, the line has same UOM of product
+	 * @param invoiceLine
+	 * @param price
+	 * @param pricePrecision precision of price list
+	 */
+	private void setPrice(MInvoiceLine invoiceLine, ProductPrice price, int pricePrecision) {
+		BigDecimal priceStd = round(price.getPriceStd(), pricePrecision);
+		BigDecimal priceEntered = priceStd;
+		if(invoiceLine.getQtyEntered().compareTo(invoiceLine.getQtyInvoiced()) != 0
+				&& invoiceLine.getQtyEntered().signum() != 0) {
+			priceEntered = round(price.getPriceStd().multiply(invoiceLine.getQtyInvoiced().divide(invoiceLine.getQtyEntered(), 12, RoundingMode.HALF_UP)), pricePrecision);
+		}
+		BigDecimal priceList = round(price.getPriceList(), pricePrecision);
+		BigDecimal priceLimit = round(price.getPriceLimit(), pricePrecision);
+		if(isDifferent(invoiceLine.getPriceActual(), priceStd)) {
+			invoiceLine.setPriceActual(priceStd);
+		}
+		if(isDifferent(invoiceLine.getPriceList(), priceList)) {
+			invoiceLine.setPriceList(priceList);
+		}
+		if(isDifferent(invoiceLine.getPriceLimit(), priceLimit)) {
+			invoiceLine.setPriceLimit(priceLimit);
+		}
+		if(isDifferent(invoiceLine.getPriceEntered(), priceEntered)) {
+			invoiceLine.setPriceEntered(priceEntered);
+		}
+	}
+
+	/**
+	 * Round price to precision of price list, as standard pricing
+	 * @param price
+	 * @param pricePrecision
+	 * @return
+	 */
+	private BigDecimal round(BigDecimal price, int pricePrecision) {
+		if(price == null
+				|| pricePrecision < 0
+				|| price.scale() <= pricePrecision) {
+			return price;
+		}
+		return price.setScale(pricePrecision, RoundingMode.HALF_UP);
+	}
+
+	/**
+	 * Compare amounts without scale
+	 * @param currentValue
+	 * @param newValue
+	 * @return
+	 */
+	private boolean isDifferent(BigDecimal currentValue, BigDecimal newValue) {
+		if(currentValue == null) {
+			return newValue != null;
+		}
+		return newValue == null
+				|| currentValue.compareTo(newValue) != 0;
+	}
+
+	/**
+	 * Verify if business partner or group has a discount schema for this transaction
+	 * @return
+	 */
+	private boolean isDiscountSchemaApplied() {
+		String discountSchemaColumn = invoice.isSOTrx()? "M_DiscountSchema_ID": "PO_DiscountSchema_ID";
+		int discountSchemaId = DB.getSQLValue(invoice.get_TrxName(), "SELECT COALESCE(bp." + discountSchemaColumn + ", g." + discountSchemaColumn + ", 0) "
+				+ "FROM C_BPartner bp "
+				+ "INNER JOIN C_BP_Group g ON(g.C_BP_Group_ID = bp.C_BP_Group_ID) "
+				+ "WHERE bp.C_BPartner_ID = ?", invoice.getC_BPartner_ID());
+		return discountSchemaId > 0;
+	}
+
+	/**
+	 * Get prices of all products of invoice from valid price list version
+	 * @param priceList
+	 * @return
+	 */
+	private Map<Integer, ProductPrice> getProductPrices(MPriceList priceList) {
+		Map<Integer, ProductPrice> prices = new HashMap<Integer, ProductPrice>();
+		if(priceList == null
+				|| priceList.getM_PriceList_ID() <= 0) {
+			return prices;
+		}
+		MPriceListVersion priceListVersion = priceList.getPriceListVersion(invoice.getDateInvoiced());
+		if(priceListVersion == null) {
+			return prices;
+		}
+		String sql = "SELECT pp.M_Product_ID, pp.PriceList, pp.PriceStd, pp.PriceLimit, p.C_UOM_ID "
+				+ "FROM M_ProductPrice pp "
+				+ "INNER JOIN M_Product p ON(p.M_Product_ID = pp.M_Product_ID) "
+				+ "WHERE pp.M_PriceList_Version_ID = ? "
+				+ "AND pp.IsActive = 'Y' "
+				+ "AND EXISTS(SELECT 1 FROM C_InvoiceLine il WHERE il.C_Invoice_ID = ? AND il.M_Product_ID = pp.M_Product_ID)";
+		List<Object> parameters = List.of(priceListVersion.getM_PriceList_Version_ID(), invoice.getC_Invoice_ID());
+		DB.runResultSet(invoice.get_TrxName(), sql, parameters, resultSet -> {
+			while(resultSet.next()) {
+				prices.put(resultSet.getInt("M_Product_ID"),
+						new ProductPrice(resultSet.getBigDecimal("PriceList"),
+								resultSet.getBigDecimal("PriceStd"),
+								resultSet.getBigDecimal("PriceLimit"),
+								resultSet.getInt("C_UOM_ID")));
+			}
+		}).onFailure(throwable -> {
+			throw new AdempiereException(throwable);
+		});
+		return prices;
+	}
+
+	/**
+	 * Price of product from price list version
+	 */
+	private static class ProductPrice {
+
+		public ProductPrice(BigDecimal priceList, BigDecimal priceStd, BigDecimal priceLimit, int uomId) {
+			this.priceList = priceList;
+			this.priceStd = priceStd;
+			this.priceLimit = priceLimit;
+			this.uomId = uomId;
+		}
+
+		/**	Price List	*/
+		private BigDecimal priceList;
+		/**	Standard Price	*/
+		private BigDecimal priceStd;
+		/**	Limit Price	*/
+		private BigDecimal priceLimit;
+		/**	UOM of product	*/
+		private int uomId;
+
+		public BigDecimal getPriceList() {
+			return priceList;
+		}
+
+		public BigDecimal getPriceStd() {
+			return priceStd;
+		}
+
+		public BigDecimal getPriceLimit() {
+			return priceLimit;
+		}
+
+		public int getC_UOM_ID() {
+			return uomId;
+		}
+	}
+}
@@ -23,8 +23,6 @@ import java.util.Properties;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.adempiere.exceptions.AdempiereException;
 import org.adempiere.core.domains.models.I_C_Order;
@@ -47,7 +45,6 @@ import org.compiere.print.ReportEngine;
 import org.compiere.util.CLogger;
 import org.compiere.util.DB;
 import org.compiere.util.Env;
-import org.compiere.util.Msg;
 import org.compiere.util.Util;
 import org.eevolution.distribution.model.MDDOrder;
 import org.eevolution.services.dsl.ProcessBuilder;
@@ -173,6 +170,18 @@ public class LVEUtil {
 	public static final String SYSCONFIG_LVE_ValidateControlNumberOnSalesOrder = "LVE_VALIDATE_CONTROL_NUMBER_ON_SALES_ORDER";
 	/**	System Configuration Variable for Validate Control Number On Inventory Movement*/
 	public static final String SYSCONFIG_LVE_ValidateControlNumberOnInventoryMovement = "LVE_VALIDATE_CONTROL_NUMBER_ON_INVENTORY_MOVEMENT";
+	/**	System Configuration Variable for Invoices by Chunk on Generate Debits By Currency Rate*/
+	public static final String SYSCONFIG_LVE_GenerateDebitsChunkSize = "LVE_GENERATE_DEBITS_CHUNK_SIZE";
+	/**	System Configuration Variable for Rules (comma separated) of Fused Bank Statement Matcher*/
+	public static final String SYSCONFIG_LVE_FusedMatcherRules = "LVE_FUSED_MATCHER_RULES";
+	/**	System Configuration Variable for Folder of cached Payment Export files*/
+	public static final String SYSCONFIG_LVE_PaymentExportCacheFolder = "LVE_PAYMENT_EXPORT_CACHE_FOLDER";
+	/**	System Configuration Variable for Split Type (N None, MR Max Records, BR Branch, AT Account Type) of Payment Export files*/
+	public static final String SYSCONFIG_LVE_PaymentExportSplitType = "LVE_PAYMENT_EXPORT_SPLIT_TYPE";
+	/**	System Configuration Variable for Max Records by file of Payment Export, 0 without limit*/
+	public static final String SYSCONFIG_LVE_PaymentExportMaxRecords = "LVE_PAYMENT_EXPORT_MAX_RECORDS";
+	/**	System Configuration Variable for Max Threads on write Payment Export files*/
+	public static final String SYSCONFIG_LVE_PaymentExportMaxThreads = "LVE_PAYMENT_EXPORT_MAX_THREADS";
 	/**	System Message for Validate Warning low Control Number*/
 	public static final String MESSAGE_LVE_WarningControlNumber= "LVE_WARNING_CONTROL_NUMBER";
 	/**	System Message for Validate Warning Shipment Note not Invoice*/
@@ -194,32 +203,91 @@ public class LVEUtil {
 		//	Trim it
 		value = value.trim();
 		boolean isValidationEnabled = MSysConfig.getBooleanValue(ENABLE_CODE_TYPE_VALIDATION, false, clientId, organizationId);
-		//	Validate
-		if(isValidationEnabled) {
-			//	validate length
-			if(value.length() < 6 || value.length() > 11) {
-				throw new AdempiereException("@LVEInvalidBPValue@");
-			}
-			//	Validate if don't have numbers and allowed characters
-			Matcher matcher = Pattern.compile("[^0-9JVEGX]", Pattern.CASE_INSENSITIVE | Pattern.DOTALL).matcher(value);
-			if(matcher.find()) {
-				throw new AdempiereException("@LVEInvalidBPValue@");
+		//	Validate: length, first character allowed and the rest of string only numbers
+		if(isValidationEnabled
+				&& !isValidBusinessPartnerValue(value)) {
+			throw new AdempiereException("@LVEInvalidBPValue@");
+		}
+		//	Default
+		return getNormalizedBusinessPartnerValue(value);
+	}
+	
+	/**
+	 * Validate a Business Partner Value (RIF / C.I.): a key (J, V, E, G or X) and from 5 to 10 numbers
+	 * @param value trimmed value
+	 * @return
+	 */
+	static boolean isValidBusinessPartnerValue(String value) {
+		int length = value.length();
+		if(length < 6 || length > 11) {
+			return false;
+		}
+		if(!isBusinessPartnerKey(value.charAt(0))) {
+			return false;
+		}
+		for(int index = 1; index < length; index++) {
+			if(!isDigit(value.charAt(index))) {
+				return false;
 			}
-			//	Validate the first character allowed
-			Matcher matcherforKey = Pattern.compile("^[JVEGX]+$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL).matcher(value.substring(0,  1));
-			if(!matcherforKey.find()) {
-				throw new AdempiereException("@LVEInvalidBPValue@");
+		}
+		return true;
+	}
+	
+	/**
+	 * Remove characters that are not numbers or keys and convert to upper case,
+	 * the same value is returned if it is already normalized
+	 * @param value
+	 * @return
+	 */
+	static String getNormalizedBusinessPartnerValue(String value) {
+		int length = value.length();
+		int index = 0;
+		while(index < length) {
+			char character = value.charAt(index);
+			if(!isDigit(character)
+					&& (!isBusinessPartnerKey(character) || character >= 'a')) {
+				break;
 			}
-			//	Validate that the rest of string have only numbers
-			Matcher matcherForNumbers = Pattern.compile("[^0-9]", Pattern.CASE_INSENSITIVE | Pattern.DOTALL).matcher(value.substring(1,  value.length()));
-			if(matcherForNumbers.find()) {
-				throw new AdempiereException("@LVEInvalidBPValue@");
+			index++;
+		}
+		if(index == length) {
+			return value;
+		}
+		StringBuilder normalizedValue = new StringBuilder(length);
+		normalizedValue.append(value, 0, index);
+		for(; index < length; index++) {
+			char character = value.charAt(index);
+			if(isDigit(character)) {
+				normalizedValue.append(character);
+			} else if(isBusinessPartnerKey(character)) {
+				normalizedValue.append(Character.toUpperCase(character));
 			}
 		}
-		//	Default
-		return Optional.ofNullable(value).orElse("")
-				.replaceAll("[^0-9JVEGXjvegx]", "")
-				.toUpperCase();
+		return normalizedValue.toString();
+	}
+	
+	/**
+	 * Verify if character is a key of RIF: J, V, E, G or X (case insensitive)
+	 * @param character
+	 * @return
+	 */
+	private static boolean isBusinessPartnerKey(char character) {
+		switch (character) {
+			case 'J': case 'V': case 'E': case 'G': case 'X':
+			case 'j': case 'v': case 'e': case 'g': case 'x':
+				return true;
+			default:
+				return false;
+		}
+	}
+	
+	/**
+	 * Verify if character is a number (only 0 to 9)
+	 * @param character
+	 * @return
+	 */
+	private static boolean isDigit(char character) {
+		return character >= '0' && character <= '9';
 	}
 	
 	/**
@@ -231,10 +299,34 @@ public class LVEUtil {
 	 * @return
 	 */
 	public static String getValidTaxId(Properties context, int clientId, int organizationId, String value) {
-		String taxId = processBusinessPartnerValue(context, clientId, organizationId, value);
-		String taxIdOnlyNumbers = taxId.replaceAll("\\D+","");
-		taxIdOnlyNumbers = String.format("%1$" + 9 + "s", taxIdOnlyNumbers).replace(" ", "0");
-		return taxId.substring(0, 1) + taxIdOnlyNumbers;
+		return getTaxIdWithZeros(processBusinessPartnerValue(context, clientId, organizationId, value));
+	}
+	
+	/**
+	 * Get Tax ID as key and numbers with zeros on left (9 numbers at least)
+	 * @param taxId normalized value
+	 * @return
+	 */
+	static String getTaxIdWithZeros(String taxId) {
+		char key = taxId.charAt(0);
+		int numbers = 0;
+		for(int index = 0; index < taxId.length(); index++) {
+			if(isDigit(taxId.charAt(index))) {
+				numbers++;
+			}
+		}
+		StringBuilder validTaxId = new StringBuilder(Math.max(numbers, 9) + 1);
+		validTaxId.append(key);
+		for(int zeros = numbers; zeros < 9; zeros++) {
+			validTaxId.append('0');
+		}
+		for(int index = 0; index < taxId.length(); index++) {
+			char character = taxId.charAt(index);
+			if(isDigit(character)) {
+				validTaxId.append(character);
+			}
+		}
+		return validTaxId.toString();
 	}
 	
 	/**
@@ -461,22 +553,11 @@ public class LVEUtil {
 	}	//	printConfirm
 	
 	/**
-	 * Validate Pending Shipment Orders
+	 * Validate Pending Shipment Orders, the indicator is cached and computed in background (it does not wait for it)
+	 * @see PendingShipmentNoteIndicator
 	 * @param orgId
 	 */
 	public static void validatePendingShipmentOrder(int orgId) {
-		boolean shipmentOrderPendings = false;
-        String whereClause = "DocStatus = 'CO' "
-        					+ "AND AD_Org_ID = ? "
-        					+ "AND EXISTS(SELECT 1 FROM C_DocType dt WHERE dt.LVE_IsShipmentNote = 'Y' AND dt.C_DocType_ID = C_Order.C_DocTypeTarget_ID)  "
-        					+ "AND EXISTS(SELECT 1 FROM C_OrderLine ol WHERE (ol.QtyOrdered - ol.QtyInvoiced) <> 0 AND ol.C_Order_ID = C_Order.C_Order_ID) "
-        					+ "AND EXISTS(SELECT 1 FROM C_Period p INNER JOIN C_PeriodControl pc ON (p.C_Period_ID = pc.C_Period_ID) WHERE pc.PeriodStatus = 'C' AND C_Order.DateOrdered BETWEEN p.StartDate AND p.EndDate)";
-        shipmentOrderPendings= new Query(Env.getCtx(), MOrder.Table_Name, whereClause, null)
-						        	.setParameters(orgId)
-						        	.match();
-        if(shipmentOrderPendings)
-        	Env.setContext(Env.getCtx(), "#LVE_GlobalAdvertisement", Msg.parseTranslation(Env.getCtx(), "@".concat(MESSAGE_LVE_Warning_Shipment_Note_Not_Invoice).concat("@")));
-        else 
-        	Env.setContext(Env.getCtx(), "#LVE_GlobalAdvertisement", "");
+		PendingShipmentNoteIndicator.setAdvertisement(Env.getCtx(), orgId);
 	}
 }
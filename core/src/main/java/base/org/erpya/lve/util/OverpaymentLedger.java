@@ -0,0 +1,177 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.compiere.model.MAllocationHdr;
+import org.compiere.model.MConversionRate;
+import org.compiere.model.MInvoice;
+import org.compiere.util.CLogger;
+import org.compiere.util.DB;
+
+/**
+ * Ledger of converted and paid amount (on fiscal currency) by invoice used by view
+ * LVE_InvoicesWithOverpayment. The rows are refreshed only for invoices affected by
+ * a document (invoice or allocation) or by a conversion rate, then the view does not
+ * call currencyConvert and invoicePaid for all invoices of history. The invoices affected by a
+ * conversion rate are refreshed after commit of rate on background.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class OverpaymentLedger {
+
+	/**	Table Name	*/
+	public static final String Table_Name = "LVE_OverpaymentLedger";
+	/** Logger */
+	private static CLogger log = CLogger.getCLogger(OverpaymentLedger.class);
+	/**	Invoices kept on ledger	*/
+	private static final String SQL_VALID_INVOICE = "dt.DocBaseType IN('ARI', 'API') AND i.DocStatus IN('CO', 'CL')";
+
+	/**
+	 * Refresh ledger for an invoice
+	 * @param invoice
+	 * @return quantity of rows inserted or updated
+	 */
+	public static int refresh(MInvoice invoice) {
+		return refresh(Arrays.asList(invoice.getC_Invoice_ID()), invoice.get_TrxName());
+	}
+
+	/**
+	 * Refresh ledger for invoices of allocation lines
+	 * @param allocation
+	 * @return quantity of rows inserted or updated
+	 */
+	public static int refresh(MAllocationHdr allocation) {
+		return refresh("SELECT al.C_Invoice_ID FROM C_AllocationLine al "
+				+ "WHERE al.C_AllocationHdr_ID = ? "
+				+ "AND al.C_Invoice_ID IS NOT NULL", Arrays.asList(allocation.getC_AllocationHdr_ID()), allocation.get_TrxName());
+	}
+
+	/**
+	 * Queue refresh of ledger for invoices affected by a conversion rate, it is run after commit of rate
+	 * on background because a rate can affect many invoices. If the valid range is changed then the
+	 * invoices of previous range are refreshed too
+	 * @param conversionRate
+	 */
+	public static void refresh(MConversionRate conversionRate) {
+		refreshAfterCommit(conversionRate, conversionRate.getValidFrom(), conversionRate.getValidTo());
+		if(conversionRate.is_ValueChanged(MConversionRate.COLUMNNAME_ValidFrom)
+				|| conversionRate.is_ValueChanged(MConversionRate.COLUMNNAME_ValidTo)) {
+			Timestamp previousValidFrom = (Timestamp) conversionRate.get_ValueOld(MConversionRate.COLUMNNAME_ValidFrom);
+			Timestamp previousValidTo = (Timestamp) conversionRate.get_ValueOld(MConversionRate.COLUMNNAME_ValidTo);
+			if(previousValidFrom != null
+					&& previousValidTo != null) {
+				refreshAfterCommit(conversionRate, previousValidFrom, previousValidTo);
+			}
+		}
+	}
+
+	/**
+	 * Queue refresh of invoices affected by rate currencies and a valid range: the invoice or the fiscal currency
+	 * is one of rate currencies and the invoice or any allocation is on valid range
+	 * @param conversionRate
+	 * @param validFrom
+	 * @param validTo
+	 */
+	private static void refreshAfterCommit(MConversionRate conversionRate, Timestamp validFrom, Timestamp validTo) {
+		List<Object> parameters = new ArrayList<Object>();
+		parameters.add(conversionRate.getAD_Client_ID());
+		parameters.add(conversionRate.getC_Currency_ID());
+		parameters.add(conversionRate.getC_Currency_ID_To());
+		parameters.add(conversionRate.getC_Currency_ID());
+		parameters.add(conversionRate.getC_Currency_ID_To());
+		parameters.add(validFrom);
+		parameters.add(validTo);
+		parameters.add(validFrom);
+		parameters.add(validTo);
+		String key = Table_Name + "|" + parameters.stream().map(String::valueOf).reduce((first, second) -> first + "|" + second).get();
+		DeferredRefresh.submitAfterCommit(conversionRate.get_TrxName(), key, transactionName -> refresh("SELECT l.C_Invoice_ID FROM " + Table_Name + " l "
+				+ "INNER JOIN C_Invoice i ON(i.C_Invoice_ID = l.C_Invoice_ID) "
+				+ "WHERE ? IN(0, l.AD_Client_ID) "
+				+ "AND (i.C_Currency_ID IN(?, ?) OR l.LVE_FiscalCurrency_ID IN(?, ?)) "
+				+ "AND (i.DateAcct BETWEEN ? AND ? "
+				+ "OR EXISTS(SELECT 1 FROM C_AllocationLine al "
+				+ "INNER JOIN C_AllocationHdr ah ON(ah.C_AllocationHdr_ID = al.C_AllocationHdr_ID) "
+				+ "WHERE al.C_Invoice_ID = i.C_Invoice_ID "
+				+ "AND ah.DateTrx BETWEEN ? AND ?))", parameters, transactionName));
+	}
+
+	/**
+	 * Refresh ledger rows of invoices from a query, only completed or closed
+	 * invoices are kept, then a reversed or voided invoice is removed from ledger
+	 * @param invoiceSubQuery query that return C_Invoice_ID
+	 * @param subQueryParameters
+	 * @param transactionName
+	 * @return quantity of rows inserted or updated
+	 */
+	private static int refresh(String invoiceSubQuery, List<Object> subQueryParameters, String transactionName) {
+		//	Resolve invoices before delete, the query can read from ledger
+		List<Integer> invoiceIds = new ArrayList<Integer>();
+		DB.runResultSet(transactionName, invoiceSubQuery, subQueryParameters, resultSet -> {
+			while(resultSet.next()) {
+				invoiceIds.add(resultSet.getInt(1));
+			}
+		}).onFailure(throwable -> {
+			throw new AdempiereException(throwable);
+		});
+		return refresh(invoiceIds, transactionName);
+	}
+
+	/**
+	 * Insert or update the ledger rows of invoices in batches, the rows are written with
+	 * INSERT ... ON CONFLICT over C_Invoice_ID then two refresh of the same invoice don't fail by
+	 * duplicated key. Rows of invoices that are not completed or closed are removed
+	 * @param invoiceIds
+	 * @param transactionName
+	 * @return quantity of rows inserted or updated
+	 */
+	private static int refresh(List<Integer> invoiceIds, String transactionName) {
+		if(invoiceIds.isEmpty()) {
+			return 0;
+		}
+		int updated = 0;
+		int batchSize = 1000;
+		for(int fromIndex = 0; fromIndex < invoiceIds.size(); fromIndex += batchSize) {
+			List<Integer> batch = invoiceIds.subList(fromIndex, Math.min(fromIndex + batchSize, invoiceIds.size()));
+			String invoiceList = batch.stream().map(String::valueOf).reduce((first, second) -> first + ", " + second).get();
+			updated += DB.executeUpdateEx("INSERT INTO " + Table_Name + "(C_Invoice_ID, AD_Client_ID, AD_Org_ID, LVE_FiscalCurrency_ID, ConvertedAmt, PaidAmt, Updated) "
+					+ "SELECT i.C_Invoice_ID, i.AD_Client_ID, i.AD_Org_ID, oi.LVE_FiscalCurrency_ID, "
+					+ "currencyConvert(i.GrandTotal, i.C_Currency_ID, oi.LVE_FiscalCurrency_ID, i.DateAcct, i.C_ConversionType_ID, i.AD_Client_ID, i.AD_Org_ID), "
+					+ "invoicePaid(i.C_Invoice_ID, oi.LVE_FiscalCurrency_ID, 1), "
+					+ "SysDate "
+					+ "FROM C_Invoice i "
+					+ "INNER JOIN C_DocType dt ON(dt.C_DocType_ID = i.C_DocTypeTarget_ID) "
+					+ "INNER JOIN AD_OrgInfo oi ON(oi.AD_Org_ID = i.AD_Org_ID) "
+					+ "WHERE i.C_Invoice_ID IN(" + invoiceList + ") "
+					+ "AND " + SQL_VALID_INVOICE + " "
+					+ "ON CONFLICT (C_Invoice_ID) DO UPDATE SET "
+					+ "AD_Org_ID = EXCLUDED.AD_Org_ID, LVE_FiscalCurrency_ID = EXCLUDED.LVE_FiscalCurrency_ID, "
+					+ "ConvertedAmt = EXCLUDED.ConvertedAmt, PaidAmt = EXCLUDED.PaidAmt, Updated = EXCLUDED.Updated", transactionName);
+			//	Reversed or voided
+			DB.executeUpdateEx("DELETE FROM " + Table_Name + " l WHERE l.C_Invoice_ID IN(" + invoiceList + ") "
+					+ "AND NOT EXISTS(SELECT 1 FROM C_Invoice i "
+					+ "INNER JOIN C_DocType dt ON(dt.C_DocType_ID = i.C_DocTypeTarget_ID) "
+					+ "WHERE i.C_Invoice_ID = l.C_Invoice_ID "
+					+ "AND " + SQL_VALID_INVOICE + ")", transactionName);
+		}
+		log.fine("Overpayment Ledger Refreshed=" + updated);
+		return updated;
+	}
+}
@@ -0,0 +1,181 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+
+import org.compiere.model.MOrder;
+import org.compiere.model.Query;
+import org.compiere.util.CCache;
+import org.compiere.util.CLogger;
+import org.compiere.util.Env;
+import org.compiere.util.Msg;
+
+/**
+ * Indicator of shipment notes (completed and not invoiced) on closed periods by client and organization.
+ * The value is computed in background and cached for a few minutes, the login never waits for it:
+ * when it is not cached the advertisement is not set and the value is requested for the next login.
+ * The worker use its own context, the context of session is not shared with it. The cache is
+ * invalidated from model validator after commit of a shipment note order, an invoice or a
+ * period control, a value computed before the invalidation is not cached.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class PendingShipmentNoteIndicator {
+
+	/**	Context for Global Advertisement	*/
+	public static final String CONTEXT_GlobalAdvertisement = "#LVE_GlobalAdvertisement";
+	/**	Pending by Client and Organization	*/
+	private static CCache<String, Boolean> cache = new CCache<String, Boolean>(MOrder.Table_Name + "_PendingShipmentNote", 20, 5);	//	5 minutes
+	/**	Keys being computed	*/
+	private static Set<String> computing = new HashSet<String>();
+	/**	Changed on each invalidation	*/
+	private static long generation = 0;
+	/**	Background Executor	*/
+	private static ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, PendingShipmentNoteIndicator.class.getSimpleName());
+		thread.setDaemon(true);
+		return thread;
+	});
+	/** Logger */
+	private static CLogger log = CLogger.getCLogger(PendingShipmentNoteIndicator.class);
+	/**	Lock	*/
+	private static final Object lock = new Object();
+
+	/**
+	 * Get key of cache
+	 * @param clientId
+	 * @param organizationId
+	 * @return
+	 */
+	private static String getKey(int clientId, int organizationId) {
+		return clientId + "|" + organizationId;
+	}
+
+	/**
+	 * Set advertisement on context from cache and return immediately, if it is not cached then
+	 * no advertisement is set and the value is computed in background for the next call
+	 * @param context
+	 * @param organizationId
+	 */
+	public static void setAdvertisement(Properties context, int organizationId) {
+		int clientId = Env.getAD_Client_ID(context);
+		String key = getKey(clientId, organizationId);
+		synchronized (lock) {
+			Boolean isPending = cache.get(key);
+			if(isPending != null) {
+				setAdvertisement(context, isPending);
+				return;
+			}
+			setAdvertisement(context, false);
+			if(computing.add(key)) {
+				long currentGeneration = generation;
+				executor.submit(() -> refresh(clientId, organizationId, currentGeneration));
+			}
+		}
+	}
+
+	/**
+	 * Invalidate indicator for organization after commit of transaction
+	 * @param clientId
+	 * @param organizationId
+	 * @param transactionName
+	 */
+	public static void invalidate(int clientId, int organizationId, String transactionName) {
+		DeferredRefresh.afterCommit(transactionName, () -> {
+			synchronized (lock) {
+				generation++;
+				cache.remove(getKey(clientId, organizationId));
+			}
+		});
+	}
+
+	/**
+	 * Invalidate indicator for all organizations after commit of transaction
+	 * @param transactionName
+	 */
+	public static void invalidateAll(String transactionName) {
+		DeferredRefresh.afterCommit(transactionName, () -> {
+			synchronized (lock) {
+				generation++;
+				cache.reset();
+			}
+		});
+	}
+
+	/**
+	 * Compute value with own context, the value is cached only if the cache was not
+	 * invalidated while it was computed
+	 * @param clientId
+	 * @param organizationId
+	 * @param startGeneration generation when the value was requested
+	 */
+	private static void refresh(int clientId, int organizationId, long startGeneration) {
+		String key = getKey(clientId, organizationId);
+		try {
+			Properties context = new Properties();
+			Env.setContext(context, "#AD_Client_ID", clientId);
+			Env.setContext(context, "#AD_Org_ID", organizationId);
+			boolean isPending = isPendingShipmentNote(context, organizationId);
+			synchronized (lock) {
+				if(startGeneration == generation) {
+					cache.put(key, isPending);
+				}
+			}
+		} catch (Exception e) {
+			log.log(Level.WARNING, "AD_Client_ID=" + clientId + ", AD_Org_ID=" + organizationId, e);
+		} finally {
+			synchronized (lock) {
+				computing.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Verify if exists shipment notes without invoice for closed periods
+	 * @param context
+	 * @param organizationId
+	 * @return
+	 */
+	public static boolean isPendingShipmentNote(Properties context, int organizationId) {
+		String whereClause = "DocStatus = 'CO' "
+				+ "AND AD_Org_ID = ? "
+				+ "AND EXISTS(SELECT 1 FROM C_DocType dt WHERE dt.LVE_IsShipmentNote = 'Y' AND dt.C_DocType_ID = C_Order.C_DocTypeTarget_ID)  "
+				+ "AND EXISTS(SELECT 1 FROM C_OrderLine ol WHERE (ol.QtyOrdered - ol.QtyInvoiced) <> 0 AND ol.C_Order_ID = C_Order.C_Order_ID) "
+				+ "AND EXISTS(SELECT 1 FROM C_Period p INNER JOIN C_PeriodControl pc ON (p.C_Period_ID = pc.C_Period_ID) WHERE pc.PeriodStatus = 'C' AND C_Order.DateOrdered BETWEEN p.StartDate AND p.EndDate)";
+		return new Query(context, MOrder.Table_Name, whereClause, null)
+				.setParameters(organizationId)
+				.setClient_ID()
+				.match();
+	}
+
+	/**
+	 * Set advertisement message on context
+	 * @param context
+	 * @param isPending
+	 */
+	private static void setAdvertisement(Properties context, boolean isPending) {
+		if(isPending) {
+			Env.setContext(context, CONTEXT_GlobalAdvertisement, Msg.parseTranslation(context, "@".concat(LVEUtil.MESSAGE_LVE_Warning_Shipment_Note_Not_Invoice).concat("@")));
+		} else {
+			Env.setContext(context, CONTEXT_GlobalAdvertisement, "");
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import java.util.List;
+
+import org.compiere.model.MPayment;
+import org.compiere.util.CLogger;
+import org.compiere.util.DB;
+
+/**
+ * Narrow projection of payments open for reconciliation (completed or closed and not reconciled)
+ * used by bank statement matchers instead of C_Payment. It has the signed amount, the references
+ * with only digits and without leading zeros and a flag for payments already staged on a bank
+ * statement import. The rows are maintained from model validator when a payment change its status,
+ * reconciliation or reference values and when an imported bank statement line change its payment.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class ReconciliationCandidate {
+
+	/**	Table Name	*/
+	public static final String Table_Name = "LVE_ReconciliationCandidate";
+	/**	Columns of payment that change the projection	*/
+	public static final String[] PAYMENT_COLUMNS = new String[] {
+		MPayment.COLUMNNAME_DocStatus,
+		MPayment.COLUMNNAME_IsReconciled,
+		MPayment.COLUMNNAME_C_BankAccount_ID,
+		MPayment.COLUMNNAME_C_Currency_ID,
+		MPayment.COLUMNNAME_IsReceipt,
+		MPayment.COLUMNNAME_PayAmt,
+		MPayment.COLUMNNAME_DateTrx,
+		MPayment.COLUMNNAME_DocumentNo,
+		MPayment.COLUMNNAME_CheckNo,
+		MPayment.COLUMNNAME_Description,
+		MPayment.COLUMNNAME_C_PaymentMethod_ID
+	};
+	/** Logger */
+	private static CLogger log = CLogger.getCLogger(ReconciliationCandidate.class);
+
+	/**
+	 * Verify if a payment change require refresh projection
+	 * @param payment
+	 * @return
+	 */
+	public static boolean isRefreshRequired(MPayment payment) {
+		for(String columnName : PAYMENT_COLUMNS) {
+			if(payment.is_ValueChanged(columnName)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Delete and insert again the payment, only if it is open for reconciliation
+	 * @param payment
+	 * @return 1 if the payment is a candidate
+	 */
+	public static int refresh(MPayment payment) {
+		remove(payment);
+		int inserted = DB.executeUpdateEx("INSERT INTO " + Table_Name + "(C_Payment_ID, AD_Client_ID, AD_Org_ID, C_BankAccount_ID, C_Currency_ID, C_PaymentMethod_ID, IsReceipt, PayAmt, SignedAmt, DateTrx, "
+				+ "DocumentNo, CheckNo, Description, DocumentNoDigits, CheckNoDigits, IsStaged) "
+				+ "SELECT p.C_Payment_ID, p.AD_Client_ID, p.AD_Org_ID, p.C_BankAccount_ID, p.C_Currency_ID, p.C_PaymentMethod_ID, p.IsReceipt, p.PayAmt, "
+				+ "CASE WHEN p.IsReceipt = 'Y' THEN p.PayAmt ELSE -p.PayAmt END, "
+				+ "p.DateTrx, p.DocumentNo, p.CheckNo, p.Description, "
+				+ "CAST(CAST(NULLIF(regexp_replace(p.DocumentNo, '[^0-9]', '', 'g'), '') AS NUMERIC) AS VARCHAR), "
+				+ "CAST(CAST(NULLIF(regexp_replace(p.CheckNo, '[^0-9]', '', 'g'), '') AS NUMERIC) AS VARCHAR), "
+				+ "CASE WHEN EXISTS(SELECT 1 FROM I_BankStatement i WHERE i.C_Payment_ID = p.C_Payment_ID) THEN 'Y' ELSE 'N' END "
+				+ "FROM C_Payment p "
+				+ "WHERE p.C_Payment_ID = ? "
+				+ "AND p.DocStatus IN('CO', 'CL') "
+				+ "AND p.IsReconciled = 'N' "
+				+ "AND p.C_BankAccount_ID IS NOT NULL", new Object[] {payment.getC_Payment_ID()}, payment.get_TrxName());
+		log.fine("Reconciliation Candidate Refreshed=" + inserted);
+		return inserted;
+	}
+
+	/**
+	 * Remove payment from projection
+	 * @param payment
+	 * @return
+	 */
+	public static int remove(MPayment payment) {
+		return DB.executeUpdateEx("DELETE FROM " + Table_Name + " WHERE C_Payment_ID = ?", new Object[] {payment.getC_Payment_ID()}, payment.get_TrxName());
+	}
+
+	/**
+	 * Set staged flag for payments from imported bank statement lines
+	 * @param paymentIds
+	 * @param transactionName
+	 * @return
+	 */
+	public static int refreshStaged(List<Integer> paymentIds, String transactionName) {
+		if(paymentIds == null
+				|| paymentIds.isEmpty()) {
+			return 0;
+		}
+		String paymentList = paymentIds.stream().map(String::valueOf).reduce((first, second) -> first + ", " + second).get();
+		return DB.executeUpdateEx("UPDATE " + Table_Name + " c SET IsStaged = "
+				+ "CASE WHEN EXISTS(SELECT 1 FROM I_BankStatement i WHERE i.C_Payment_ID = c.C_Payment_ID) THEN 'Y' ELSE 'N' END "
+				+ "WHERE c.C_Payment_ID IN(" + paymentList + ")", transactionName);
+	}
+}
@@ -0,0 +1,124 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Refresh of summary tables from many documents: a pending key is refreshed once, a change
+ * after start of refresh is refreshed again and a failed refresh does not stop the worker
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class DeferredRefreshTest {
+
+	/**	Time out of waits	*/
+	private static final long TIMEOUT = 10;
+
+	@Test
+	public void testPendingKeyIsQueuedOnce() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		//	Keep worker busy while the key is submitted
+		assertTrue(DeferredRefresh.queue("testPendingKeyIsQueuedOnce|Blocker", () -> await(release)));
+		AtomicInteger refreshed = new AtomicInteger();
+		AtomicInteger queued = new AtomicInteger();
+		ExecutorService documents = Executors.newFixedThreadPool(8);
+		for(int document = 0; document < 200; document++) {
+			documents.submit(() -> {
+				if(DeferredRefresh.queue("testPendingKeyIsQueuedOnce|Key", () -> refreshed.incrementAndGet())) {
+					queued.incrementAndGet();
+				}
+			});
+		}
+		documents.shutdown();
+		assertTrue(documents.awaitTermination(TIMEOUT, TimeUnit.SECONDS));
+		release.countDown();
+		waitForWorker("testPendingKeyIsQueuedOnce");
+		assertEquals(1, queued.get());
+		assertEquals(1, refreshed.get());
+	}
+
+	@Test
+	public void testKeyIsQueuedAgainAfterStart() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger refreshed = new AtomicInteger();
+		assertTrue(DeferredRefresh.queue("testKeyIsQueuedAgainAfterStart|Key", () -> {
+			started.countDown();
+			await(release);
+			refreshed.incrementAndGet();
+		}));
+		assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+		//	A change after start is not lost
+		assertTrue(DeferredRefresh.queue("testKeyIsQueuedAgainAfterStart|Key", () -> refreshed.incrementAndGet()));
+		assertFalse(DeferredRefresh.queue("testKeyIsQueuedAgainAfterStart|Key", () -> refreshed.incrementAndGet()));
+		release.countDown();
+		waitForWorker("testKeyIsQueuedAgainAfterStart");
+		assertEquals(2, refreshed.get());
+	}
+
+	@Test
+	public void testFailedRefreshDoesNotStopWorker() throws Exception {
+		assertTrue(DeferredRefresh.queue("testFailedRefreshDoesNotStopWorker|Key", () -> {
+			throw new IllegalStateException("Refresh Error");
+		}));
+		waitForWorker("testFailedRefreshDoesNotStopWorker");
+		//	The key is released
+		AtomicInteger refreshed = new AtomicInteger();
+		assertTrue(DeferredRefresh.queue("testFailedRefreshDoesNotStopWorker|Key", () -> refreshed.incrementAndGet()));
+		waitForWorker("testFailedRefreshDoesNotStopWorker");
+		assertEquals(1, refreshed.get());
+	}
+
+	@Test
+	public void testAfterCommitWithoutTransactionRunsNow() {
+		AtomicInteger refreshed = new AtomicInteger();
+		DeferredRefresh.afterCommit(null, () -> refreshed.incrementAndGet());
+		assertEquals(1, refreshed.get());
+	}
+
+	/**
+	 * Wait for tasks queued before, the worker run tasks in order
+	 * @param testName
+	 * @throws InterruptedException
+	 */
+	private void waitForWorker(String testName) throws InterruptedException {
+		CountDownLatch done = new CountDownLatch(1);
+		assertTrue(DeferredRefresh.queue(testName + "|Done|" + System.nanoTime(), () -> done.countDown()));
+		assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Wait for release of a latch
+	 * @param latch
+	 */
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(TIMEOUT, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
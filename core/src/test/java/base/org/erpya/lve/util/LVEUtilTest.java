@@ -0,0 +1,116 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Validation and normalization of RIF / C.I. give the same result of previous regular expressions
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class LVEUtilTest {
+
+	@Test
+	public void testBusinessPartnerValue() {
+		assertTrue(LVEUtil.isValidBusinessPartnerValue("J123456789"));
+		assertTrue(LVEUtil.isValidBusinessPartnerValue("v12345"));
+		assertFalse(LVEUtil.isValidBusinessPartnerValue("V1234"));
+		assertFalse(LVEUtil.isValidBusinessPartnerValue("V12345678901"));
+		assertFalse(LVEUtil.isValidBusinessPartnerValue("J-12345678"));
+		assertFalse(LVEUtil.isValidBusinessPartnerValue("A12345678"));
+		assertFalse(LVEUtil.isValidBusinessPartnerValue("1234567J"));
+		assertEquals("J123456789", LVEUtil.getNormalizedBusinessPartnerValue("j-12345678-9"));
+		assertEquals("V12345678", LVEUtil.getNormalizedBusinessPartnerValue("V.12.345.678 "));
+		assertEquals("", LVEUtil.getNormalizedBusinessPartnerValue("ABC"));
+		//	A normalized value is not copied
+		String value = "J123456789";
+		assertSame(value, LVEUtil.getNormalizedBusinessPartnerValue(value));
+	}
+
+	@Test
+	public void testTaxIdWithZeros() {
+		assertEquals("J012345678", LVEUtil.getTaxIdWithZeros("J12345678"));
+		assertEquals("V000012345", LVEUtil.getTaxIdWithZeros("V12345"));
+		assertEquals("J1234567890", LVEUtil.getTaxIdWithZeros("J1234567890"));
+		assertEquals("V000000000", LVEUtil.getTaxIdWithZeros("V"));
+	}
+
+	@Test
+	public void testRandomValues() {
+		Random random = new Random(20201015);
+		String characters = "0123456789JVEGXjvegxAz-. ñ١";
+		for(int iteration = 0; iteration < 50000; iteration++) {
+			StringBuilder value = new StringBuilder();
+			int length = random.nextInt(14);
+			for(int index = 0; index < length; index++) {
+				value.append(characters.charAt(random.nextInt(characters.length())));
+			}
+			String trimmedValue = value.toString().trim();
+			assertEquals(isPreviousValid(trimmedValue), LVEUtil.isValidBusinessPartnerValue(trimmedValue), trimmedValue);
+			String normalizedValue = getPreviousNormalizedValue(trimmedValue);
+			assertEquals(normalizedValue, LVEUtil.getNormalizedBusinessPartnerValue(trimmedValue), trimmedValue);
+			if(!normalizedValue.isEmpty()) {
+				assertEquals(getPreviousTaxId(normalizedValue), LVEUtil.getTaxIdWithZeros(normalizedValue), normalizedValue);
+			}
+		}
+	}
+
+	/**
+	 * Previous validation of value
+	 * @param value
+	 * @return
+	 */
+	private boolean isPreviousValid(String value) {
+		if(value.length() < 6 || value.length() > 11) {
+			return false;
+		}
+		if(Pattern.compile("[^0-9JVEGX]", Pattern.CASE_INSENSITIVE | Pattern.DOTALL).matcher(value).find()) {
+			return false;
+		}
+		if(!Pattern.compile("^[JVEGX]+$", Pattern.CASE_INSENSITIVE | Pattern.DOTALL).matcher(value.substring(0,  1)).find()) {
+			return false;
+		}
+		return !Pattern.compile("[^0-9]", Pattern.CASE_INSENSITIVE | Pattern.DOTALL).matcher(value.substring(1,  value.length())).find();
+	}
+
+	/**
+	 * Previous normalization of value
+	 * @param value
+	 * @return
+	 */
+	private String getPreviousNormalizedValue(String value) {
+		return value.replaceAll("[^0-9JVEGXjvegx]", "").toUpperCase();
+	}
+
+	/**
+	 * Previous Tax ID with zeros
+	 * @param taxId
+	 * @return
+	 */
+	private String getPreviousTaxId(String taxId) {
+		String taxIdOnlyNumbers = taxId.replaceAll("\\D+","");
+		taxIdOnlyNumbers = String.format("%1$" + 9 + "s", taxIdOnlyNumbers).replace(" ", "0");
+		return taxId.substring(0, 1) + taxIdOnlyNumbers;
+	}
+}
@@ -12,8 +12,9 @@
  * ysenih@erpcya.com
  *************************************************************************
  * Title: Search Tax Rate
- * Description:
- * 
+ * Description: Get last price change of product from product prices of
+ * price list versions (indexes M_ProductPrice_ProductVersion and
+ * M_PriceList_Version_ListValidFrom), NULL if price is not the current price
  ************************************************************************/
 CREATE OR REPLACE FUNCTION productpricelastchange(
 	p_m_pricelist_id numeric,
@@ -21,41 +22,22 @@ CREATE OR REPLACE FUNCTION productpricelastchange(
 	p_pricelist numeric,
 	p_date timestamp without time zone)
     RETURNS timestamp without time zone
-    LANGUAGE 'plpgsql'
+    LANGUAGE 'sql'
 
     COST 100
-    VOLATILE 
+    STABLE 
 AS $BODY$
-DECLARE
-v_Record RECORD;
-v_ValidFrom TIMESTAMP;
-v_Count INTEGER := 0;
-BEGIN
-    FOR v_Record IN 
-SELECT pp.PriceList, plv.ValidFrom
-FROM M_PriceList_Version plv 
-INNER JOIN M_ProductPrice pp ON(pp.M_PriceList_Version_ID = plv.M_PriceList_Version_ID AND pp.M_Product_ID = p_M_Product_ID)
-WHERE plv.M_PriceList_ID = p_M_PriceList_ID
-AND plv.ValidFrom < p_Date
-ORDER BY plv.ValidFrom DESC
-    LOOP
-v_Count := v_Count + 1;
-IF(ROUND(v_Record.PriceList, 2) <> ROUND(p_PriceList, 2) AND v_Count = 1) THEN
-    RETURN NULL;
-END IF;
-IF(ROUND(v_Record.PriceList, 2) <> ROUND(p_PriceList, 2) AND v_Count > 1) THEN
-    RETURN v_Record.ValidFrom;
-END IF;
-    END LOOP;
-
-     SELECT INTO v_ValidFrom plv.ValidFrom
-FROM M_PriceList_Version plv 
-INNER JOIN M_ProductPrice pp ON(pp.M_PriceList_Version_ID = plv.M_PriceList_Version_ID AND pp.M_Product_ID = p_M_Product_ID)
-WHERE plv.M_PriceList_ID = p_M_PriceList_ID
-AND plv.ValidFrom < p_Date 
-ORDER BY plv.ValidFrom ASC
-LIMIT 1;
-    RETURN v_ValidFrom;
-END;
-
+WITH v AS (
+	SELECT plv.ValidFrom, ROUND(pp.PriceList, 2) AS PriceList
+	FROM M_ProductPrice pp
+	INNER JOIN M_PriceList_Version plv ON(plv.M_PriceList_Version_ID = pp.M_PriceList_Version_ID)
+	WHERE pp.M_Product_ID = p_m_product_id
+	AND plv.M_PriceList_ID = p_m_pricelist_id
+	AND plv.ValidFrom < p_date
+)
+SELECT CASE 
+		WHEN (SELECT v.PriceList FROM v ORDER BY v.ValidFrom DESC LIMIT 1) <> ROUND(p_pricelist, 2) 
+			THEN NULL 
+		ELSE COALESCE((SELECT MAX(v.ValidFrom) FROM v WHERE v.PriceList <> ROUND(p_pricelist, 2)), (SELECT MIN(v.ValidFrom) FROM v))
+	END;
 $BODY$;
@@ -20,33 +20,20 @@ CREATE OR REPLACE FUNCTION taxrateat(
 	p_validfrom timestamp without time zone,
 	issotrx character varying)
     RETURNS numeric
-    LANGUAGE 'plpgsql'
+    LANGUAGE 'sql'
 
     COST 100
-    VOLATILE 
+    STABLE 
 AS $BODY$
-DECLARE
-v_CurrentTax NUMERIC;
-BEGIN
-    -- Get Cost At
-SELECT t.Rate INTO v_CurrentTax
-FROM C_Tax t
-WHERE t.C_TaxCategory_ID = p_C_TaxCategory_ID 
-AND t.ValidFrom <= p_ValidFrom
-AND (t.IsSalesTax = issotrx 
-OR 
-(issotrx = 'Y' AND (t.SOPOType = 'B' OR t.SOPOType = 'S'))
-OR
-(issotrx = 'N' AND (t.SOPOType = 'B' OR t.SOPOType = 'P'))
-)
-ORDER BY t.ValidFrom, t.IsDefault DESC
-LIMIT 1;
---  DBMS_OUTPUT.PUT_LINE('== FTA_FarmerLiquidation_ID=' || p_FTA_FarmerLiquidation_ID || ', Amt=' || v_AvailableAmt);
--- Valid if is null Value
-IF v_CurrentTax IS NULL THEN
-v_CurrentTax := 0;
-END IF;
--- Default Return
-RETURN  v_CurrentTax;
-END
+-- Range lookup over index C_Tax (C_TaxCategory_ID, ValidFrom), 0 when not found
+SELECT COALESCE((
+	SELECT t.Rate
+	FROM C_Tax t
+	WHERE t.C_TaxCategory_ID = p_C_TaxCategory_ID 
+	AND t.ValidFrom <= p_ValidFrom
+	AND (t.IsSalesTax = issotrx 
+		OR (issotrx = 'Y' AND (t.SOPOType = 'B' OR t.SOPOType = 'S'))
+		OR (issotrx = 'N' AND (t.SOPOType = 'B' OR t.SOPOType = 'P')))
+	ORDER BY t.ValidFrom, t.IsDefault DESC
+	LIMIT 1), 0);
 $BODY$;
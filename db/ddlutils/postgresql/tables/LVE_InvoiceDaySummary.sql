@@ -0,0 +1,44 @@
+CREATE TABLE LVE_InvoiceDaySummary (
+	AD_Client_ID NUMERIC(10) NOT NULL,
+	AD_Org_ID NUMERIC(10) NOT NULL,
+	DateInvoiced TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	IsSOTrx CHAR(1) NOT NULL,
+	DocNoSequence_ID NUMERIC(10) DEFAULT 0 NOT NULL,
+	ControlNoSequence_ID NUMERIC(10) DEFAULT 0 NOT NULL,
+	IsFiscalDocument CHAR(1) DEFAULT 'N' NOT NULL,
+	DocBaseType CHAR(3) NOT NULL,
+	LineNetAmt NUMERIC,
+	LineListAmt NUMERIC,
+	LineLimitAmt NUMERIC,
+	LineDiscountAmt NUMERIC,
+	LineOverLimitAmt NUMERIC,
+	BeginingDocumentNo VARCHAR(60),
+	EndingDocumentNo VARCHAR(60),
+	BeginingControlNo VARCHAR(60),
+	EndingControlNo VARCHAR(60),
+	ConvertedAmt NUMERIC,
+	Updated TIMESTAMP WITHOUT TIME ZONE DEFAULT now() NOT NULL,
+	CONSTRAINT LVE_InvoiceDaySummary_Key UNIQUE (AD_Client_ID, AD_Org_ID, DateInvoiced, IsSOTrx, DocNoSequence_ID, ControlNoSequence_ID, IsFiscalDocument, DocBaseType)
+);
+INSERT INTO LVE_InvoiceDaySummary (AD_Client_ID, AD_Org_ID, DateInvoiced, IsSOTrx, DocNoSequence_ID, ControlNoSequence_ID, IsFiscalDocument, DocBaseType, 
+	LineNetAmt, LineListAmt, LineLimitAmt, LineDiscountAmt, LineOverLimitAmt, BeginingDocumentNo, EndingDocumentNo, BeginingControlNo, EndingControlNo, ConvertedAmt, Updated)
+SELECT i.AD_Client_ID, i.AD_Org_ID,
+	firstOf(il.DateInvoiced, 'DD') AS DateInvoiced,
+	il.IsSOTrx, COALESCE(dt.DefiniteSequence_ID, dt.DocNoSequence_ID, 0) AS DocNoSequence_ID, COALESCE(dt.ControlNoSequence_ID, 0) AS ControlNoSequence_ID,
+	COALESCE(dt.IsFiscalDocument, 'N') AS IsFiscalDocument, dt.DocBaseType,
+	SUM(il.LineNetAmt) AS LineNetAmt,
+	SUM(il.LineListAmt) AS LineListAmt,
+	SUM(il.LineLimitAmt) AS LineLimitAmt,
+	SUM(il.LineDiscountAmt) AS LineDiscountAmt,
+	SUM(il.LineOverLimitAmt) AS LineOverLimitAmt,
+	MIN(CASE WHEN i.IsFiscalDocument = 'Y' THEN i.DocumentNo ELSE NULL END) AS BeginingDocumentNo,
+	MAX(CASE WHEN i.IsFiscalDocument = 'Y' THEN i.DocumentNo ELSE '' END) AS EndingDocumentNo,
+	MIN(CASE WHEN i.IsFiscalDocument = 'Y' THEN i.ControlNo ELSE NULL END) AS BeginingControlNo,
+	MAX(CASE WHEN i.IsFiscalDocument = 'Y' THEN i.ControlNo ELSE '' END) AS EndingControlNo,
+	SUM(currencyBase(il.LineNetAmt, i.C_Currency_ID, i.DateAcct, i.C_ConversionType_ID, i.AD_Client_ID, i.AD_Org_ID)) AS ConvertedAmt,
+	now()
+FROM RV_C_InvoiceLine il
+INNER JOIN C_Invoice i ON(i.C_Invoice_ID = il.C_Invoice_ID)
+INNER JOIN C_DocType dt ON(dt.C_DocType_ID = il.C_DocTypeTarget_ID)
+WHERE il.DocStatus IN('CO', 'CL', 'RE')
+GROUP BY i.AD_Client_ID, i.AD_Org_ID, firstOf(il.DateInvoiced, 'DD'), il.IsSOTrx, COALESCE(dt.DefiniteSequence_ID, dt.DocNoSequence_ID, 0), COALESCE(dt.ControlNoSequence_ID, 0), COALESCE(dt.IsFiscalDocument, 'N'), dt.DocBaseType;
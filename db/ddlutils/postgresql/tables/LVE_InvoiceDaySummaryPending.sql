@@ -0,0 +1,7 @@
+CREATE TABLE LVE_InvoiceDaySummaryPending (
+	AD_Client_ID NUMERIC(10) NOT NULL,
+	AD_Org_ID NUMERIC(10) NOT NULL,
+	DateInvoiced TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	Created TIMESTAMP WITHOUT TIME ZONE DEFAULT now() NOT NULL,
+	CONSTRAINT LVE_InvoiceDaySummaryPending_Key PRIMARY KEY (AD_Client_ID, AD_Org_ID, DateInvoiced)
+);
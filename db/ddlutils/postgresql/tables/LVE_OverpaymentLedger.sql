@@ -0,0 +1,26 @@
+CREATE TABLE LVE_OverpaymentLedger (
+	C_Invoice_ID NUMERIC(10) NOT NULL,
+	AD_Client_ID NUMERIC(10) NOT NULL,
+	AD_Org_ID NUMERIC(10) NOT NULL,
+	LVE_FiscalCurrency_ID NUMERIC(10),
+	ConvertedAmt NUMERIC,
+	PaidAmt NUMERIC,
+	Updated TIMESTAMP WITHOUT TIME ZONE DEFAULT now() NOT NULL,
+	CONSTRAINT LVE_OverpaymentLedger_Key PRIMARY KEY (C_Invoice_ID)
+);
+CREATE INDEX LVE_OverpaymentLedger_Over ON LVE_OverpaymentLedger (AD_Client_ID, AD_Org_ID) WHERE PaidAmt > ConvertedAmt;
+INSERT INTO LVE_OverpaymentLedger (C_Invoice_ID, AD_Client_ID, AD_Org_ID, LVE_FiscalCurrency_ID, ConvertedAmt, PaidAmt, Updated)
+SELECT 
+	i.C_Invoice_ID,
+	i.AD_Client_ID,
+	i.AD_Org_ID,
+	oi.LVE_FiscalCurrency_ID,
+	currencyConvert(i.GrandTotal, i.C_Currency_ID, oi.LVE_FiscalCurrency_ID, i.DateAcct, i.C_ConversionType_ID, i.AD_Client_ID, i.AD_Org_ID),
+	invoicePaid(i.C_Invoice_ID, oi.LVE_FiscalCurrency_ID, 1),
+	now()
+FROM C_Invoice i
+INNER JOIN C_DocType dt ON (i.C_DocTypeTarget_ID = dt.C_DocType_ID)
+INNER JOIN AD_OrgInfo oi ON (i.AD_Org_ID = oi.AD_Org_ID)
+WHERE 
+dt.DocBaseType IN ('ARI', 'API')
+AND i.DocStatus IN ('CO', 'CL');
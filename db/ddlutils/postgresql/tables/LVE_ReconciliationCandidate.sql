@@ -0,0 +1,33 @@
+CREATE TABLE LVE_ReconciliationCandidate (
+	C_Payment_ID NUMERIC(10) NOT NULL,
+	AD_Client_ID NUMERIC(10) NOT NULL,
+	AD_Org_ID NUMERIC(10) NOT NULL,
+	C_BankAccount_ID NUMERIC(10) NOT NULL,
+	C_Currency_ID NUMERIC(10) NOT NULL,
+	C_PaymentMethod_ID NUMERIC(10),
+	IsReceipt CHAR(1) NOT NULL,
+	PayAmt NUMERIC NOT NULL,
+	SignedAmt NUMERIC NOT NULL,
+	DateTrx TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+	DocumentNo VARCHAR(60),
+	CheckNo VARCHAR(60),
+	Description VARCHAR(255),
+	DocumentNoDigits VARCHAR(60),
+	CheckNoDigits VARCHAR(60),
+	IsStaged CHAR(1) DEFAULT 'N' NOT NULL,
+	CONSTRAINT LVE_ReconciliationCandidate_Key PRIMARY KEY (C_Payment_ID)
+);
+CREATE INDEX LVE_ReconciliationCandidate_Amt ON LVE_ReconciliationCandidate (C_BankAccount_ID, SignedAmt);
+CREATE INDEX LVE_ReconciliationCandidate_Date ON LVE_ReconciliationCandidate (C_BankAccount_ID, DateTrx);
+INSERT INTO LVE_ReconciliationCandidate (C_Payment_ID, AD_Client_ID, AD_Org_ID, C_BankAccount_ID, C_Currency_ID, C_PaymentMethod_ID, IsReceipt, PayAmt, SignedAmt, DateTrx, 
+	DocumentNo, CheckNo, Description, DocumentNoDigits, CheckNoDigits, IsStaged)
+SELECT p.C_Payment_ID, p.AD_Client_ID, p.AD_Org_ID, p.C_BankAccount_ID, p.C_Currency_ID, p.C_PaymentMethod_ID, p.IsReceipt, p.PayAmt, 
+	CASE WHEN p.IsReceipt = 'Y' THEN p.PayAmt ELSE -p.PayAmt END, 
+	p.DateTrx, p.DocumentNo, p.CheckNo, p.Description, 
+	CAST(CAST(NULLIF(regexp_replace(p.DocumentNo, '[^0-9]', '', 'g'), '') AS NUMERIC) AS VARCHAR),
+	CAST(CAST(NULLIF(regexp_replace(p.CheckNo, '[^0-9]', '', 'g'), '') AS NUMERIC) AS VARCHAR),
+	CASE WHEN EXISTS(SELECT 1 FROM I_BankStatement i WHERE i.C_Payment_ID = p.C_Payment_ID) THEN 'Y' ELSE 'N' END
+FROM C_Payment p
+WHERE p.DocStatus IN('CO', 'CL')
+AND p.IsReconciled = 'N'
+AND p.C_BankAccount_ID IS NOT NULL;
@@ -53,10 +53,30 @@ public class BFC extends LVEPaymentExportList {
 	private int paymentQty = 1;
 	
 	
+	@Override
+	public boolean isAccountNameMandatory() {
+		return true;
+	}
+	
+	@Override
+	public boolean isTaxIdMandatory() {
+		return true;
+	}
+	
+	@Override
+	public boolean isCacheable() {
+		//	Header has current date and time
+		return false;
+	}
+	
 	@Override
 	public int exportToFile(List<MPaySelectionCheck> checks, File file, StringBuffer error) {
 		if (checks == null || checks.size() == 0)
 			return 0;
+		//	Validate accounts
+		if(!validateAccounts(checks, error)) {
+			return getExportedPayments();
+		}
 		//	
 		try {
 			s_log.fine("Delete file if exist");
@@ -151,8 +171,6 @@ public class BFC extends LVEPaymentExportList {
 							String bPAccountNo = processValue(bpAccount.getAccountNo());
 							if(Optional.ofNullable(bPAccountNo).isPresent()) {
 								bPAccountNo = leftPadding(bPAccountNo, 20, "0", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@AccountNo@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Process Person Type
 							String personType = "";
@@ -165,8 +183,6 @@ public class BFC extends LVEPaymentExportList {
 								if(isNumeric(personType)) {
 									personType = "V";
 								}
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@BPTaxID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Constant space
 							String constant2 = leftPadding("", 20, "0");
@@ -185,8 +201,6 @@ public class BFC extends LVEPaymentExportList {
 							String bPName = processValue(bpAccount.getA_Name());
 							if(Optional.ofNullable(bPName).isPresent()) {
 								bPName = rightPadding(bPName, 40, " ", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@A_Name@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Constant
 							String constant5 = leftPadding("", 4, "0");
@@ -213,8 +227,6 @@ public class BFC extends LVEPaymentExportList {
 								.append(constant7);				//	Sequence (Constant)
 							s_log.fine("Write Line");
 							writeLine(line.toString());
-						} else {
-							addError(Msg.parseTranslation(Env.getCtx(), "@C_BP_BankAccount_ID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 						}
 						//	
 						addPaymentToCounter();
@@ -24,7 +24,6 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import org.compiere.model.MBPBankAccount;
-import org.compiere.model.MBPartner;
 import org.compiere.model.MBankAccount;
 import org.compiere.model.MPaySelection;
 import org.compiere.model.MPaySelectionCheck;
@@ -49,10 +48,32 @@ public class BNC_v1 extends LVEPaymentExportList {
 	/**	Header Short Format	*/
 	private final String DATE_FORMAT = "ddMMyyyy";
 	
+	/**
+	 * Batch number is cut to 10 characters on header
+	 */
+	@Override
+	public int getBatchNoLength() {
+		return 10;
+	}
+	
+	@Override
+	public boolean isAccountNameMandatory() {
+		return true;
+	}
+	
+	@Override
+	public boolean isTaxIdMandatory() {
+		return true;
+	}
+	
 	@Override
 	public int exportToFile(List<MPaySelectionCheck> checks, File file, StringBuffer error) {
 		if (checks == null || checks.size() == 0)
 			return 0;
+		//	Validate accounts
+		if(!validateAccounts(checks, error)) {
+			return getExportedPayments();
+		}
 		//	
 		try {
 			s_log.fine("Delete file if exist");
@@ -67,7 +88,7 @@ public class BNC_v1 extends LVEPaymentExportList {
 			//	Set Value Type Register for Control Register
 			String registerType = "C";
 			//	Fields of Debt Register
-			String paymentRequestNo = processValue(paySelection.getDocumentNo());
+			String paymentRequestNo = processValue(getBatchNo(paySelection));
 			paymentRequestNo = getNumericOnly(paymentRequestNo);
 			paymentRequestNo = leftPadding(paymentRequestNo, 10, "0", true);
 			//	Debt Account
@@ -102,8 +123,6 @@ public class BNC_v1 extends LVEPaymentExportList {
 			checks.stream()
 					.filter(paySelectionCheck -> paySelectionCheck != null)
 					.forEach(paySelectionCheck -> {
-						//  BPartner Info
-						MBPartner bpartner = MBPartner.get(paySelectionCheck.getCtx(), paySelectionCheck.getC_BPartner_ID());
 						MBPBankAccount bpAccount = getBPAccountInfo(paySelectionCheck, true);
 						if(bpAccount != null) {
 							//	Line Register Type
@@ -116,15 +135,11 @@ public class BNC_v1 extends LVEPaymentExportList {
 								bPPersonType = bPTaxId.substring(0, 1);
 								bPTaxId = getNumericOnly(bPTaxId);
 								bPTaxId = leftPadding(bPTaxId, 9, "0", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@BPTaxID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Process Account Name
 							String bPName = processValue(bpAccount.getA_Name());
 							if(Optional.ofNullable(bPName).isPresent()) {
 								bPName = rightPadding(bPName, 80, " ", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@A_Name@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Description (Can be filled with document reference)
 							String lineDescription = processValue(getDetail(paySelectionCheck));
@@ -133,8 +148,6 @@ public class BNC_v1 extends LVEPaymentExportList {
 							String bPAccountNo = processValue(bpAccount.getAccountNo());
 							if(Optional.ofNullable(bPAccountNo).isPresent()) {
 								bPAccountNo = leftPadding(bPAccountNo, 20, "0", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@AccountNo@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Payment Amount
 							String amountAsString = String.format("%.2f", paySelectionCheck.getPayAmt().abs()).replace(".", "").replace(",", "");
@@ -171,14 +184,11 @@ public class BNC_v1 extends LVEPaymentExportList {
 								.append(bPTaxId);				//  BP TaxID
 							s_log.fine("Write Line");
 							writeLine(line.toString());
-						} else {
-							addError(Msg.parseTranslation(Env.getCtx(), "@C_BP_BankAccount_ID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 						}
 			});
 			//	Vendor Registration
 			Map<Integer, List<MPaySelectionCheck>> vendors = checks.stream().collect(Collectors.groupingBy(MPaySelectionCheck::getC_BPartner_ID));
 			vendors.entrySet().forEach(vendorCheck -> {
-				MBPartner bpartner = MBPartner.get(Env.getCtx(), vendorCheck.getKey());
 				MPaySelectionCheck check = vendorCheck.getValue().get(0);
 				MBPBankAccount bpAccount = getBPAccountInfo(check, true);
 				if(bpAccount != null) {
@@ -190,15 +200,11 @@ public class BNC_v1 extends LVEPaymentExportList {
 						bPPersonType = bPTaxId.substring(0, 1);
 						bPTaxId = getNumericOnly(bPTaxId);
 						bPTaxId = leftPadding(bPTaxId, 9, "0", true);
-					} else {
-						addError(Msg.parseTranslation(Env.getCtx(), "@BPTaxID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 					}
 					//	Process Account Name
 					String bPName = processValue(bpAccount.getA_Name());
 					if(Optional.ofNullable(bPName).isPresent()) {
 						bPName = rightPadding(bPName, 80, " ", true);
-					} else {
-						addError(Msg.parseTranslation(Env.getCtx(), "@A_Name@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 					}
 					//	Description (Can be filled with document reference)
 					String lineDescription = processValue(getDetail(check));
@@ -207,8 +213,6 @@ public class BNC_v1 extends LVEPaymentExportList {
 					String bPAccountNo = processValue(bpAccount.getAccountNo());
 					if(Optional.ofNullable(bPAccountNo).isPresent()) {
 						bPAccountNo = leftPadding(bPAccountNo, 20, "0", true);
-					} else {
-						addError(Msg.parseTranslation(Env.getCtx(), "@AccountNo@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 					}
 					//	Payment Amount
 					String maximumAmountAsString = leftPadding("", 15, "0", true);
@@ -242,8 +246,6 @@ public class BNC_v1 extends LVEPaymentExportList {
 						.append(operationsFrequency);	//	Operation Frequency	
 					s_log.fine("Write Line");
 					writeLine(line.toString());
-				} else {
-					addError(Msg.parseTranslation(Env.getCtx(), "@C_BP_BankAccount_ID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 				}
 			});
 			//	
@@ -22,7 +22,6 @@ import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.compiere.model.MBPBankAccount;
-import org.compiere.model.MBPartner;
 import org.compiere.model.MBankAccount;
 import org.compiere.model.MPaySelection;
 import org.compiere.model.MPaySelectionCheck;
@@ -47,10 +46,32 @@ public class BNC_v2 extends LVEPaymentExportList {
 	/**	Header Short Format	*/
 	private final String DATE_FORMAT = "ddMMyyyy";
 	
+	/**
+	 * Batch number is cut to 10 characters on header
+	 */
+	@Override
+	public int getBatchNoLength() {
+		return 10;
+	}
+	
+	@Override
+	public boolean isAccountNameMandatory() {
+		return true;
+	}
+	
+	@Override
+	public boolean isTaxIdMandatory() {
+		return true;
+	}
+	
 	@Override
 	public int exportToFile(List<MPaySelectionCheck> checks, File file, StringBuffer error) {
 		if (checks == null || checks.size() == 0)
 			return 0;
+		//	Validate accounts
+		if(!validateAccounts(checks, error)) {
+			return getExportedPayments();
+		}
 		//	
 		try {
 			s_log.fine("Delete file if exist");
@@ -65,7 +86,7 @@ public class BNC_v2 extends LVEPaymentExportList {
 			//	Set Value Type Register for Control Register
 			String registerType = "C";
 			//	Fields of Debt Register
-			String paymentRequestNo = processValue(paySelection.getDocumentNo());
+			String paymentRequestNo = processValue(getBatchNo(paySelection));
 			paymentRequestNo = getNumericOnly(paymentRequestNo);
 			paymentRequestNo = leftPadding(paymentRequestNo, 10, "0", true);
 			//	Debt Account
@@ -101,8 +122,6 @@ public class BNC_v2 extends LVEPaymentExportList {
 			checks.stream()
 					.filter(paySelectionCheck -> paySelectionCheck != null)
 					.forEach(paySelectionCheck -> {
-						//  BPartner Info
-						MBPartner bpartner = MBPartner.get(paySelectionCheck.getCtx(), paySelectionCheck.getC_BPartner_ID());
 						MBPBankAccount bpAccount = getBPAccountInfo(paySelectionCheck, true);
 						if(bpAccount != null) {
 							//	Line Register Type
@@ -115,15 +134,11 @@ public class BNC_v2 extends LVEPaymentExportList {
 								bPPersonType = bPTaxId.substring(0, 1);
 								bPTaxId = getNumericOnly(bPTaxId);
 								bPTaxId = leftPadding(bPTaxId, 9, "0", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@BPTaxID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Process Account Name
 							String bPName = processValue(bpAccount.getA_Name());
 							if(Optional.ofNullable(bPName).isPresent()) {
 								bPName = rightPadding(bPName, 80, " ", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@A_Name@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Description (Can be filled with document reference)
 							String lineDescription = processValue(getDetail(paySelectionCheck));
@@ -132,8 +147,6 @@ public class BNC_v2 extends LVEPaymentExportList {
 							String bPAccountNo = processValue(bpAccount.getAccountNo());
 							if(Optional.ofNullable(bPAccountNo).isPresent()) {
 								bPAccountNo = leftPadding(bPAccountNo, 20, "0", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@AccountNo@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Payment Amount
 							String amountAsString = String.format("%.2f", paySelectionCheck.getPayAmt().abs()).replace(".", "").replace(",", "");
@@ -170,8 +183,6 @@ public class BNC_v2 extends LVEPaymentExportList {
 								.append(bPTaxId);				//  BP TaxID
 							s_log.fine("Write Line");
 							writeLine(line.toString());
-						} else {
-							addError(Msg.parseTranslation(Env.getCtx(), "@C_BP_BankAccount_ID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 						}
 			});
 			//	
@@ -22,12 +22,9 @@ import java.text.SimpleDateFormat;
 import java.util.List;
 import java.util.Optional;
 import org.compiere.model.MBPBankAccount;
-import org.compiere.model.MBPartner;
 import org.compiere.model.MBank;
 import org.compiere.model.MBankAccount;
 import org.compiere.model.MCurrency;
-import org.compiere.model.MInvoice;
-import org.compiere.model.MOrder;
 import org.compiere.model.MOrgInfo;
 import org.compiere.model.MPaySelection;
 import org.compiere.model.MPaySelectionCheck;
@@ -36,8 +33,6 @@ import org.compiere.util.CLogger;
 import org.compiere.util.Env;
 import org.compiere.util.Msg;
 import org.compiere.util.Util;
-import org.eevolution.hr.model.MHRMovement;
-import org.eevolution.hr.model.MHRProcess;
 import org.erpya.lve.util.LVEUtil;
 
 /**
@@ -55,10 +50,37 @@ public class BOD extends LVEPaymentExportList {
 	/**	Reference Format	*/
 	private final String REFERENCE_DATE_FORMAT = "yyyy/MM/dd";
 	
+	/**
+	 * Batch number is cut to 9 characters on header
+	 */
+	@Override
+	public int getBatchNoLength() {
+		return 9;
+	}
+	
+	@Override
+	public boolean isAccountNameMandatory() {
+		return true;
+	}
+	
+	@Override
+	public boolean isTaxIdMandatory() {
+		return true;
+	}
+	
+	@Override
+	public boolean isRoutingNoMandatory() {
+		return true;
+	}
+	
 	@Override
 	public int exportToFile(List<MPaySelectionCheck> checks, File file, StringBuffer error) {
 		if (checks == null || checks.size() == 0)
 			return 0;
+		//	Validate accounts
+		if(!validateAccounts(checks, error)) {
+			return getExportedPayments();
+		}
 		//	
 		try {
 			s_log.fine("Delete file if exist");
@@ -100,7 +122,7 @@ public class BOD extends LVEPaymentExportList {
 				addError(Msg.parseTranslation(Env.getCtx(), "@BankClientNo@ @NotFound@"));
 			}
 			//	Fields of Debt Register
-			String paymentRequestNo = processValue(paySelection.getDocumentNo());
+			String paymentRequestNo = processValue(getBatchNo(paySelection));
 			paymentRequestNo = getNumericOnly(paymentRequestNo);
 			paymentRequestNo = leftPadding(paymentRequestNo, 9, "0", true);
 			//	Document Date
@@ -137,8 +159,6 @@ public class BOD extends LVEPaymentExportList {
 			checks.stream()
 					.filter(paySelectionCheck -> paySelectionCheck != null)
 					.forEach(paySelectionCheck -> {
-						//  BPartner Info
-						MBPartner bpartner = MBPartner.get(paySelectionCheck.getCtx(), paySelectionCheck.getC_BPartner_ID());
 						MBPBankAccount bpAccount = getBPAccountInfo(paySelectionCheck, true);
 						if(bpAccount != null) {
 							MUser bpContact = null;
@@ -156,15 +176,11 @@ public class BOD extends LVEPaymentExportList {
 								bPPersonType = bPTaxId.substring(0, 1);
 								bPTaxId = getNumericOnly(bPTaxId);
 								bPTaxId = leftPadding(bPTaxId, 9, "0", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@BPTaxID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Process Account Name
 							String bPName = processValue(bpAccount.getA_Name());
 							if(Optional.ofNullable(bPName).isPresent()) {
 								bPName = rightPadding(bPName, 60, " ", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@A_Name@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Process Document No
 							String documentNo = processValue(paySelectionCheck.getDocumentNo());
@@ -184,14 +200,9 @@ public class BOD extends LVEPaymentExportList {
 							String bPAccountNo = processValue(bpAccount.getAccountNo());
 							if(Optional.ofNullable(bPAccountNo).isPresent()) {
 								bPAccountNo = leftPadding(bPAccountNo, 20, "0", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@AccountNo@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Routing No
 							String bPRoutingNo = "";
-							if(Util.isEmpty(bpBank.getRoutingNo())) {
-								addError(Msg.parseTranslation(Env.getCtx(), "@RoutingNo@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
-							}
 							bPRoutingNo = processValue(bpBank.getRoutingNo());
 							bPRoutingNo = leftPadding(bPRoutingNo, 4, "0", true);
 							//	Payment Amount
@@ -243,8 +254,6 @@ public class BOD extends LVEPaymentExportList {
 							writeLine(line.toString());
 							//	Write detail of payment
 							writeDetail(paySelectionCheck);
-						} else {
-							addError(Msg.parseTranslation(Env.getCtx(), "@C_BP_BankAccount_ID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 						}
 			});
 			//	
@@ -265,7 +274,9 @@ public class BOD extends LVEPaymentExportList {
 	 * Write Detail of payment Selection
 	 */
 	private void writeDetail(MPaySelectionCheck check) {
-		check.getPaySelectionLinesAsList(false).stream()
+		MPaySelection paymentSelection = check.getParent();
+		MCurrency paymentSelectionCurrency = paymentSelection.getC_Currency_ID() != 0? MCurrency.get(Env.getCtx(), paymentSelection.getC_Currency_ID()): null;
+		getPaySelectionDetail(check).getLines(check.getC_PaySelectionCheck_ID()).stream()
 			.forEach(paySelectionLine -> {
 				String registerType = "03";
 				//	Process Document 
@@ -275,36 +286,16 @@ public class BOD extends LVEPaymentExportList {
 				Timestamp documentDate = null;
 				BigDecimal withholdingTax = Env.ZERO;
 				//	
-				MPaySelection paymentSelection = (MPaySelection) paySelectionLine.getC_PaySelection();
-				MCurrency defaultCurrency = null;
-				if(paymentSelection.getC_Currency_ID() != 0) {
-					defaultCurrency = MCurrency.get(Env.getCtx(), paymentSelection.getC_Currency_ID());
-				}
+				MCurrency defaultCurrency = paymentSelectionCurrency;
 				//	Validate for fill
-				if(paySelectionLine.getC_Invoice_ID() != 0) {
-					MInvoice invoice = (MInvoice) paySelectionLine.getC_Invoice();
-					documentNo = invoice.getDocumentNo();
-					documentAmount = invoice.getGrandTotal();
-					if(invoice.getC_Currency_ID() != 0) {
-						MCurrency currency = MCurrency.get(Env.getCtx(), invoice.getC_Currency_ID());
-						iSOCode = currency.getISO_Code();
-					}
-					documentDate = invoice.getDateInvoiced();
-				} else if(paySelectionLine.getC_Order_ID() != 0) {
-					MOrder order = (MOrder) paySelectionLine.getC_Order();
-					documentNo = order.getDocumentNo();
-					documentAmount = order.getGrandTotal();
-					if(order.getC_Currency_ID() != 0) {
-						MCurrency currency = MCurrency.get(Env.getCtx(), order.getC_Currency_ID());
+				if(paySelectionLine.isDocument()) {
+					documentNo = paySelectionLine.getDocumentNo();
+					documentAmount = paySelectionLine.getDocumentAmt();
+					if(paySelectionLine.getC_Currency_ID() != 0) {
+						MCurrency currency = MCurrency.get(Env.getCtx(), paySelectionLine.getC_Currency_ID());
 						iSOCode = currency.getISO_Code();
 					}
-					documentDate = order.getDateOrdered();
-				} else if(paySelectionLine.getHR_Movement_ID() != 0) {
-					MHRMovement movement = (MHRMovement) paySelectionLine.getHR_Movement();
-					MHRProcess payrollProcess = (MHRProcess) movement.getHR_Process();
-					documentNo = payrollProcess.getDocumentNo();
-					documentAmount = movement.getAmount();
-					documentDate = payrollProcess.getDateAcct();
+					documentDate = paySelectionLine.getDocumentDate();
 				} else {
 					documentNo = "SP-" +  paymentSelection.getDocumentInfo();
 					documentAmount = check.getPayAmt();
@@ -49,10 +49,25 @@ public class Bancaribe extends LVEPaymentExportList {
 	/**	separator	*/
 	private final String SEPARATOR = "/";
 	
+	@Override
+	public boolean isAccountNameMandatory() {
+		return true;
+	}
+	
+	@Override
+	public boolean isCacheable() {
+		//	File name has current date and time
+		return false;
+	}
+	
 	@Override
 	public int exportToFile(List<MPaySelectionCheck> checks, File file, StringBuffer error) {
 		if (checks == null || checks.size() == 0)
 			return 0;
+		//	Validate accounts
+		if(!validateAccounts(checks, error)) {
+			return getExportedPayments();
+		}
 		//	
 		try {
 			s_log.fine("Delete file if exist");
@@ -64,21 +79,16 @@ public class Bancaribe extends LVEPaymentExportList {
 					.forEach(payselectionCheck -> {
 						//  BPartner Info
 						MBPBankAccount bpAccount = getBPAccountInfo(payselectionCheck, true);
-						MBPartner bpartner = MBPartner.get(payselectionCheck.getCtx(), payselectionCheck.getC_BPartner_ID());
 						if(bpAccount != null) {
 							//	Process Business Partner Account No
 							String bpAccountNo = processValue(bpAccount.getAccountNo());
 							if(Optional.ofNullable(bpAccountNo).isPresent()) {
 								bpAccountNo = leftPadding(bpAccountNo, 20, "0", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@AccountNo@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Process Account Name
 							String bpaName = processValue(bpAccount.getA_Name());
 							if(Optional.ofNullable(bpaName).isPresent()) {
 								bpaName = rightPadding(bpaName, 30, " ", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@A_Name@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Validate
 							if(Optional.ofNullable(bpAccountNo).isPresent()
@@ -103,8 +113,6 @@ public class Bancaribe extends LVEPaymentExportList {
 								s_log.fine("Write Line");
 								writeLine(line.toString());
 							}
-						} else {
-							addError(Msg.parseTranslation(Env.getCtx(), "@C_BP_BankAccount_ID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 						}
 			});
 			closeFileWriter();
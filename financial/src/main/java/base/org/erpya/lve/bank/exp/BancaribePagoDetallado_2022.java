@@ -22,7 +22,6 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import org.adempiere.exceptions.AdempiereException;
 import org.compiere.model.MBPBankAccount;
-import org.compiere.model.MBPartner;
 import org.compiere.model.MBank;
 import org.compiere.model.MBankAccount;
 import org.compiere.model.MDocType;
@@ -31,7 +30,6 @@ import org.compiere.model.MPaySelectionCheck;
 import org.compiere.model.MUser;
 import org.compiere.util.CLogger;
 import org.compiere.util.Env;
-import org.compiere.util.Msg;
 import org.compiere.util.Util;
 
 /**
@@ -47,10 +45,24 @@ public class BancaribePagoDetallado_2022 extends LVEPaymentExportList {
 	/**	separator	*/
 	private final String SEPARATOR = "/";
 	
+	@Override
+	public boolean isAccountNameMandatory() {
+		return true;
+	}
+	
+	@Override
+	public boolean isTaxIdMandatory() {
+		return true;
+	}
+	
 	@Override
 	public int exportToFile(List<MPaySelectionCheck> checks, File file, StringBuffer error) {
 		if (checks == null || checks.size() == 0)
 			return 0;
+		//	Validate accounts
+		if(!validateAccounts(checks, error)) {
+			return getExportedPayments();
+		}
 		//	
 		try {
 			s_log.fine("Delete file if exist");
@@ -75,7 +87,6 @@ public class BancaribePagoDetallado_2022 extends LVEPaymentExportList {
 					.forEach(payselectionCheck -> {
 						//  BPartner Info
 						MBPBankAccount businessPartnerAccount = getBPAccountInfo(payselectionCheck, true);
-						MBPartner businessPartner = MBPartner.get(payselectionCheck.getCtx(), payselectionCheck.getC_BPartner_ID());
 						if(businessPartnerAccount != null) {
 							//	Process Business Partner Account No
 							String businessPartnerAccountNo = processValue(businessPartnerAccount.getAccountNo());
@@ -83,8 +94,6 @@ public class BancaribePagoDetallado_2022 extends LVEPaymentExportList {
 							String routingNo = businessPartnerBank.getRoutingNo();
 							if(Optional.ofNullable(businessPartnerAccountNo).isPresent()) {
 								businessPartnerAccountNo = leftPadding(businessPartnerAccountNo, 20, "", false);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@AccountNo@ @NotFound@: " + businessPartner.getValue() + " - " + businessPartner.getName()));
 							}
 							//	Process Account Name
 							String businessPartnerName = processValue(businessPartnerAccount.getA_Name());
@@ -93,8 +102,6 @@ public class BancaribePagoDetallado_2022 extends LVEPaymentExportList {
 								if(businessPartnerName.length() > 64) {
 									businessPartnerName = businessPartnerName.substring(0, 64);
 								}
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@A_Name@ @NotFound@: " + businessPartner.getValue() + " - " + businessPartner.getName()));
 							}
 							String businessPartnerTaxId = businessPartnerAccount.getA_Ident_SSN();
 							if(!Util.isEmpty(businessPartnerTaxId)){
@@ -102,8 +109,6 @@ public class BancaribePagoDetallado_2022 extends LVEPaymentExportList {
 								String personType = businessPartnerTaxId.substring(0, 1);
 								businessPartnerTaxId = getNumericOnly(businessPartnerTaxId);
 								businessPartnerTaxId = personType + leftPadding(businessPartnerTaxId, 14, "", false);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@BPTaxID@ @NotFound@: " + businessPartner.getValue() + " - " + businessPartner.getName()));
 							}
 							String reference = processValue(payselectionCheck.getDocumentNo());
 							reference = rightPadding(reference, 17, "", false);
@@ -172,8 +177,6 @@ public class BancaribePagoDetallado_2022 extends LVEPaymentExportList {
 								s_log.fine("Write Line");
 								writeLine(line.toString());
 							}
-						} else {
-							addError(Msg.parseTranslation(Env.getCtx(), "@C_BP_BankAccount_ID@ @NotFound@: " + businessPartner.getValue() + " - " + businessPartner.getName()));
 						}
 			});
 			closeFileWriter();
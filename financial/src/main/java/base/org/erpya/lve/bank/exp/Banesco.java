@@ -62,6 +62,21 @@ public class Banesco extends LVEPaymentExportList {
 	public final static String CRLF  = "" + CR + LF; 
 	
 	
+	@Override
+	public boolean isAccountNameMandatory() {
+		return true;
+	}
+	
+	@Override
+	public boolean isTaxIdMandatory() {
+		return true;
+	}
+	
+	@Override
+	public boolean isRoutingNoMandatory() {
+		return true;
+	}
+	
 	@Override
 	public int exportToFileAsAccountPayable(List<MPaySelectionCheck> checks, File file, StringBuffer error) {
 		return export(checks, file, error, "SCV");
@@ -131,7 +146,7 @@ public class Banesco extends LVEPaymentExportList {
 			//	Can be used for identify payments
 			String descriptionCode = rightPadding("", 32, " ");
 			String paymentRequestCondition = rightPadding("9", 3, " ");
-			String paymentRequestNo = rightPadding(processValue(paySelection.getDocumentNo()), 35, " ", true);
+			String paymentRequestNo = rightPadding(processValue(getBatchNo(paySelection)), 35, " ", true);
 			String paymentRequestDate = headerFormat.format(paySelection.getPayDate());
 			//	Set Value Type Register for Control Register
 			registerType = "01";
@@ -200,23 +215,16 @@ public class Banesco extends LVEPaymentExportList {
 							//	Process Business Partner Account No
 							String bPAccountNo = processValue(bpAccount.getAccountNo());
 							String bPRoutingNo = rightPadding(processValue(bpBank.getRoutingNo()), 11, " ");
-							if(Util.isEmpty(bPRoutingNo)) {
-								addError(Msg.parseTranslation(Env.getCtx(), "@RoutingNo@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
-							}
 							String agencyCode = rightPadding("", 3, " ");
 							String bPTaxId = bpAccount.getA_Ident_SSN();
 							if(!Util.isEmpty(bPTaxId)){
 								bPTaxId = bPTaxId.replace("-", "").trim();
 								bPTaxId = rightPadding(bPTaxId, 17, " ", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@BPTaxID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Process Account Name
 							String bPName = processValue(bpAccount.getA_Name());
 							if(Optional.ofNullable(bPName).isPresent()) {
 								bPName = rightPadding(bPName, 70, " ", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@A_Name@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	EMail
 							String bPEmail = "";
@@ -255,8 +263,6 @@ public class Banesco extends LVEPaymentExportList {
 							if(Optional.ofNullable(bPAccountNo).isPresent()) {
 								bPAccountNo = leftPadding(bPAccountNo, 20, "0", true);
 								bPAccountNo = rightPadding(bPAccountNo, 30, " ", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@AccountNo@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Credit Register
 							String lineRegisterType = "03";
@@ -303,8 +309,6 @@ public class Banesco extends LVEPaymentExportList {
 							
 							s_log.fine("Write Line");
 							writeLine(line.toString());
-						} else {
-							addError(Msg.parseTranslation(Env.getCtx(), "@C_BP_BankAccount_ID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 						}
 						//	
 						addPaymentToCounter();
@@ -47,10 +47,32 @@ public class Banplus extends LVEPaymentExportList {
 	private final String HEADER_SHORT_DATE_FORMAT = "yyyyMMdd";
 	
 	
+	/**
+	 * Batch number is cut to 10 characters on header
+	 */
+	@Override
+	public int getBatchNoLength() {
+		return 10;
+	}
+	
+	@Override
+	public boolean isAccountNameMandatory() {
+		return true;
+	}
+	
+	@Override
+	public boolean isTaxIdMandatory() {
+		return true;
+	}
+	
 	@Override
 	public int exportToFile(List<MPaySelectionCheck> checks, File file, StringBuffer error) {
 		if (checks == null || checks.size() == 0)
 			return 0;
+		//	Validate accounts
+		if(!validateAccounts(checks, error)) {
+			return getExportedPayments();
+		}
 		//	
 		try {
 			s_log.fine("Delete file if exist");
@@ -62,7 +84,7 @@ public class Banplus extends LVEPaymentExportList {
 			//	Format Date
 			SimpleDateFormat shortFormat = new SimpleDateFormat(HEADER_SHORT_DATE_FORMAT);
 			//	Fields of Control Register (fixed data)
-			String paymentRequestNo = processValue(paySelection.getDocumentNo());
+			String paymentRequestNo = processValue(getBatchNo(paySelection));
 			paymentRequestNo = paymentRequestNo.substring(0, paymentRequestNo.length() >= 10? 10: paymentRequestNo.length());
 			//	Fields of Debt Register
 			String debtReferenceNo = processValue(paySelection.getDocumentNo());
@@ -130,20 +152,14 @@ public class Banplus extends LVEPaymentExportList {
 									personType = "04";
 								bPTaxId = bPTaxId.replaceAll("\\D+","");
 								bPTaxId = bPTaxId.substring(0, bPTaxId.length() >= 9? 9: bPTaxId.length());
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@BPTaxID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Process Account Name
 							String bPName = processValue(bpAccount.getA_Name());
 							if(Optional.ofNullable(bPName).isPresent()) {
 								bPName = bPName.substring(0, bPName.length() >= 40? 40: bPName.length());
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@A_Name@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							if(Optional.ofNullable(bPAccountNo).isPresent()) {
 								bPAccountNo = bPAccountNo.substring(0, bPAccountNo.length() >= 20? 20: bPAccountNo.length());
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@AccountNo@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Process Document No
 							String documentNo = processValue(payselectionCheck.getDocumentNo());
@@ -181,8 +197,6 @@ public class Banplus extends LVEPaymentExportList {
 								.append(makePayment); 				//	Make Payment
 							s_log.fine("Write Line");
 							writeLine(line.toString());
-						} else {
-							addError(Msg.parseTranslation(Env.getCtx(), "@C_BP_BankAccount_ID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 						}
 			});
 			//	
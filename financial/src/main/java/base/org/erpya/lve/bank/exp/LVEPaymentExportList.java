@@ -16,27 +16,29 @@
 package org.erpya.lve.bank.exp;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
 
 import javax.mail.internet.InternetAddress;
 
+import org.adempiere.exceptions.AdempiereException;
 import org.compiere.model.MBPBankAccount;
 import org.compiere.model.MBPartner;
 import org.compiere.model.MBank;
 import org.compiere.model.MBankAccount;
-import org.compiere.model.MInvoice;
-import org.compiere.model.MOrder;
 import org.compiere.model.MPaySelection;
 import org.compiere.model.MPaySelectionCheck;
-import org.compiere.model.MPaySelectionLine;
 import org.compiere.model.MPayment;
 import org.compiere.model.MPaymentBatch;
-import org.compiere.util.DB;
+import org.compiere.model.MSysConfig;
 import org.compiere.util.Env;
+import org.compiere.util.Msg;
 import org.compiere.util.PaymentExportList;
 import org.compiere.util.Util;
-import org.eevolution.hr.model.MHRMovement;
-import org.eevolution.hr.model.MHRProcess;
+import org.erpya.lve.util.LVEUtil;
 
 /**
  * This class is used like a parent class for make helper method used on 
@@ -47,6 +49,328 @@ import org.eevolution.hr.model.MHRProcess;
  */
 public abstract class LVEPaymentExportList extends PaymentExportList {
 
+	/**	Default version of bank layout	*/
+	public static final String DEFAULT_LAYOUT_VERSION = "1";
+	/**	Last file opened for write	*/
+	private String exportFileName = null;
+	/**	Quantity of lines written	*/
+	private int writtenLines = 0;
+	/**	Cancel requested	*/
+	private volatile boolean isCancelled = false;
+	/**	Lines and documents of payment selection	*/
+	private PaySelectionDetail paySelectionDetail = null;
+	/**	Suffix for document number of file name, used for split files	*/
+	private String fileNameSuffix = "";
+	/**	Number of file on split export, 0 if the export is not split	*/
+	private int fileNo = 0;
+	/**	Accounts already validated by parent export	*/
+	private boolean isValidated = false;
+	/**	Exporters of split files	*/
+	private final List<LVEPaymentExportList> partitionExporters = new CopyOnWriteArrayList<LVEPaymentExportList>();
+	/**	Files written by split export, manifest is the last	*/
+	private final List<String> exportFileNames = Collections.synchronizedList(new ArrayList<String>());
+
+	/**
+	 * Get version of bank layout, it is part of fingerprint of cached exports.
+	 * Override it when the file format change without change the class
+	 * @return
+	 */
+	public String getLayoutVersion() {
+		return DEFAULT_LAYOUT_VERSION;
+	}
+
+	/**
+	 * Verify if the exported file can be restored from cache. Override it for return false when the
+	 * layout write the current time (on content or file name), then a cached file is not equal to a new one
+	 * @return
+	 */
+	public boolean isCacheable() {
+		return true;
+	}
+
+	/**
+	 * Verify if the bank of business partner account must have routing number
+	 * @return
+	 */
+	public boolean isRoutingNoMandatory() {
+		return false;
+	}
+
+	/**
+	 * Get length of business partner account number (only digits), 0 for not validate it.
+	 * Override it when the bank reject accounts that are not of this length
+	 * @return
+	 */
+	public int getAccountNoLength() {
+		return 0;
+	}
+
+	/**
+	 * Verify if the business partner account must have account name
+	 * @return
+	 */
+	public boolean isAccountNameMandatory() {
+		return false;
+	}
+
+	/**
+	 * Verify if the business partner account must have tax id
+	 * @return
+	 */
+	public boolean isTaxIdMandatory() {
+		return false;
+	}
+
+	/**
+	 * Get how the checks are split in many files, see PaymentExportSplit.SPLITTYPE_*.
+	 * Default is the system configuration LVE_PAYMENT_EXPORT_SPLIT_TYPE
+	 * @param clientId
+	 * @return
+	 */
+	public String getSplitType(int clientId) {
+		return MSysConfig.getValue(LVEUtil.SYSCONFIG_LVE_PaymentExportSplitType, PaymentExportSplit.SPLITTYPE_None, clientId);
+	}
+
+	/**
+	 * Get length of batch number on header of layout, 0 for not validate it. Override it when the
+	 * layout cut the batch number, then a split export is rejected if the batch number of a file is cut
+	 * @return
+	 */
+	public int getBatchNoLength() {
+		return 0;
+	}
+
+	/**
+	 * Get max records by file, 0 without limit. Override it when the bank has a limit of records.
+	 * Default is the system configuration LVE_PAYMENT_EXPORT_MAX_RECORDS
+	 * @param clientId
+	 * @return
+	 */
+	public int getMaxRecordsByFile(int clientId) {
+		return MSysConfig.getIntValue(LVEUtil.SYSCONFIG_LVE_PaymentExportMaxRecords, 0, clientId);
+	}
+
+	/**
+	 * Set suffix for document number of file name
+	 * @param fileNameSuffix
+	 */
+	void setFileNameSuffix(String fileNameSuffix) {
+		this.fileNameSuffix = Util.isEmpty(fileNameSuffix)? "": fileNameSuffix;
+	}
+
+	/**
+	 * Set number of file on split export
+	 * @param fileNo
+	 */
+	void setFileNo(int fileNo) {
+		this.fileNo = fileNo;
+	}
+	
+	/**
+	 * Get number of file on split export, 0 if the export is not split
+	 * @return
+	 */
+	public int getFileNo() {
+		return fileNo;
+	}
+	
+	/**
+	 * Get batch (lot) number of file for header of bank layout, it is the document number of payment selection
+	 * and for split files the document number with the number of file (2 digits), then each file has a different batch.
+	 * Override it when the bank needs other format
+	 * @param paySelection
+	 * @return
+	 */
+	public String getBatchNo(MPaySelection paySelection) {
+		return getBatchNo(paySelection.getDocumentNo(), fileNo);
+	}
+
+	/**
+	 * Get batch number of a file
+	 * @param documentNo
+	 * @param fileNo
+	 * @return
+	 */
+	static String getBatchNo(String documentNo, int fileNo) {
+		if(fileNo <= 0) {
+			return documentNo;
+		}
+		return documentNo + String.format("%02d", fileNo);
+	}
+
+	/**
+	 * Validate that the batch number of all files fits on layout (see {@link #getBatchNoLength()}),
+	 * the last file has the longest batch number
+	 * @param documentNo
+	 * @param files quantity of files
+	 * @return error (untranslated) or null if all batch numbers fit
+	 */
+	String validateBatchNo(String documentNo, int files) {
+		if(getBatchNoLength() <= 0
+				|| files <= 1) {
+			return null;
+		}
+		String lastBatchNo = processValue(getBatchNo(documentNo, files));
+		if(lastBatchNo != null
+				&& lastBatchNo.length() > getBatchNoLength()) {
+			return "@DocumentNo@ " + documentNo + ": @Invalid@ " + lastBatchNo + " > " + getBatchNoLength();
+		}
+		return null;
+	}
+
+	/**
+	 * Set accounts as validated by parent export
+	 * @param isValidated
+	 */
+	void setValidated(boolean isValidated) {
+		this.isValidated = isValidated;
+	}
+
+	/**
+	 * Get business partner account of check, it is the same account used by layouts for write the line
+	 * @param check
+	 * @return
+	 */
+	MBPBankAccount getAccountOfCheck(MPaySelectionCheck check) {
+		return getBPAccountInfo(check, true);
+	}
+
+	/**
+	 * Add exporter of a split file, it is cancelled with this exporter
+	 * @param partitionExporter
+	 */
+	void addPartitionExporter(LVEPaymentExportList partitionExporter) {
+		partitionExporters.add(partitionExporter);
+		if(isCancelled) {
+			partitionExporter.cancel();
+		}
+	}
+
+	/**
+	 * Add file written by split export
+	 * @param fileName
+	 */
+	void addExportFileName(String fileName) {
+		exportFileNames.add(fileName);
+	}
+
+	/**
+	 * Get all files written, for split export are the files and the manifest as last file
+	 * @return
+	 */
+	public List<String> getExportFileNames() {
+		if(exportFileNames.isEmpty()
+				&& exportFileName != null) {
+			return Collections.singletonList(exportFileName);
+		}
+		return new ArrayList<String>(exportFileNames);
+	}
+
+	/**
+	 * Export checks in many files if the export is split (see {@link #getSplitType(int)}),
+	 * each file is written in parallel by a new instance of this exporter
+	 * @param checks
+	 * @param file
+	 * @param error
+	 * @return exported payments of all files
+	 */
+	public int exportToFiles(List<MPaySelectionCheck> checks, File file, StringBuffer error) {
+		List<List<MPaySelectionCheck>> partitions = PaymentExportSplit.partition(this, checks);
+		if(partitions.size() <= 1) {
+			return exportToFile(checks, file, error);
+		}
+		//	Batch number of each file can not be cut by layout
+		String batchNoError = validateBatchNo(checks.get(0).getParent().getDocumentNo(), partitions.size());
+		if(!Util.isEmpty(batchNoError)) {
+			error.append(Msg.parseTranslation(Env.getCtx(), batchNoError));
+			setExportedPayments(-1);
+			return getExportedPayments();
+		}
+		//	Validate accounts once
+		if(!validateAccounts(checks, error)) {
+			return getExportedPayments();
+		}
+		setExportedPayments(PaymentExportSplit.export(this, partitions, file, error));
+		List<String> fileNames = getExportFileNames();
+		if(!fileNames.isEmpty()) {
+			exportFileName = fileNames.get(fileNames.size() - 1);
+		}
+		return getExportedPayments();
+	}
+
+	/**
+	 * Validate business partner accounts of all checks before open file
+	 * @param checks
+	 * @return error report, empty if all accounts are valid
+	 */
+	public String validatePaySelection(List<MPaySelectionCheck> checks) {
+		return PaySelectionValidation.validate(this, checks).stream()
+				.map(message -> Msg.parseTranslation(Env.getCtx(), message))
+				.collect(Collectors.joining(Env.NL));
+	}
+
+	/**
+	 * Validate business partner accounts of all checks before open file, it is not validated again
+	 * if the accounts are validated before (split export or job). Call it before write a layout
+	 * @param checks
+	 * @param error
+	 * @return true if all accounts are valid
+	 */
+	protected boolean validateAccounts(List<MPaySelectionCheck> checks, StringBuffer error) {
+		if(isValidated) {
+			return true;
+		}
+		String validationError = validatePaySelection(checks);
+		if(!Util.isEmpty(validationError)) {
+			error.append(validationError);
+			setExportedPayments(-1);
+			return false;
+		}
+		isValidated = true;
+		return true;
+	}
+
+	/**
+	 * Get last file name opened for write
+	 * @return
+	 */
+	public String getExportFileName() {
+		return exportFileName;
+	}
+
+	/**
+	 * Get quantity of lines written, used as progress of export
+	 * @return
+	 */
+	public int getWrittenLines() {
+		return writtenLines + partitionExporters.stream().mapToInt(LVEPaymentExportList::getWrittenLines).sum();
+	}
+
+	/**
+	 * Request cancel of export, it is verified before write each line
+	 */
+	public void cancel() {
+		isCancelled = true;
+		partitionExporters.forEach(LVEPaymentExportList::cancel);
+	}
+
+	/**
+	 * Verify if the export was cancelled
+	 * @return
+	 */
+	public boolean isCancelled() {
+		return isCancelled;
+	}
+
+	@Override
+	public void writeLine(String line) {
+		if(isCancelled) {
+			throw new AdempiereException("@Cancelled@");
+		}
+		super.writeLine(line);
+		writtenLines++;
+	}
+
 	/**
 	 * Used for verification
 	 * @param bankAccount
@@ -119,18 +443,14 @@ public abstract class LVEPaymentExportList extends PaymentExportList {
 		if (checks == null || checks.size() == 0) {
 			return 0;
 		}
+		//	Validate accounts
+		if(!validateAccounts(checks, error)) {
+			return getExportedPayments();
+		}
 		//	Validate if is from payroll
 		MPaySelectionCheck check = checks.get(0);
-		int payselectionlineId = DB.getSQLValue(check.get_TrxName(), "SELECT C_PaySelectionLine_ID "
-				+ "FROM C_PaySelectionLine "
-				+ "WHERE C_PaySelectionCheck_ID = ?", check.getC_PaySelectionCheck_ID());
-		if(payselectionlineId > 0) {
-			MPaySelectionLine line = new MPaySelectionLine(check.getCtx(), payselectionlineId, check.get_TrxName());
-			if(line.getHR_Movement_ID() > 0) {
-				return exportToFileAsPayroll(checks, file, error);
-			} else {
-				return exportToFileAsAccountPayable(checks, file, error);
-			}
+		if(getPaySelectionDetail(check).isPayroll(check.getC_PaySelectionCheck_ID())) {
+			return exportToFileAsPayroll(checks, file, error);
 		}
 		//	Default
 		return exportToFileAsAccountPayable(checks, file, error);
@@ -187,6 +507,7 @@ public abstract class LVEPaymentExportList extends PaymentExportList {
 	public void openFileWriter(String newName) {
 		File newFile = new File(newName);
 		deleteIfExist(newFile);
+		exportFileName = newName;
 		openFileWriter(newFile);
 	}
 	
@@ -225,7 +546,7 @@ public abstract class LVEPaymentExportList extends PaymentExportList {
 		pathName.append(File.separator)
 				.append(processValue(bankName))
 				.append("_")
-				.append(processValue(documentNo))
+				.append(processValue(documentNo + fileNameSuffix))
 				.append(extension);
 		//	Return
 		return pathName.toString().replace(" ", "_");
@@ -256,27 +577,32 @@ public abstract class LVEPaymentExportList extends PaymentExportList {
 		return value.replaceAll("\\D+","");
 	}
 	
+	/**
+	 * Get lines and documents of payment selection of check, it is read once for all checks
+	 * @param check
+	 * @return
+	 */
+	public PaySelectionDetail getPaySelectionDetail(MPaySelectionCheck check) {
+		if(paySelectionDetail == null
+				|| paySelectionDetail.getC_PaySelection_ID() != check.getC_PaySelection_ID()) {
+			paySelectionDetail = new PaySelectionDetail(check.getC_PaySelection_ID(), check.get_TrxName());
+		}
+		return paySelectionDetail;
+	}
+	
 	/**
 	 * Get Detail
 	 **/
 	public String getDetail(MPaySelectionCheck check) {
 		StringBuffer detail = new StringBuffer();
-		for(MPaySelectionLine paySelectionLine : check.getPaySelectionLinesAsList(false)) {
+		PaySelectionDetail paySelectionDetail = getPaySelectionDetail(check);
+		for(PaySelectionDetail.Line paySelectionLine : paySelectionDetail.getLines(check.getC_PaySelectionCheck_ID())) {
 			String documentNo = null;
-			MPaySelection paymentSelection = (MPaySelection) paySelectionLine.getC_PaySelection();
 			//	Validate for fill
-			if(paySelectionLine.getC_Invoice_ID() != 0) {
-				MInvoice invoice = (MInvoice) paySelectionLine.getC_Invoice();
-				documentNo = invoice.getDocumentNo();
-			} else if(paySelectionLine.getC_Order_ID() != 0) {
-				MOrder order = (MOrder) paySelectionLine.getC_Order();
-				documentNo = order.getDocumentNo();
-			} else if(paySelectionLine.getHR_Movement_ID() != 0) {
-				MHRMovement movement = (MHRMovement) paySelectionLine.getHR_Movement();
-				MHRProcess payrollProcess = (MHRProcess) movement.getHR_Process();
-				documentNo = payrollProcess.getDocumentNo();
+			if(paySelectionLine.isDocument()) {
+				documentNo = paySelectionLine.getDocumentNo();
 			} else {
-				documentNo = "SP-" +  paymentSelection.getDocumentNo();
+				documentNo = "SP-" +  paySelectionDetail.getPaySelectionDocumentNo();
 			}
 			//	Get Default ISO Code
 			if(Util.isEmpty(documentNo)) {
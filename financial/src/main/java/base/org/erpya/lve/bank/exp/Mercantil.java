@@ -54,10 +54,32 @@ public class Mercantil extends LVEPaymentExportList {
 	public final static char LF  = (char) 0x0A;
 	public final static String CRLF  = "" + CR + LF;
 	
+	/**
+	 * Batch number is cut to 15 characters on header
+	 */
+	@Override
+	public int getBatchNoLength() {
+		return 15;
+	}
+	
+	@Override
+	public boolean isAccountNameMandatory() {
+		return true;
+	}
+	
+	@Override
+	public boolean isTaxIdMandatory() {
+		return true;
+	}
+	
 	@Override
 	public int exportToFile(List<MPaySelectionCheck> checks, File file, StringBuffer error) {
 		if (checks == null || checks.size() == 0)
 			return 0;
+		//	Validate accounts
+		if(!validateAccounts(checks, error)) {
+			return getExportedPayments();
+		}
 		//	
 		try {
 			s_log.fine("Delete file if exist");
@@ -78,7 +100,7 @@ public class Mercantil extends LVEPaymentExportList {
 				addError(Msg.parseTranslation(Env.getCtx(), "@C_Bank_ID@: " + bank.getName() + " @SwiftCode@ @NotFound@"));
 			}
 			//	Fields of Control Register (fixed data)
-			String paymentRequestNo = processValue(paySelection.getDocumentNo());
+			String paymentRequestNo = processValue(getBatchNo(paySelection));
 			paymentRequestNo = rightPadding(paymentRequestNo, 15, " ", true);
 			// Product Type
 			String productType = "PROVE";
@@ -153,8 +175,6 @@ public class Mercantil extends LVEPaymentExportList {
 								personType = bPTaxId.substring(0, 1);
 								bPTaxId = bPTaxId.replaceAll("\\D+","");
 								bPTaxId = leftPadding(bPTaxId, 15, "0", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@BPTaxID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	Payment Type
 							MBank bpBank = MBank.get(Env.getCtx(), bpAccount.getC_Bank_ID());
@@ -169,8 +189,6 @@ public class Mercantil extends LVEPaymentExportList {
 							String bPAccountNo = processValue(bpAccount.getAccountNo());
 							if(Optional.ofNullable(bPAccountNo).isPresent()) {
 								bPAccountNo = rightPadding(bPAccountNo, 20, "0", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@AccountNo@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							//	BP Value
 							String bPValue = bpartner.getValue();
@@ -180,8 +198,6 @@ public class Mercantil extends LVEPaymentExportList {
 							String bPName = processValue(bpAccount.getA_Name());
 							if(Optional.ofNullable(bPName).isPresent()) {
 								bPName = rightPadding(bPName, 60, " ", true);
-							} else {
-								addError(Msg.parseTranslation(Env.getCtx(), "@A_Name@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 							}
 							
 							//	Process Document No
@@ -224,8 +240,6 @@ public class Mercantil extends LVEPaymentExportList {
 								.append(leftPadding("", 35, "0")); 	//	Reserved
 							s_log.fine("Write Line");
 							writeLine(line.toString());
-						} else {
-							addError(Msg.parseTranslation(Env.getCtx(), "@C_BP_BankAccount_ID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 						}
 			});
 			//	
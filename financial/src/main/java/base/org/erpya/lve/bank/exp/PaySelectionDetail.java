@@ -0,0 +1,231 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.bank.exp;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.compiere.util.DB;
+
+/**
+ * Lines of a payment selection with the values of referenced document (invoice, order or payroll
+ * movement) read in one query for all checks, used by exporters instead of load each line and
+ * document of each check.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class PaySelectionDetail {
+
+	/**	Payment Selection	*/
+	private final int paySelectionId;
+	/**	Document No of Payment Selection	*/
+	private final String paySelectionDocumentNo;
+	/**	Lines by check	*/
+	private final Map<Integer, List<Line>> linesByCheck = new HashMap<Integer, List<Line>>();
+	/**	Query of lines	*/
+	private static final String SQL = "SELECT psl.C_PaySelectionCheck_ID, psl.C_PaySelectionLine_ID, psl.C_Invoice_ID, psl.C_Order_ID, psl.HR_Movement_ID, "
+			+ "i.DocumentNo AS InvoiceDocumentNo, i.GrandTotal AS InvoiceGrandTotal, i.C_Currency_ID AS InvoiceCurrency_ID, i.DateInvoiced, "
+			+ "o.DocumentNo AS OrderDocumentNo, o.GrandTotal AS OrderGrandTotal, o.C_Currency_ID AS OrderCurrency_ID, o.DateOrdered, "
+			+ "hp.DocumentNo AS PayrollDocumentNo, m.Amount AS MovementAmt, hp.DateAcct AS PayrollDateAcct, "
+			+ "COALESCE(m.AD_Org_ID, i.AD_Org_ID, o.AD_Org_ID, psl.AD_Org_ID) AS DocumentOrg_ID "
+			+ "FROM C_PaySelectionLine psl "
+			+ "LEFT JOIN C_Invoice i ON(i.C_Invoice_ID = psl.C_Invoice_ID) "
+			+ "LEFT JOIN C_Order o ON(o.C_Order_ID = psl.C_Order_ID) "
+			+ "LEFT JOIN HR_Movement m ON(m.HR_Movement_ID = psl.HR_Movement_ID) "
+			+ "LEFT JOIN HR_Process hp ON(hp.HR_Process_ID = m.HR_Process_ID) "
+			+ "WHERE psl.C_PaySelection_ID = ? "
+			+ "AND psl.C_PaySelectionCheck_ID IS NOT NULL "
+			+ "ORDER BY psl.C_PaySelectionCheck_ID, psl.Line, psl.C_PaySelectionLine_ID";
+
+	/**
+	 * Read all lines of payment selection
+	 * @param paySelectionId
+	 * @param transactionName
+	 */
+	public PaySelectionDetail(int paySelectionId, String transactionName) {
+		this.paySelectionId = paySelectionId;
+		this.paySelectionDocumentNo = DB.getSQLValueStringEx(transactionName, "SELECT DocumentNo FROM C_PaySelection WHERE C_PaySelection_ID = ?", paySelectionId);
+		List<Object> parameters = new ArrayList<Object>();
+		parameters.add(paySelectionId);
+		DB.runResultSet(transactionName, SQL, parameters, resultSet -> {
+			while(resultSet.next()) {
+				Line line = new Line();
+				line.paySelectionLineId = resultSet.getInt("C_PaySelectionLine_ID");
+				line.invoiceId = resultSet.getInt("C_Invoice_ID");
+				line.orderId = resultSet.getInt("C_Order_ID");
+				line.movementId = resultSet.getInt("HR_Movement_ID");
+				line.orgId = resultSet.getInt("DocumentOrg_ID");
+				if(line.invoiceId != 0) {
+					line.documentNo = resultSet.getString("InvoiceDocumentNo");
+					line.documentAmt = resultSet.getBigDecimal("InvoiceGrandTotal");
+					line.currencyId = resultSet.getInt("InvoiceCurrency_ID");
+					line.documentDate = resultSet.getTimestamp("DateInvoiced");
+				} else if(line.orderId != 0) {
+					line.documentNo = resultSet.getString("OrderDocumentNo");
+					line.documentAmt = resultSet.getBigDecimal("OrderGrandTotal");
+					line.currencyId = resultSet.getInt("OrderCurrency_ID");
+					line.documentDate = resultSet.getTimestamp("DateOrdered");
+				} else if(line.movementId != 0) {
+					line.documentNo = resultSet.getString("PayrollDocumentNo");
+					line.documentAmt = resultSet.getBigDecimal("MovementAmt");
+					line.documentDate = resultSet.getTimestamp("PayrollDateAcct");
+				}
+				linesByCheck.computeIfAbsent(resultSet.getInt("C_PaySelectionCheck_ID"), key -> new ArrayList<Line>()).add(line);
+			}
+		}).onFailure(throwable -> {
+			throw new AdempiereException(throwable);
+		});
+	}
+
+	/**
+	 * Get Payment Selection
+	 * @return
+	 */
+	public int getC_PaySelection_ID() {
+		return paySelectionId;
+	}
+
+	/**
+	 * Get Document No of Payment Selection
+	 * @return
+	 */
+	public String getPaySelectionDocumentNo() {
+		return paySelectionDocumentNo;
+	}
+
+	/**
+	 * Get lines of a check
+	 * @param paySelectionCheckId
+	 * @return
+	 */
+	public List<Line> getLines(int paySelectionCheckId) {
+		List<Line> lines = linesByCheck.get(paySelectionCheckId);
+		if(lines == null) {
+			return Collections.emptyList();
+		}
+		return lines;
+	}
+
+	/**
+	 * Verify if the first line of check is from payroll
+	 * @param paySelectionCheckId
+	 * @return
+	 */
+	public boolean isPayroll(int paySelectionCheckId) {
+		List<Line> lines = getLines(paySelectionCheckId);
+		return !lines.isEmpty()
+				&& lines.get(0).isPayroll();
+	}
+
+	/**
+	 * Verify if check has lines
+	 * @param paySelectionCheckId
+	 * @return
+	 */
+	public boolean hasLines(int paySelectionCheckId) {
+		return !getLines(paySelectionCheckId).isEmpty();
+	}
+
+	/**
+	 * Line of payment selection with values of document
+	 */
+	public static class Line {
+		private int paySelectionLineId;
+		private int invoiceId;
+		private int orderId;
+		private int movementId;
+		private String documentNo;
+		private BigDecimal documentAmt;
+		private int currencyId;
+		private Timestamp documentDate;
+		private int orgId;
+
+		public int getC_PaySelectionLine_ID() {
+			return paySelectionLineId;
+		}
+
+		public int getC_Invoice_ID() {
+			return invoiceId;
+		}
+
+		public int getC_Order_ID() {
+			return orderId;
+		}
+
+		public int getHR_Movement_ID() {
+			return movementId;
+		}
+
+		/**
+		 * Verify if line has a document (invoice, order or payroll movement)
+		 * @return
+		 */
+		public boolean isDocument() {
+			return invoiceId != 0
+					|| orderId != 0
+					|| movementId != 0;
+		}
+
+		public boolean isPayroll() {
+			return movementId != 0;
+		}
+
+		/**
+		 * Get Document No of invoice, order or payroll process
+		 * @return
+		 */
+		public String getDocumentNo() {
+			return documentNo;
+		}
+
+		/**
+		 * Get Grand Total of invoice or order, or amount of payroll movement
+		 * @return
+		 */
+		public BigDecimal getDocumentAmt() {
+			return documentAmt;
+		}
+
+		/**
+		 * Get Currency of invoice or order, 0 for payroll movement
+		 * @return
+		 */
+		public int getC_Currency_ID() {
+			return currencyId;
+		}
+
+		/**
+		 * Get Date Invoiced, Date Ordered or Accounting Date of payroll process
+		 * @return
+		 */
+		public Timestamp getDocumentDate() {
+			return documentDate;
+		}
+
+		/**
+		 * Get Organization of payroll movement, invoice or order, the organization of line if it has not document
+		 * @return
+		 */
+		public int getAD_Org_ID() {
+			return orgId;
+		}
+	}
+}
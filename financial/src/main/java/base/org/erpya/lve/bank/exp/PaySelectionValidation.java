@@ -0,0 +1,122 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.bank.exp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.compiere.model.MBPBankAccount;
+import org.compiere.model.MBPartner;
+import org.compiere.model.MBank;
+import org.compiere.model.MPaySelectionCheck;
+import org.compiere.util.Util;
+
+/**
+ * Validation of business partner bank accounts and banks for all checks of a payment selection,
+ * it is run before open the file. The account of each check is the same used by layouts when the
+ * file is written (see LVEPaymentExportList.getAccountOfCheck) and each account is validated in
+ * parallel with the rules of layout, the result is the list of all errors (untranslated) in order of check.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class PaySelectionValidation {
+
+	/**
+	 * Validate accounts of checks
+	 * @param exporter for rules of bank layout
+	 * @param checks
+	 * @return list of errors, empty if all is valid
+	 */
+	public static List<String> validate(LVEPaymentExportList exporter, List<MPaySelectionCheck> checks) {
+		if(checks == null
+				|| checks.isEmpty()) {
+			return new ArrayList<String>();
+		}
+		//	Read accounts in order of check
+		List<Account> accounts = new ArrayList<Account>();
+		checks.stream()
+			.filter(check -> check != null)
+			.forEach(check -> {
+				MBPartner businessPartner = MBPartner.get(check.getCtx(), check.getC_BPartner_ID());
+				Account account = new Account();
+				account.partnerInfo = businessPartner.getValue() + " - " + businessPartner.getName();
+				MBPBankAccount bankAccount = exporter.getAccountOfCheck(check);
+				if(bankAccount != null) {
+					account.bankAccountId = bankAccount.getC_BP_BankAccount_ID();
+					account.accountNo = bankAccount.getAccountNo();
+					account.accountName = bankAccount.getA_Name();
+					account.taxId = bankAccount.getA_Ident_SSN();
+					if(bankAccount.getC_Bank_ID() > 0) {
+						account.routingNo = MBank.get(check.getCtx(), bankAccount.getC_Bank_ID()).getRoutingNo();
+					}
+				}
+				accounts.add(account);
+			});
+		//	Validate
+		return accounts.parallelStream()
+				.map(account -> validate(exporter, account))
+				.flatMap(List::stream)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Validate a account
+	 * @param exporter
+	 * @param account
+	 * @return
+	 */
+	private static List<String> validate(LVEPaymentExportList exporter, Account account) {
+		List<String> errors = new ArrayList<String>();
+		if(account.bankAccountId <= 0) {
+			errors.add("@C_BP_BankAccount_ID@ @NotFound@: " + account.partnerInfo);
+			return errors;
+		}
+		if(Util.isEmpty(account.accountNo, true)) {
+			errors.add("@AccountNo@ @NotFound@: " + account.partnerInfo);
+		} else if(exporter.getAccountNoLength() > 0) {
+			String accountNo = exporter.processValue(account.accountNo).replace(" ", "");
+			if(accountNo.length() != exporter.getAccountNoLength()
+					|| !accountNo.chars().allMatch(Character::isDigit)) {
+				errors.add("@AccountNo@ @Invalid@: " + account.partnerInfo + " (" + account.accountNo + ")");
+			}
+		}
+		if(exporter.isAccountNameMandatory()
+				&& Util.isEmpty(account.accountName, true)) {
+			errors.add("@A_Name@ @NotFound@: " + account.partnerInfo);
+		}
+		if(exporter.isTaxIdMandatory()
+				&& Util.isEmpty(account.taxId, true)) {
+			errors.add("@BPTaxID@ @NotFound@: " + account.partnerInfo);
+		}
+		if(exporter.isRoutingNoMandatory()
+				&& Util.isEmpty(account.routingNo, true)) {
+			errors.add("@RoutingNo@ @NotFound@: " + account.partnerInfo);
+		}
+		return errors;
+	}
+
+	/**
+	 * Account data of check
+	 */
+	private static class Account {
+		private String partnerInfo;
+		private int bankAccountId;
+		private String accountNo;
+		private String accountName;
+		private String taxId;
+		private String routingNo;
+	}
+}
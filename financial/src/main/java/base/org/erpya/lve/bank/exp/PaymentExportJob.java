@@ -0,0 +1,226 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.bank.exp;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.compiere.model.MPaySelectionCheck;
+import org.compiere.util.CLogger;
+
+/**
+ * Background job of payment export, it is created and started by {@link PaymentExportService}.
+ * The progress is the quantity of lines written and the cancel is verified by exporter before
+ * write each line.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class PaymentExportJob implements Runnable {
+
+	/**	Status Queued	*/
+	public static final String STATUS_Queued = "QU";
+	/**	Status Running	*/
+	public static final String STATUS_Running = "RU";
+	/**	Status Completed	*/
+	public static final String STATUS_Completed = "CO";
+	/**	Status Completed from Cache	*/
+	public static final String STATUS_Cached = "CA";
+	/**	Status Cancelled	*/
+	public static final String STATUS_Cancelled = "CL";
+	/**	Status Error	*/
+	public static final String STATUS_Error = "ER";
+	/**	Exporter	*/
+	private final LVEPaymentExportList exporter;
+	/**	Checks	*/
+	private final List<MPaySelectionCheck> checks;
+	/**	File	*/
+	private final File file;
+	/**	Done signal	*/
+	private final CountDownLatch done = new CountDownLatch(1);
+	/**	Status	*/
+	private volatile String status = STATUS_Queued;
+	/**	Fingerprint	*/
+	private volatile String fingerprint;
+	/**	Exported file name	*/
+	private volatile String fileName;
+	/**	Exported file names, for split export the manifest is the last	*/
+	private volatile List<String> fileNames = Collections.emptyList();
+	/**	Exported payments	*/
+	private volatile int exportedPayments = 0;
+	/**	Error	*/
+	private volatile String error;
+	/** Logger */
+	private static CLogger log = CLogger.getCLogger(PaymentExportJob.class);
+
+	/**
+	 * Default constructor
+	 * @param exporter
+	 * @param checks
+	 * @param file
+	 */
+	public PaymentExportJob(LVEPaymentExportList exporter, List<MPaySelectionCheck> checks, File file) {
+		this.exporter = exporter;
+		this.checks = checks;
+		this.file = file;
+	}
+
+	@Override
+	public void run() {
+		status = STATUS_Running;
+		try {
+			if(checks == null
+					|| checks.isEmpty()) {
+				status = STATUS_Completed;
+				return;
+			}
+			int clientId = checks.get(0).getAD_Client_ID();
+			Properties metadata = null;
+			if(exporter.isCacheable()) {
+				fingerprint = PaymentExportService.getFingerprint(exporter, checks);
+				metadata = PaymentExportService.restore(clientId, fingerprint, exporter, file);
+			}
+			if(metadata != null) {
+				fileName = PaymentExportService.getFileName(metadata);
+				fileNames = Collections.singletonList(fileName);
+				exportedPayments = PaymentExportService.getExportedPayments(metadata);
+				status = STATUS_Cached;
+				return;
+			}
+			//	Validate all accounts before open file
+			String validationError = exporter.validatePaySelection(checks);
+			if(validationError != null
+					&& validationError.length() > 0) {
+				error = validationError;
+				exportedPayments = -1;
+				status = STATUS_Error;
+				return;
+			}
+			exporter.setValidated(true);
+			StringBuffer exportError = new StringBuffer();
+			exportedPayments = exporter.exportToFiles(checks, file, exportError);
+			fileName = exporter.getExportFileName();
+			fileNames = exporter.getExportFileNames();
+			if(exporter.isCancelled()) {
+				fileNames.forEach(exportedFileName -> new File(exportedFileName).delete());
+				status = STATUS_Cancelled;
+				return;
+			}
+			if(exportError.length() > 0
+					|| exportedPayments < 0) {
+				error = exportError.toString();
+				status = STATUS_Error;
+				return;
+			}
+			//	Only single files are cached
+			if(fingerprint != null
+					&& fileName != null
+					&& fileNames.size() == 1) {
+				PaymentExportService.store(clientId, fingerprint, fileName, exportedPayments);
+			}
+			status = STATUS_Completed;
+		} catch (Exception e) {
+			log.severe(e.getLocalizedMessage());
+			error = e.getLocalizedMessage();
+			status = STATUS_Error;
+		} finally {
+			done.countDown();
+		}
+	}
+
+	/**
+	 * Request cancel of job
+	 */
+	public void cancel() {
+		exporter.cancel();
+	}
+
+	/**
+	 * Wait for end of job
+	 * @param milliseconds maximum time for wait
+	 * @return true if the job is done
+	 * @throws InterruptedException
+	 */
+	public boolean waitFor(long milliseconds) throws InterruptedException {
+		return done.await(milliseconds, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Verify if job is done (completed, cached, cancelled or with error)
+	 * @return
+	 */
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	/**
+	 * Get Status
+	 * @return
+	 */
+	public String getStatus() {
+		return status;
+	}
+
+	/**
+	 * Get Progress as lines written
+	 * @return
+	 */
+	public int getProgress() {
+		return exporter.getWrittenLines();
+	}
+
+	/**
+	 * Get Fingerprint of inputs
+	 * @return
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Get exported file name
+	 * @return
+	 */
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * Get all exported file names, for split export the manifest is the last
+	 * @return
+	 */
+	public List<String> getFileNames() {
+		return fileNames;
+	}
+
+	/**
+	 * Get exported payments
+	 * @return
+	 */
+	public int getExportedPayments() {
+		return exportedPayments;
+	}
+
+	/**
+	 * Get Error
+	 * @return
+	 */
+	public String getError() {
+		return error;
+	}
+}
@@ -0,0 +1,326 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.bank.exp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.compiere.model.MPaySelectionCheck;
+import org.compiere.model.MSysConfig;
+import org.compiere.util.CLogger;
+import org.compiere.util.DB;
+import org.erpya.lve.util.LVEUtil;
+
+/**
+ * Service for run payment exports as background jobs. Each export is identified by a fingerprint
+ * of its inputs (exporter class, layout version, checks, pay selection lines, business partner
+ * bank accounts, banks, bank account, organization info and day of export), when a file with the same
+ * fingerprint exists on local cache it is copied instead of generate it again.
+ * The cache folder is only readable by owner (the folder is not used if it is shared) and the files
+ * older than one day are removed, they can't be used because day of export is part of fingerprint.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class PaymentExportService {
+
+	/**	Default cache folder name on temporary folder	*/
+	private static final String DEFAULT_CACHE_FOLDER = "LVE_PaymentExportCache";
+	/**	Extension for cached file	*/
+	private static final String FILE_EXTENSION = ".txt";
+	/**	Extension for cached metadata	*/
+	private static final String METADATA_EXTENSION = ".properties";
+	/**	Metadata Exported Payments	*/
+	private static final String METADATA_ExportedPayments = "ExportedPayments";
+	/**	Metadata File Name	*/
+	private static final String METADATA_FileName = "FileName";
+	/**	Separator for fingerprint values	*/
+	private static final char SEPARATOR = '|';
+	/**	Expiration of cached files (milliseconds)	*/
+	private static final long CACHE_EXPIRATION = 24 * 60 * 60 * 1000;
+	/**	Permissions of cache folder	*/
+	private static final Set<PosixFilePermission> FOLDER_PERMISSIONS = PosixFilePermissions.fromString("rwx------");
+	/** Logger */
+	private static CLogger log = CLogger.getCLogger(PaymentExportService.class);
+
+	/**
+	 * Submit a export as background job, the job is started immediately
+	 * @param exporter new instance of exporter, it is not shared with other jobs
+	 * @param checks
+	 * @param file
+	 * @return
+	 */
+	public static PaymentExportJob submit(LVEPaymentExportList exporter, List<MPaySelectionCheck> checks, File file) {
+		PaymentExportJob job = new PaymentExportJob(exporter, checks, file);
+		Thread thread = new Thread(job, "PaymentExport-" + exporter.getClass().getSimpleName());
+		thread.setDaemon(true);
+		thread.start();
+		return job;
+	}
+
+	/**
+	 * Get Cache Folder, it is created only for owner if not exist
+	 * @param clientId
+	 * @return folder or null if it can't be created or it is readable by other users
+	 */
+	public static File getCacheFolder(int clientId) {
+		String folderName = MSysConfig.getValue(LVEUtil.SYSCONFIG_LVE_PaymentExportCacheFolder, clientId);
+		Path folder = null;
+		if(folderName == null
+				|| folderName.trim().length() == 0) {
+			folder = Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_CACHE_FOLDER + "_" + System.getProperty("user.name"));
+		} else {
+			folder = Paths.get(folderName.trim());
+		}
+		try {
+			boolean isPosix = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+			if(!Files.isDirectory(folder)) {
+				if(isPosix) {
+					Files.createDirectories(folder, PosixFilePermissions.asFileAttribute(FOLDER_PERMISSIONS));
+				} else {
+					Files.createDirectories(folder);
+					File folderAsFile = folder.toFile();
+					folderAsFile.setReadable(false, false);
+					folderAsFile.setWritable(false, false);
+					folderAsFile.setExecutable(false, false);
+					folderAsFile.setReadable(true, true);
+					folderAsFile.setWritable(true, true);
+					folderAsFile.setExecutable(true, true);
+				}
+			}
+			//	Don't use a folder shared with other users
+			if(isPosix
+					&& (!Files.getOwner(folder).getName().equals(System.getProperty("user.name"))
+							|| !FOLDER_PERMISSIONS.containsAll(Files.getPosixFilePermissions(folder)))) {
+				log.warning("Payment export cache is disabled, folder is not private: " + folder);
+				return null;
+			}
+		} catch (IOException | UnsupportedOperationException | SecurityException e) {
+			log.warning("Payment export cache is disabled, folder can not be created: " + e.getLocalizedMessage());
+			return null;
+		}
+		return folder.toFile();
+	}
+
+	/**
+	 * Remove expired files of cache folder
+	 * @param cacheFolder
+	 */
+	private static void removeExpired(File cacheFolder) {
+		File[] files = cacheFolder.listFiles();
+		if(files == null) {
+			return;
+		}
+		long expiration = System.currentTimeMillis() - CACHE_EXPIRATION;
+		for(File cachedFile : files) {
+			if(cachedFile.isFile()
+					&& cachedFile.lastModified() < expiration
+					&& !cachedFile.delete()) {
+				log.fine("Expired payment export can not be removed: " + cachedFile);
+			}
+		}
+	}
+
+	/**
+	 * Get fingerprint of export inputs as SHA-256 hexadecimal
+	 * @param exporter
+	 * @param checks
+	 * @return
+	 */
+	public static String getFingerprint(LVEPaymentExportList exporter, List<MPaySelectionCheck> checks) {
+		MPaySelectionCheck firstCheck = checks.get(0);
+		String transactionName = firstCheck.get_TrxName();
+		StringBuffer values = new StringBuffer();
+		values.append(exporter.getClass().getName()).append(SEPARATOR)
+			.append(exporter.getLayoutVersion()).append(SEPARATOR)
+			.append(exporter.getSplitType(firstCheck.getAD_Client_ID())).append(SEPARATOR)
+			.append(exporter.getMaxRecordsByFile(firstCheck.getAD_Client_ID())).append(SEPARATOR)
+			.append(new SimpleDateFormat("yyyyMMdd").format(new Date())).append(SEPARATOR);
+		//	Header: pay selection, bank account and organization
+		List<Object> headerParameters = new ArrayList<Object>();
+		headerParameters.add(firstCheck.getC_PaySelection_ID());
+		DB.runResultSet(transactionName, "SELECT ps.C_PaySelection_ID, ps.Updated, ps.TotalAmt, ps.PayDate, ba.Updated, b.Updated, oi.Updated "
+				+ "FROM C_PaySelection ps "
+				+ "INNER JOIN C_BankAccount ba ON(ba.C_BankAccount_ID = ps.C_BankAccount_ID) "
+				+ "INNER JOIN C_Bank b ON(b.C_Bank_ID = ba.C_Bank_ID) "
+				+ "LEFT JOIN AD_OrgInfo oi ON(oi.AD_Org_ID = ps.AD_Org_ID) "
+				+ "WHERE ps.C_PaySelection_ID = ?", headerParameters, resultSet -> {
+			appendRows(values, resultSet);
+		}).onFailure(throwable -> {
+			throw new AdempiereException(throwable);
+		});
+		//	Checks with lines, business partner accounts, banks of accounts (routing number and swift code)
+		//	and contacts of accounts (phone and email written by some layouts)
+		String checkList = checks.stream()
+				.map(check -> String.valueOf(check.getC_PaySelectionCheck_ID()))
+				.collect(Collectors.joining(", "));
+		DB.runResultSet(transactionName, "SELECT psc.C_PaySelectionCheck_ID, psc.Updated, psc.PayAmt, psc.DocumentNo, psc.C_BPartner_ID, psc.C_BP_BankAccount_ID, bp.Updated, "
+				+ "(SELECT COUNT(*) || '-' || MAX(psl.Updated) FROM C_PaySelectionLine psl WHERE psl.C_PaySelectionCheck_ID = psc.C_PaySelectionCheck_ID), "
+				+ "(SELECT COUNT(*) || '-' || MAX(bpa.Updated) FROM C_BP_BankAccount bpa WHERE bpa.C_BPartner_ID = psc.C_BPartner_ID), "
+				+ "(SELECT MAX(bk.Updated) FROM C_BP_BankAccount bpa INNER JOIN C_Bank bk ON(bk.C_Bank_ID = bpa.C_Bank_ID) WHERE bpa.C_BPartner_ID = psc.C_BPartner_ID), "
+				+ "(SELECT MAX(u.Updated) FROM C_BP_BankAccount bpa INNER JOIN AD_User u ON(u.AD_User_ID = bpa.AD_User_ID) WHERE bpa.C_BPartner_ID = psc.C_BPartner_ID) "
+				+ "FROM C_PaySelectionCheck psc "
+				+ "INNER JOIN C_BPartner bp ON(bp.C_BPartner_ID = psc.C_BPartner_ID) "
+				+ "WHERE psc.C_PaySelectionCheck_ID IN(" + checkList + ") "
+				+ "ORDER BY psc.C_PaySelectionCheck_ID", new ArrayList<Object>(), resultSet -> {
+			appendRows(values, resultSet);
+		}).onFailure(throwable -> {
+			throw new AdempiereException(throwable);
+		});
+		//	Digest
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest(values.toString().getBytes(StandardCharsets.UTF_8));
+			StringBuffer fingerprint = new StringBuffer();
+			for(byte value : hash) {
+				fingerprint.append(String.format("%02x", value));
+			}
+			return fingerprint.toString();
+		} catch (Exception e) {
+			throw new AdempiereException(e);
+		}
+	}
+
+	/**
+	 * Append all columns of rows to fingerprint values
+	 * @param values
+	 * @param resultSet
+	 * @throws SQLException
+	 */
+	private static void appendRows(StringBuffer values, ResultSet resultSet) throws SQLException {
+		int columns = resultSet.getMetaData().getColumnCount();
+		while(resultSet.next()) {
+			for(int column = 1; column <= columns; column++) {
+				values.append(resultSet.getString(column)).append(SEPARATOR);
+			}
+		}
+	}
+
+	/**
+	 * Copy cached file to folder of export if exist
+	 * @param clientId
+	 * @param fingerprint
+	 * @param exporter
+	 * @param file
+	 * @return metadata of cached export or null if it is not cached
+	 */
+	public static Properties restore(int clientId, String fingerprint, LVEPaymentExportList exporter, File file) {
+		File cacheFolder = getCacheFolder(clientId);
+		if(cacheFolder == null) {
+			return null;
+		}
+		File cachedFile = new File(cacheFolder, fingerprint + FILE_EXTENSION);
+		File metadataFile = new File(cacheFolder, fingerprint + METADATA_EXTENSION);
+		if(!cachedFile.exists()
+				|| !metadataFile.exists()) {
+			return null;
+		}
+		Properties metadata = new Properties();
+		try (InputStream input = new FileInputStream(metadataFile)) {
+			metadata.load(input);
+			String fileName = metadata.getProperty(METADATA_FileName);
+			if(fileName == null) {
+				return null;
+			}
+			File target = new File(exporter.getParentFileName(file), fileName);
+			Files.copy(cachedFile.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			metadata.setProperty(METADATA_FileName, target.getAbsolutePath());
+			log.fine("Payment export restored from cache: " + fingerprint);
+			return metadata;
+		} catch (IOException e) {
+			log.warning("Cached payment export can not be restored: " + e.getLocalizedMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Store generated file on cache
+	 * @param clientId
+	 * @param fingerprint
+	 * @param fileName
+	 * @param exportedPayments
+	 */
+	public static void store(int clientId, String fingerprint, String fileName, int exportedPayments) {
+		File exportedFile = new File(fileName);
+		if(!exportedFile.exists()) {
+			return;
+		}
+		File cacheFolder = getCacheFolder(clientId);
+		if(cacheFolder == null) {
+			return;
+		}
+		removeExpired(cacheFolder);
+		try {
+			//	Write on temporary file before move, for avoid partial files on cache
+			File temporaryFile = File.createTempFile(fingerprint, FILE_EXTENSION, cacheFolder);
+			Files.copy(exportedFile.toPath(), temporaryFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			Files.move(temporaryFile.toPath(), new File(cacheFolder, fingerprint + FILE_EXTENSION).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			Properties metadata = new Properties();
+			metadata.setProperty(METADATA_ExportedPayments, String.valueOf(exportedPayments));
+			metadata.setProperty(METADATA_FileName, exportedFile.getName());
+			File temporaryMetadata = File.createTempFile(fingerprint, METADATA_EXTENSION, cacheFolder);
+			try (OutputStream output = new FileOutputStream(temporaryMetadata)) {
+				metadata.store(output, null);
+			}
+			Files.move(temporaryMetadata.toPath(), new File(cacheFolder, fingerprint + METADATA_EXTENSION).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			log.warning("Payment export can not be cached: " + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Get exported payments from metadata
+	 * @param metadata
+	 * @return
+	 */
+	public static int getExportedPayments(Properties metadata) {
+		try {
+			return Integer.parseInt(metadata.getProperty(METADATA_ExportedPayments, "0"));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * Get file name from metadata
+	 * @param metadata
+	 * @return
+	 */
+	public static String getFileName(Properties metadata) {
+		return metadata.getProperty(METADATA_FileName);
+	}
+}
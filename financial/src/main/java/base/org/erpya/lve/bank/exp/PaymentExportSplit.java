@@ -0,0 +1,301 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.bank.exp;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.compiere.model.MBPBankAccount;
+import org.compiere.model.MBank;
+import org.compiere.model.MBankAccount;
+import org.compiere.model.MPaySelection;
+import org.compiere.model.MPaySelectionCheck;
+import org.compiere.model.MSysConfig;
+import org.compiere.util.CLogger;
+import org.compiere.util.Env;
+import org.erpya.lve.util.LVEUtil;
+
+/**
+ * Split of payment export in many files. The checks are partitioned by a key (branch or account type)
+ * and each partition is cut by max records of bank, then each partition is written by a new instance
+ * of exporter in parallel, so each file has its own header, totals and batch number (see
+ * LVEPaymentExportList.getBatchNo). Each worker reads its own copies of checks with own context and
+ * without transaction, the checks of caller are not shared between threads. A manifest with records,
+ * amount and SHA-256 checksum of each file is written after all files.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class PaymentExportSplit {
+
+	/**	Split Type None	*/
+	public static final String SPLITTYPE_None = "N";
+	/**	Split Type Max Records only	*/
+	public static final String SPLITTYPE_MaxRecords = "MR";
+	/**	Split Type Branch (organization of payroll movement or document)	*/
+	public static final String SPLITTYPE_Branch = "BR";
+	/**	Split Type Account Type of business partner bank account	*/
+	public static final String SPLITTYPE_AccountType = "AT";
+	/**	Separator of manifest	*/
+	private static final String SEPARATOR = ";";
+	/** Logger */
+	private static CLogger log = CLogger.getCLogger(PaymentExportSplit.class);
+
+	/**
+	 * Partition checks by split type of exporter and max records by file
+	 * @param exporter
+	 * @param checks
+	 * @return list of partitions in order of key and check, only one partition if the export is not split
+	 */
+	public static List<List<MPaySelectionCheck>> partition(LVEPaymentExportList exporter, List<MPaySelectionCheck> checks) {
+		List<List<MPaySelectionCheck>> partitions = new ArrayList<List<MPaySelectionCheck>>();
+		if(checks == null
+				|| checks.isEmpty()) {
+			return partitions;
+		}
+		int clientId = checks.get(0).getAD_Client_ID();
+		String splitType = Optional.ofNullable(exporter.getSplitType(clientId)).orElse(SPLITTYPE_None);
+		int maxRecords = exporter.getMaxRecordsByFile(clientId);
+		if(splitType.equals(SPLITTYPE_None)
+				|| (splitType.equals(SPLITTYPE_MaxRecords) && (maxRecords <= 0 || checks.size() <= maxRecords))) {
+			partitions.add(checks);
+			return partitions;
+		}
+		//	Group by key keeping order of checks
+		Map<String, List<MPaySelectionCheck>> checksByKey = new LinkedHashMap<String, List<MPaySelectionCheck>>();
+		Map<Integer, String> keys = getKeys(exporter, splitType, checks);
+		checks.forEach(check -> checksByKey.computeIfAbsent(Optional.ofNullable(keys.get(check.getC_PaySelectionCheck_ID())).orElse(""), key -> new ArrayList<MPaySelectionCheck>()).add(check));
+		//	Cut by max records
+		checksByKey.values().forEach(checksOfKey -> {
+			if(maxRecords <= 0) {
+				partitions.add(checksOfKey);
+				return;
+			}
+			for(int fromIndex = 0; fromIndex < checksOfKey.size(); fromIndex += maxRecords) {
+				partitions.add(checksOfKey.subList(fromIndex, Math.min(fromIndex + maxRecords, checksOfKey.size())));
+			}
+		});
+		return partitions;
+	}
+
+	/**
+	 * Get key of partition for each check
+	 * @param exporter
+	 * @param splitType
+	 * @param checks
+	 * @return map of key by C_PaySelectionCheck_ID
+	 */
+	private static Map<Integer, String> getKeys(LVEPaymentExportList exporter, String splitType, List<MPaySelectionCheck> checks) {
+		Map<Integer, String> keys = new HashMap<Integer, String>();
+		MPaySelectionCheck firstCheck = checks.get(0);
+		if(splitType.equals(SPLITTYPE_Branch)) {
+			//	The organization of first line is the branch
+			PaySelectionDetail detail = exporter.getPaySelectionDetail(firstCheck);
+			checks.forEach(check -> {
+				List<PaySelectionDetail.Line> lines = detail.getLines(check.getC_PaySelectionCheck_ID());
+				if(!lines.isEmpty()) {
+					keys.put(check.getC_PaySelectionCheck_ID(), String.valueOf(lines.get(0).getAD_Org_ID()));
+				}
+			});
+		} else if(splitType.equals(SPLITTYPE_AccountType)) {
+			//	The account of check used by layout
+			checks.forEach(check -> {
+				MBPBankAccount bankAccount = exporter.getAccountOfCheck(check);
+				if(bankAccount != null) {
+					keys.put(check.getC_PaySelectionCheck_ID(), bankAccount.getBankAccountType());
+				}
+			});
+		}
+		return keys;
+	}
+
+	/**
+	 * Export checks as many files, a file for each partition
+	 * @param exporter parent exporter, it is used for create a new instance for each file
+	 * @param partitions
+	 * @param file
+	 * @param error
+	 * @return exported payments of all files or -1 if has errors
+	 */
+	public static int export(LVEPaymentExportList exporter, List<List<MPaySelectionCheck>> partitions, File file, StringBuffer error) {
+		MPaySelectionCheck firstCheck = partitions.get(0).get(0);
+		int maxThreads = Math.max(MSysConfig.getIntValue(LVEUtil.SYSCONFIG_LVE_PaymentExportMaxThreads, Runtime.getRuntime().availableProcessors(), firstCheck.getAD_Client_ID()), 1);
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(maxThreads, partitions.size()));
+		List<Callable<PartitionResult>> tasks = new ArrayList<Callable<PartitionResult>>();
+		for(int index = 0; index < partitions.size(); index++) {
+			//	Only identifiers are passed to worker
+			List<Integer> checkIds = new ArrayList<Integer>();
+			partitions.get(index).forEach(check -> checkIds.add(check.getC_PaySelectionCheck_ID()));
+			int fileNo = index + 1;
+			tasks.add(() -> exportPartition(exporter, firstCheck.getCtx(), checkIds, file, fileNo));
+		}
+		List<PartitionResult> results = new ArrayList<PartitionResult>();
+		try {
+			for(Future<PartitionResult> future : executor.invokeAll(tasks)) {
+				try {
+					results.add(future.get());
+				} catch (Exception e) {
+					Throwable cause = Optional.ofNullable(e.getCause()).orElse(e);
+					log.severe(cause.getLocalizedMessage());
+					error.append(Env.NL).append(cause.getLocalizedMessage());
+				}
+			}
+		} catch (InterruptedException e) {
+			exporter.cancel();
+			throw new AdempiereException("@Cancelled@");
+		} finally {
+			executor.shutdown();
+		}
+		//	Errors by file
+		int exportedPayments = 0;
+		for(PartitionResult result : results) {
+			if(result.error.length() > 0) {
+				error.append(Env.NL).append(result.fileName).append(": ").append(result.error);
+			}
+			if(result.exportedPayments > 0) {
+				exportedPayments += result.exportedPayments;
+			}
+			if(result.fileName != null) {
+				exporter.addExportFileName(result.fileName);
+			}
+		}
+		if(error.length() > 0
+				|| exporter.isCancelled()) {
+			return -1;
+		}
+		//	Manifest
+		MPaySelection paySelection = firstCheck.getParent();
+		MBankAccount bankAccount = MBankAccount.get(Env.getCtx(), paySelection.getC_BankAccount_ID());
+		MBank bank = MBank.get(Env.getCtx(), bankAccount.getC_Bank_ID());
+		String manifestName = exporter.getFileName(file, bank.getName(), paySelection.getDocumentNo() + "_Manifest");
+		writeManifest(manifestName, results);
+		exporter.addExportFileName(manifestName);
+		return exportedPayments;
+	}
+
+	/**
+	 * Export a partition with a new instance of exporter, the checks are read again with a copy of context and without transaction
+	 * @param exporter
+	 * @param parentContext
+	 * @param checkIds
+	 * @param file
+	 * @param fileNo
+	 * @return
+	 * @throws Exception
+	 */
+	private static PartitionResult exportPartition(LVEPaymentExportList exporter, Properties parentContext, List<Integer> checkIds, File file, int fileNo) throws Exception {
+		Properties context = new Properties();
+		context.putAll(parentContext);
+		List<MPaySelectionCheck> checks = new ArrayList<MPaySelectionCheck>();
+		checkIds.forEach(checkId -> checks.add(new MPaySelectionCheck(context, checkId, null)));
+		LVEPaymentExportList partitionExporter = exporter.getClass().newInstance();
+		partitionExporter.setFileNameSuffix("_" + fileNo);
+		partitionExporter.setFileNo(fileNo);
+		partitionExporter.setValidated(true);
+		exporter.addPartitionExporter(partitionExporter);
+		PartitionResult result = new PartitionResult();
+		result.records = checks.size();
+		result.totalAmt = checks.stream()
+				.map(check -> Optional.ofNullable(check.getPayAmt()).orElse(Env.ZERO))
+				.reduce(Env.ZERO, BigDecimal::add);
+		if(!exporter.isCancelled()) {
+			result.exportedPayments = partitionExporter.exportToFile(checks, file, result.error);
+		}
+		result.fileName = partitionExporter.getExportFileName();
+		if(result.fileName != null
+				&& result.error.length() == 0
+				&& !exporter.isCancelled()) {
+			result.checksum = getChecksum(new File(result.fileName));
+		}
+		return result;
+	}
+
+	/**
+	 * Write manifest of files
+	 * @param manifestName
+	 * @param results
+	 */
+	private static void writeManifest(String manifestName, List<PartitionResult> results) {
+		File manifest = new File(manifestName);
+		if(manifest.exists()) {
+			manifest.delete();
+		}
+		try (Writer writer = new BufferedWriter(new FileWriter(manifest))) {
+			writer.write("FileName" + SEPARATOR + "Records" + SEPARATOR + "TotalAmt" + SEPARATOR + "SHA-256");
+			for(PartitionResult result : results) {
+				writer.write(Env.NL);
+				writer.write(new File(result.fileName).getName() + SEPARATOR
+						+ result.records + SEPARATOR
+						+ result.totalAmt.toPlainString() + SEPARATOR
+						+ result.checksum);
+			}
+		} catch (IOException e) {
+			throw new AdempiereException(e);
+		}
+	}
+
+	/**
+	 * Get SHA-256 of file as hexadecimal
+	 * @param file
+	 * @return
+	 */
+	private static String getChecksum(File file) {
+		try (InputStream input = new FileInputStream(file)) {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] buffer = new byte[64 * 1024];
+			int read;
+			while((read = input.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+			StringBuffer checksum = new StringBuffer();
+			for(byte value : digest.digest()) {
+				checksum.append(String.format("%02x", value));
+			}
+			return checksum.toString();
+		} catch (Exception e) {
+			throw new AdempiereException(e);
+		}
+	}
+
+	/**
+	 * Result of a partition
+	 */
+	private static class PartitionResult {
+		private String fileName;
+		private int records;
+		private BigDecimal totalAmt = Env.ZERO;
+		private int exportedPayments = 0;
+		private String checksum = "";
+		private StringBuffer error = new StringBuffer();
+	}
+}
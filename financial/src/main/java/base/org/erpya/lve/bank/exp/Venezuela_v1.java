@@ -58,10 +58,32 @@ public class Venezuela_v1 extends LVEPaymentExportList {
 	public final static char LF  = (char) 0x0A;
 	public final static String CRLF  = "" + CR + LF; 
 	
+	/**
+	 * Batch number is cut to 8 characters on header
+	 */
+	@Override
+	public int getBatchNoLength() {
+		return 8;
+	}
+	
+	@Override
+	public boolean isAccountNameMandatory() {
+		return true;
+	}
+	
+	@Override
+	public boolean isTaxIdMandatory() {
+		return true;
+	}
+	
 	@Override
 	public int exportToFile(List<MPaySelectionCheck> checks, File file, StringBuffer error) {
 		if (checks == null || checks.size() == 0)
 			return 0;
+		//	Validate accounts
+		if(!validateAccounts(checks, error)) {
+			return getExportedPayments();
+		}
 		//	
 		try {
 			s_log.fine("Delete file if exist");
@@ -92,7 +114,7 @@ public class Venezuela_v1 extends LVEPaymentExportList {
 				addError(Msg.parseTranslation(Env.getCtx(), "@BankClientNo@ @NotFound@"));
 			}
 			//	
-			String paymentRequestNo = leftPadding(processValue(paySelection.getDocumentNo()), 8, "0", true);
+			String paymentRequestNo = leftPadding(processValue(getBatchNo(paySelection)), 8, "0", true);
 			//	Process Person Type
 			String orgPersonType = "";
 			String orgTaxId = processValue(orgInfo.getTaxID().replace("-", ""));
@@ -167,15 +189,11 @@ public class Venezuela_v1 extends LVEPaymentExportList {
 						bPPersonType = bPTaxId.substring(0, 1);
 						bPTaxId = bPTaxId.replaceAll("\\D+","");
 						bPTaxId = leftPadding(bPTaxId, 9, "0", true);
-					} else {
-						addError(Msg.parseTranslation(Env.getCtx(), "@BPTaxID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 					}
 					//	Process Account Name
 					String bPName = processValue(bpAccount.getA_Name());
 					if(Optional.ofNullable(bPName).isPresent()) {
 						bPName = rightPadding(bPName, 30, " ", true);
-					} else {
-						addError(Msg.parseTranslation(Env.getCtx(), "@A_Name@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 					}
 					//	Constant
 					String accountType = leftPadding("", 2, "0");
@@ -183,8 +201,6 @@ public class Venezuela_v1 extends LVEPaymentExportList {
 					String bPAccountNo = processValue(bpAccount.getAccountNo());
 					if(Optional.ofNullable(bPAccountNo).isPresent()) {
 						bPAccountNo = rightPadding(bPAccountNo, 20, " ", true);
-					} else {
-						addError(Msg.parseTranslation(Env.getCtx(), "@AccountNo@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 					}
 					//	Payment Type
 					MBank bpBank = MBank.get(Env.getCtx(), bpAccount.getC_Bank_ID());
@@ -225,8 +241,6 @@ public class Venezuela_v1 extends LVEPaymentExportList {
 						.append(constantSpace);	//	Fixed Lenght
 					s_log.fine("Write Line");
 					writeLine(line.toString());
-				} else {
-					addError(Msg.parseTranslation(Env.getCtx(), "@C_BP_BankAccount_ID@ @NotFound@: " + bpartner.getValue() + " - " + bpartner.getName()));
 				}
 			}
 			//	Totals Register
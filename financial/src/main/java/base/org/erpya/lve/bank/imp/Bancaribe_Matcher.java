@@ -30,6 +30,7 @@ import org.adempiere.core.domains.models.X_I_BankStatement;
 import org.compiere.util.DB;
 import org.compiere.util.Env;
 import org.compiere.util.Util;
+import org.erpya.lve.util.ReconciliationCandidate;
 
 public class Bancaribe_Matcher implements BankStatementMatcherInterface {
 
@@ -56,7 +57,7 @@ public class Bancaribe_Matcher implements BankStatementMatcherInterface {
 		BankStatementMatchInfo info = new BankStatementMatchInfo();
 		String ORDERVALUE = " DESC NULLS LAST";
 		StringBuffer sql = new StringBuffer("SELECT p.C_Payment_ID "
-				+ "FROM C_Payment p "
+				+ "FROM " + ReconciliationCandidate.Table_Name + " p "
 				+ "WHERE p.AD_Client_ID = ? ");
 		if(paymentWhereClause.length() > 0) {
 			sql.append(paymentWhereClause);
@@ -111,10 +112,8 @@ public class Bancaribe_Matcher implements BankStatementMatcherInterface {
 		}
 		//	Validate amount for it
 		boolean isReceipt = ibs.getTrxAmt().compareTo(Env.ZERO) > 0;
-		where.append("(p.PayAmt = ? ");
-		params.add(isReceipt
-				? ibs.getTrxAmt()
-						: ibs.getTrxAmt().negate());
+		where.append("(p.SignedAmt = ? ");
+		params.add(ibs.getTrxAmt());
 		//	Add Receipt
 		where.append("AND p.IsReceipt = ? )");
 		params.add(isReceipt);
@@ -125,7 +124,7 @@ public class Bancaribe_Matcher implements BankStatementMatcherInterface {
 		where.append("(p.C_BankAccount_ID = ?)");
 		params.add(ibs.getC_BankAccount_ID());
 		//	Additional validation
-		where.append(" AND p.DocStatus IN('CO', 'CL') ");
+		where.append(" AND p.IsStaged = 'N'");
 		where.append(" AND NOT EXISTS(SELECT 1 FROM I_BankStatement i WHERE i.C_Payment_ID = p.C_Payment_ID) ");
 		//	Add Order By
 		orderByClause.append("p.DateTrx ASC");
@@ -19,7 +19,6 @@ import java.math.BigDecimal;
 import java.sql.Timestamp;
 
 import org.compiere.util.Util;
-import org.spin.util.impexp.BankTransactionAbstract;
 
 /**
  * Custom format for Bancaribe Bank Transaction spared by ;
@@ -27,7 +26,7 @@ import org.spin.util.impexp.BankTransactionAbstract;
  * @author Yamel Senih, ysenih@erpya.com , http://www.erpya.com
  * @see https://github.com/adempiere/adempiere/issues/1701
  */
-public class Bancaribe_Transaction extends BankTransactionAbstract {
+public class Bancaribe_Transaction extends TypedBankTransaction {
 	/**	Value Date [dddMMyyyy]	*/
 	public static final String LINE_TRANSACTION_Date = "TrxDate";
 	/**	Transaction type Transaction type (description)	*/ 
@@ -20,14 +20,13 @@ import java.sql.Timestamp;
 
 import org.compiere.util.Env;
 import org.compiere.util.Util;
-import org.spin.util.impexp.BankTransactionAbstract;
 
 /**
  * Se agrega cargador de extracto genérico Bancaribe
  * @author Yamel Senih, ysenih@erpya.com , http://www.erpya.com
  * @see https://github.com/adempiere/LVE/issues/61
  */
-public abstract class Bancaribe_v1 extends BankTransactionAbstract {
+public abstract class Bancaribe_v1 extends TypedBankTransaction {
 	/**	Value Date [dddMMyyyy]	*/
 	private static final String LINE_TRANSACTION_Date = "TrxDate";
 	/**	Transaction type Transaction type (description)	*/ 
@@ -0,0 +1,159 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.bank.imp;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * Typed values of a bank statement line. The values are kept as they are parsed by the layout
+ * (the same instance is returned by each getter), so a read does not cast or create objects.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public final class BankTransactionRecord {
+
+	/**	Transaction Date	*/
+	private Timestamp trxDate;
+	/**	Value Date	*/
+	private Timestamp valueDate;
+	/**	Amount	*/
+	private BigDecimal amount;
+	/**	Transaction Type	*/
+	private String trxType;
+	/**	Memo	*/
+	private String memo;
+	/**	Concept	*/
+	private String concept;
+	/**	Reference No	*/
+	private String referenceNo;
+
+	/**
+	 * Set Transaction Date
+	 * @param date
+	 */
+	public void setTrxDate(Timestamp date) {
+		trxDate = date;
+	}
+
+	/**
+	 * Get Transaction Date
+	 * @return
+	 */
+	public Timestamp getTrxDate() {
+		return trxDate;
+	}
+
+	/**
+	 * Set Value Date
+	 * @param date
+	 */
+	public void setValueDate(Timestamp date) {
+		valueDate = date;
+	}
+
+	/**
+	 * Get Value Date
+	 * @return
+	 */
+	public Timestamp getValueDate() {
+		return valueDate;
+	}
+
+	/**
+	 * Set Amount
+	 * @param value
+	 */
+	public void setAmount(BigDecimal value) {
+		amount = value;
+	}
+
+	/**
+	 * Get Amount
+	 * @return
+	 */
+	public BigDecimal getAmount() {
+		return amount;
+	}
+
+	/**
+	 * Set Transaction Type
+	 * @param value
+	 */
+	public void setTrxType(String value) {
+		trxType = value;
+	}
+
+	/**
+	 * Get Transaction Type
+	 * @return
+	 */
+	public String getTrxType() {
+		return trxType;
+	}
+
+	/**
+	 * Set Memo
+	 * @param value
+	 */
+	public void setMemo(String value) {
+		memo = value;
+	}
+
+	/**
+	 * Get Memo
+	 * @return
+	 */
+	public String getMemo() {
+		return memo;
+	}
+
+	/**
+	 * Set Concept
+	 * @param value
+	 */
+	public void setConcept(String value) {
+		concept = value;
+	}
+
+	/**
+	 * Get Concept
+	 * @return
+	 */
+	public String getConcept() {
+		return concept;
+	}
+
+	/**
+	 * Set Reference No
+	 * @param value
+	 */
+	public void setReferenceNo(String value) {
+		referenceNo = value;
+	}
+
+	/**
+	 * Get Reference No
+	 * @return
+	 */
+	public String getReferenceNo() {
+		return referenceNo;
+	}
+
+	@Override
+	public String toString() {
+		return "BankTransactionRecord [TrxDate=" + trxDate + ", Amount=" + amount + ", TrxType=" + trxType + ", ReferenceNo=" + referenceNo + "]";
+	}
+}
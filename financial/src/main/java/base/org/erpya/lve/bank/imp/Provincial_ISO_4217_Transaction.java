@@ -23,7 +23,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.compiere.util.Env;
 import org.compiere.util.Util;
-import org.spin.util.impexp.BankTransactionAbstract;
 
 /**
  * Custom format for Provincial Bank Transaction
@@ -32,7 +31,7 @@ import org.spin.util.impexp.BankTransactionAbstract;
  * <li> FR [ 1701 ] Add support to MT940 format
  * @see https://github.com/adempiere/adempiere/issues/1701
  */
-public class Provincial_ISO_4217_Transaction extends BankTransactionAbstract {
+public class Provincial_ISO_4217_Transaction extends TypedBankTransaction {
 	/**	Valid Line start */
 	public static final String VALID_LINE_FLAG = "22,";
 	/**	Transaction Date [yyMMdd]	*/
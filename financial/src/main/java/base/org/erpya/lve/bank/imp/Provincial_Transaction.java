@@ -20,7 +20,6 @@ import java.sql.Timestamp;
 
 import org.compiere.util.Env;
 import org.compiere.util.Util;
-import org.spin.util.impexp.BankTransactionAbstract;
 
 /**
  * Custom format for Provincial Bank Transaction
@@ -29,7 +28,7 @@ import org.spin.util.impexp.BankTransactionAbstract;
  * <li> FR [ 1701 ] Add support to MT940 format
  * @see https://github.com/adempiere/adempiere/issues/1701
  */
-public class Provincial_Transaction extends BankTransactionAbstract {
+public class Provincial_Transaction extends TypedBankTransaction {
 	/**	Ignore it line because is a first line as head */
 	public static final String HEAD_REFERENCE_FIRST_LINE_FLAG = "Fecha;Referencia;";
 	/**	Value Date [dddMMyyyy]	*/
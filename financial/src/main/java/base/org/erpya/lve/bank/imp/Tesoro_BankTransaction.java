@@ -18,7 +18,6 @@ package org.erpya.lve.bank.imp;
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import org.compiere.util.Util;
-import org.spin.util.impexp.BankTransactionAbstract;
 
 /**
  * Custom format for Tesoro Bank Transaction
@@ -27,7 +26,7 @@ import org.spin.util.impexp.BankTransactionAbstract;
  * <li> FR [ 1701 ] Add support to MT940 format
  * @see https://github.com/adempiere/adempiere/issues/1701
  */
-public class Tesoro_BankTransaction extends BankTransactionAbstract {
+public class Tesoro_BankTransaction extends TypedBankTransaction {
 	/**	Ignore it line because is a first line as head */
 	public static final String HEAD_REFERENCE_FIRST_LINE_FLAG = "Fecha";
 	/**	Value Date [dddMMyyyy]	*/
@@ -21,7 +21,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import org.compiere.util.Env;
 import org.compiere.util.Util;
-import org.spin.util.impexp.BankTransactionAbstract;
 
 /**
  * Custom format for Tesoro Bank Transaction
@@ -30,7 +29,7 @@ import org.spin.util.impexp.BankTransactionAbstract;
  * <li> FR [ 1701 ] Add support to MT940 format
  * @see https://github.com/adempiere/adempiere/issues/1701
  */
-public class Tesoro_BankTransaction_v1 extends BankTransactionAbstract {
+public class Tesoro_BankTransaction_v1 extends TypedBankTransaction {
 	/**	Ignore it line because is a first line as head */
 	public static final String HEAD_REFERENCE_FIRST_LINE_FLAG = "Fecha";
 	/**	Value Date [dddMMyyyy]	*/
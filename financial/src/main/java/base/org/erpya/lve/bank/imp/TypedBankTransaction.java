@@ -0,0 +1,144 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.bank.imp;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+import org.spin.util.impexp.BankTransactionAbstract;
+
+/**
+ * Bank transaction that keep the common values (transaction date, value date, amount, type, memo,
+ * concept and reference) on a typed record instead of the generic map of values. Other keys and
+ * values of other types (references as number) are kept by parent class.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public abstract class TypedBankTransaction extends BankTransactionAbstract {
+	/**	Transaction Date	*/
+	public static final String KEY_TrxDate = "TrxDate";
+	/**	Value Date	*/
+	public static final String KEY_ValueDate = "ValueDate";
+	/**	Amount	*/
+	public static final String KEY_Amount = "Amount";
+	/**	Transaction Type	*/
+	public static final String KEY_Type = "Type";
+	/**	Memo	*/
+	public static final String KEY_Memo = "Memo";
+	/**	Concept	*/
+	public static final String KEY_Concept = "Concept";
+	/**	Reference No	*/
+	public static final String KEY_ReferenceNo = "ReferenceNo";
+	/**	Typed values	*/
+	private final BankTransactionRecord record = new BankTransactionRecord();
+
+	/**
+	 * Set value on record if it is a typed key
+	 * @param key
+	 * @param value
+	 * @return true if the value is kept by record
+	 */
+	private boolean setTypedValue(String key, Object value) {
+		if(key == null
+				|| value == null) {
+			return false;
+		}
+		switch (key) {
+			case KEY_TrxDate:
+				if(value instanceof Timestamp) {
+					record.setTrxDate((Timestamp) value);
+					return true;
+				}
+				return false;
+			case KEY_ValueDate:
+				if(value instanceof Timestamp) {
+					record.setValueDate((Timestamp) value);
+					return true;
+				}
+				return false;
+			case KEY_Amount:
+				if(value instanceof BigDecimal) {
+					record.setAmount((BigDecimal) value);
+					return true;
+				}
+				return false;
+			case KEY_Type:
+				record.setTrxType(value instanceof String? (String) value: null);
+				return value instanceof String;
+			case KEY_Memo:
+				record.setMemo(value instanceof String? (String) value: null);
+				return value instanceof String;
+			case KEY_Concept:
+				record.setConcept(value instanceof String? (String) value: null);
+				return value instanceof String;
+			case KEY_ReferenceNo:
+				record.setReferenceNo(value instanceof String? (String) value: null);
+				return value instanceof String;
+			default:
+				return false;
+		}
+	}
+
+	@Override
+	public void addValue(String key, Object value) {
+		if(setTypedValue(key, value)) {
+			return;
+		}
+		super.addValue(key, value);
+	}
+
+	@Override
+	public Timestamp getDate(String key) {
+		Timestamp value = null;
+		if(KEY_TrxDate.equals(key)) {
+			value = record.getTrxDate();
+		} else if(KEY_ValueDate.equals(key)) {
+			value = record.getValueDate();
+		}
+		if(value != null) {
+			return value;
+		}
+		return super.getDate(key);
+	}
+
+	@Override
+	public BigDecimal getNumber(String key) {
+		if(KEY_Amount.equals(key)) {
+			BigDecimal value = record.getAmount();
+			if(value != null) {
+				return value;
+			}
+		}
+		return super.getNumber(key);
+	}
+
+	@Override
+	public String getString(String key) {
+		String value = null;
+		if(KEY_Type.equals(key)) {
+			value = record.getTrxType();
+		} else if(KEY_Memo.equals(key)) {
+			value = record.getMemo();
+		} else if(KEY_Concept.equals(key)) {
+			value = record.getConcept();
+		} else if(KEY_ReferenceNo.equals(key)) {
+			value = record.getReferenceNo();
+		}
+		if(value != null) {
+			return value;
+		}
+		return super.getString(key);
+	}
+}
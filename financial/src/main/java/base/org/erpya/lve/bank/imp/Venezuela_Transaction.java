@@ -22,7 +22,6 @@ import java.text.ParseException;
 
 import org.compiere.util.Env;
 import org.compiere.util.Util;
-import org.spin.util.impexp.BankTransactionAbstract;
 
 /**
  * Custom format for Venezuela Bank Transaction
@@ -31,7 +30,7 @@ import org.spin.util.impexp.BankTransactionAbstract;
  * <li> FR [ 1701 ] Add support to MT940 format
  * @see https://github.com/adempiere/adempiere/issues/1701
  */
-public class Venezuela_Transaction extends BankTransactionAbstract {
+public class Venezuela_Transaction extends TypedBankTransaction {
 	/**	Ignore it line because is a first line as head */
 	public static final String HEAD_REFERENCE_FIRST_LINE_FLAG = "NOCUENTA            FECHA   REFERENCIA   CONCEPTO                      CARGO             ABONO             BALANCE           TMCT";
 	/**	Ignore it line because is a begin balance */
@@ -20,7 +20,6 @@ import java.sql.Timestamp;
 
 import org.compiere.util.Env;
 import org.compiere.util.Util;
-import org.spin.util.impexp.BankTransactionAbstract;
 
 /**
  * Custom format for Tesoro Bank Transaction
@@ -29,7 +28,7 @@ import org.spin.util.impexp.BankTransactionAbstract;
  * <li> FR [ 1701 ] Add support to MT940 format
  * @see https://github.com/adempiere/adempiere/issues/1701
  */
-public class Venezuela_v1 extends BankTransactionAbstract {
+public class Venezuela_v1 extends TypedBankTransaction {
 	/**	Value Date [dddMMyyyy]	*/
 	private static final String LINE_TRANSACTION_Date = "TrxDate";
 	/**	Transaction type Transaction type (description)	*/ 
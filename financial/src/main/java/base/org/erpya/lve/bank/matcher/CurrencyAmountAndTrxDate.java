@@ -32,6 +32,7 @@ import org.adempiere.core.domains.models.X_I_BankStatement;
 import org.compiere.util.DB;
 import org.compiere.util.Env;
 import org.compiere.util.Util;
+import org.erpya.lve.util.ReconciliationCandidate;
 
 /**
  * Add matcher by currency, amount and transaction date
@@ -67,7 +68,7 @@ public class CurrencyAmountAndTrxDate implements BankStatementMatcherInterface {
 		//	
 		String ORDERVALUE = " DESC NULLS LAST";
 		StringBuffer sql = new StringBuffer("SELECT p.C_Payment_ID "
-				+ "FROM C_Payment p "
+				+ "FROM " + ReconciliationCandidate.Table_Name + " p "
 				+ "WHERE p.AD_Client_ID = ? ");
 		if(paymentWhereClause.length() > 0) {
 			sql.append(paymentWhereClause);
@@ -93,10 +94,8 @@ public class CurrencyAmountAndTrxDate implements BankStatementMatcherInterface {
 		}
 		//	Validate amount for it
 		boolean isReceipt = ibs.getTrxAmt().compareTo(Env.ZERO) > 0;
-		where.append("(p.PayAmt = ? ");
-		params.add(isReceipt
-				? ibs.getTrxAmt()
-						: ibs.getTrxAmt().negate());
+		where.append("(p.SignedAmt = ? ");
+		params.add(ibs.getTrxAmt());
 		//	Add Receipt
 		where.append("AND p.IsReceipt = ? )");
 		params.add(isReceipt);
@@ -147,8 +146,7 @@ public class CurrencyAmountAndTrxDate implements BankStatementMatcherInterface {
 		where.append("(p.C_BankAccount_ID = ?)");
 		params.add(ibs.getC_BankAccount_ID());
 		//	Additional validation
-		where.append(" AND p.DocStatus IN('CO', 'CL')");
-		where.append(" AND p.IsReconciled = 'N'");
+		where.append(" AND p.IsStaged = 'N'");
 		where.append(" AND NOT EXISTS(SELECT 1 FROM I_BankStatement i WHERE i.C_Payment_ID = p.C_Payment_ID) ");
 		//	Add Order By
 		orderByClause.append("p.DateTrx ASC");
@@ -166,55 +164,10 @@ public class CurrencyAmountAndTrxDate implements BankStatementMatcherInterface {
 			info.setC_Payment_ID(paymentId);
 		}
 		//	Set Business Partner
-		if(!Util.isEmpty(ibs.getEftPayeeAccount())) {
-			String additionaWhereClause = "";
-			String businessPartnerTaxId = ibs.getEftPayeeAccount().trim();
-			businessPartnerTaxId = businessPartnerTaxId.replace("-", "").trim();
-			String businessPartneType = businessPartnerTaxId.substring(0, 1);
-			businessPartnerTaxId = businessPartnerTaxId.replaceAll("\\D+", "");
-			businessPartnerTaxId = getValidReference(businessPartnerTaxId);
-			businessPartnerTaxId = "%" + businessPartnerTaxId + "%";
-			List<Object> businessPartnerParameters = new ArrayList<>();
-			businessPartnerParameters.add(ibs.getAD_Client_ID());
-			businessPartnerParameters.add(businessPartnerTaxId);
-			businessPartnerParameters.add(businessPartnerTaxId);
-			if(!Util.isEmpty(businessPartneType)) {
-				businessPartneType = businessPartneType+ "%";
-				businessPartnerParameters.add(businessPartneType);
-				businessPartnerParameters.add(businessPartneType);
-				additionaWhereClause = " AND (UPPER(Value) LIKE ? OR UPPER(TaxID) LIKE ?)";
-			}
-			//	Find
-			int businessPartnerId = DB.getSQLValue(ibs.get_TrxName(), 
-					"SELECT C_BPartner_ID FROM C_BPartner WHERE AD_Client_ID = ? AND (Value LIKE ? OR TaxID LIKE ?)" + additionaWhereClause, businessPartnerParameters);
-			if(businessPartnerId > 0) {
-				info.setC_BPartner_ID(businessPartnerId);
-			}
+		int businessPartnerId = MatcherUtil.getBusinessPartnerId(ibs);
+		if(businessPartnerId > 0) {
+			info.setC_BPartner_ID(businessPartnerId);
 		}
 		return info;
 	}
-	
-	/**
-	 * Get valid reference for value
-	 * @param reference
-	 * @return
-	 */
-	private String getValidReference(String reference) {
-		if(!Util.isEmpty(reference)) {
-			reference = reference.trim();
-			reference = reference.replace(".", "");
-			if(reference.matches("[+-]?\\d*(\\.\\d+)?")) {
-				Long longReference = null;
-				try {
-					longReference = Long.valueOf(reference);
-				} catch (Exception e) {
-					//	Nothing
-				}
-				if(longReference != null) {
-					reference = String.valueOf(longReference);
-				}
-			}
-		}
-		return reference;
 	}
-}
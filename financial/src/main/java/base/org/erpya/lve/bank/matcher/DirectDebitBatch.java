@@ -35,6 +35,7 @@ import org.compiere.util.DB;
 import org.compiere.util.Env;
 import org.compiere.util.Util;
 import org.erpya.lve.util.LVEUtil;
+import org.erpya.lve.util.ReconciliationCandidate;
 
 /**
  * Add matcher by reference with like
@@ -72,7 +73,7 @@ public class DirectDebitBatch implements BankStatementMatcherInterface {
 		//	
 		String ORDERVALUE = " DESC NULLS LAST";
 		StringBuffer sql = new StringBuffer("SELECT p.C_Payment_ID "
-				+ "FROM C_Payment p "
+				+ "FROM " + ReconciliationCandidate.Table_Name + " p "
 				+ "WHERE p.AD_Client_ID = ? ");
 		if(paymentWhereClause.length() > 0) {
 			sql.append(paymentWhereClause);
@@ -90,10 +91,10 @@ public class DirectDebitBatch implements BankStatementMatcherInterface {
 			where.append("OR ? LIKE '%' || p.DocumentNo || '%' ");
 			where.append("OR p.CheckNo LIKE ? ");
 			where.append("OR p.DocumentNo LIKE ?");
-			params.add(ibs.getMemo().toUpperCase().replaceAll("[^a-zA-Z0-9- ]", "").trim());
-			params.add(ibs.getMemo().toUpperCase().replaceAll("[^a-zA-Z0-9- ]", "").trim());
-			params.add(ibs.getMemo().toUpperCase().replaceAll("[^a-zA-Z0-9- ]", "").trim());
-			params.add(ibs.getMemo().toUpperCase().replaceAll("[^a-zA-Z0-9- ]", "").trim());
+			params.add(MatcherUtil.getValidMemo(ibs.getMemo()));
+			params.add(MatcherUtil.getValidMemo(ibs.getMemo()));
+			params.add(MatcherUtil.getValidMemo(ibs.getMemo()));
+			params.add(MatcherUtil.getValidMemo(ibs.getMemo()));
 		}
 		//	Add
 		if(where.length() > 0) {
@@ -125,8 +126,7 @@ public class DirectDebitBatch implements BankStatementMatcherInterface {
 		where.append("(p.C_BankAccount_ID = ?)");
 		params.add(ibs.getC_BankAccount_ID());
 		//	Additional validation
-		where.append(" AND p.DocStatus IN('CO', 'CL')");
-		where.append(" AND p.IsReconciled = 'N'");
+		where.append(" AND p.IsStaged = 'N'");
 		where.append(" AND NOT EXISTS(SELECT 1 FROM I_BankStatement i WHERE i.C_Payment_ID = p.C_Payment_ID) ");
 		//	Add Order By
 		orderByClause.append("p.DateTrx ASC");
@@ -35,6 +35,7 @@ import org.compiere.util.DB;
 import org.compiere.util.Env;
 import org.compiere.util.Util;
 import org.erpya.lve.util.LVEUtil;
+import org.erpya.lve.util.ReconciliationCandidate;
 
 /**
  * Add matcher by reference with like
@@ -72,7 +73,7 @@ public class DirectDebitBatchByDay implements BankStatementMatcherInterface {
 		//	
 		String ORDERVALUE = " DESC NULLS LAST";
 		StringBuffer sql = new StringBuffer("SELECT p.C_Payment_ID "
-				+ "FROM C_Payment p "
+				+ "FROM " + ReconciliationCandidate.Table_Name + " p "
 				+ "LEFT JOIN C_PaymentMethod pm ON(pm.C_PaymentMethod_ID = p.C_PaymentMethod_ID) "
 				+ "WHERE p.AD_Client_ID = ? ");
 		if(paymentWhereClause.length() > 0) {
@@ -90,9 +91,9 @@ public class DirectDebitBatchByDay implements BankStatementMatcherInterface {
 			where.append("? = UPPER(TRIM(pm.Value)) ");
 			where.append("OR ? = UPPER(TRIM(pm.Name)) ");
 			where.append("OR UPPER(TRIM(pm.Description)) = ? ");
-			params.add(ibs.getMemo().toUpperCase().replaceAll("[^a-zA-Z0-9- ]", "").trim());
-			params.add(ibs.getMemo().toUpperCase().replaceAll("[^a-zA-Z0-9- ]", "").trim());
-			params.add(ibs.getMemo().toUpperCase().replaceAll("[^a-zA-Z0-9- ]", "").trim());
+			params.add(MatcherUtil.getValidMemo(ibs.getMemo()));
+			params.add(MatcherUtil.getValidMemo(ibs.getMemo()));
+			params.add(MatcherUtil.getValidMemo(ibs.getMemo()));
 		}
 		//	Add
 		if(where.length() > 0) {
@@ -124,8 +125,7 @@ public class DirectDebitBatchByDay implements BankStatementMatcherInterface {
 		where.append("(p.C_BankAccount_ID = ?)");
 		params.add(ibs.getC_BankAccount_ID());
 		//	Additional validation
-		where.append(" AND p.DocStatus IN('CO', 'CL')");
-		where.append(" AND p.IsReconciled = 'N'");
+		where.append(" AND p.IsStaged = 'N'");
 		where.append(" AND NOT EXISTS(SELECT 1 FROM I_BankStatement i WHERE i.C_Payment_ID = p.C_Payment_ID) ");
 		//	Add Order By
 		orderByClause.append("p.DateTrx ASC");
@@ -0,0 +1,408 @@
+/**************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                               *
+ * This program is free software; you can redistribute it and/or modify it    		  *
+ * under the terms version 2 or later of the GNU General Public License as published  *
+ * by the Free Software Foundation. This program is distributed in the hope           *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied         *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.                   *
+ * See the GNU General Public License for more details.                               *
+ * You should have received a copy of the GNU General Public License along            *
+ * with this program; if not, printLine to the Free Software Foundation, Inc.,        *
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.                             *
+ * For the text or an alternative of this public license, you may reach us            *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, S.A. All Rights Reserved.  *
+ * Contributor: Yamel Senih ysenih@erpya.com                                          *
+ * Contributor: Carlos Parada cparada@erpya.com                                       *
+ * See: www.erpya.com                                                                 *
+ *************************************************************************************/
+package org.erpya.lve.bank.matcher;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.adempiere.core.domains.models.X_I_BankStatement;
+import org.adempiere.exceptions.AdempiereException;
+import org.compiere.impexp.BankStatementMatchInfo;
+import org.compiere.impexp.BankStatementMatcherInterface;
+import org.compiere.model.MBankAccount;
+import org.compiere.model.MBankStatementLine;
+import org.compiere.model.MPayment;
+import org.compiere.model.MSysConfig;
+import org.compiere.util.CLogger;
+import org.compiere.util.DB;
+import org.compiere.util.Env;
+import org.compiere.util.Util;
+import org.erpya.lve.util.LVEUtil;
+import org.erpya.lve.util.ReconciliationCandidate;
+
+/**
+ * Fused matcher: evaluate the rules of CurrencyAmountAndTrxDate, CurrencyAndAmount, WithoutZero,
+ * WithoutZeroWithPayment, DirectDebitBatch and DirectDebitBatchByDay over a single candidate set
+ * read once for statement line, then a line without match cost one query instead of one by matcher.
+ * The rules are evaluated in order of system configuration LVE_FUSED_MATCHER_RULES (simple class names
+ * separated by comma), the candidates keep the order of each matcher (DateTrx, DocumentNo, CheckNo, Description)
+ * and the returned info has the name of rule matched.
+ * It should be configured instead of the single matchers that it replaces.
+ * @author Yamel Senih, ysenih@erpya.com , http://www.erpya.com
+ */
+public class FusedMatcher implements BankStatementMatcherInterface {
+
+	public FusedMatcher() {
+		
+	}
+
+	/**	Default order of rules	*/
+	public static final String DEFAULT_RULES = CurrencyAmountAndTrxDate.class.getSimpleName()
+			+ "," + CurrencyAndAmount.class.getSimpleName()
+			+ "," + WithoutZero.class.getSimpleName()
+			+ "," + WithoutZeroWithPayment.class.getSimpleName()
+			+ "," + DirectDebitBatch.class.getSimpleName()
+			+ "," + DirectDebitBatchByDay.class.getSimpleName();
+	/** Logger */
+	private static CLogger log = CLogger.getCLogger(FusedMatcher.class);
+
+	@Override
+	public BankStatementMatchInfo findMatch(MBankStatementLine bsl, List<Integer> includedPayments, List<Integer> exludedPayments) {
+		return null;
+	}
+
+	@Override
+	public BankStatementMatchInfo findMatch(X_I_BankStatement ibs, List<Integer> includedPayments, List<Integer> exludedPayments) {
+		FusedMatchInfo info = new FusedMatchInfo();
+		//	Validate
+		if(ibs.getC_Payment_ID() != 0) {
+			return info;
+		}
+		List<String> rules = getRules(ibs);
+		List<Candidate> candidates = getCandidates(ibs, includedPayments, exludedPayments);
+		Integer businessPartnerId = null;
+		for(String rule : rules) {
+			Candidate candidate = null;
+			boolean isBusinessPartnerRule = false;
+			if(rule.equals(CurrencyAmountAndTrxDate.class.getSimpleName())) {
+				candidate = candidates.stream().filter(payment -> payment.isAmountMatched && isTrxDateMatched(ibs, payment)).findFirst().orElse(null);
+				isBusinessPartnerRule = true;
+			} else if(rule.equals(CurrencyAndAmount.class.getSimpleName())) {
+				candidate = candidates.stream().filter(payment -> payment.isAmountMatched).findFirst().orElse(null);
+				isBusinessPartnerRule = true;
+			} else if(rule.equals(WithoutZero.class.getSimpleName())) {
+				candidate = candidates.stream().filter(payment -> payment.isAmountMatched && isReferenceWithoutZeroMatched(ibs, payment)).findFirst().orElse(null);
+				isBusinessPartnerRule = true;
+			} else if(rule.equals(WithoutZeroWithPayment.class.getSimpleName())) {
+				candidate = candidates.stream().filter(payment -> payment.isAmountMatched && isReferenceWithPaymentMatched(ibs, payment)).findFirst().orElse(null);
+			} else if(rule.equals(DirectDebitBatch.class.getSimpleName())) {
+				candidate = candidates.stream().filter(payment -> isValutaDateMatched(ibs, payment) && isMemoMatched(ibs, payment)).findFirst().orElse(null);
+			} else if(rule.equals(DirectDebitBatchByDay.class.getSimpleName())) {
+				candidate = candidates.stream().filter(payment -> isValutaDateMatched(ibs, payment) && isPaymentMethodMatched(ibs, payment)).findFirst().orElse(null);
+			} else {
+				log.warning("Rule not supported: " + rule);
+				continue;
+			}
+			if(candidate != null) {
+				info.setC_Payment_ID(candidate.paymentId);
+				if(rule.equals(DirectDebitBatch.class.getSimpleName())
+						|| rule.equals(DirectDebitBatchByDay.class.getSimpleName())) {
+					setDirectDebitAmounts(ibs, candidate.paymentId);
+				}
+			}
+			//	Business partner is set by single matchers even without payment
+			if(isBusinessPartnerRule) {
+				if(businessPartnerId == null) {
+					businessPartnerId = MatcherUtil.getBusinessPartnerId(ibs);
+				}
+				if(businessPartnerId > 0) {
+					info.setC_BPartner_ID(businessPartnerId);
+				}
+			}
+			if(info.isMatched()) {
+				info.setRuleName(rule);
+				log.fine("Matched by rule " + rule + ": " + ibs);
+				return info;
+			}
+		}
+		return info;
+	}
+
+	/**
+	 * Get rules from system configuration
+	 * @param ibs
+	 * @return
+	 */
+	private List<String> getRules(X_I_BankStatement ibs) {
+		String rules = MSysConfig.getValue(LVEUtil.SYSCONFIG_LVE_FusedMatcherRules, DEFAULT_RULES, ibs.getAD_Client_ID());
+		return Arrays.asList(rules.split(","))
+				.stream()
+				.map(String::trim)
+				.filter(rule -> !Util.isEmpty(rule))
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Get candidates for all rules: same client, account, currency and receipt type, with
+	 * amount of line or payment date equals to valuta date, ordered as single matchers
+	 * @param ibs
+	 * @param includedPayments
+	 * @param exludedPayments
+	 * @return
+	 */
+	private List<Candidate> getCandidates(X_I_BankStatement ibs, List<Integer> includedPayments, List<Integer> exludedPayments) {
+		boolean isReceipt = ibs.getTrxAmt().compareTo(Env.ZERO) > 0;
+		StringBuffer sql = new StringBuffer("SELECT p.C_Payment_ID, p.SignedAmt, p.DateTrx, p.DocumentNo, p.CheckNo, p.DocumentNoDigits, p.CheckNoDigits, "
+				+ "UPPER(TRIM(pm.Value)) AS PaymentMethodValue, UPPER(TRIM(pm.Name)) AS PaymentMethodName, UPPER(TRIM(pm.Description)) AS PaymentMethodDescription "
+				+ "FROM " + ReconciliationCandidate.Table_Name + " p "
+				+ "LEFT JOIN C_PaymentMethod pm ON(pm.C_PaymentMethod_ID = p.C_PaymentMethod_ID) "
+				+ "WHERE p.AD_Client_ID = ? ");
+		List<Object> params = new ArrayList<Object>();
+		params.add(ibs.getAD_Client_ID());
+		if(includedPayments != null
+				&& includedPayments.size() > 0) {
+			sql.append(" AND ").append("p.C_Payment_ID").append(" IN").append(includedPayments.toString().replace('[','(').replace(']',')')).append(" ");
+		}
+		if(exludedPayments != null
+				&& exludedPayments.size() > 0) {
+			sql.append(" AND ").append("p.C_Payment_ID").append(" NOT IN").append(exludedPayments.toString().replace('[','(').replace(']',')')).append(" ");
+		}
+		//	Add Currency
+		if(!Util.isEmpty(ibs.getISO_Code())) {
+			sql.append(" AND EXISTS(SELECT 1 FROM C_Currency c WHERE c.C_Currency_ID = p.C_Currency_ID AND c.ISO_Code = ?) ");
+			params.add(ibs.getISO_Code());
+		} else if(ibs.getC_Currency_ID() != 0){
+			sql.append(" AND p.C_Currency_ID = ? ");
+			params.add(ibs.getC_Currency_ID());
+		}
+		sql.append(" AND p.IsReceipt = ?");
+		params.add(isReceipt);
+		sql.append(" AND p.C_BankAccount_ID = ?");
+		params.add(ibs.getC_BankAccount_ID());
+		//	Amount for payment rules or valuta date for direct debit rules
+		if(ibs.getValutaDate() != null) {
+			sql.append(" AND (p.SignedAmt = ? OR p.DateTrx = ?)");
+			params.add(ibs.getTrxAmt());
+			params.add(ibs.getValutaDate());
+		} else {
+			sql.append(" AND p.SignedAmt = ?");
+			params.add(ibs.getTrxAmt());
+		}
+		//	Additional validation
+		sql.append(" AND p.IsStaged = 'N'");
+		sql.append(" AND NOT EXISTS(SELECT 1 FROM I_BankStatement i WHERE i.C_Payment_ID = p.C_Payment_ID) ");
+		//	Same order of single matchers
+		sql.append(" ORDER BY p.DateTrx ASC, p.DocumentNo DESC NULLS LAST, p.CheckNo DESC NULLS LAST, p.Description DESC NULLS LAST");
+		List<Candidate> candidates = new ArrayList<Candidate>();
+		DB.runResultSet(ibs.get_TrxName(), sql.toString(), params, resultSet -> {
+			while(resultSet.next()) {
+				Candidate candidate = new Candidate();
+				candidate.paymentId = resultSet.getInt("C_Payment_ID");
+				BigDecimal signedAmt = resultSet.getBigDecimal("SignedAmt");
+				candidate.isAmountMatched = signedAmt != null && signedAmt.compareTo(ibs.getTrxAmt()) == 0;
+				candidate.dateTrx = resultSet.getTimestamp("DateTrx");
+				candidate.documentNo = resultSet.getString("DocumentNo");
+				candidate.checkNo = resultSet.getString("CheckNo");
+				candidate.documentNoDigits = resultSet.getString("DocumentNoDigits");
+				candidate.checkNoDigits = resultSet.getString("CheckNoDigits");
+				candidate.paymentMethodValue = resultSet.getString("PaymentMethodValue");
+				candidate.paymentMethodName = resultSet.getString("PaymentMethodName");
+				candidate.paymentMethodDescription = resultSet.getString("PaymentMethodDescription");
+				candidates.add(candidate);
+			}
+		}).onFailure(throwable -> {
+			throw new AdempiereException(throwable);
+		});
+		return candidates;
+	}
+
+	/**
+	 * Rule of CurrencyAmountAndTrxDate: payment date equals to any date of line
+	 * @param ibs
+	 * @param candidate
+	 * @return
+	 */
+	boolean isTrxDateMatched(X_I_BankStatement ibs, Candidate candidate) {
+		List<Timestamp> dates = new ArrayList<Timestamp>();
+		if(ibs.getEftStatementDate() != null) {
+			dates.add(ibs.getEftStatementDate());
+		}
+		if(ibs.getEftStatementLineDate() != null) {
+			dates.add(ibs.getEftStatementLineDate());
+		}
+		if(ibs.getEftValutaDate() != null) {
+			dates.add(ibs.getEftValutaDate());
+		}
+		if(ibs.getDateAcct() != null) {
+			dates.add(ibs.getDateAcct());
+		}
+		if(dates.isEmpty()) {
+			return true;
+		}
+		return dates.stream().anyMatch(date -> isSameTime(date, candidate.dateTrx));
+	}
+
+	/**
+	 * Rule of WithoutZero: references without zero contained on reference or memo
+	 * @param ibs
+	 * @param candidate
+	 * @return
+	 */
+	boolean isReferenceWithoutZeroMatched(X_I_BankStatement ibs, Candidate candidate) {
+		if(Util.isEmpty(ibs.getReferenceNo())) {
+			//	The memo criteria is only added after reference criteria
+			return Util.isEmpty(ibs.getMemo());
+		}
+		String reference = MatcherUtil.getValidReference(ibs.getReferenceNo());
+		if(isContained(reference, candidate.checkNoDigits)
+				|| isContained(reference, candidate.documentNoDigits)
+				|| isContained(candidate.checkNoDigits, reference)
+				|| isContained(candidate.documentNoDigits, reference)) {
+			return true;
+		}
+		if(!Util.isEmpty(ibs.getMemo())) {
+			String memo = ibs.getMemo();
+			return isContained(memo, candidate.documentNoDigits)
+					|| isContained(memo, candidate.checkNoDigits)
+					|| isContained(candidate.documentNoDigits, memo)
+					|| isContained(candidate.checkNoDigits, memo);
+		}
+		return false;
+	}
+
+	/**
+	 * Rule of WithoutZeroWithPayment: references without zero contained on reference
+	 * @param ibs
+	 * @param candidate
+	 * @return
+	 */
+	boolean isReferenceWithPaymentMatched(X_I_BankStatement ibs, Candidate candidate) {
+		if(Util.isEmpty(ibs.getReferenceNo())) {
+			return true;
+		}
+		String reference = MatcherUtil.getValidReference(ibs.getReferenceNo());
+		return isContained(reference, candidate.checkNoDigits)
+				|| isContained(reference, candidate.documentNoDigits);
+	}
+
+	/**
+	 * Rule of direct debit: payment date equals to valuta date
+	 * @param ibs
+	 * @param candidate
+	 * @return
+	 */
+	boolean isValutaDateMatched(X_I_BankStatement ibs, Candidate candidate) {
+		return ibs.getValutaDate() != null
+				&& isSameTime(ibs.getValutaDate(), candidate.dateTrx);
+	}
+
+	/**
+	 * Rule of DirectDebitBatch: memo contains references or it is equals to reference
+	 * @param ibs
+	 * @param candidate
+	 * @return
+	 */
+	boolean isMemoMatched(X_I_BankStatement ibs, Candidate candidate) {
+		if(Util.isEmpty(ibs.getMemo())) {
+			return true;
+		}
+		String memo = MatcherUtil.getValidMemo(ibs.getMemo());
+		return isContained(memo, candidate.checkNo)
+				|| isContained(memo, candidate.documentNo)
+				|| memo.equals(candidate.checkNo)
+				|| memo.equals(candidate.documentNo);
+	}
+
+	/**
+	 * Rule of DirectDebitBatchByDay: memo is equals to payment method
+	 * @param ibs
+	 * @param candidate
+	 * @return
+	 */
+	boolean isPaymentMethodMatched(X_I_BankStatement ibs, Candidate candidate) {
+		if(Util.isEmpty(ibs.getMemo())) {
+			return true;
+		}
+		String memo = MatcherUtil.getValidMemo(ibs.getMemo());
+		return memo.equals(candidate.paymentMethodValue)
+				|| memo.equals(candidate.paymentMethodName)
+				|| memo.equals(candidate.paymentMethodDescription);
+	}
+
+	/**
+	 * Set amounts of line from payment for direct debit rules
+	 * @param ibs
+	 * @param paymentId
+	 */
+	private void setDirectDebitAmounts(X_I_BankStatement ibs, int paymentId) {
+		MPayment payment = new MPayment(ibs.getCtx(), paymentId, ibs.get_TrxName());
+		ibs.setTrxAmt(payment.getPayAmt(false));
+		MBankAccount bankAccount = MBankAccount.get(payment.getCtx(), payment.getC_BankAccount_ID());
+		if(bankAccount.get_ValueAsInt(LVEUtil.COLUMNNAME_LVE_DefaultStatementCharge_ID) > 0) {
+			ibs.setChargeAmt(ibs.getStmtAmt().subtract(payment.getPayAmt(false)));
+			ibs.setC_Charge_ID(bankAccount.get_ValueAsInt(LVEUtil.COLUMNNAME_LVE_DefaultStatementCharge_ID));
+		} else {
+			ibs.setInterestAmt(ibs.getStmtAmt().subtract(payment.getPayAmt(false)));
+		}
+	}
+
+	/**
+	 * Same as LIKE '%' || value || '%', a null value is not contained
+	 * @param text
+	 * @param value
+	 * @return
+	 */
+	private boolean isContained(String text, String value) {
+		return text != null
+				&& value != null
+				&& text.contains(value);
+	}
+
+	/**
+	 * Compare timestamps
+	 * @param date
+	 * @param otherDate
+	 * @return
+	 */
+	private boolean isSameTime(Timestamp date, Timestamp otherDate) {
+		return date != null
+				&& otherDate != null
+				&& date.getTime() == otherDate.getTime();
+	}
+
+	/**
+	 * Candidate payment
+	 */
+	static class Candidate {
+		/**	Payment	*/
+		int paymentId;
+		/**	Signed amount is equals to line amount	*/
+		boolean isAmountMatched;
+		/**	Transaction Date	*/
+		Timestamp dateTrx;
+		/**	References	*/
+		String documentNo;
+		String checkNo;
+		String documentNoDigits;
+		String checkNoDigits;
+		/**	Payment Method (upper and trimmed)	*/
+		String paymentMethodValue;
+		String paymentMethodName;
+		String paymentMethodDescription;
+	}
+
+	/**
+	 * Match info with rule matched
+	 */
+	public static class FusedMatchInfo extends BankStatementMatchInfo {
+		/**	Rule	*/
+		private String ruleName;
+
+		public String getRuleName() {
+			return ruleName;
+		}
+
+		public void setRuleName(String ruleName) {
+			this.ruleName = ruleName;
+		}
+	}
+}
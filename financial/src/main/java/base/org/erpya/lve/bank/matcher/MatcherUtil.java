@@ -0,0 +1,96 @@
+/**************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                               *
+ * This program is free software; you can redistribute it and/or modify it    		  *
+ * under the terms version 2 or later of the GNU General Public License as published  *
+ * by the Free Software Foundation. This program is distributed in the hope           *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied         *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.                   *
+ * See the GNU General Public License for more details.                               *
+ * You should have received a copy of the GNU General Public License along            *
+ * with this program; if not, printLine to the Free Software Foundation, Inc.,        *
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.                             *
+ * For the text or an alternative of this public license, you may reach us            *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, S.A. All Rights Reserved.  *
+ * Contributor: Yamel Senih ysenih@erpya.com                                          *
+ * Contributor: Carlos Parada cparada@erpya.com                                       *
+ * See: www.erpya.com                                                                 *
+ *************************************************************************************/
+package org.erpya.lve.bank.matcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.adempiere.core.domains.models.X_I_BankStatement;
+import org.compiere.util.DB;
+import org.compiere.util.Util;
+
+/**
+ * Shared criteria of bank statement matchers: reference and memo normalization and business
+ * partner of payee account, used by single matchers and {@link FusedMatcher}
+ * @author Yamel Senih, ysenih@erpya.com , http://www.erpya.com
+ */
+public class MatcherUtil {
+
+	/**
+	 * Get valid reference for value: without dots and without zeros on left if it is a number
+	 * @param reference
+	 * @return
+	 */
+	public static String getValidReference(String reference) {
+		if(!Util.isEmpty(reference)) {
+			reference = reference.trim();
+			reference = reference.replace(".", "");
+			if(reference.matches("[+-]?\\d*(\\.\\d+)?")) {
+				Long longReference = null;
+				try {
+					longReference = Long.valueOf(reference);
+				} catch (Exception e) {
+					//	Nothing
+				}
+				if(longReference != null) {
+					reference = String.valueOf(longReference);
+				}
+			}
+		}
+		return reference;
+	}
+
+	/**
+	 * Get memo as direct debit matchers: upper case with only letters, numbers, hyphen and space
+	 * @param memo
+	 * @return
+	 */
+	public static String getValidMemo(String memo) {
+		return memo.toUpperCase().replaceAll("[^a-zA-Z0-9- ]", "").trim();
+	}
+
+	/**
+	 * Get Business Partner from payee account (Tax ID with person type)
+	 * @param ibs
+	 * @return business partner or -1 if it is not found
+	 */
+	public static int getBusinessPartnerId(X_I_BankStatement ibs) {
+		if(Util.isEmpty(ibs.getEftPayeeAccount())) {
+			return -1;
+		}
+		String additionaWhereClause = "";
+		String businessPartnerTaxId = ibs.getEftPayeeAccount().trim();
+		businessPartnerTaxId = businessPartnerTaxId.replace("-", "").trim();
+		String businessPartneType = businessPartnerTaxId.substring(0, 1);
+		businessPartnerTaxId = businessPartnerTaxId.replaceAll("\\D+", "");
+		businessPartnerTaxId = getValidReference(businessPartnerTaxId);
+		businessPartnerTaxId = "%" + businessPartnerTaxId + "%";
+		List<Object> businessPartnerParameters = new ArrayList<>();
+		businessPartnerParameters.add(ibs.getAD_Client_ID());
+		businessPartnerParameters.add(businessPartnerTaxId);
+		businessPartnerParameters.add(businessPartnerTaxId);
+		if(!Util.isEmpty(businessPartneType)) {
+			businessPartneType = businessPartneType+ "%";
+			businessPartnerParameters.add(businessPartneType);
+			businessPartnerParameters.add(businessPartneType);
+			additionaWhereClause = " AND (UPPER(Value) LIKE ? OR UPPER(TaxID) LIKE ?)";
+		}
+		return DB.getSQLValue(ibs.get_TrxName(), 
+				"SELECT C_BPartner_ID FROM C_BPartner WHERE AD_Client_ID = ? AND (Value LIKE ? OR TaxID LIKE ?)" + additionaWhereClause, businessPartnerParameters);
+	}
+}
@@ -32,6 +32,7 @@ import org.adempiere.core.domains.models.X_I_BankStatement;
 import org.compiere.util.DB;
 import org.compiere.util.Env;
 import org.compiere.util.Util;
+import org.erpya.lve.util.ReconciliationCandidate;
 
 /**
  * Add matcher by reference with like
@@ -69,7 +70,7 @@ public class WithoutZero implements BankStatementMatcherInterface {
 		//	
 		String ORDERVALUE = " DESC NULLS LAST";
 		StringBuffer sql = new StringBuffer("SELECT p.C_Payment_ID "
-				+ "FROM C_Payment p "
+				+ "FROM " + ReconciliationCandidate.Table_Name + " p "
 				+ "WHERE p.AD_Client_ID = ? ");
 		if(paymentWhereClause.length() > 0) {
 			sql.append(paymentWhereClause);
@@ -84,22 +85,22 @@ public class WithoutZero implements BankStatementMatcherInterface {
 		params.add(ibs.getAD_Client_ID());
 		//	For reference
 		if(!Util.isEmpty(ibs.getReferenceNo())) {
-			where.append("? LIKE '%' || CAST(CAST(regexp_replace(p.CheckNo, '[^0-9]', '', 'g') AS NUMERIC) AS VARCHAR) || '%' ");
-			where.append("OR ? LIKE '%' || CAST(CAST(regexp_replace(p.DocumentNo, '[^0-9]', '', 'g') AS NUMERIC) AS VARCHAR) || '%' ");
-			where.append("OR CAST(CAST(regexp_replace(p.CheckNo, '[^0-9]', '', 'g') AS NUMERIC) AS VARCHAR) LIKE ? ");
-			where.append("OR CAST(CAST(regexp_replace(p.DocumentNo, '[^0-9]', '', 'g') AS NUMERIC) AS VARCHAR) LIKE ?");
+			where.append("? LIKE '%' || p.CheckNoDigits || '%' ");
+			where.append("OR ? LIKE '%' || p.DocumentNoDigits || '%' ");
+			where.append("OR p.CheckNoDigits LIKE ? ");
+			where.append("OR p.DocumentNoDigits LIKE ?");
 			
-			params.add(getValidReference(ibs.getReferenceNo()));
-			params.add(getValidReference(ibs.getReferenceNo()));
-			params.add("%" + getValidReference(ibs.getReferenceNo()) + "%");
-			params.add("%" + getValidReference(ibs.getReferenceNo()) + "%");
+			params.add(MatcherUtil.getValidReference(ibs.getReferenceNo()));
+			params.add(MatcherUtil.getValidReference(ibs.getReferenceNo()));
+			params.add("%" + MatcherUtil.getValidReference(ibs.getReferenceNo()) + "%");
+			params.add("%" + MatcherUtil.getValidReference(ibs.getReferenceNo()) + "%");
 		}
 		//	For Memo
 		if(!Util.isEmpty(ibs.getMemo())) {
-			where.append("OR ? LIKE '%' || CAST(CAST(regexp_replace(p.DocumentNo, '[^0-9]', '', 'g') AS NUMERIC) AS VARCHAR) || '%' ");
-			where.append("OR ? LIKE '%' || CAST(CAST(regexp_replace(p.CheckNo, '[^0-9]', '', 'g') AS NUMERIC) AS VARCHAR) || '%' ");
-			where.append("OR CAST(CAST(regexp_replace(p.DocumentNo, '[^0-9]', '', 'g') AS NUMERIC) AS VARCHAR) LIKE ? ");
-			where.append("OR CAST(CAST(regexp_replace(p.CheckNo, '[^0-9]', '', 'g') AS NUMERIC) AS VARCHAR) LIKE ? ");
+			where.append("OR ? LIKE '%' || p.DocumentNoDigits || '%' ");
+			where.append("OR ? LIKE '%' || p.CheckNoDigits || '%' ");
+			where.append("OR p.DocumentNoDigits LIKE ? ");
+			where.append("OR p.CheckNoDigits LIKE ? ");
 			params.add(ibs.getMemo());
 			params.add(ibs.getMemo());
 			params.add("%" + ibs.getMemo() + "%");
@@ -123,10 +124,8 @@ public class WithoutZero implements BankStatementMatcherInterface {
 		}
 		//	Validate amount for it
 		boolean isReceipt = ibs.getTrxAmt().compareTo(Env.ZERO) > 0;
-		where.append("(p.PayAmt = ? ");
-		params.add(isReceipt
-				? ibs.getTrxAmt()
-						: ibs.getTrxAmt().negate());
+		where.append("(p.SignedAmt = ? ");
+		params.add(ibs.getTrxAmt());
 		//	Add Receipt
 		where.append("AND p.IsReceipt = ? )");
 		params.add(isReceipt);
@@ -137,8 +136,7 @@ public class WithoutZero implements BankStatementMatcherInterface {
 		where.append("(p.C_BankAccount_ID = ?)");
 		params.add(ibs.getC_BankAccount_ID());
 		//	Additional validation
-		where.append(" AND p.DocStatus IN('CO', 'CL')");
-		where.append(" AND p.IsReconciled = 'N'");
+		where.append(" AND p.IsStaged = 'N'");
 		where.append(" AND NOT EXISTS(SELECT 1 FROM I_BankStatement i WHERE i.C_Payment_ID = p.C_Payment_ID) ");
 		//	Add Order By
 		orderByClause.append("p.DateTrx ASC");
@@ -156,55 +154,10 @@ public class WithoutZero implements BankStatementMatcherInterface {
 			info.setC_Payment_ID(paymentId);
 		}
 		//	Set Business Partner
-		if(!Util.isEmpty(ibs.getEftPayeeAccount())) {
-			String additionaWhereClause = "";
-			String businessPartnerTaxId = ibs.getEftPayeeAccount().trim();
-			businessPartnerTaxId = businessPartnerTaxId.replace("-", "").trim();
-			String businessPartneType = businessPartnerTaxId.substring(0, 1);
-			businessPartnerTaxId = businessPartnerTaxId.replaceAll("\\D+", "");
-			businessPartnerTaxId = getValidReference(businessPartnerTaxId);
-			businessPartnerTaxId = "%" + businessPartnerTaxId + "%";
-			List<Object> businessPartnerParameters = new ArrayList<>();
-			businessPartnerParameters.add(ibs.getAD_Client_ID());
-			businessPartnerParameters.add(businessPartnerTaxId);
-			businessPartnerParameters.add(businessPartnerTaxId);
-			if(!Util.isEmpty(businessPartneType)) {
-				businessPartneType = businessPartneType+ "%";
-				businessPartnerParameters.add(businessPartneType);
-				businessPartnerParameters.add(businessPartneType);
-				additionaWhereClause = " AND (UPPER(Value) LIKE ? OR UPPER(TaxID) LIKE ?)";
-			}
-			//	Find
-			int businessPartnerId = DB.getSQLValue(ibs.get_TrxName(), 
-					"SELECT C_BPartner_ID FROM C_BPartner WHERE AD_Client_ID = ? AND (Value LIKE ? OR TaxID LIKE ?)" + additionaWhereClause, businessPartnerParameters);
-			if(businessPartnerId > 0) {
-				info.setC_BPartner_ID(businessPartnerId);
-			}
+		int businessPartnerId = MatcherUtil.getBusinessPartnerId(ibs);
+		if(businessPartnerId > 0) {
+			info.setC_BPartner_ID(businessPartnerId);
 		}
 		return info;
 	}
-	
-	/**
-	 * Get valid reference for value
-	 * @param reference
-	 * @return
-	 */
-	private String getValidReference(String reference) {
-		if(!Util.isEmpty(reference)) {
-			reference = reference.trim();
-			reference = reference.replace(".", "");
-			if(reference.matches("[+-]?\\d*(\\.\\d+)?")) {
-				Long longReference = null;
-				try {
-					longReference = Long.valueOf(reference);
-				} catch (Exception e) {
-					//	Nothing
-				}
-				if(longReference != null) {
-					reference = String.valueOf(longReference);
-				}
-			}
-		}
-		return reference;
 	}
-}
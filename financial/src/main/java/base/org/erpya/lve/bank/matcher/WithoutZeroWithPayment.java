@@ -32,6 +32,7 @@ import org.adempiere.core.domains.models.X_I_BankStatement;
 import org.compiere.util.DB;
 import org.compiere.util.Env;
 import org.compiere.util.Util;
+import org.erpya.lve.util.ReconciliationCandidate;
 
 /**
  * Add matcher by reference with like
@@ -69,7 +70,7 @@ public class WithoutZeroWithPayment implements BankStatementMatcherInterface {
 		//	
 		String ORDERVALUE = " DESC NULLS LAST";
 		StringBuffer sql = new StringBuffer("SELECT p.C_Payment_ID "
-				+ "FROM C_Payment p "
+				+ "FROM " + ReconciliationCandidate.Table_Name + " p "
 				+ "WHERE p.AD_Client_ID = ? ");
 		if(paymentWhereClause.length() > 0) {
 			sql.append(paymentWhereClause);
@@ -83,10 +84,10 @@ public class WithoutZeroWithPayment implements BankStatementMatcherInterface {
 		params.add(ibs.getAD_Client_ID());
 		//	For reference
 		if(!Util.isEmpty(ibs.getReferenceNo())) {
-			where.append("? LIKE '%' || CAST(CAST(regexp_replace(p.CheckNo, '[^0-9]', '', 'g') AS NUMERIC) AS VARCHAR) || '%' ");
-			where.append("OR ? LIKE '%' || CAST(CAST(regexp_replace(p.DocumentNo, '[^0-9]', '', 'g') AS NUMERIC) AS VARCHAR) || '%' ");
-			params.add(getValidReference(ibs.getReferenceNo()));
-			params.add(getValidReference(ibs.getReferenceNo()));
+			where.append("? LIKE '%' || p.CheckNoDigits || '%' ");
+			where.append("OR ? LIKE '%' || p.DocumentNoDigits || '%' ");
+			params.add(MatcherUtil.getValidReference(ibs.getReferenceNo()));
+			params.add(MatcherUtil.getValidReference(ibs.getReferenceNo()));
 		}
 		//	Add
 		if(where.length() > 0) {
@@ -106,10 +107,8 @@ public class WithoutZeroWithPayment implements BankStatementMatcherInterface {
 		}
 		//	Validate amount for it
 		boolean isReceipt = ibs.getTrxAmt().compareTo(Env.ZERO) > 0;
-		where.append("(p.PayAmt = ? ");
-		params.add(isReceipt
-				? ibs.getTrxAmt()
-						: ibs.getTrxAmt().negate());
+		where.append("(p.SignedAmt = ? ");
+		params.add(ibs.getTrxAmt());
 		//	Add Receipt
 		where.append("AND p.IsReceipt = ? )");
 		params.add(isReceipt);
@@ -120,8 +119,7 @@ public class WithoutZeroWithPayment implements BankStatementMatcherInterface {
 		where.append("(p.C_BankAccount_ID = ?)");
 		params.add(ibs.getC_BankAccount_ID());
 		//	Additional validation
-		where.append(" AND p.DocStatus IN('CO', 'CL')");
-		where.append(" AND p.IsReconciled = 'N'");
+		where.append(" AND p.IsStaged = 'N'");
 		where.append(" AND NOT EXISTS(SELECT 1 FROM I_BankStatement i WHERE i.C_Payment_ID = p.C_Payment_ID) ");
 		//	Add Order By
 		orderByClause.append("p.DateTrx ASC");
@@ -140,28 +138,4 @@ public class WithoutZeroWithPayment implements BankStatementMatcherInterface {
 		}
 		return info;
 	}
-	
-	/**
-	 * Get valid reference for value
-	 * @param reference
-	 * @return
-	 */
-	private String getValidReference(String reference) {
-		if(!Util.isEmpty(reference)) {
-			reference = reference.trim();
-			reference = reference.replace(".", "");
-			if(reference.matches("[+-]?\\d*(\\.\\d+)?")) {
-				Long longReference = null;
-				try {
-					longReference = Long.valueOf(reference);
-				} catch (Exception e) {
-					//	Nothing
-				}
-				if(longReference != null) {
-					reference = String.valueOf(longReference);
-				}
-			}
-		}
-		return reference;
 	}
-}
@@ -0,0 +1,116 @@
+/******************************************************************************
+ * Product: ADempiere ERP & CRM Smart Business Solution                       *
+ * Copyright (C) 2006-2017 ADempiere Foundation, All Rights Reserved.         *
+ * This program is free software, you can redistribute it and/or modify it    *
+ * under the terms version 2 of the GNU General Public License as published   *
+ * or (at your option) any later version.                                     *
+ * by the Free Software Foundation. This program is distributed in the hope   *
+ * that it will be useful, but WITHOUT ANY WARRANTY, without even the implied *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.           *
+ * See the GNU General Public License for more details.                       *
+ * You should have received a copy of the GNU General Public License along    *
+ * with this program, if not, write to the Free Software Foundation, Inc.,    *
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.                     *
+ * For the text or an alternative of this public license, you may reach us    *
+ * or via info@adempiere.net                                                  *
+ * or https://github.com/adempiere/adempiere/blob/develop/license.html        *
+package org.erpya.lve.process;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.adempiere.exceptions.AdempiereException;
+import org.compiere.model.I_C_PaySelectionCheck;
+import org.compiere.model.MAttachment;
+import org.compiere.model.MBankAccount;
+import org.compiere.model.MPaySelection;
+import org.compiere.model.MPaySelectionCheck;
+import org.compiere.model.Query;
+import org.compiere.util.Util;
+import org.erpya.lve.bank.exp.LVEPaymentExportList;
+import org.erpya.lve.bank.exp.PaymentExportJob;
+import org.erpya.lve.bank.exp.PaymentExportService;
+
+/** Generated Process for (Export Pay Selection File)
+ *  Run export of bank as background job and attach the file to pay selection,
+ *  an unchanged pay selection is served from cache of exports
+ *  @author ADempiere (generated) 
+ *  @version Release 3.9.4
+ */
+public class ExportPaySelectionFile extends ExportPaySelectionFileAbstract
+{
+	/**	Wait time between progress updates	*/
+	private static final long PROGRESS_WAIT_TIME = 500;
+
+	@Override
+	protected void prepare()
+	{
+		super.prepare();
+		if(getPaySelectionId() <= 0) {
+			setPaySelectionId(getRecord_ID());
+		}
+	}
+
+	@Override
+	protected String doIt() throws Exception
+	{
+		if(getPaySelectionId() <= 0) {
+			throw new AdempiereException("@C_PaySelection_ID@ @NotFound@");
+		}
+		MPaySelection paySelection = new MPaySelection(getCtx(), getPaySelectionId(), get_TrxName());
+		MBankAccount bankAccount = MBankAccount.get(getCtx(), paySelection.getC_BankAccount_ID());
+		if(Util.isEmpty(bankAccount.getPaymentExportClass())) {
+			throw new AdempiereException("@PaymentExportClass@ @NotFound@");
+		}
+		Class<?> exporterClass = Class.forName(bankAccount.getPaymentExportClass());
+		if(!LVEPaymentExportList.class.isAssignableFrom(exporterClass)) {
+			throw new AdempiereException("@PaymentExportClass@ @Invalid@");
+		}
+		LVEPaymentExportList exporter = (LVEPaymentExportList) exporterClass.newInstance();
+		//	Checks
+		StringBuffer whereClause = new StringBuffer(I_C_PaySelectionCheck.COLUMNNAME_C_PaySelection_ID + " = ?");
+		List<Object> parameters = new ArrayList<Object>();
+		parameters.add(paySelection.getC_PaySelection_ID());
+		if(!Util.isEmpty(getPaymentRule())) {
+			whereClause.append(" AND ").append(I_C_PaySelectionCheck.COLUMNNAME_PaymentRule).append(" = ?");
+			parameters.add(getPaymentRule());
+		}
+		List<MPaySelectionCheck> checks = new Query(getCtx(), I_C_PaySelectionCheck.Table_Name, whereClause.toString(), get_TrxName())
+				.setParameters(parameters)
+				.setOnlyActiveRecords(true)
+				.setOrderBy(I_C_PaySelectionCheck.COLUMNNAME_C_PaySelectionCheck_ID)
+				.list();
+		if(checks.isEmpty()) {
+			return "@NoLines@";
+		}
+		//	Run
+		File folder = Files.createTempDirectory("LVE_PaymentExport").toFile();
+		PaymentExportJob job = PaymentExportService.submit(exporter, checks, new File(folder, paySelection.getDocumentNo()));
+		try {
+			while(!job.waitFor(PROGRESS_WAIT_TIME)) {
+				statusUpdate(job.getProgress() + " / " + checks.size());
+			}
+		} catch (InterruptedException e) {
+			job.cancel();
+			throw new AdempiereException("@Cancelled@");
+		}
+		if(job.getStatus().equals(PaymentExportJob.STATUS_Error)) {
+			throw new AdempiereException(job.getError());
+		}
+		if(job.getStatus().equals(PaymentExportJob.STATUS_Cancelled)
+				|| job.getFileName() == null) {
+			return "@Cancelled@";
+		}
+		//	Attach files
+		MAttachment attachment = paySelection.createAttachment();
+		List<File> exportedFiles = new ArrayList<File>();
+		job.getFileNames().forEach(fileName -> exportedFiles.add(new File(fileName)));
+		exportedFiles.forEach(exportedFile -> attachment.addEntry(exportedFile));
+		attachment.saveEx();
+		exportedFiles.forEach(exportedFile -> exportedFile.delete());
+		folder.delete();
+		return "@Created@ = " + job.getExportedPayments() + " - " + new File(job.getFileName()).getName();
+	}
+}
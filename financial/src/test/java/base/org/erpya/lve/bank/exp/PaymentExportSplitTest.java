@@ -0,0 +1,170 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.bank.exp;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.compiere.model.MPaySelection;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Split export is written by many workers: each file has its own batch number that fits on
+ * layout, the files of workers are kept and a cancel of parent exporter reaches all exporters of files
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class PaymentExportSplitTest {
+
+	/**	Workers	*/
+	private static final int WORKERS = 8;
+	/**	Time out of waits	*/
+	private static final long TIMEOUT = 10;
+
+	@Test
+	public void testBatchNoOfSingleFile() {
+		assertEquals("1000", new BNC().getBatchNo(getPaySelection("1000")));
+	}
+
+	@Test
+	public void testBatchNoOfSplitFiles() throws Exception {
+		MPaySelection paySelection = getPaySelection("1000");
+		Set<String> batchNumbers = ConcurrentHashMap.newKeySet();
+		List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+		for(int fileNo = 1; fileNo <= 24; fileNo++) {
+			int currentFileNo = fileNo;
+			tasks.add(() -> {
+				LVEPaymentExportList partitionExporter = new BNC();
+				partitionExporter.setFileNo(currentFileNo);
+				String batchNo = partitionExporter.getBatchNo(paySelection);
+				batchNumbers.add(batchNo);
+				return batchNo;
+			});
+		}
+		List<Future<String>> results = runAll(tasks);
+		for(int index = 0; index < results.size(); index++) {
+			assertEquals("1000" + String.format("%02d", index + 1), results.get(index).get());
+		}
+		assertEquals(tasks.size(), batchNumbers.size());
+	}
+
+	@Test
+	public void testBatchNoFitsLayout() {
+		//	Venezuela cut the batch number to 8 characters
+		LVEPaymentExportList exporter = new Venezuela();
+		assertEquals("12345624", LVEPaymentExportList.getBatchNo("123456", 24));
+		assertNull(exporter.validateBatchNo("123456", 24));
+		//	A single file keeps the document number
+		assertNull(exporter.validateBatchNo("1234567", 1));
+		//	Split files would be cut and repeated
+		assertNotNull(exporter.validateBatchNo("1234567", 2));
+		assertNotNull(exporter.validateBatchNo("123456", 100));
+		//	Without length the batch number is not validated
+		assertNull(new Banesco().validateBatchNo("1234567890", 24));
+	}
+
+	@Test
+	public void testCancelReachesPartitionExporters() throws Exception {
+		for(int iteration = 0; iteration < 100; iteration++) {
+			LVEPaymentExportList exporter = new BNC();
+			List<LVEPaymentExportList> partitionExporters = new ArrayList<LVEPaymentExportList>();
+			List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+			for(int fileNo = 1; fileNo <= WORKERS; fileNo++) {
+				LVEPaymentExportList partitionExporter = new BNC();
+				partitionExporters.add(partitionExporter);
+				tasks.add(() -> {
+					exporter.addPartitionExporter(partitionExporter);
+					return true;
+				});
+			}
+			//	Cancel while workers are added
+			tasks.add(WORKERS / 2, () -> {
+				exporter.cancel();
+				return true;
+			});
+			runAll(tasks);
+			assertTrue(exporter.isCancelled());
+			partitionExporters.forEach(partitionExporter -> assertTrue(partitionExporter.isCancelled()));
+		}
+	}
+
+	@Test
+	public void testFileNamesOfWorkers() throws Exception {
+		LVEPaymentExportList exporter = new BNC();
+		List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+		for(int fileNo = 1; fileNo <= WORKERS; fileNo++) {
+			int currentFileNo = fileNo;
+			tasks.add(() -> {
+				for(int file = 0; file < 100; file++) {
+					exporter.addExportFileName("File_" + currentFileNo + "_" + file);
+				}
+				return true;
+			});
+		}
+		runAll(tasks);
+		assertEquals(WORKERS * 100, exporter.getExportFileNames().size());
+	}
+
+	/**
+	 * Run tasks on many threads, the tasks are started at same time
+	 * @param tasks
+	 * @return results in order of tasks
+	 * @throws Exception
+	 */
+	private <T> List<Future<T>> runAll(List<Callable<T>> tasks) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<T>> results = new ArrayList<Future<T>>();
+		try {
+			tasks.forEach(task -> results.add(executor.submit(() -> {
+				start.await(TIMEOUT, TimeUnit.SECONDS);
+				return task.call();
+			})));
+			start.countDown();
+			for(Future<T> result : results) {
+				result.get(TIMEOUT, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdown();
+		}
+		return results;
+	}
+
+	/**
+	 * Get payment selection
+	 * @param documentNo
+	 * @return
+	 */
+	private MPaySelection getPaySelection(String documentNo) {
+		MPaySelection paySelection = mock(MPaySelection.class);
+		when(paySelection.getDocumentNo()).thenReturn(documentNo);
+		return paySelection;
+	}
+}
@@ -0,0 +1,146 @@
+/**************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                               *
+ * This program is free software; you can redistribute it and/or modify it    		  *
+ * under the terms version 2 or later of the GNU General Public License as published  *
+ * by the Free Software Foundation. This program is distributed in the hope           *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied         *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.                   *
+ * See the GNU General Public License for more details.                               *
+ * You should have received a copy of the GNU General Public License along            *
+ * with this program; if not, printLine to the Free Software Foundation, Inc.,        *
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.                             *
+ * For the text or an alternative of this public license, you may reach us            *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, S.A. All Rights Reserved.  *
+ * Contributor: Yamel Senih ysenih@erpya.com                                          *
+ * Contributor: Carlos Parada cparada@erpya.com                                       *
+ * See: www.erpya.com                                                                 *
+ *************************************************************************************/
+package org.erpya.lve.bank.matcher;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Timestamp;
+
+import org.adempiere.core.domains.models.X_I_BankStatement;
+import org.erpya.lve.bank.matcher.FusedMatcher.Candidate;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Rules of {@link FusedMatcher} evaluated in memory give the same result of the query of each single matcher
+ * @author Yamel Senih, ysenih@erpya.com , http://www.erpya.com
+ */
+public class FusedMatcherTest {
+
+	/**	Matcher	*/
+	private final FusedMatcher matcher = new FusedMatcher();
+
+	@Test
+	public void testCurrencyAmountAndTrxDate() {
+		Timestamp dateTrx = Timestamp.valueOf("2020-01-15 00:00:00");
+		Candidate candidate = getCandidate(dateTrx, null, null, null, null);
+		//	Without dates any payment is valid
+		X_I_BankStatement ibs = mock(X_I_BankStatement.class);
+		assertTrue(matcher.isTrxDateMatched(ibs, candidate));
+		//	Any date of line
+		when(ibs.getEftStatementDate()).thenReturn(Timestamp.valueOf("2020-01-14 00:00:00"));
+		when(ibs.getDateAcct()).thenReturn(dateTrx);
+		assertTrue(matcher.isTrxDateMatched(ibs, candidate));
+		when(ibs.getDateAcct()).thenReturn(Timestamp.valueOf("2020-01-16 00:00:00"));
+		assertFalse(matcher.isTrxDateMatched(ibs, candidate));
+	}
+
+	@Test
+	public void testWithoutZero() {
+		Candidate candidate = getCandidate(null, "FAC-00123", null, "123", null);
+		X_I_BankStatement ibs = getLine("000123", null, null);
+		assertTrue(matcher.isReferenceWithoutZeroMatched(ibs, candidate));
+		//	Reference contains digits of payment and digits of payment contain reference
+		assertTrue(matcher.isReferenceWithoutZeroMatched(getLine("9912399", null, null), candidate));
+		assertTrue(matcher.isReferenceWithoutZeroMatched(getLine("12", null, null), candidate));
+		assertFalse(matcher.isReferenceWithoutZeroMatched(getLine("555", null, null), candidate));
+		//	Memo is only evaluated when the reference is not found
+		assertTrue(matcher.isReferenceWithoutZeroMatched(getLine("555", "PAGO 123", null), candidate));
+		assertFalse(matcher.isReferenceWithoutZeroMatched(getLine("555", "PAGO 456", null), candidate));
+		//	Memo without reference is not a criteria of single matcher
+		assertFalse(matcher.isReferenceWithoutZeroMatched(getLine(null, "PAGO 123", null), candidate));
+		assertTrue(matcher.isReferenceWithoutZeroMatched(getLine(null, null, null), candidate));
+		//	Payment without references
+		assertFalse(matcher.isReferenceWithoutZeroMatched(getLine("123", null, null), getCandidate(null, null, null, null, null)));
+	}
+
+	@Test
+	public void testWithoutZeroWithPayment() {
+		Candidate candidate = getCandidate(null, null, null, "123", "456");
+		assertTrue(matcher.isReferenceWithPaymentMatched(getLine(null, null, null), candidate));
+		assertTrue(matcher.isReferenceWithPaymentMatched(getLine("0091234", null, null), candidate));
+		assertTrue(matcher.isReferenceWithPaymentMatched(getLine("456", null, null), candidate));
+		//	Only reference contains digits of payment
+		assertFalse(matcher.isReferenceWithPaymentMatched(getLine("12", null, null), candidate));
+	}
+
+	@Test
+	public void testDirectDebitBatch() {
+		Timestamp valutaDate = Timestamp.valueOf("2020-01-15 00:00:00");
+		Candidate candidate = getCandidate(valutaDate, "FAC-001", "CH-9", null, null);
+		assertTrue(matcher.isValutaDateMatched(getLine(null, null, valutaDate), candidate));
+		assertFalse(matcher.isValutaDateMatched(getLine(null, null, null), candidate));
+		assertFalse(matcher.isValutaDateMatched(getLine(null, null, Timestamp.valueOf("2020-01-16 00:00:00")), candidate));
+		//	Memo is normalized before compare
+		assertTrue(matcher.isMemoMatched(getLine(null, " Pago: fac-001. ", valutaDate), candidate));
+		assertTrue(matcher.isMemoMatched(getLine(null, "ch-9", valutaDate), candidate));
+		assertFalse(matcher.isMemoMatched(getLine(null, "FAC-002", valutaDate), candidate));
+		assertTrue(matcher.isMemoMatched(getLine(null, null, valutaDate), candidate));
+	}
+
+	@Test
+	public void testDirectDebitBatchByDay() {
+		Candidate candidate = getCandidate(null, null, null, null, null);
+		candidate.paymentMethodValue = "DD";
+		candidate.paymentMethodName = "DOMICILIACION";
+		candidate.paymentMethodDescription = "DEBITO DIRECTO";
+		assertTrue(matcher.isPaymentMethodMatched(getLine(null, " dd ", null), candidate));
+		assertTrue(matcher.isPaymentMethodMatched(getLine(null, "Domiciliacion.", null), candidate));
+		assertTrue(matcher.isPaymentMethodMatched(getLine(null, "Debito Directo", null), candidate));
+		assertFalse(matcher.isPaymentMethodMatched(getLine(null, "Domiciliación", null), candidate));
+		assertTrue(matcher.isPaymentMethodMatched(getLine(null, null, null), candidate));
+	}
+
+	/**
+	 * Get statement line
+	 * @param referenceNo
+	 * @param memo
+	 * @param valutaDate
+	 * @return
+	 */
+	private X_I_BankStatement getLine(String referenceNo, String memo, Timestamp valutaDate) {
+		X_I_BankStatement ibs = mock(X_I_BankStatement.class);
+		when(ibs.getReferenceNo()).thenReturn(referenceNo);
+		when(ibs.getMemo()).thenReturn(memo);
+		when(ibs.getValutaDate()).thenReturn(valutaDate);
+		return ibs;
+	}
+
+	/**
+	 * Get candidate payment
+	 * @param dateTrx
+	 * @param documentNo
+	 * @param checkNo
+	 * @param documentNoDigits
+	 * @param checkNoDigits
+	 * @return
+	 */
+	private Candidate getCandidate(Timestamp dateTrx, String documentNo, String checkNo, String documentNoDigits, String checkNoDigits) {
+		Candidate candidate = new Candidate();
+		candidate.paymentId = 100;
+		candidate.isAmountMatched = true;
+		candidate.dateTrx = dateTrx;
+		candidate.documentNo = documentNo;
+		candidate.checkNo = checkNo;
+		candidate.documentNoDigits = documentNoDigits;
+		candidate.checkNoDigits = checkNoDigits;
+		return candidate;
+	}
+}
@@ -0,0 +1,67 @@
+/**************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                               *
+ * This program is free software; you can redistribute it and/or modify it    		  *
+ * under the terms version 2 or later of the GNU General Public License as published  *
+ * by the Free Software Foundation. This program is distributed in the hope           *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied         *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.                   *
+ * See the GNU General Public License for more details.                               *
+ * You should have received a copy of the GNU General Public License along            *
+ * with this program; if not, printLine to the Free Software Foundation, Inc.,        *
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.                             *
+ * For the text or an alternative of this public license, you may reach us            *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, S.A. All Rights Reserved.  *
+ * Contributor: Yamel Senih ysenih@erpya.com                                          *
+ * Contributor: Carlos Parada cparada@erpya.com                                       *
+ * See: www.erpya.com                                                                 *
+ *************************************************************************************/
+package org.erpya.lve.bank.matcher;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.adempiere.core.domains.models.X_I_BankStatement;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Values of single matchers kept by shared functions of {@link MatcherUtil}
+ * @author Yamel Senih, ysenih@erpya.com , http://www.erpya.com
+ */
+public class MatcherUtilTest {
+
+	@Test
+	public void testValidReference() {
+		assertNull(MatcherUtil.getValidReference(null));
+		assertEquals("", MatcherUtil.getValidReference(""));
+		//	Zeros on left, dots and spaces are removed from numbers
+		assertEquals("123", MatcherUtil.getValidReference("000123"));
+		assertEquals("1234", MatcherUtil.getValidReference(" 1.234 "));
+		assertEquals("0", MatcherUtil.getValidReference("0000"));
+		assertEquals("-7", MatcherUtil.getValidReference("-007"));
+		assertEquals("5", MatcherUtil.getValidReference("+5"));
+		//	Only dots are removed if it is not a number
+		assertEquals("AB-0012", MatcherUtil.getValidReference("AB-00.12"));
+		assertEquals("0012 34", MatcherUtil.getValidReference("0012 34"));
+		//	Numbers out of range are kept
+		assertEquals("00099999999999999999999", MatcherUtil.getValidReference("00099999999999999999999"));
+	}
+
+	@Test
+	public void testValidMemo() {
+		assertEquals("PAGO FAC-001", MatcherUtil.getValidMemo(" Pago: FAC-001. "));
+		assertEquals("DOMICILIACIN", MatcherUtil.getValidMemo("Domiciliación"));
+		assertEquals("NOMINA 2020-01", MatcherUtil.getValidMemo("Nomina 2020-01"));
+		assertEquals("", MatcherUtil.getValidMemo("*/#"));
+	}
+
+	@Test
+	public void testBusinessPartnerWithoutPayeeAccount() {
+		X_I_BankStatement ibs = mock(X_I_BankStatement.class);
+		when(ibs.getEftPayeeAccount()).thenReturn(null);
+		assertEquals(-1, MatcherUtil.getBusinessPartnerId(ibs));
+		when(ibs.getEftPayeeAccount()).thenReturn("");
+		assertEquals(-1, MatcherUtil.getBusinessPartnerId(ibs));
+	}
+}
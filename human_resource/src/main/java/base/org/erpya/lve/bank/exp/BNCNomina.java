@@ -79,7 +79,7 @@ public class BNCNomina extends LVEPaymentExportList {
 				addError(Msg.parseTranslation(Env.getCtx(), "@C_Bank_ID@: " + bank.getName() + " @SwiftCode@ @NotFound@"));
 			}
 			//	Fields of Control Register (fixed data)
-			String paymentBatchNo = processValue(paySelection.getDocumentNo());
+			String paymentBatchNo = processValue(getBatchNo(paySelection));
 			paymentBatchNo = leftPadding(paymentBatchNo, 15, "0", true);
 			String orgTaxId = processValue(orgInfo.getTaxID().replace("-", "")).trim();
 			//	Process Person Type
@@ -87,7 +87,7 @@ public class BanplusNomina extends LVEPaymentExportList {
 			String payDate = shortFormat.format(paySelection.getPayDate());
 			
 			//	Fields of Control Register (fixed data)
-			String paymentBatchNo = processValue(paySelection.getDocumentNo());
+			String paymentBatchNo = processValue(getBatchNo(paySelection));
 			paymentBatchNo = leftPadding(paymentBatchNo, 15, "0", true);
 			String orgTaxId = processValue(orgInfo.getTaxID().replace("-", "")).trim();
 			//	Process Person Type
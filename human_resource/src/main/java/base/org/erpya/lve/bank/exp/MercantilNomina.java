@@ -89,7 +89,7 @@ public class MercantilNomina extends LVEPaymentExportList {
 				addError(Msg.parseTranslation(Env.getCtx(), "@BankClientNo@ @NotFound@"));
 			}
 			//	Fields of Control Register (fixed data)
-			String paymentBatchNo = processValue(paySelection.getDocumentNo());
+			String paymentBatchNo = processValue(getBatchNo(paySelection));
 			paymentBatchNo = leftPadding(paymentBatchNo, 15, "0", true);
 			String orgTaxId = processValue(orgInfo.getTaxID().replace("-", "")).trim();
 			//	Process Person Type
@@ -78,10 +78,10 @@ public class MercantilNominaFacil extends LVEPaymentExportList {
 				addError(Msg.parseTranslation(Env.getCtx(), "@C_Bank_ID@: " + bank.getName() + " @SwiftCode@ @NotFound@"));
 			}
 			//	Fields of Control Register (fixed data)
-			String paymentRequestNo = processValue(paySelection.getDocumentNo());
+			String paymentRequestNo = processValue(getBatchNo(paySelection));
 			paymentRequestNo = leftPadding(paymentRequestNo, 15, "0", true);
 			//	Identify
-			String identifyRequestNo = processValue(paySelection.getDocumentNo());
+			String identifyRequestNo = processValue(getBatchNo(paySelection));
 			identifyRequestNo = leftPadding(identifyRequestNo, 8, "0", true);
 			// Product Type
 			String productType = "NOMIN";
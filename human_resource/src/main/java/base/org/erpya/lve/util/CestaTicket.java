@@ -16,32 +16,39 @@
  *****************************************************************************/
 package org.erpya.lve.util;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.Writer;
 import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Properties;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.Set;
 import java.util.logging.Level;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import org.adempiere.core.domains.models.X_RV_HR_ProcessDetail;
 import org.adempiere.exceptions.AdempiereException;
 import org.compiere.model.MBPartner;
-import org.compiere.model.MLocation;
 import org.compiere.model.MOrgInfo;
 import org.compiere.util.CLogger;
 import org.compiere.util.DB;
 import org.compiere.util.Env;
 import org.compiere.util.TimeUtil;
 import org.compiere.util.Util;
-import org.eevolution.hr.model.MHREmployee;
 import org.spin.hr.util.AbstractPayrollReportExport;
 import org.spin.pr.model.MHRProcessReport;
 
@@ -101,20 +108,29 @@ public class CestaTicket extends AbstractPayrollReportExport {
 				//	Accounting Date in format dd MM yyyy
 				.append(new SimpleDateFormat("ddMMyyyy").format(dateAcct));
 			fileName = pathName.toString();
-			//	Get movements
-			Map<Integer, List<X_RV_HR_ProcessDetail>> summaryMovements = getDetail().stream().collect(Collectors.groupingBy(X_RV_HR_ProcessDetail::getHR_Employee_ID));
+			//	Sum amount by employee in one pass
+			Map<Integer, BigDecimal> summaryMovements = new HashMap<Integer, BigDecimal>();
+			for(X_RV_HR_ProcessDetail detail : getDetail()) {
+				summaryMovements.merge(detail.getHR_Employee_ID(), Optional.ofNullable(detail.getAmount()).orElse(Env.ZERO), BigDecimal::add);
+			}
+			//	Employees of payroll
+			Map<Integer, Employee> employees = Employee.getEmployees(summaryMovements.keySet());
 			//	Delete if exists file
 			Optional.ofNullable(file).ifPresent(fileToDelete -> fileToDelete.deleteOnExit());
-			FileWriter fileWriter = new FileWriter(file);
+			Writer fileWriter = new BufferedWriter(new FileWriter(file), 64 * 1024);
+			String dateAcctAsString = DATE_FORMAT.format(dateAcct);
+			StringBuilder line = new StringBuilder(256);
 			//	Write it
-			AtomicBoolean first = new AtomicBoolean(true);
-			for(Entry<Integer, List<X_RV_HR_ProcessDetail>> movement : summaryMovements.entrySet()) {
-				int empoloyeeId = movement.getKey();
-				BigDecimal amount = movement.getValue().stream().map(x -> x.getAmount()).reduce(BigDecimal.ZERO, BigDecimal::add);
-				Employee employee = Employee.newInstance(empoloyeeId);
-				StringBuffer line = new StringBuffer();
-				if(first.get()) {
-					first.set(false);
+			boolean first = true;
+			for(Entry<Integer, BigDecimal> movement : summaryMovements.entrySet()) {
+				Employee employee = employees.get(movement.getKey());
+				if(employee == null) {
+					s_log.warning("@HR_Employee_ID@ @NotFound@: " + movement.getKey());
+					continue;
+				}
+				line.setLength(0);
+				if(first) {
+					first = false;
 				} else {
 					line.append(Env.NL);
 				}
@@ -134,9 +150,9 @@ public class CestaTicket extends AbstractPayrollReportExport {
 					.append(productCode)
 					.append(SEPARATOR)
 					.append(SEPARATOR)
-					.append(DECIMAL_FORMAT.format(amount).replace(".", ","))	//	Amount of the Load
+					.append(DECIMAL_FORMAT.format(movement.getValue()).replace(".", ","))	//	Amount of the Load
 					.append(SEPARATOR)
-					.append(DATE_FORMAT.format(dateAcct))
+					.append(dateAcctAsString)
 					.append(SEPARATOR)
 					.append(employee.getGender())
 					.append(SEPARATOR)
@@ -156,7 +172,7 @@ public class CestaTicket extends AbstractPayrollReportExport {
 					.append(SEPARATOR)
 					.append(SEPARATOR)
 				;
-				fileWriter.write(line.toString());
+				fileWriter.append(line);
 			}
 			fileWriter.flush();
 			fileWriter.close();
@@ -172,6 +188,12 @@ public class CestaTicket extends AbstractPayrollReportExport {
 	}
 	
 	private static class Employee {
+		/**	Maximum employees by query	*/
+		private static final int EMPLOYEES_BY_QUERY = 1000;
+		/**	Valid characters for name and value	*/
+		private static final Pattern NAME_AND_VALUE_PATTERN = Pattern.compile("[^a-zA-Z0-9á-źÁ-Ź ]");
+		/**	Valid characters for contact	*/
+		private static final Pattern CONTACT_PATTERN = Pattern.compile("[^a-zA-Z0-9-.]");
 		private String code;
 		private String name;
 		private String lastName;
@@ -183,22 +205,53 @@ public class CestaTicket extends AbstractPayrollReportExport {
 		private String placeOfBirth;
 		private int businessPartnerId;
 		
-		private Employee(int employeeId) {
-			MHREmployee employee = new MHREmployee(Env.getCtx(), employeeId, null);
-			MBPartner businessPartner = new MBPartner(Env.getCtx(), employee.getC_BPartner_ID(), null);
-			businessPartnerId = businessPartner.getC_BPartner_ID(); 
-			code = processNameAndValue(businessPartner.getValue());
-			name = getFirstOnly(processNameAndValue(Optional.ofNullable(businessPartner.getName()).orElse("").trim()));
-			lastName = getFirstOnly(processNameAndValue(Optional.ofNullable(businessPartner.getName2()).orElse("").trim()));
-			birthday = businessPartner.getBirthday();
+		/**
+		 * Load employees with business partner, place of birth and contact in two queries for each block of employees
+		 * @param employeeIds
+		 * @return map of employee by HR_Employee_ID
+		 */
+		public static Map<Integer, Employee> getEmployees(Collection<Integer> employeeIds) {
+			Map<Integer, Employee> employees = new HashMap<Integer, Employee>();
+			List<Integer> employeeList = new ArrayList<Integer>(employeeIds);
+			for(int fromIndex = 0; fromIndex < employeeList.size(); fromIndex += EMPLOYEES_BY_QUERY) {
+				String employeeClause = employeeList.subList(fromIndex, Math.min(fromIndex + EMPLOYEES_BY_QUERY, employeeList.size())).stream()
+						.map(String::valueOf)
+						.collect(Collectors.joining(", "));
+				//	A business partner can have more than one employee record
+				Map<Integer, List<Employee>> employeesByPartner = new HashMap<Integer, List<Employee>>();
+				String sql = "SELECT e.HR_Employee_ID, bp.C_BPartner_ID, bp.Value, bp.Name, bp.Name2, bp.Birthday, bp.Gender, bp.MaritalStatus, l.City AS PlaceOfBirth"
+						+ " FROM HR_Employee e"
+						+ " INNER JOIN C_BPartner bp ON (bp.C_BPartner_ID = e.C_BPartner_ID)"
+						+ " LEFT JOIN C_Location l ON (l.C_Location_ID = bp.PlaceOfBirth_ID)"
+						+ " WHERE e.HR_Employee_ID IN(" + employeeClause + ")";
+				DB.runResultSet(null, sql, new ArrayList<Object>(), resultSet -> {
+					while(resultSet.next()) {
+						Employee employee = new Employee(resultSet);
+						employees.put(resultSet.getInt("HR_Employee_ID"), employee);
+						employeesByPartner.computeIfAbsent(employee.businessPartnerId, partnerId -> new ArrayList<Employee>()).add(employee);
+					}
+				}).onFailure(throwable -> {
+					throw new AdempiereException(throwable);
+				});
+				fillContactValues(employeesByPartner);
+			}
+			return employees;
+		}
+		
+		private Employee(ResultSet resultSet) throws SQLException {
+			businessPartnerId = resultSet.getInt("C_BPartner_ID"); 
+			code = processNameAndValue(resultSet.getString("Value"));
+			name = getFirstOnly(processNameAndValue(Optional.ofNullable(resultSet.getString("Name")).orElse("").trim()));
+			lastName = getFirstOnly(processNameAndValue(Optional.ofNullable(resultSet.getString("Name2")).orElse("").trim()));
+			birthday = resultSet.getTimestamp("Birthday");
 			if(birthday == null) {
 				birthday = TimeUtil.getDay(System.currentTimeMillis());
 			}
-			gender = Optional.ofNullable(businessPartner.getGender()).orElse("").trim();
+			gender = Optional.ofNullable(resultSet.getString("Gender")).orElse("").trim();
 			if(Util.isEmpty(gender)) {
 				gender = MBPartner.GENDER_Male;
 			}
-			maritalStatus = Optional.ofNullable(businessPartner.getMaritalStatus()).orElse("").trim();
+			maritalStatus = Optional.ofNullable(resultSet.getString("MaritalStatus")).orElse("").trim();
 			if(Util.isEmpty(maritalStatus)) {
 				maritalStatus = MBPartner.MARITALSTATUS_Single;
 			}
@@ -213,64 +266,72 @@ public class CestaTicket extends AbstractPayrollReportExport {
 			} else if(maritalStatus.equals(MBPartner.MARITALSTATUS_Widow) || maritalStatus.equals(MBPartner.MARITALSTATUS_Windower)) {
 				maritalStatus = "V";
 			}
-			if(businessPartner.getPlaceOfBirth_ID() > 0) {
-				MLocation location = MLocation.get(businessPartner.getCtx(), businessPartner.getPlaceOfBirth_ID(), null);
-				if(location != null) {
-					placeOfBirth = location.getCity();
-				}
-			}
+			placeOfBirth = resultSet.getString("PlaceOfBirth");
 			if(Util.isEmpty(placeOfBirth)) {
 				placeOfBirth = "";
 			}
-			fillContactValues();
 		}
 		
 		private String getFirstOnly(String value) {
 			if(Util.isEmpty(value)) {
 				return "";
 			}
-			String[] split = value.split(" ");
-			if(split.length > 0) {
-				return split[0];
+			int separatorIndex = value.indexOf(' ');
+			if(separatorIndex < 0) {
+				return value;
 			}
-			return "";
+			return value.substring(0, separatorIndex);
 		}
 		
-		private void fillContactValues() {
-			String sql = "SELECT COALESCE(bpl.Phone, bpl.Phone2, usr.Phone, usr.Phone2, '') As Phone,"
+		/**
+		 * Fill phone and email of employees, the first contact of each business partner is used for all its employees
+		 * @param employeesByPartner
+		 */
+		private static void fillContactValues(Map<Integer, List<Employee>> employeesByPartner) {
+			if(employeesByPartner.isEmpty()) {
+				return;
+			}
+			String partnerClause = employeesByPartner.keySet().stream()
+					.map(String::valueOf)
+					.collect(Collectors.joining(", "));
+			String sql = "SELECT bp.C_BPartner_ID, COALESCE(bpl.Phone, bpl.Phone2, usr.Phone, usr.Phone2, '') As Phone,"
 					+ " COALESCE(bpl.EMail, usr.EMail, '') AS EMail"
 					+ " FROM C_BPartner bp"
 					+ " LEFT JOIN C_BPartner_Location bpl ON (bp.C_BPartner_ID = bpl.C_BPartner_ID)"
 					+ " LEFT JOIN AD_User usr ON (bp.C_BPartner_ID = usr.C_BPartner_ID)"
-					+ " WHERE bp.C_BPartner_ID = ? "
+					+ " WHERE bp.C_BPartner_ID IN(" + partnerClause + ")"
 					+ "	AND bp.IsEmployee = 'Y'";
-			List<Object> parameters = List.of(businessPartnerId);
-			DB.runResultSet(null, sql, parameters, resultSet -> {
-				if(resultSet.next()) {
-					phone = processContact(resultSet.getString("Phone"));
-					email = processContact(resultSet.getString("EMail"));
+			Set<Integer> filledPartners = new HashSet<Integer>();
+			DB.runResultSet(null, sql, new ArrayList<Object>(), resultSet -> {
+				while(resultSet.next()) {
+					int partnerId = resultSet.getInt("C_BPartner_ID");
+					if(!filledPartners.add(partnerId)) {
+						continue;
+					}
+					String phone = resultSet.getString("Phone");
+					String email = resultSet.getString("EMail");
+					employeesByPartner.get(partnerId).forEach(employee -> {
+						employee.phone = employee.processContact(phone);
+						employee.email = employee.processContact(email);
+					});
 				}
 			}).onFailure(throwable -> {
 				throw new AdempiereException(throwable);
 			});
 		}
 		
-		public static Employee newInstance(int businessPartnerId) {
-			return new Employee(businessPartnerId);
-		}
-		
 		public String processNameAndValue(String value) {
 			if(Util.isEmpty(value)) {
 				return value;
 			}
-			return value.replaceAll("[^a-zA-Z0-9á-źÁ-Ź ]", "").trim();
+			return NAME_AND_VALUE_PATTERN.matcher(value).replaceAll("").trim();
 		}
 		
 		public String processContact(String value) {
 			if(Util.isEmpty(value)) {
 				return value;
 			}
-			return value.replaceAll("[^a-zA-Z0-9-.]", "").trim();
+			return CONTACT_PATTERN.matcher(value).replaceAll("").trim();
 		}
 
 		public String getCode() {
@@ -16,14 +16,16 @@
  *****************************************************************************/
 package org.erpya.lve.util;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,13 +34,12 @@ import java.util.Properties;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
-import org.compiere.model.MBPartner;
+import org.adempiere.exceptions.AdempiereException;
 import org.compiere.model.MOrgInfo;
-import org.compiere.model.Query;
 import org.compiere.util.CLogger;
+import org.compiere.util.DB;
 import org.compiere.util.Env;
 import org.compiere.util.Util;
-import org.eevolution.hr.model.MHREmployee;
 import org.adempiere.core.domains.models.X_RV_HR_ProcessDetail;
 import org.spin.hr.util.AbstractPayrollReportExport;
 
@@ -53,35 +54,18 @@ public class HR_BANAVIH extends AbstractPayrollReportExport {
 
 	/** Logger										*/
 	static private CLogger	s_log = CLogger.getCLogger (HR_BANAVIH.class);
-	/** BPartner Info Index for Nationality	    	*/
-	private static final int     BP_NATIONALITY 	= 0;
-	/** BPartner Info Index for Tax ID		    	*/
-	private static final int     BP_TAX_ID 			= 1;
-	/** BPartner Info Index for First Name 1    	*/
-	private static final int     BP_FIRST_NAME_1 	= 2;
-	/** BPartner Info Index for First Name 1    	*/
-	private static final int     BP_FIRST_NAME_2 	= 3;
-	/** BPartner Info Index for First Name 1    	*/
-	private static final int     BP_LAST_NAME_1 	= 4;
-	/** BPartner Info Index for First Name 1    	*/
-	private static final int     BP_LAST_NAME_2 	= 5;
-	/** BPartner Info Index for Employee Start Date	*/
-	private static final int     EM_START_DATE 		= 6;
-	/** BPartner Info Index for Employee End Date	*/
-	private static final int     EM_END_DATE 		= 7;
-	
 	/**	Constant Payroll						*/
 	private final String		PAYROLL_CONSTANT= "N";
 	/**	Separator								*/
-	private final String 		SEPARATOR 		= ",";
+	private final char 			SEPARATOR 		= ',';
+	/**	Maximum partners by query				*/
+	private static final int	PARTNERS_BY_QUERY = 1000;
 	/**	Date Format								*/
 	private SimpleDateFormat 	dateFormat 		= null;
-	/**	Current Amount							*/
-	private BigDecimal 			currentAmount	= null;
-	/**	Current Process Report Line				*/
-	private X_RV_HR_ProcessDetail 	currentProcessDetail = null;
 	/**	File Writer								*/
-	private FileWriter 				fileWriter	= null;
+	private Writer 					fileWriter	= null;
+	/**	Reused line buffer						*/
+	private final StringBuilder		line 		= new StringBuilder(256);
 	/**	Number Lines							*/
 	private int 					lines 	= 0;
 	/** Name File								*/
@@ -94,8 +78,6 @@ public class HR_BANAVIH extends AbstractPayrollReportExport {
 	public boolean exportToFile(File file) {
 		//	Date Format
 		dateFormat = new SimpleDateFormat("ddMMyyyy");
-		//	Current Business Partner
-		int currentBusinessPartnerId = 0;
 		if (getDetail() == null || getDetail().isEmpty())
 			return false;
 		Optional<X_RV_HR_ProcessDetail> processDetail = getDetail().stream().findFirst();
@@ -115,25 +97,31 @@ public class HR_BANAVIH extends AbstractPayrollReportExport {
 		try {
 			//	
 			Optional.ofNullable(file).ifPresent(fileToDelete -> fileToDelete.deleteOnExit());
-			fileWriter = new FileWriter(file);
+			fileWriter = new BufferedWriter(new FileWriter(file), 64 * 1024);
 			//  write header
 			lines ++;
+			//	Sum amount by partner in one pass
+			Map<Integer, PartnerAmount> amounts = new HashMap<Integer, PartnerAmount>();
+			for(X_RV_HR_ProcessDetail detail : getDetail()) {
+				PartnerAmount partnerAmount = amounts.get(detail.getC_BPartner_ID());
+				if(partnerAmount == null) {
+					partnerAmount = new PartnerAmount(detail.getDateAcct());
+					amounts.put(detail.getC_BPartner_ID(), partnerAmount);
+				}
+				if(detail.getAmount() != null) {
+					partnerAmount.amount = partnerAmount.amount.add(detail.getAmount());
+				}
+			}
+			//	Partner names and employee dates for all partners
+			Map<Integer, PartnerInfo> partners = getPartnerInfo(amounts, processDetail.get().get_TrxName());
 			//  write lines
-			Map<Integer, List<X_RV_HR_ProcessDetail>> det = getDetail().stream().collect(Collectors.groupingBy(X_RV_HR_ProcessDetail::getC_BPartner_ID));
-			
-			for (Map.Entry<Integer, List<X_RV_HR_ProcessDetail>> detail : det.entrySet()) {
-				if (detail == null)
+			for (Map.Entry<Integer, PartnerAmount> partnerAmount : amounts.entrySet()) {
+				PartnerInfo partnerInfo = partners.get(partnerAmount.getKey());
+				if(partnerInfo == null) {
 					continue;
-				//	Verify Current Business Partner and Month
-				if(currentBusinessPartnerId != detail.getKey()) {
-					writeLine();
-					currentProcessDetail = detail.getValue().get(0);
-					currentBusinessPartnerId = detail.getKey();
-					currentAmount = detail.getValue().stream().map(x -> x.getAmount()).reduce(BigDecimal.ZERO, BigDecimal::add);
-				} 
+				}
+				writeLine(partnerInfo, partnerAmount.getValue());
 			}   
-			//  write last line
-			writeLine();
 			//	Close
 			fileWriter.flush();
 			fileWriter.close();
@@ -150,183 +138,244 @@ public class HR_BANAVIH extends AbstractPayrollReportExport {
 	/**
 	 * Write Line
 	 * @author <a href="mailto:yamelsenih@gmail.com">Yamel Senih</a> 8/12/2014, 15:08:36
+	 * @param partnerInfo
+	 * @param partnerAmount
 	 * @return void
 	 * @throws IOException 
 	 */
-	private void writeLine() throws IOException {
-		//	Valid Null Value
-		if(currentProcessDetail == null)
-			return;
-		//	Process Business Partner
-		Map<Integer,String> bpInfo = processBPartner(currentProcessDetail.getC_BPartner_ID(), currentProcessDetail.getDateAcct(), currentProcessDetail.get_TrxName());
-		//	Line
-		if(bpInfo == null)
+	private void writeLine(PartnerInfo partnerInfo, PartnerAmount partnerAmount) throws IOException {
+		//	Valid Employee
+		String startDate = partnerInfo.getStartDate(partnerAmount.dateAcct);
+		if(startDate == null)
 			return;
-		StringBuffer line = new StringBuffer();
+		line.setLength(0);
 		//	Amount
-		if(currentAmount == null)
-			currentAmount = Env.ZERO;
-		
-		String currentAmountAsString = DECIMAL_FORMAT.format(currentAmount);
+		String currentAmountAsString = DECIMAL_FORMAT.format(partnerAmount.amount);
 		
 		//	New Line
 		if(lines > 1)
 			line.append(Env.NL);
 		//	Nationality
-		line.append(bpInfo.get(BP_NATIONALITY))
+		line.append(partnerInfo.personType)
 			.append(SEPARATOR)
 			//	Tax ID
-			.append(bpInfo.get(BP_TAX_ID))
+			.append(partnerInfo.taxId)
 			.append(SEPARATOR)
 			//	First Name 1
-			.append(bpInfo.get(BP_FIRST_NAME_1))
+			.append(partnerInfo.firstName1)
 			.append(SEPARATOR)
 			//	First Name 2
-			.append(bpInfo.get(BP_FIRST_NAME_2))
+			.append(partnerInfo.firstName2)
 			.append(SEPARATOR)
 			//	Last Name 1
-			.append(bpInfo.get(BP_LAST_NAME_1))
+			.append(partnerInfo.lastName1)
 			.append(SEPARATOR)
 			//	Last Name 2
-			.append(bpInfo.get(BP_LAST_NAME_2))
-			.append(SEPARATOR)
-			//	Amount
-			.append(currentAmountAsString.replace(",", ".").replace(".", ""))
-			.append(SEPARATOR)
+			.append(partnerInfo.lastName2)
+			.append(SEPARATOR);
+		//	Amount without separators
+		for(int index = 0; index < currentAmountAsString.length(); index++) {
+			char character = currentAmountAsString.charAt(index);
+			if(character != ','
+					&& character != '.') {
+				line.append(character);
+			}
+		}
+		line.append(SEPARATOR)
 			//	Employee Start Date
-			.append(bpInfo.get(EM_START_DATE))
+			.append(startDate)
 			.append(SEPARATOR)
 			//	Employee End Date
-			.append(bpInfo.get(EM_END_DATE));
+			.append(partnerInfo.getEndDate(partnerAmount.dateAcct));
 		//	Write Line
-		fileWriter.write(line.toString());
+		fileWriter.append(line);
 		lines ++;
 	}
 	
 	/**
-	 * Process Business Partner
-	 * @param businessPartnerId
-	 * @param dateAcct
+	 * Get names of partners and employee dates, with one query for each block of partners
+	 * @param amounts
 	 * @param transactionName
-	 * @return String []
+	 * @return
 	 */
-	private Map<Integer,String>  processBPartner(int businessPartnerId, Timestamp dateAcct, String transactionName) {
-		Map<Integer,String> bpInfo = new HashMap<Integer, String>();
-
-		//	Get Business Partner
-		MBPartner bpartner = MBPartner.get(Env.getCtx(), businessPartnerId);
-		//	Get Name
-		String name = bpartner.getName();
-		String name2 = bpartner.getName2();
-		//	Valid Null
-		if(Util.isEmpty(name)) {
-			name = "";
+	private Map<Integer, PartnerInfo> getPartnerInfo(Map<Integer, PartnerAmount> amounts, String transactionName) {
+		Map<Integer, PartnerInfo> partners = new HashMap<Integer, PartnerInfo>();
+		Timestamp maxDateAcct = amounts.values().stream()
+				.map(partnerAmount -> partnerAmount.dateAcct)
+				.filter(dateAcct -> dateAcct != null)
+				.max(Timestamp::compareTo)
+				.orElse(null);
+		if(maxDateAcct == null) {
+			return partners;
 		}
-		if(Util.isEmpty(name2)) {
-			name2 = "";
+		List<Integer> partnerIds = new ArrayList<Integer>(amounts.keySet());
+		for(int fromIndex = 0; fromIndex < partnerIds.size(); fromIndex += PARTNERS_BY_QUERY) {
+			String partnerList = partnerIds.subList(fromIndex, Math.min(fromIndex + PARTNERS_BY_QUERY, partnerIds.size())).stream()
+					.map(String::valueOf)
+					.collect(Collectors.joining(", "));
+			List<Object> parameters = new ArrayList<Object>();
+			parameters.add(Env.getAD_Client_ID(Env.getCtx()));
+			parameters.add(maxDateAcct);
+			DB.runResultSet(transactionName, "SELECT bp.C_BPartner_ID, bp.Value, bp.Name, bp.Name2, e.StartDate, e.EndDate "
+					+ "FROM C_BPartner bp "
+					+ "INNER JOIN HR_Employee e ON(e.C_BPartner_ID = bp.C_BPartner_ID AND e.AD_Client_ID = ? AND e.StartDate <= ?) "
+					+ "WHERE bp.C_BPartner_ID IN(" + partnerList + ") "
+					+ "ORDER BY bp.C_BPartner_ID, e.StartDate DESC, e.EndDate DESC", parameters, resultSet -> {
+				while(resultSet.next()) {
+					int partnerId = resultSet.getInt("C_BPartner_ID");
+					PartnerInfo partnerInfo = partners.get(partnerId);
+					if(partnerInfo == null) {
+						partnerInfo = new PartnerInfo(resultSet.getString("Value"), resultSet.getString("Name"), resultSet.getString("Name2"));
+						partners.put(partnerId, partnerInfo);
+					}
+					partnerInfo.addEmployeeDates(resultSet.getTimestamp("StartDate"), resultSet.getTimestamp("EndDate"));
+				}
+			}).onFailure(throwable -> {
+				throw new AdempiereException(throwable);
+			});
+		}
+		return partners;
+	}
+	
+	/**
+	 * Split a name: the first part has the short words (less than 3 characters) and the first long word,
+	 * the second part has the other words
+	 * @param value
+	 * @return String[] {first part, second part}
+	 */
+	static String[] splitName(String value) {
+		StringBuilder firstPart = new StringBuilder();
+		StringBuilder secondPart = new StringBuilder();
+		//	Same words of String.split(" "): trailing empty words are ignored
+		int end = value.length();
+		while(end > 0
+				&& value.charAt(end - 1) == ' ') {
+			end--;
 		}
-		
-		List <String> nameList = Arrays.asList(name.split(" "));
-		//	Extract First Name 1
-		String firstName1 = "";
-		String firstName2  = "";
 		boolean isName = false;
-
-		for (String firstName : nameList) {
+		if(value.length() == 0) {
+			firstPart.append(' ');
+		}
+		int start = 0;
+		while(end > 0
+				&& start <= end) {
+			int separatorIndex = value.indexOf(' ', start);
+			int wordEnd = separatorIndex < 0 || separatorIndex >= end? end: separatorIndex;
+			int wordLength = wordEnd - start;
 			if(isName) {
-				firstName2 += firstName + " ";
-			}
-			if(firstName.length() < 3 && !isName)
-				firstName1 += firstName +  " ";
-			else if(firstName.length() > 2 && !isName) {
-				firstName1 += firstName;
+				secondPart.append(value, start, wordEnd).append(' ');
+			} else if(wordLength < 3) {
+				firstPart.append(value, start, wordEnd).append(' ');
+			} else {
+				firstPart.append(value, start, wordEnd);
 				isName = true;
 			}
-				
-		} 
-		
-		//	End Index for Last Name
-		List <String> lastNameList = Arrays.asList(name2.split(" "));
-		//	Extract First Name 1
-		String lastName1 = "";
-		String lastName2  = "";
-		isName = false;
-		//	Extract First Name 2
-		for (String lastName : lastNameList) {
-			if(isName) {
-				lastName2 += lastName + " ";
+			if(wordEnd == end) {
+				break;
 			}
-			if(lastName.length() < 3 && !isName)
-			    lastName1 += lastName + " ";
-			else if(lastName.length() > 2 && !isName) {
-				lastName1 += lastName;
-				isName = true;
+			start = wordEnd + 1;
+		}
+		return new String[] {truncate(firstPart), truncate(secondPart)};
+	}
+	
+	/**
+	 * Valid length of name
+	 * @param value
+	 * @return
+	 */
+	private static String truncate(StringBuilder value) {
+		if(value.length() > 25)
+			return value.substring(0, 24);
+		return value.toString();
+	}
+	
+	/**
+	 * Remove all characters distinct of digits (only 0 to 9, same of regular expression \D)
+	 * @param value
+	 * @return
+	 */
+	static String getDigits(String value) {
+		StringBuilder digits = new StringBuilder(value.length());
+		for(int index = 0; index < value.length(); index++) {
+			char character = value.charAt(index);
+			if(character >= '0'
+					&& character <= '9') {
+				digits.append(character);
 			}
-		} 
-		
-		//	Valid length
-		if(firstName1.length() > 25)
-			firstName1 = firstName1.substring(0, 24);
-		else if(firstName1.length() == 0)
-			firstName1 = "";
-		if(firstName2.length() > 25)
-			firstName2 = firstName2.substring(0, 24);
-		else if(firstName2.length() == 0)
-			firstName2 = "";
-		if(lastName1.length() > 25)
-			lastName1 = lastName1.substring(0, 24);
-		else if(lastName1.length() == 0)
-			lastName1 = "";
-		if(lastName2.length() > 25)
-			lastName2 = lastName2.substring(0, 24);
-		else if(lastName2.length() == 0)
-			lastName2 = "";
+		}
+		return digits.toString();
+	}
+	
+	/**
+	 * Amount and accounting date of a business partner
+	 */
+	private static class PartnerAmount {
+		private final Timestamp dateAcct;
+		private BigDecimal amount = Env.ZERO;
 		
-		//	Get Active Employee
-		MHREmployee employee = getByPartnerIdAndStartDate(bpartner.getC_BPartner_ID(), dateAcct, transactionName);
-		//	Valid Employee
-		if(employee == null)
-			return null;
-		//	Get Start Date
-		String startDate = dateFormat.format(employee.getStartDate());
-		String endDate = "";
-		//	Get End Date
-		if(employee.getEndDate() != null)
-			endDate = dateFormat.format(employee.getEndDate());
-
-		String bPTaxId = bpartner.getValue();
-		String personType = bPTaxId.substring(0, 1);
-		bPTaxId = bPTaxId.replaceAll("\\D+","");
-		//	Set Array
-		bpInfo.put(BP_NATIONALITY, personType);
-		bpInfo.put(BP_TAX_ID, bPTaxId);
-		bpInfo.put(BP_FIRST_NAME_1, processValue(firstName1));
-		bpInfo.put(BP_FIRST_NAME_2, processValue(firstName2));
-		bpInfo.put(BP_LAST_NAME_1, processValue(lastName1));
-		bpInfo.put(BP_LAST_NAME_2, processValue(lastName2));
-		bpInfo.put(EM_START_DATE,startDate);
-		bpInfo.put(EM_END_DATE,endDate);
-		//	Return
-		return bpInfo;
+		private PartnerAmount(Timestamp dateAcct) {
+			this.dateAcct = dateAcct;
+		}
 	}
 	
 	/**
-	 * Get Employee by Partner Id and Date Start
-	 * @param ctx
-	 * @param partnerId
-	 * @param dateStart
-	 * @param trxName
-	 * @return
+	 * Processed values of a business partner and dates of employee records (start date descending)
 	 */
-	private MHREmployee getByPartnerIdAndStartDate(int partnerId , Timestamp dateStart, String trxName) {
-		StringBuilder whereClause = new StringBuilder();
-		whereClause.append(MHREmployee.COLUMNNAME_C_BPartner_ID).append("=? AND ");
-		whereClause.append(MHREmployee.COLUMNNAME_StartDate).append(" <= ?");
-		return new Query(Env.getCtx(), MHREmployee.Table_Name , whereClause.toString(),trxName)
-				.setClient_ID()
-				.setParameters(partnerId , dateStart)
-				.setOrderBy(MHREmployee.COLUMNNAME_StartDate + " DESC, " + MHREmployee.COLUMNNAME_EndDate + " DESC")
-				.first();
+	private class PartnerInfo {
+		private final String personType;
+		private final String taxId;
+		private final String firstName1;
+		private final String firstName2;
+		private final String lastName1;
+		private final String lastName2;
+		private final List<Timestamp[]> employeeDates = new ArrayList<Timestamp[]>(1);
+		
+		private PartnerInfo(String value, String name, String name2) {
+			String[] firstNames = splitName(Util.isEmpty(name)? "": name);
+			String[] lastNames = splitName(Util.isEmpty(name2)? "": name2);
+			firstName1 = processValue(firstNames[0]);
+			firstName2 = processValue(firstNames[1]);
+			lastName1 = processValue(lastNames[0]);
+			lastName2 = processValue(lastNames[1]);
+			personType = value.substring(0, 1);
+			taxId = getDigits(value);
+		}
+		
+		private void addEmployeeDates(Timestamp startDate, Timestamp endDate) {
+			employeeDates.add(new Timestamp[] {startDate, endDate});
+		}
+		
+		/**
+		 * Get dates of last employee record started before accounting date
+		 * @param dateAcct
+		 * @return
+		 */
+		private Timestamp[] getEmployeeDates(Timestamp dateAcct) {
+			for(Timestamp[] dates : employeeDates) {
+				if(dateAcct != null
+						&& !dates[0].after(dateAcct)) {
+					return dates;
+				}
+			}
+			return null;
+		}
+		
+		private String getStartDate(Timestamp dateAcct) {
+			Timestamp[] dates = getEmployeeDates(dateAcct);
+			if(dates == null) {
+				return null;
+			}
+			return dateFormat.format(dates[0]);
+		}
+		
+		private String getEndDate(Timestamp dateAcct) {
+			Timestamp[] dates = getEmployeeDates(dateAcct);
+			if(dates == null
+					|| dates[1] == null) {
+				return "";
+			}
+			return dateFormat.format(dates[1]);
+		}
 	}
 	
 	public String processValue(String value) {
@@ -0,0 +1,113 @@
+/******************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                       *
+ * This program is free software; you can redistribute it and/or modify it    *
+ * under the terms version 2 of the GNU General Public License as published   *
+ * by the Free Software Foundation. This program is distributed in the hope   *
+ * that it will be useful, but WITHOUT ANY WARRANTY; without even the implied *
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.           *
+ * See the GNU General Public License for more details.                       *
+ * You should have received a copy of the GNU General Public License along    *
+ * with this program; if not, write to the Free Software Foundation, Inc.,    *
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA.                     *
+ * For the text or an alternative of this public license, you may reach us    *
+ * Copyright (C) 2003-2014 E.R.P. Consultores y Asociados, C.A.               *
+ * All Rights Reserved.                                                       *
+ * Contributor(s): Yamel Senih www.erpya.com                                  *
+ *****************************************************************************/
+package org.erpya.lve.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Names and Tax ID of BANAVIH file are the same of previous export (String.split and regular expressions)
+ * @author <a href="mailto:yamelsenih@gmail.com">Yamel Senih</a>
+ */
+public class HR_BANAVIHTest {
+
+	@Test
+	public void testSplitName() {
+		assertSplitName("");
+		assertSplitName(" ");
+		assertSplitName("   ");
+		assertSplitName("Maria");
+		assertSplitName("Maria Jose");
+		assertSplitName("Maria de los Angeles");
+		assertSplitName("de la Cruz");
+		assertSplitName("Jose  Luis ");
+		assertSplitName(" Jose Luis");
+		assertSplitName("Ana  ");
+		assertSplitName("Jo El");
+		assertSplitName("Maximiliano Bartolomeo Constantino Fernando");
+		assertSplitName("Al Bartolomeo Constantino de los Santos Fernandez");
+	}
+
+	@Test
+	public void testSplitNameWithRandomValues() {
+		Random random = new Random(20201015);
+		String characters = "  abc";
+		for(int value = 0; value < 20000; value++) {
+			StringBuilder name = new StringBuilder();
+			int length = random.nextInt(40);
+			for(int index = 0; index < length; index++) {
+				name.append(characters.charAt(random.nextInt(characters.length())));
+			}
+			assertSplitName(name.toString());
+		}
+	}
+
+	@Test
+	public void testSplitNameValues() {
+		assertArrayEquals(new String[] {"Maria", "de los Angeles "}, HR_BANAVIH.splitName("Maria de los Angeles"));
+		assertArrayEquals(new String[] {"de la Cruz", ""}, HR_BANAVIH.splitName("de la Cruz"));
+		assertArrayEquals(new String[] {" ", ""}, HR_BANAVIH.splitName(""));
+		assertArrayEquals(new String[] {"", ""}, HR_BANAVIH.splitName("   "));
+	}
+
+	@Test
+	public void testDigits() {
+		String[] values = {"", "V-12345678", "J-30123456-7", "E 8.123.456", "ABC", "V-١٢٣٤"};
+		for(String value : values) {
+			assertEquals(value.replaceAll("\\D+", ""), HR_BANAVIH.getDigits(value), value);
+		}
+	}
+
+	/**
+	 * Compare split of name with previous export
+	 * @param name
+	 */
+	private void assertSplitName(String name) {
+		assertArrayEquals(getPreviousSplitName(name), HR_BANAVIH.splitName(name), "[" + name + "]");
+	}
+
+	/**
+	 * Split of name of previous export
+	 * @param name
+	 * @return
+	 */
+	private String[] getPreviousSplitName(String name) {
+		String firstName1 = "";
+		String firstName2 = "";
+		boolean isName = false;
+		for (String firstName : name.split(" ")) {
+			if(isName) {
+				firstName2 += firstName + " ";
+			}
+			if(firstName.length() < 3 && !isName)
+				firstName1 += firstName +  " ";
+			else if(firstName.length() > 2 && !isName) {
+				firstName1 += firstName;
+				isName = true;
+			}
+		}
+		if(firstName1.length() > 25)
+			firstName1 = firstName1.substring(0, 24);
+		if(firstName2.length() > 25)
+			firstName2 = firstName2.substring(0, 24);
+		return new String[] {firstName1, firstName2};
+	}
+}
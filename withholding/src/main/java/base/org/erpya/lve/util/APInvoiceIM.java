@@ -16,16 +16,12 @@
 package org.erpya.lve.util;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
 import java.util.Optional;
 
 import org.adempiere.core.domains.models.I_C_Invoice;
 import org.compiere.model.MBPartner;
-import org.compiere.model.MCurrency;
 import org.compiere.model.MDocType;
 import org.compiere.model.MInvoice;
-import org.compiere.model.MOrgInfo;
 import org.compiere.model.Query;
 import org.compiere.util.Env;
 import org.erpya.lve.model.MLVEList;
@@ -52,6 +48,8 @@ public class APInvoiceIM extends AbstractWithholdingSetting {
 	private MInvoice invoice;
 	/**	Current Business Partner	*/
 	private MBPartner businessPartner;
+	/**	Shared values of document	*/
+	private WithholdingDocumentContext context;
 	/**	Withholding Rental Exempt for Business Partner	*/
 	private MLVEList activityToApply= null;
 	/**Withholding Rental Rates to Apply*/
@@ -72,7 +70,8 @@ public class APInvoiceIM extends AbstractWithholdingSetting {
 			isValid = false;
 		}
 		invoice = (MInvoice) getDocument();
-		businessPartner = (MBPartner) invoice.getC_BPartner();
+		context = WithholdingDocumentContext.get(invoice);
+		businessPartner = context.getBusinessPartner();
 		
 		//Valid Business Partner
 		Optional.ofNullable(invoice)
@@ -80,14 +79,10 @@ public class APInvoiceIM extends AbstractWithholdingSetting {
 					//Add reference
 					setReturnValue(I_WH_Withholding.COLUMNNAME_SourceInvoice_ID, invoice.getC_Invoice_ID());
 					setReturnValue(I_WH_Withholding.COLUMNNAME_AD_Org_ID, invoice.getAD_Org_ID());
-					if (invoice.isSOTrx()) {
-						isManual = true;
-						Optional.ofNullable(MOrgInfo.get(getContext(), invoice.getAD_Org_ID(), invoice.get_TrxName()))
-								.ifPresent(orgInfo ->{
-								businessPartner = MBPartner.get(getContext(), orgInfo.get_ValueAsInt(LVEUtil.COLUMNNAME_WH_BPartner_ID));
-						});
-					}else
-						isManual = false;
+					isManual = WithholdingRule.isManual(invoice);
+					if (isManual) {
+						businessPartner = context.getWithholdingBusinessPartner(businessPartner);
+					}
 				});
 		
 		if (businessPartner==null) {
@@ -96,13 +91,12 @@ public class APInvoiceIM extends AbstractWithholdingSetting {
 		}else {
 			
 			if (invoice!=null) {
-				MCurrency currency = (MCurrency) invoice.getC_Currency();
-				curPrecision = currency.getStdPrecision();
+				curPrecision = context.getCurrencyPrecision();
 				baseAmount = invoice.getTotalLines();
 			}
 			//	Add reference
 			setReturnValue(I_WH_Withholding.COLUMNNAME_SourceInvoice_ID, invoice.getC_Invoice_ID());
-			MLVEWithholdingTax currentWHTax = MLVEWithholdingTax.getFromClient(getContext(), getDocument().getAD_Org_ID(),MLVEWithholdingTax.TYPE_ImpuestoMunicipal);
+			MLVEWithholdingTax currentWHTax = context.getWithholdingTax(MLVEWithholdingTax.TYPE_ImpuestoMunicipal);
 			//	Validate if exists Withholding Tax Definition for client
 			if(currentWHTax == null) {
 				addLog("@LVE_WithholdingTax_ID@ @NotFound@");
@@ -120,7 +114,7 @@ public class APInvoiceIM extends AbstractWithholdingSetting {
 				addLog("@C_Invoice_ID@ @Voided@");
 				isValid = false;
 			}
-			MDocType documentType = MDocType.get(getContext(), invoice.getC_DocTypeTarget_ID());
+			MDocType documentType = context.getDocumentType();
 			if(documentType == null) {
 				addLog("@C_DocType_ID@ @NotFound@");
 				isValid = false;
@@ -174,8 +168,7 @@ public class APInvoiceIM extends AbstractWithholdingSetting {
 				setWithholdingRate(rate);
 				rate = getWithholdingRate(true);
 				addBaseAmount(baseAmount);
-				addWithholdingAmount(baseAmount.multiply(rate,MathContext.DECIMAL128)
-												.setScale(curPrecision, RoundingMode.HALF_UP));
+				addWithholdingAmount(WithholdingRule.getMunicipalWithholdingAmt(baseAmount, rate, curPrecision));
 				addDescription(activityToApply.getName());
 				setReturnValue(MWHWithholding.COLUMNNAME_IsManual, isManual);
 				
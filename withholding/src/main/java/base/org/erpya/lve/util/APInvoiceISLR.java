@@ -16,26 +16,15 @@
 package org.erpya.lve.util;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
-import java.text.NumberFormat;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.adempiere.core.domains.models.I_C_Invoice;
 import org.compiere.model.MBPartner;
-import org.compiere.model.MCharge;
-import org.compiere.model.MClient;
-import org.compiere.model.MConversionRate;
-import org.compiere.model.MCurrency;
 import org.compiere.model.MDocType;
 import org.compiere.model.MInvoice;
 import org.compiere.model.MInvoiceLine;
-import org.compiere.model.MOrgInfo;
-import org.compiere.model.MProduct;
 import org.compiere.model.Query;
 import org.compiere.util.Env;
 import org.compiere.util.Util;
@@ -43,7 +32,6 @@ import org.erpya.lve.model.MLVEList;
 import org.erpya.lve.model.MLVEListLine;
 import org.erpya.lve.model.MLVEListVersion;
 import org.erpya.lve.model.MLVEWithholdingTax;
-import org.erpya.lve.model.X_LVE_ListVersion;
 import org.spin.model.I_WH_Withholding;
 import org.spin.model.MWHSetting;
 import org.spin.model.MWHWithholding;
@@ -65,14 +53,14 @@ public class APInvoiceISLR extends AbstractWithholdingSetting {
 	private MInvoice invoice;
 	/**	Current Business Partner	*/
 	private MBPartner businessPartner;
+	/**	Shared values of document	*/
+	private WithholdingDocumentContext context;
 	/**Person Type*/
 	private String bpartnerPersonType = null;
 	/**	Withholding Rental Exempt for Business Partner	*/
 	private HashMap<MLVEList,WHConceptSetting> conceptsToApply = null;
 	/**Tribute Unit Amount */
 	BigDecimal tributeUnitAmount = Env.ZERO;
-	/**Factor*/
-	private static BigDecimal FACTOR = new BigDecimal(83.3334);
 	/**Currency Precision */
 	int curPrecision = 0 ;
 	/**Manual Withholding*/
@@ -88,13 +76,13 @@ public class APInvoiceISLR extends AbstractWithholdingSetting {
 		}
 		invoice = (MInvoice) getDocument();
 		
+		context = WithholdingDocumentContext.get(invoice);
 		if (invoice!=null) {
-			MCurrency currency = (MCurrency) invoice.getC_Currency();
-			curPrecision = currency.getStdPrecision();
+			curPrecision = context.getCurrencyPrecision();
 		}
 		
 		
-		MLVEWithholdingTax currentWHTax = MLVEWithholdingTax.getFromClient(getContext(), getDocument().getAD_Org_ID(),MLVEWithholdingTax.TYPE_ISLR);
+		MLVEWithholdingTax currentWHTax = context.getWithholdingTax(MLVEWithholdingTax.TYPE_ISLR);
 		//	Validate if exists Withholding Tax Definition for client
 		if(currentWHTax == null) {
 			addLog("@LVE_WithholdingTax_ID@ @NotFound@");
@@ -113,7 +101,7 @@ public class APInvoiceISLR extends AbstractWithholdingSetting {
 			addLog("@C_Invoice_ID@ @Voided@");
 			isValid = false;
 		}
-		MDocType documentType = MDocType.get(getContext(), invoice.getC_DocTypeTarget_ID());
+		MDocType documentType = context.getDocumentType();
 		if(documentType == null) {
 			addLog("@C_DocType_ID@ @NotFound@");
 			isValid = false;
@@ -128,7 +116,7 @@ public class APInvoiceISLR extends AbstractWithholdingSetting {
 			isValid = false;
 		}
 		//	Validate Person Type
-		businessPartner = (MBPartner) invoice.getC_BPartner();
+		businessPartner = context.getBusinessPartner();
 		
 		//Valid Business Partner
 		Optional.ofNullable(invoice)
@@ -136,14 +124,10 @@ public class APInvoiceISLR extends AbstractWithholdingSetting {
 					//Add reference
 					setReturnValue(I_WH_Withholding.COLUMNNAME_SourceInvoice_ID, invoice.getC_Invoice_ID());
 					setReturnValue(I_WH_Withholding.COLUMNNAME_AD_Org_ID, invoice.getAD_Org_ID());
-					if (invoice.isSOTrx()) {
-						isManual = true;
-						Optional.ofNullable(MOrgInfo.get(getContext(), invoice.getAD_Org_ID(), invoice.get_TrxName()))
-								.ifPresent(orgInfo ->{
-								businessPartner = MBPartner.get(getContext(), orgInfo.get_ValueAsInt(LVEUtil.COLUMNNAME_WH_BPartner_ID));
-						});
-					}else
-						isManual = false;
+					isManual = WithholdingRule.isManual(invoice);
+					if (isManual) {
+						businessPartner = context.getWithholdingBusinessPartner(businessPartner);
+					}
 				});
 		
 		if (businessPartner==null) {
@@ -170,7 +154,7 @@ public class APInvoiceISLR extends AbstractWithholdingSetting {
 			//	Validate Tribute Unit
 			//MLVEWithholdingTax withholdingTaxDefinition = MLVEWithholdingTax.getFromClient(getContext(), invoice.getAD_Org_ID());
 			if (currentWHTax!=null)
-				tributeUnitAmount = currentWHTax.getValidTributeUnitAmount(invoice.getDateInvoiced());
+				tributeUnitAmount = context.getTributeUnitAmount(MLVEWithholdingTax.TYPE_ISLR, invoice.getDateInvoiced());
 			
 			if(tributeUnitAmount.equals(Env.ZERO)) {
 				addLog("@TributeUnit@ (@Rate@ @NotFound@)");
@@ -212,13 +196,12 @@ public class APInvoiceISLR extends AbstractWithholdingSetting {
 							rate = Env.ZERO;
 						
 						if (rate.compareTo(Env.ZERO)!=0) {
-							BigDecimal amtSubtract = conceptSetting.getAmtSubtract().divide(conceptSetting.getCurrencyRate() ,MathContext.DECIMAL128);
+							BigDecimal amtSubtract = WithholdingRule.convertSubtrahend(conceptSetting.getAmtSubtract(), conceptSetting.getCurrencyRate());
 							setWithholdingRate(rate);
 							rate = getWithholdingRate(true);
 							addBaseAmount(conceptSetting.getAmtBase());
 							if (conceptSetting.isValid())
-								addWithholdingAmount(conceptSetting.getAmtBase().multiply(rate,MathContext.DECIMAL128)
-															.subtract(amtSubtract));
+								addWithholdingAmount(WithholdingRule.getRentalWithholdingAmt(conceptSetting.getAmtBase(), rate, conceptSetting.getAmtSubtract(), conceptSetting.getCurrencyRate()));
 							else
 								addWithholdingAmount(Env.ZERO);
 							
@@ -249,29 +232,20 @@ public class APInvoiceISLR extends AbstractWithholdingSetting {
 		if (invoice!=null) {
 			if (invoice.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingRentalConcept_ID)!=0) {
 				conceptsToApply.put(MLVEList.get(getContext(), invoice.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingRentalConcept_ID)),
-												 new WHConceptSetting(invoice ,invoice.getTotalLines()));
+												 new WHConceptSetting(context.getFiscalCurrencyRate(), invoice.getTotalLines()));
 				return;
 			}
 			
-			MInvoiceLine[] iLines = invoice.getLines();
-			for (MInvoiceLine line : iLines) {
-				//Search concept for product
+			for (MInvoiceLine line : context.getInvoiceLines()) {
+				//Search concept for product or charge
 				MLVEList list = null;
-				if (line.getM_Product_ID()!=0) {
-					MProduct product = (MProduct)line.getM_Product();
-					if (product.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingRentalConcept_ID)!=0) 
-						list = MLVEList.get(getContext(), product.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingRentalConcept_ID));
-				}
-				
-				if (line.getC_Charge_ID()!=0) {
-					MCharge charge = (MCharge)line.getC_Charge();
-					if (charge.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingRentalConcept_ID)!=0) 
-						list = MLVEList.get(getContext(), charge.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingRentalConcept_ID));
-				}
+				int conceptId = context.getWithholdingRentalConceptId(line.getM_Product_ID(), line.getC_Charge_ID());
+				if (conceptId != 0)
+					list = MLVEList.get(getContext(), conceptId);
 				
 				if (list!=null)
 					conceptsToApply.compute(list, (concept, rateToApply) -> 
-						rateToApply == null ? new WHConceptSetting(invoice, line.getLineNetAmt()): rateToApply.addAmtBase(line.getLineNetAmt()));
+						rateToApply == null ? new WHConceptSetting(context.getFiscalCurrencyRate(), line.getLineNetAmt()): rateToApply.addAmtBase(line.getLineNetAmt()));
 			}
 		}
 	}
@@ -287,72 +261,16 @@ public class APInvoiceISLR extends AbstractWithholdingSetting {
 	    conceptsToApply.forEach((whConcept,whConceptSetting) ->{
 	    	
 	    	MLVEListVersion rateToApply = whConcept.getValidVersionInstance(invoice.getDateInvoiced(), LVEUtil.COLUMNNAME_PersonType, bpartnerPersonType);
-	    	MLVEListLine varRateToApply = null;
-	    	BigDecimal subtractAmt = Env.ZERO;
 			if (rateToApply!=null) {
-				
-				if (rateToApply.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsVariableRate)) {
-					List<MLVEListLine> varRate= rateToApply.getListLine();
-					if (varRate!=null) {
-						varRateToApply = varRate.stream()
-								.filter(listLine -> (
-										whConceptSetting.getAmtBaseConverted().compareTo(listLine.getMinValue().multiply(tributeUnitAmount))>=0 && 
-											(whConceptSetting.getAmtBaseConverted().compareTo(listLine.getMaxValue().multiply(tributeUnitAmount))<=0 
-												|| listLine.getMaxValue().compareTo(Env.ZERO)==0))
-										)
-								.sorted(Comparator.comparing(MLVEListLine::getSeqNo))
-								.findFirst()
-								.orElse(null);
-						
-						if (varRateToApply==null)
-							varRate.stream()
-									.filter(listLine -> !(
-											whConceptSetting.getAmtBaseConverted().compareTo(listLine.getMinValue().multiply(tributeUnitAmount))>=0 && 
-												(whConceptSetting.getAmtBaseConverted().compareTo(listLine.getMaxValue().multiply(tributeUnitAmount))<=0 
-													|| listLine.getMaxValue().compareTo(Env.ZERO)==0))
-											)
-									.sorted(Comparator.comparing(MLVEListLine::getSeqNo))
-									.forEach(listLine -> {
-										String minValue =NumberFormat.getInstance().format(listLine.getMinValue().multiply(tributeUnitAmount,MathContext.DECIMAL128));
-										String maxValue =NumberFormat.getInstance().format(listLine.getMaxValue().multiply(tributeUnitAmount,MathContext.DECIMAL128));
-										String baseAmt =NumberFormat.getInstance().format(whConceptSetting.getAmtBaseConverted());
-										resultMessage.set(resultMessage.get()  + (resultMessage.get().isEmpty() ? "" :  "- ") + 
-												"@A_Base_Amount@ < @MinAmt@ @OR@ > @MaxAmt@ (@MinAmt@ = " + minValue+ " - @MaxAmt@ = " + maxValue + "  - @A_Base_Amount@ = " + baseAmt + ") \n");
-									});
-						else
-							whConceptSetting.setGenerateDocument(true);
-					}
-				}else {
-					if (bpartnerPersonType.equals(X_LVE_ListVersion.PERSONTYPE_ResidentNaturalPerson)) {
-						BigDecimal minValue = tributeUnitAmount.multiply(FACTOR,MathContext.DECIMAL128).setScale(curPrecision,RoundingMode.HALF_UP);
-						subtractAmt = minValue.multiply(rateToApply.getAmount()
-												.divide(Env.ONEHUNDRED,MathContext.DECIMAL128)
-												,MathContext.DECIMAL128)
-												.setScale(curPrecision,RoundingMode.HALF_UP);
-						if (whConceptSetting.getAmtBaseConverted().compareTo(minValue)>=0) {
-							whConceptSetting.setGenerateDocument(true);
-						}else {
-							if (rateToApply.get_ValueAsBoolean("IsCumulativeWithholding")){
-								subtractAmt = minValue.multiply(rateToApply.getAmount()
-																			.divide(Env.ONEHUNDRED,MathContext.DECIMAL128)
-																			,MathContext.DECIMAL128)
-																			.setScale(curPrecision,RoundingMode.HALF_UP);
-								whConceptSetting.setGenerateDocument(true);
-								whConceptSetting.setValid(false);
-							}
-							resultMessage.set("@A_Base_Amount@ < @MinimumAmt@ ( @MinimumAmt@ = " + minValue + " @A_Base_Amount@ = " + whConceptSetting.getAmtBaseConverted() + ") \n");
-						}
-					}else 
-						whConceptSetting.setGenerateDocument(true);
-				}
+				WithholdingRule.RentalRate rentalRate = WithholdingRule.getRentalRate(rateToApply, bpartnerPersonType, whConceptSetting.getAmtBaseConverted(), tributeUnitAmount, curPrecision);
+				resultMessage.set(rentalRate.addMessage(resultMessage.get()));
+				whConceptSetting.setGenerateDocument(rentalRate.isGenerateDocument());
+				whConceptSetting.setValid(rentalRate.isValid());
 				whConceptSetting.setRateToApply(rateToApply);
-				whConceptSetting.setVarRateToApply(varRateToApply);	
-				whConceptSetting.setAmtSubtract(subtractAmt);
-				whConceptSetting.setCumulative(rateToApply.isCumulativeWithholding());
-				if (varRateToApply!=null)
-					whConceptSetting.setRate((BigDecimal)varRateToApply.get_Value(LVEUtil.COLUMNNAME_VariableRate));
-				else
-					whConceptSetting.setRate(rateToApply.getAmount());
+				whConceptSetting.setVarRateToApply(rentalRate.getVarRateToApply());	
+				whConceptSetting.setAmtSubtract(rentalRate.getSubtrahend());
+				whConceptSetting.setCumulative(rentalRate.isCumulative());
+				whConceptSetting.setRate(rentalRate.getRate());
 			}else
 				resultMessage.set(resultMessage.get() + "- "  + "@NotFound@ @WithholdingRentalRate_ID@");
 	    });
@@ -397,21 +315,11 @@ class WHConceptSetting{
 	
 	/**
 	 * Constructor
-	 * @param invoice
+	 * @param currencyRate rate from currency of invoice to fiscal currency
 	 * @param amtBase
 	 */
-	public WHConceptSetting(MInvoice invoice,BigDecimal amtBase) {
-		MOrgInfo info = MOrgInfo.get(invoice.getCtx(), invoice.getAD_Org_ID(), null);
-		int currencyId = info.get_ValueAsInt(LVEUtil.COLUMNNAME_LVE_FiscalCurrency_ID);
-		if(currencyId <= 0) {
-			currencyId = MClient.get(invoice.getCtx()).getC_Currency_ID();
-		}
-		currencyRate = MConversionRate.getRate(invoice.getC_Currency_ID(), 
-												currencyId, 
-												invoice.getDateAcct(), 
-												invoice.getC_ConversionType_ID(), 
-												invoice.getAD_Client_ID(), 
-												invoice.getAD_Org_ID());
+	public WHConceptSetting(BigDecimal currencyRate,BigDecimal amtBase) {
+		this.currencyRate = currencyRate;
 		setAmtBase(amtBase);
 	}
 	
@@ -16,7 +16,6 @@
 package org.erpya.lve.util;
 
 import java.math.BigDecimal;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -26,14 +25,12 @@ import org.compiere.model.MBPartner;
 import org.compiere.model.MDocType;
 import org.compiere.model.MInvoice;
 import org.compiere.model.MInvoiceTax;
-import org.compiere.model.MOrgInfo;
 import org.compiere.model.MPayment;
 import org.compiere.model.MTable;
 import org.compiere.model.MTax;
 import org.compiere.model.PO;
 import org.compiere.model.Query;
 import org.compiere.util.Env;
-import org.erpya.lve.model.MLVEList;
 import org.erpya.lve.model.MLVEWithholdingTax;
 import org.spin.model.I_WH_Withholding;
 import org.spin.model.MWHSetting;
@@ -56,6 +53,8 @@ public class APInvoiceIVA extends AbstractWithholdingSetting {
 	private MInvoice invoice;
 	/**	Current Business Partner	*/
 	private MBPartner businessPartner;
+	/**	Shared values of document	*/
+	private WithholdingDocumentContext context;
 	/**	Taxes	*/
 	private List<MInvoiceTax> taxes;
 	/**Manual Withholding*/
@@ -71,7 +70,8 @@ public class APInvoiceIVA extends AbstractWithholdingSetting {
 			isValid = false;
 		}
 		invoice = (MInvoice) getDocument();
-		businessPartner = (MBPartner) invoice.getC_BPartner();
+		context = WithholdingDocumentContext.get(invoice);
+		businessPartner = context.getBusinessPartner();
 		if(!businessPartner.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsTaxpayer)
 				&& invoice.isSOTrx()) {
 			addLog("@C_BPartner_ID@ @" + LVEUtil.COLUMNNAME_IsTaxpayer + "@ @NotFound@");
@@ -83,14 +83,9 @@ public class APInvoiceIVA extends AbstractWithholdingSetting {
 					//Add reference
 					setReturnValue(I_WH_Withholding.COLUMNNAME_SourceInvoice_ID, invoice.getC_Invoice_ID());
 					setReturnValue(I_WH_Withholding.COLUMNNAME_AD_Org_ID, invoice.getAD_Org_ID());
-					if (invoice.isSOTrx()) {
-						isManual = true;
-						Optional.ofNullable(MOrgInfo.get(getContext(), invoice.getAD_Org_ID(), invoice.get_TrxName()))
-								.ifPresent(orgInfo ->{
-								businessPartner = MBPartner.get(getContext(), orgInfo.get_ValueAsInt(LVEUtil.COLUMNNAME_WH_BPartner_ID));
-						});
-					} else {
-						isManual = false;
+					isManual = WithholdingRule.isManual(invoice);
+					if (isManual) {
+						businessPartner = context.getWithholdingBusinessPartner(businessPartner);
 					}
 				});
 		
@@ -100,7 +95,7 @@ public class APInvoiceIVA extends AbstractWithholdingSetting {
 		} else {
 			//	Add reference
 			setReturnValue(I_WH_Withholding.COLUMNNAME_SourceInvoice_ID, invoice.getC_Invoice_ID());
-			MLVEWithholdingTax currentWHTax = MLVEWithholdingTax.getFromClient(getContext(), getDocument().getAD_Org_ID(),MLVEWithholdingTax.TYPE_IVA);
+			MLVEWithholdingTax currentWHTax = context.getWithholdingTax(MLVEWithholdingTax.TYPE_IVA);
 			//	Validate if exists Withholding Tax Definition for client
 			if(currentWHTax == null) {
 				addLog("@LVE_WithholdingTax_ID@ @NotFound@");
@@ -119,7 +114,7 @@ public class APInvoiceIVA extends AbstractWithholdingSetting {
 				addLog("@C_Invoice_ID@ @Voided@");
 				isValid = false;
 			}
-			MDocType documentType = MDocType.get(getContext(), invoice.getC_DocTypeTarget_ID());
+			MDocType documentType = context.getDocumentType();
 			if(documentType == null) {
 				addLog("@C_DocType_ID@ @NotFound@");
 				isValid = false;
@@ -145,17 +140,13 @@ public class APInvoiceIVA extends AbstractWithholdingSetting {
 			}
 			//	Validate Withholding Definition
 			//MLVEWithholdingTax withholdingTaxDefinition = MLVEWithholdingTax.getFromClient(getContext(), invoice.getAD_Org_ID());
-			int withholdingRateId = businessPartner.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingTaxRate_ID);
-			if(withholdingRateId == 0
-					&& currentWHTax!=null) {
-				withholdingRateId = currentWHTax.getDefaultWithholdingRate_ID();
-			}
+			int withholdingRateId = WithholdingRule.getWithholdingTaxRateId(businessPartner, currentWHTax);
 			//	Validate Definition
 			if(withholdingRateId == 0) {
 				addLog("@" + LVEUtil.COLUMNNAME_WithholdingTaxRate_ID + "@ @NotFound@");
 				isValid = false;
 			} else {
-				withholdingRate = MLVEList.get(getContext(), withholdingRateId).getListVersionAmount(invoice.getDateInvoiced());
+				withholdingRate = context.getListVersionAmount(withholdingRateId, invoice.getDateInvoiced());
 				setWithholdingRate(withholdingRate);
 			}
 			//	Validate Tax
@@ -167,18 +158,16 @@ public class APInvoiceIVA extends AbstractWithholdingSetting {
 			
 			BigDecimal tributeUnitAmount = Env.ZERO;
 			if (currentWHTax != null)
-				tributeUnitAmount = currentWHTax.getValidTributeUnitAmount(invoice.getDateAcct());
+				tributeUnitAmount = context.getTributeUnitAmount(MLVEWithholdingTax.TYPE_IVA, invoice.getDateAcct());
 			
 			if(tributeUnitAmount.equals(Env.ZERO)) {
 				addLog("@TributeUnit@ (@Rate@ @NotFound@)");
 				isValid = false;
 			}
 			//	Validate if it have taxes
-			taxes = Arrays.asList(invoice.getTaxes(false))
+			taxes = context.getInvoiceTaxes()
 				.stream()
-				.filter(invoiceTax -> MTax.get(getContext(), invoiceTax.getC_Tax_ID()).get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsWithholdingTaxApplied) 
-						&& invoiceTax.getTaxAmt() != null 
-						&& invoiceTax.getTaxAmt().compareTo(Env.ZERO) > 0)
+				.filter(invoiceTax -> WithholdingRule.isTaxWithheld(MTax.get(getContext(), invoiceTax.getC_Tax_ID()), invoiceTax.getTaxAmt()))
 				.collect(Collectors.toList());
 			if(taxes.size() == 0) {
 				addLog("@NoTaxesForWithholding@");
@@ -200,7 +189,7 @@ public class APInvoiceIVA extends AbstractWithholdingSetting {
 		taxes.forEach(invoiceTax -> {
 			setWithholdingRate(withholdingRate);
 			addBaseAmount(invoiceTax.getTaxAmt());
-			addWithholdingAmount(invoiceTax.getTaxAmt().multiply(getWithholdingRate(true)));
+			addWithholdingAmount(WithholdingRule.getTaxWithholdingAmt(invoiceTax.getTaxAmt(), getWithholdingRate(true)));
 			MTax tax = MTax.get(getContext(), invoiceTax.getC_Tax_ID());
 			addDescription(tax.getName() + " @Processed@");
 			setReturnValue(MWHWithholding.COLUMNNAME_IsManual, isManual);
@@ -22,10 +22,8 @@ import java.util.Optional;
 
 import org.adempiere.core.domains.models.I_C_Order;
 import org.compiere.model.MBPartner;
-import org.compiere.model.MCurrency;
 import org.compiere.model.MDocType;
 import org.compiere.model.MOrder;
-import org.compiere.model.MOrgInfo;
 import org.compiere.model.Query;
 import org.compiere.util.Env;
 import org.erpya.lve.model.MLVEList;
@@ -52,6 +50,8 @@ public class OrderIM extends AbstractWithholdingSetting {
 	private MOrder order;
 	/**	Current Business Partner	*/
 	private MBPartner businessPartner;
+	/**	Shared values of document	*/
+	private WithholdingDocumentContext context;
 	/**	Withholding Rental Exempt for Business Partner	*/
 	private MLVEList activityToApply= null;
 	/**Withholding Rental Rates to Apply*/
@@ -72,7 +72,8 @@ public class OrderIM extends AbstractWithholdingSetting {
 			return false;
 		}
 		order = (MOrder) getDocument();
-		businessPartner = (MBPartner) order.getC_BPartner();
+		context = WithholdingDocumentContext.get(order);
+		businessPartner = context.getBusinessPartner();
 		
 		//Valid Business Partner
 		Optional.ofNullable(order)
@@ -82,10 +83,7 @@ public class OrderIM extends AbstractWithholdingSetting {
 					setReturnValue(I_WH_Withholding.COLUMNNAME_AD_Org_ID, order.getAD_Org_ID());
 					if (order.isSOTrx()) {
 						isManual = true;
-						Optional.ofNullable(MOrgInfo.get(getContext(), order.getAD_Org_ID(), order.get_TrxName()))
-								.ifPresent(orgInfo ->{
-								businessPartner = MBPartner.get(getContext(), orgInfo.get_ValueAsInt(LVEUtil.COLUMNNAME_WH_BPartner_ID));
-						});
+						businessPartner = context.getWithholdingBusinessPartner(businessPartner);
 					}else
 						isManual = false;
 				});
@@ -95,13 +93,12 @@ public class OrderIM extends AbstractWithholdingSetting {
 			isValid = false;
 		} else {
 			if (order != null) {
-				MCurrency currency = (MCurrency) order.getC_Currency();
-				curPrecision = currency.getStdPrecision();
+				curPrecision = context.getCurrencyPrecision();
 				baseAmount = order.getTotalLines();
 			}
 			//	Add reference
 			setReturnValue(I_WH_Withholding.COLUMNNAME_SourceOrder_ID, order.getC_Order_ID());
-			MLVEWithholdingTax currentWHTax = MLVEWithholdingTax.getFromClient(getContext(), getDocument().getAD_Org_ID(),MLVEWithholdingTax.TYPE_ImpuestoMunicipal);
+			MLVEWithholdingTax currentWHTax = context.getWithholdingTax(MLVEWithholdingTax.TYPE_ImpuestoMunicipal);
 			//	Validate if exists Withholding Tax Definition for client
 			if(currentWHTax == null) {
 				addLog("@LVE_WithholdingTax_ID@ @NotFound@");
@@ -120,7 +117,7 @@ public class OrderIM extends AbstractWithholdingSetting {
 				isValid = false;
 			}
 			
-			MDocType documentType = MDocType.get(getContext(), order.getC_DocTypeTarget_ID());
+			MDocType documentType = context.getDocumentType();
 			if(documentType == null) {
 				addLog("@C_DocType_ID@ @NotFound@");
 				isValid = false;
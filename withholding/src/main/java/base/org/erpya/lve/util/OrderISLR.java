@@ -16,24 +16,15 @@
 package org.erpya.lve.util;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
-import java.math.RoundingMode;
-import java.text.NumberFormat;
-import java.util.Comparator;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.adempiere.core.domains.models.I_C_Order;
 import org.compiere.model.MBPartner;
-import org.compiere.model.MCharge;
-import org.compiere.model.MCurrency;
 import org.compiere.model.MDocType;
 import org.compiere.model.MOrder;
 import org.compiere.model.MOrderLine;
-import org.compiere.model.MOrgInfo;
-import org.compiere.model.MProduct;
 import org.compiere.model.Query;
 import org.compiere.util.Env;
 import org.compiere.util.Util;
@@ -41,7 +32,6 @@ import org.erpya.lve.model.MLVEList;
 import org.erpya.lve.model.MLVEListLine;
 import org.erpya.lve.model.MLVEListVersion;
 import org.erpya.lve.model.MLVEWithholdingTax;
-import org.erpya.lve.model.X_LVE_ListVersion;
 import org.spin.model.I_WH_Withholding;
 import org.spin.model.MWHSetting;
 import org.spin.model.MWHWithholding;
@@ -63,14 +53,14 @@ public class OrderISLR extends AbstractWithholdingSetting {
 	private MOrder order;
 	/**	Current Business Partner	*/
 	private MBPartner businessPartner;
+	/**	Shared values of document	*/
+	private WithholdingDocumentContext context;
 	/**Person Type*/
 	private String bpartnerPersonType = null;
 	/**	Withholding Rental Exempt for Business Partner	*/
 	private HashMap<MLVEList,WHConceptSettingOrder> conceptsToApply = new HashMap<MLVEList,WHConceptSettingOrder>();
 	/**Tribute Unit Amount */
 	BigDecimal tributeUnitAmount = Env.ZERO;
-	/**Factor*/
-	private static BigDecimal FACTOR = new BigDecimal(83.3334);
 	/**Currency Precision */
 	int curPrecision = 0 ;
 	/**Manual Withholding*/
@@ -86,12 +76,12 @@ public class OrderISLR extends AbstractWithholdingSetting {
 		}
 		order = (MOrder) getDocument();
 		
+		context = WithholdingDocumentContext.get(order);
 		if (order!=null) {
-			MCurrency currency = (MCurrency) order.getC_Currency();
-			curPrecision = currency.getStdPrecision();
+			curPrecision = context.getCurrencyPrecision();
 		}
 		
-		MLVEWithholdingTax currentWHTax = MLVEWithholdingTax.getFromClient(getContext(), getDocument().getAD_Org_ID(),MLVEWithholdingTax.TYPE_ISLR);
+		MLVEWithholdingTax currentWHTax = context.getWithholdingTax(MLVEWithholdingTax.TYPE_ISLR);
 		//	Validate if exists Withholding Tax Definition for client
 		if(currentWHTax == null) {
 			addLog("@LVE_WithholdingTax_ID@ @NotFound@");
@@ -110,13 +100,13 @@ public class OrderISLR extends AbstractWithholdingSetting {
 			addLog("@Invalid@ @C_Order_ID@ @DocStatus@");
 			isValid = false;
 		}
-		MDocType documentType = MDocType.get(getContext(), order.getC_DocTypeTarget_ID());
+		MDocType documentType = context.getDocumentType();
 		if(documentType == null) {
 			addLog("@C_DocType_ID@ @NotFound@");
 			isValid = false;
 		}
 		//	Validate Person Type
-		businessPartner = (MBPartner) order.getC_BPartner();
+		businessPartner = context.getBusinessPartner();
 		
 		//Valid Business Partner
 		Optional.ofNullable(order)
@@ -124,14 +114,10 @@ public class OrderISLR extends AbstractWithholdingSetting {
 					//Add reference
 					setReturnValue(I_WH_Withholding.COLUMNNAME_SourceOrder_ID, order.getC_Order_ID());
 					setReturnValue(I_WH_Withholding.COLUMNNAME_AD_Org_ID, order.getAD_Org_ID());
-					if (order.isSOTrx()) {
-						isManual = true;
-						Optional.ofNullable(MOrgInfo.get(getContext(), order.getAD_Org_ID(), order.get_TrxName()))
-								.ifPresent(orgInfo ->{
-								businessPartner = MBPartner.get(getContext(), orgInfo.get_ValueAsInt(LVEUtil.COLUMNNAME_WH_BPartner_ID));
-						});
-					}else
-						isManual = false;
+					isManual = WithholdingRule.isManual(order);
+					if (isManual) {
+						businessPartner = context.getWithholdingBusinessPartner(businessPartner);
+					}
 				});
 		
 		if (businessPartner==null) {
@@ -158,7 +144,7 @@ public class OrderISLR extends AbstractWithholdingSetting {
 			//	Validate Tribute Unit
 			//MLVEWithholdingTax withholdingTaxDefinition = MLVEWithholdingTax.getFromClient(getContext(), order.getAD_Org_ID());
 			if (currentWHTax!=null)
-				tributeUnitAmount = currentWHTax.getValidTributeUnitAmount(order.getDateAcct());
+				tributeUnitAmount = context.getTributeUnitAmount(MLVEWithholdingTax.TYPE_ISLR, order.getDateAcct());
 			
 			if(tributeUnitAmount.equals(Env.ZERO)) {
 				addLog("@TributeUnit@ (@Rate@ @NotFound@)");
@@ -204,9 +190,7 @@ public class OrderISLR extends AbstractWithholdingSetting {
 							rate = getWithholdingRate(true);
 							addBaseAmount(conceptSetting.getAmtBase());
 							if (conceptSetting.isValid())
-								addWithholdingAmount(conceptSetting.getAmtBase().multiply(rate,MathContext.DECIMAL128)
-															.setScale(curPrecision, RoundingMode.HALF_UP)
-															.subtract(conceptSetting.getAmtSubtract()));
+								addWithholdingAmount(WithholdingRule.getOrderRentalWithholdingAmt(conceptSetting.getAmtBase(), rate, conceptSetting.getAmtSubtract(), curPrecision));
 							else
 								addWithholdingAmount(Env.ZERO);
 							
@@ -242,21 +226,12 @@ public class OrderISLR extends AbstractWithholdingSetting {
 				return;
 			}
 			
-			MOrderLine[] oLines = order.getLines();
-			for (MOrderLine line : oLines) {
-				//Search concept for product
+			for (MOrderLine line : context.getOrderLines()) {
+				//Search concept for product or charge
 				MLVEList list = null;
-				if (line.getM_Product_ID()!=0) {
-					MProduct product = (MProduct)line.getM_Product();
-					if (product.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingRentalConcept_ID)!=0) 
-						list = MLVEList.get(getContext(), product.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingRentalConcept_ID));
-				}
-				
-				if (line.getC_Charge_ID()!=0) {
-					MCharge charge = (MCharge)line.getC_Charge();
-					if (charge.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingRentalConcept_ID)!=0) 
-						list = MLVEList.get(getContext(), charge.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingRentalConcept_ID));
-				}
+				int conceptId = context.getWithholdingRentalConceptId(line.getM_Product_ID(), line.getC_Charge_ID());
+				if (conceptId != 0)
+					list = MLVEList.get(getContext(), conceptId);
 				
 				if (list!=null)
 					conceptsToApply.compute(list, (concept, rateToApply) -> 
@@ -276,72 +251,16 @@ public class OrderISLR extends AbstractWithholdingSetting {
 	    conceptsToApply.forEach((whConcept,whConceptSetting) ->{
 	    	
 	    	MLVEListVersion rateToApply = whConcept.getValidVersionInstance(order.getDateOrdered(), LVEUtil.COLUMNNAME_PersonType, bpartnerPersonType);
-	    	MLVEListLine varRateToApply = null;
-	    	BigDecimal subtractAmt = Env.ZERO;
 			if (rateToApply!=null) {
-				
-				if (rateToApply.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsVariableRate)) {
-					List<MLVEListLine> varRate= rateToApply.getListLine();
-					if (varRate!=null) {
-						varRateToApply = varRate.stream()
-								.filter(listLine -> (
-										whConceptSetting.getAmtBase().compareTo(listLine.getMinValue().multiply(tributeUnitAmount))>=0 && 
-											(whConceptSetting.getAmtBase().compareTo(listLine.getMaxValue().multiply(tributeUnitAmount))<=0 
-												|| listLine.getMaxValue().compareTo(Env.ZERO)==0))
-										)
-								.sorted(Comparator.comparing(MLVEListLine::getSeqNo))
-								.findFirst()
-								.orElse(null);
-						
-						if (varRateToApply==null)
-							varRate.stream()
-									.filter(listLine -> !(
-											whConceptSetting.getAmtBase().compareTo(listLine.getMinValue().multiply(tributeUnitAmount))>=0 && 
-												(whConceptSetting.getAmtBase().compareTo(listLine.getMaxValue().multiply(tributeUnitAmount))<=0 
-													|| listLine.getMaxValue().compareTo(Env.ZERO)==0))
-											)
-									.sorted(Comparator.comparing(MLVEListLine::getSeqNo))
-									.forEach(listLine -> {
-										String minValue =NumberFormat.getInstance().format(listLine.getMinValue().multiply(tributeUnitAmount,MathContext.DECIMAL128));
-										String maxValue =NumberFormat.getInstance().format(listLine.getMaxValue().multiply(tributeUnitAmount,MathContext.DECIMAL128));
-										String baseAmt =NumberFormat.getInstance().format(whConceptSetting.getAmtBase());
-										resultMessage.set(resultMessage.get()  + (resultMessage.get().isEmpty() ? "" :  "- ") + 
-												"@A_Base_Amount@ < @MinAmt@ @OR@ > @MaxAmt@ (@MinAmt@ = " + minValue+ " - @MaxAmt@ = " + maxValue + "  - @A_Base_Amount@ = " + baseAmt + ") \n");
-									});
-						else
-							whConceptSetting.setGenerateDocument(true);
-					}
-				}else {
-					if (bpartnerPersonType.equals(X_LVE_ListVersion.PERSONTYPE_ResidentNaturalPerson)) {
-						BigDecimal minValue = tributeUnitAmount.multiply(FACTOR,MathContext.DECIMAL128).setScale(curPrecision,RoundingMode.HALF_UP);
-						subtractAmt = minValue.multiply(rateToApply.getAmount()
-												.divide(Env.ONEHUNDRED,MathContext.DECIMAL128)
-												,MathContext.DECIMAL128)
-												.setScale(curPrecision,RoundingMode.HALF_UP);
-						if (whConceptSetting.getAmtBase().compareTo(minValue)>=0) {
-							whConceptSetting.setGenerateDocument(true);
-						}else {
-							if (rateToApply.get_ValueAsBoolean("IsCumulativeWithholding")){
-								subtractAmt = minValue.multiply(rateToApply.getAmount()
-																			.divide(Env.ONEHUNDRED,MathContext.DECIMAL128)
-																			,MathContext.DECIMAL128)
-																			.setScale(curPrecision,RoundingMode.HALF_UP);
-								whConceptSetting.setGenerateDocument(true);
-								whConceptSetting.setValid(false);
-							}
-							resultMessage.set("@A_Base_Amount@ < @MinimumAmt@ ( @MinimumAmt@ = " + minValue + " @A_Base_Amount@ = " + whConceptSetting.getAmtBase() + ") \n");
-						}
-					}else 
-						whConceptSetting.setGenerateDocument(true);
-				}
+				WithholdingRule.RentalRate rentalRate = WithholdingRule.getRentalRate(rateToApply, bpartnerPersonType, whConceptSetting.getAmtBase(), tributeUnitAmount, curPrecision);
+				resultMessage.set(rentalRate.addMessage(resultMessage.get()));
+				whConceptSetting.setGenerateDocument(rentalRate.isGenerateDocument());
+				whConceptSetting.setValid(rentalRate.isValid());
 				whConceptSetting.setRateToApply(rateToApply);
-				whConceptSetting.setVarRateToApply(varRateToApply);	
-				whConceptSetting.setAmtSubtract(subtractAmt);
-				whConceptSetting.setCumulative(rateToApply.isCumulativeWithholding());
-				if (varRateToApply!=null)
-					whConceptSetting.setRate((BigDecimal)varRateToApply.get_Value(LVEUtil.COLUMNNAME_VariableRate));
-				else
-					whConceptSetting.setRate(rateToApply.getAmount());
+				whConceptSetting.setVarRateToApply(rentalRate.getVarRateToApply());	
+				whConceptSetting.setAmtSubtract(rentalRate.getSubtrahend());
+				whConceptSetting.setCumulative(rentalRate.isCumulative());
+				whConceptSetting.setRate(rentalRate.getRate());
 			}else
 				resultMessage.set(resultMessage.get() + "- "  + "@NotFound@ @WithholdingRentalRate_ID@");
 	    });
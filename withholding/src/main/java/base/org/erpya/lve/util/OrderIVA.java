@@ -16,7 +16,6 @@
 package org.erpya.lve.util;
 
 import java.math.BigDecimal;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -26,11 +25,9 @@ import org.compiere.model.MBPartner;
 import org.compiere.model.MDocType;
 import org.compiere.model.MOrder;
 import org.compiere.model.MOrderTax;
-import org.compiere.model.MOrgInfo;
 import org.compiere.model.MTax;
 import org.compiere.model.Query;
 import org.compiere.util.Env;
-import org.erpya.lve.model.MLVEList;
 import org.erpya.lve.model.MLVEWithholdingTax;
 import org.spin.model.I_WH_Withholding;
 import org.spin.model.MWHSetting;
@@ -53,6 +50,8 @@ public class OrderIVA extends AbstractWithholdingSetting {
 	private MOrder order;
 	/**	Current Business Partner	*/
 	private MBPartner businessPartner;
+	/**	Shared values of document	*/
+	private WithholdingDocumentContext context;
 	/**	Taxes	*/
 	private List<MOrderTax> taxes;
 	/**Manual Withholding*/
@@ -68,7 +67,8 @@ public class OrderIVA extends AbstractWithholdingSetting {
 			return false;
 		}
 		order = (MOrder) getDocument();
-		businessPartner = (MBPartner) order.getC_BPartner();
+		context = WithholdingDocumentContext.get(order);
+		businessPartner = context.getBusinessPartner();
 		
 		//Valid Business Partner
 		Optional.ofNullable(order)
@@ -78,10 +78,7 @@ public class OrderIVA extends AbstractWithholdingSetting {
 					setReturnValue(I_WH_Withholding.COLUMNNAME_AD_Org_ID, order.getAD_Org_ID());
 					if (order.isSOTrx()) {
 						isManual = true;
-						Optional.ofNullable(MOrgInfo.get(getContext(), order.getAD_Org_ID(), order.get_TrxName()))
-								.ifPresent(orgInfo ->{
-								businessPartner = MBPartner.get(getContext(), orgInfo.get_ValueAsInt(LVEUtil.COLUMNNAME_WH_BPartner_ID));
-						});
+						businessPartner = context.getWithholdingBusinessPartner(businessPartner);
 					}else
 						isManual = false;
 				});
@@ -92,7 +89,7 @@ public class OrderIVA extends AbstractWithholdingSetting {
 		} else {
 			//	Add reference
 			setReturnValue(I_WH_Withholding.COLUMNNAME_SourceOrder_ID, order.getC_Order_ID());
-			MLVEWithholdingTax currentWHTax = MLVEWithholdingTax.getFromClient(getContext(), getDocument().getAD_Org_ID(),MLVEWithholdingTax.TYPE_IVA);
+			MLVEWithholdingTax currentWHTax = context.getWithholdingTax(MLVEWithholdingTax.TYPE_IVA);
 			//	Validate if exists Withholding Tax Definition for client
 			if(currentWHTax == null) {
 				addLog("@LVE_WithholdingTax_ID@ @NotFound@");
@@ -112,7 +109,7 @@ public class OrderIVA extends AbstractWithholdingSetting {
 				isValid = false;
 			}
 			
-			MDocType documentType = MDocType.get(getContext(), order.getC_DocTypeTarget_ID());
+			MDocType documentType = context.getDocumentType();
 			if(documentType == null) {
 				addLog("@C_DocType_ID@ @NotFound@");
 				isValid = false;
@@ -139,7 +136,7 @@ public class OrderIVA extends AbstractWithholdingSetting {
 				addLog("@" + LVEUtil.COLUMNNAME_WithholdingTaxRate_ID + "@ @NotFound@");
 				isValid = false;
 			} else {
-				withholdingRate = MLVEList.get(getContext(), withholdingRateId).getListVersionAmount(order.getDateOrdered());
+				withholdingRate = context.getListVersionAmount(withholdingRateId, order.getDateOrdered());
 				setWithholdingRate(withholdingRate);
 			}
 			//	Validate Tax
@@ -151,14 +148,14 @@ public class OrderIVA extends AbstractWithholdingSetting {
 			
 			BigDecimal tributeUnitAmount = Env.ZERO;
 			if (currentWHTax != null)
-				tributeUnitAmount = currentWHTax.getValidTributeUnitAmount(order.getDateAcct());
+				tributeUnitAmount = context.getTributeUnitAmount(MLVEWithholdingTax.TYPE_IVA, order.getDateAcct());
 			
 			if(tributeUnitAmount.equals(Env.ZERO)) {
 				addLog("@TributeUnit@ (@Rate@ @NotFound@)");
 				isValid = false;
 			}
 			//	Validate if it have taxes
-			taxes = Arrays.asList(order.getTaxes(false))
+			taxes = context.getOrderTaxes()
 				.stream()
 				.filter(orderTax -> MTax.get(getContext(), orderTax.getC_Tax_ID()).get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsWithholdingTaxApplied) 
 						&& orderTax.getTaxAmt() != null 
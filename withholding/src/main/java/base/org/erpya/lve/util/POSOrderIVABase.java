@@ -16,12 +16,19 @@
 package org.erpya.lve.util;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.adempiere.core.domains.models.I_C_Order;
+import org.adempiere.exceptions.AdempiereException;
 import org.adempiere.core.domains.models.I_C_OrderLine;
 import org.compiere.model.MBPartner;
 import org.compiere.model.MDocType;
@@ -34,8 +41,12 @@ import org.compiere.model.MTable;
 import org.compiere.model.MTax;
 import org.compiere.model.PO;
 import org.compiere.model.Query;
+import org.compiere.util.CCache;
+import org.compiere.util.DB;
 import org.compiere.util.Env;
 import org.compiere.util.Msg;
+import org.compiere.util.Trx;
+import org.compiere.util.TrxEventListener;
 import org.compiere.util.Util;
 import org.erpya.lve.model.MLVEList;
 import org.erpya.lve.model.MLVEWithholdingTax;
@@ -54,6 +65,9 @@ import org.spin.util.AbstractWithholdingSetting;
  */
 public class POSOrderIVABase extends AbstractWithholdingSetting {
 
+	/**	POS Payment Type Allocation	*/
+	public static final String TABLE_POSPaymentTypeAllocation = "C_POSPaymentTypeAllocation";
+	
 	public POSOrderIVABase(MWHSetting setting) {
 		super(setting);
 	}
@@ -61,29 +75,45 @@ public class POSOrderIVABase extends AbstractWithholdingSetting {
 	private MOrder order;
 	/**	Current Business Partner	*/
 	private MBPartner businessPartner;
-	/**	Taxes	*/
-	private List<MOrderTax> taxes;
+	/**	Taxes with withholding: C_Tax_ID and tax amount	*/
+	private Map<Integer, BigDecimal> taxes;
 	/**Manual Withholding*/
 	private boolean isManual = false;
 	/**Withholding Rate*/
 	BigDecimal withholdingRate = Env.ZERO;
 	/**	Default POS Payment Type	*/
 	private PO defaultPaymentMethodallocated;
+	/**	Withholding state of order	*/
+	private OrderState orderState;
+	/**	Cache of POS Payment Type Allocation by POS and Withholding Type, it is reset by LVE model validator on change of table (read only)	*/
+	private static CCache<String, PO> paymentMethodAllocatedCache = new CCache<String, PO>(TABLE_POSPaymentTypeAllocation, 20, 60);	//	60 minutes
+	/**	Cache of withholding state by order of committed transactions, it is read as a copy	*/
+	private static CCache<Integer, OrderState> orderStateCache = new CCache<Integer, OrderState>("C_Order_POSOrderIVA", 100, 30);	//	30 minutes
+	/**	Withholding state by transaction and order, it is published to cache after commit and discarded on rollback	*/
+	private static Map<String, Map<Integer, OrderState>> transactionStates = new ConcurrentHashMap<String, Map<Integer, OrderState>>();
 	
 	public PO getDefaultPaymentMethodAllocated() {
 		if(defaultPaymentMethodallocated != null) {
 			return defaultPaymentMethodallocated;
 		}
-		defaultPaymentMethodallocated = new Query(getContext(), "C_POSPaymentTypeAllocation", 
+		String key = order.getC_POS_ID() + "|" + getSetting().getWH_Type_ID();
+		defaultPaymentMethodallocated = paymentMethodAllocatedCache.get(key);
+		if(defaultPaymentMethodallocated != null) {
+			return defaultPaymentMethodallocated;
+		}
+		defaultPaymentMethodallocated = new Query(getContext(), TABLE_POSPaymentTypeAllocation, 
 				"C_POS_ID = ? "
 				+ "AND IsPaymentReference = 'Y' "
 				+ "AND EXISTS(SELECT 1 FROM C_PaymentMethod pm "
 				+ "WHERE pm.C_PaymentMethod_ID = C_POSPaymentTypeAllocation.C_PaymentMethod_ID "
 				+ "AND pm.TenderType = ? "
-				+ "AND pm.WH_Type_ID = ?)", getTransactionName())
+				+ "AND pm.WH_Type_ID = ?)", null)
 				.setParameters(order.getC_POS_ID(), MPayment.TENDERTYPE_CreditMemo, getSetting().getWH_Type_ID())
 				.setOnlyActiveRecords(true)
 				.first();
+		if(defaultPaymentMethodallocated != null) {
+			paymentMethodAllocatedCache.put(key, defaultPaymentMethodallocated);
+		}
 		return defaultPaymentMethodallocated;
 	}
 
@@ -104,6 +134,11 @@ public class POSOrderIVABase extends AbstractWithholdingSetting {
 			return false;
 		}
 		if(getDocument().get_Table_ID() == I_C_OrderLine.Table_ID) {
+			//	Lines deleted change taxes of order, the next change do a full calculation
+			if(event.equals(MWHSetting.EVENTMODELVALIDATOR_TableAfterDelete)) {
+				removeState(getDocument().get_ValueAsInt(I_C_OrderLine.COLUMNNAME_C_Order_ID));
+				return false;
+			}
 			if(!(getDocument().is_ValueChanged("LineNetAmt")
 					|| getDocument().is_ValueChanged("C_Tax_ID"))
 					&& !event.equals(MWHSetting.EVENTMODELVALIDATOR_TableAfterNew)) {
@@ -117,17 +152,29 @@ public class POSOrderIVABase extends AbstractWithholdingSetting {
 				return false;
 			}
 			order = (MOrder) getDocument();
+			//	Header changed, do a full calculation
+			removeState(order.getC_Order_ID());
 		}
 		if(order.getC_POS_ID() <= 0) {
 			return false;
 		}
-		businessPartner = (MBPartner) order.getC_BPartner();
 		//	Validate Processed
 		if(order.isProcessed()) {
+			removeState(order.getC_Order_ID());
 			return false;
 		}
+		//	Only taxes of changed line are updated
+		OrderState currentState = getState(order.getC_Order_ID());
+		if(currentState != null
+				&& currentState.getHeaderKey().equals(getHeaderKey(order))
+				&& getDocument().get_Table_ID() == I_C_OrderLine.Table_ID) {
+			return isValidFromState(currentState);
+		}
+		orderState = new OrderState(getHeaderKey(order));
+		businessPartner = (MBPartner) order.getC_BPartner();
 		if(!businessPartner.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsTaxpayer)) {
 			deleteReference();
+			setNotApplicable();
 			return false;
 		}
 		//Valid Business Partner
@@ -174,11 +221,13 @@ public class POSOrderIVABase extends AbstractWithholdingSetting {
 			//	Validate Exempt Document
 			if(order.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsWithholdingTaxExempt)) {
 				deleteReference();
+				setNotApplicable();
 				return false;
 			}
 			//	Validate Exempt Business Partner
 			if(businessPartner.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsWithholdingTaxExempt)) {
 				deleteReference();
+				setNotApplicable();
 				return false;
 			}
 			//	Validate Withholding Definition
@@ -191,6 +240,7 @@ public class POSOrderIVABase extends AbstractWithholdingSetting {
 			//	Validate Definition
 			if(withholdingRateId == 0) {
 				deleteReference();
+				setNotApplicable();
 				return false;
 			} else {
 				withholdingRate = MLVEList.get(getContext(), withholdingRateId).getListVersionAmount(order.getDateOrdered());
@@ -199,6 +249,7 @@ public class POSOrderIVABase extends AbstractWithholdingSetting {
 			//	Validate Tax
 			if(getWithholdingRate().equals(Env.ZERO)) {
 				deleteReference();
+				setNotApplicable();
 				return false;
 			}
 			//	Validate Tribute Unit
@@ -212,24 +263,194 @@ public class POSOrderIVABase extends AbstractWithholdingSetting {
 				isValid = false;
 			}
 			//	Validate if it have taxes
-			taxes = Arrays.asList(order.getTaxes(true))
-				.stream()
-				.filter(orderTax -> MTax.get(getContext(), orderTax.getC_Tax_ID()).get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsWithholdingTaxApplied) 
-						&& orderTax.getTaxAmt() != null 
-						&& orderTax.getTaxAmt().compareTo(Env.ZERO) > 0)
-				.collect(Collectors.toList());
+			taxes = new TreeMap<Integer, BigDecimal>();
+			Arrays.asList(order.getTaxes(true)).forEach(orderTax -> putTax(taxes, orderTax));
 		}
 		if(getDefaultPaymentMethodAllocated() == null) {
 			addLog("@C_PaymentMethod_ID@ @NotFound@");
 			isValid = false;
 		}
+		//	Keep state for next changes of lines
+		if(isValid) {
+			orderState.setValues(businessPartner.getC_BPartner_ID(), isManual, withholdingRate, taxes);
+			putState(orderState);
+		}
 		return isValid;
 		
 	}
+	
+	/**
+	 * Validate from state of previous calculation, only the taxes of current line are read
+	 * @param currentState
+	 * @return
+	 */
+	private boolean isValidFromState(OrderState currentState) {
+		orderState = currentState;
+		if(!currentState.isApplicable()) {
+			return false;
+		}
+		setReturnValue(I_WH_Withholding.COLUMNNAME_SourceOrder_ID, order.getC_Order_ID());
+		setReturnValue(I_WH_Withholding.COLUMNNAME_AD_Org_ID, order.getAD_Org_ID());
+		businessPartner = MBPartner.get(getContext(), currentState.getBusinessPartnerId());
+		isManual = currentState.isManual();
+		withholdingRate = currentState.getWithholdingRate();
+		setWithholdingRate(withholdingRate);
+		//	Taxes of line, current and previous
+		Set<Integer> taxIds = new HashSet<Integer>();
+		addTaxId(taxIds, getDocument().get_ValueAsInt(I_C_OrderLine.COLUMNNAME_C_Tax_ID));
+		Object previousTaxId = getDocument().get_ValueOld(I_C_OrderLine.COLUMNNAME_C_Tax_ID);
+		if(previousTaxId != null) {
+			addTaxId(taxIds, ((Number) previousTaxId).intValue());
+		}
+		taxes = currentState.getTaxes();
+		synchronized (taxes) {
+			taxIds.forEach(taxId -> taxes.remove(taxId));
+			if(!taxIds.isEmpty()) {
+				new Query(getContext(), MOrderTax.Table_Name, MOrderTax.COLUMNNAME_C_Order_ID + " = ? AND " + MOrderTax.COLUMNNAME_C_Tax_ID + " IN(" + taxIds.stream().map(String::valueOf).collect(Collectors.joining(", ")) + ")", getTransactionName())
+					.setParameters(order.getC_Order_ID())
+					.<MOrderTax>list()
+					.forEach(orderTax -> putTax(taxes, orderTax));
+			}
+		}
+		putState(currentState);
+		return getDefaultPaymentMethodAllocated() != null;
+	}
+	
+	/**
+	 * Add tax and child taxes if it is a summary tax
+	 * @param taxIds
+	 * @param taxId
+	 */
+	private void addTaxId(Set<Integer> taxIds, int taxId) {
+		if(taxId <= 0) {
+			return;
+		}
+		taxIds.add(taxId);
+		MTax tax = MTax.get(getContext(), taxId);
+		if(tax != null
+				&& tax.isSummary()) {
+			Arrays.asList(tax.getChildTaxes(false)).forEach(childTax -> taxIds.add(childTax.getC_Tax_ID()));
+		}
+	}
+	
+	/**
+	 * Put tax amount if the tax apply for withholding
+	 * @param taxes
+	 * @param orderTax
+	 */
+	private void putTax(Map<Integer, BigDecimal> taxes, MOrderTax orderTax) {
+		if(MTax.get(getContext(), orderTax.getC_Tax_ID()).get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsWithholdingTaxApplied) 
+				&& orderTax.getTaxAmt() != null 
+				&& orderTax.getTaxAmt().compareTo(Env.ZERO) > 0) {
+			taxes.put(orderTax.getC_Tax_ID(), orderTax.getTaxAmt());
+		}
+	}
+	
+	/**
+	 * Keep order as not applicable for withholding until a change of header
+	 */
+	private void setNotApplicable() {
+		orderState.setApplicable(false);
+		putState(orderState);
+	}
+	
+	/**
+	 * Get state of order: the state changed on current transaction or a copy of committed state
+	 * @param orderId
+	 * @return
+	 */
+	private OrderState getState(int orderId) {
+		String transactionName = getTransactionName();
+		if(transactionName != null) {
+			Map<Integer, OrderState> states = transactionStates.get(transactionName);
+			if(states != null) {
+				OrderState state = states.get(orderId);
+				if(state != null) {
+					return state;
+				}
+			}
+		}
+		OrderState state = orderStateCache.get(orderId);
+		if(state == null) {
+			return null;
+		}
+		return state.copy();
+	}
+	
+	/**
+	 * Keep state of current order, if the document has a transaction then the state is published
+	 * to cache only after commit
+	 * @param state
+	 */
+	private void putState(OrderState state) {
+		String transactionName = getTransactionName();
+		Trx transaction = transactionName == null? null: Trx.get(transactionName, false);
+		if(transaction == null) {
+			orderStateCache.put(order.getC_Order_ID(), state);
+			return;
+		}
+		Map<Integer, OrderState> states = transactionStates.get(transactionName);
+		if(states == null) {
+			states = new ConcurrentHashMap<Integer, OrderState>();
+			transactionStates.put(transactionName, states);
+			Map<Integer, OrderState> transactionChanges = states;
+			transaction.addTrxEventListener(new TrxEventListener() {
+				@Override
+				public void afterCommit(Trx trx, boolean success) {
+					if(success) {
+						transactionChanges.forEach((orderId, changedState) -> orderStateCache.put(orderId, changedState.copy()));
+					}
+					transactionChanges.clear();
+				}
+
+				@Override
+				public void afterRollback(Trx trx, boolean success) {
+					transactionChanges.clear();
+				}
+
+				@Override
+				public void afterClose(Trx trx) {
+					transactionStates.remove(transactionName);
+				}
+			});
+		}
+		states.put(order.getC_Order_ID(), state);
+	}
+	
+	/**
+	 * Remove state of order, the next change do a full calculation
+	 * @param orderId
+	 */
+	private void removeState(int orderId) {
+		String transactionName = getTransactionName();
+		if(transactionName != null) {
+			Map<Integer, OrderState> states = transactionStates.get(transactionName);
+			if(states != null) {
+				states.remove(orderId);
+			}
+		}
+		orderStateCache.remove(orderId);
+	}
+	
+	/**
+	 * Get key of header values used for calculation, a change of it force a full calculation
+	 * @param order
+	 * @return
+	 */
+	private String getHeaderKey(MOrder order) {
+		return order.getC_BPartner_ID() 
+				+ "|" + order.getC_DocTypeTarget_ID()
+				+ "|" + order.getAD_Org_ID()
+				+ "|" + order.isSOTrx()
+				+ "|" + order.getDateOrdered()
+				+ "|" + order.getDateAcct()
+				+ "|" + order.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsWithholdingTaxExempt)
+				+ "|" + order.get_ValueAsInt(LVEUtil.COLUMNNAME_WHThirdParty_ID);
+	}
 
 	@Override
 	public String run() {
-		MTable posPaymentType = MTable.get(getContext(), "C_POSPaymentTypeAllocation");
+		MTable posPaymentType = MTable.get(getContext(), TABLE_POSPaymentTypeAllocation);
 		if(posPaymentType != null) {
 			PO paymentTypeAllocation = getDefaultPaymentMethodAllocated();
 			if(paymentTypeAllocation == null) {
@@ -245,17 +466,21 @@ public class POSOrderIVABase extends AbstractWithholdingSetting {
 			}
 		}
 		//	Iterate
-		taxes.forEach(orderTax -> {
+		Map<Integer, BigDecimal> currentTaxes = new TreeMap<Integer, BigDecimal>();
+		synchronized (taxes) {
+			currentTaxes.putAll(taxes);
+		}
+		currentTaxes.forEach((taxId, taxAmt) -> {
 			setWithholdingRate(withholdingRate);
-			addBaseAmount(orderTax.getTaxAmt());
-			addWithholdingAmount(orderTax.getTaxAmt().multiply(getWithholdingRate(true)));
-			MTax tax = MTax.get(getContext(), orderTax.getC_Tax_ID());
+			addBaseAmount(taxAmt);
+			addWithholdingAmount(taxAmt.multiply(getWithholdingRate(true)));
+			MTax tax = MTax.get(getContext(), taxId);
 			addDescription(tax.getName());
 			setReturnValue(MWHWithholding.COLUMNNAME_IsManual, isManual);
 			int WHThirdParty_ID = order.get_ValueAsInt(LVEUtil.COLUMNNAME_WHThirdParty_ID);
 			if (WHThirdParty_ID != 0)
 				setReturnValue(LVEUtil.COLUMNNAME_WHThirdParty_ID, WHThirdParty_ID);
-			setReturnValue(MWHWithholding.COLUMNNAME_C_Tax_ID, orderTax.getC_Tax_ID());
+			setReturnValue(MWHWithholding.COLUMNNAME_C_Tax_ID, taxId);
 			setReturnValue(MWHWithholding.COLUMNNAME_IsSimulation, true);
 		});
 		return null;
@@ -265,7 +490,18 @@ public class POSOrderIVABase extends AbstractWithholdingSetting {
 	 * Save payment reference from withholding calculation
 	 */
 	protected void savePaymentReference(boolean createIfNotExists) {
-		if(Optional.ofNullable(getWithholdingAmount()).orElse(Env.ZERO).compareTo(Env.ZERO) > 0) {
+		BigDecimal withholdingAmount = Optional.ofNullable(getWithholdingAmount()).orElse(Env.ZERO);
+		//	Same values of last save and the payment references were not changed after it
+		if(orderState != null
+				&& orderState.isSaved(withholdingAmount, getBaseAmount(), getProcessDescription())
+				&& orderState.isSavedReference(getReferenceStamp())) {
+			setWithholdingRate(Env.ZERO);
+			setBaseAmount(Env.ZERO);
+			setWithholdingAmount(Env.ZERO);
+			setDefaultPaymentMethodAllocated(null);
+			return;
+		}
+		if(withholdingAmount.compareTo(Env.ZERO) > 0) {
 			//	Add backward compatibility
 			MTable paymentReferenceDefinition = MTable.get(getContext(), "C_POSPaymentReference");
 			if(paymentReferenceDefinition != null) {
@@ -308,6 +544,10 @@ public class POSOrderIVABase extends AbstractWithholdingSetting {
 					paymentReferenceToCreate.set_ValueOfColumn("PayDate", order.getDateOrdered());
 					paymentReferenceToCreate.setAD_Org_ID(order.getAD_Org_ID());
 					paymentReferenceToCreate.saveEx();
+					if(orderState != null) {
+						orderState.setSaved(withholdingAmount, getBaseAmount(), getProcessDescription(), getReferenceStamp());
+						putState(orderState);
+					}
 				}
 			}
 			//	Clear
@@ -317,9 +557,40 @@ public class POSOrderIVABase extends AbstractWithholdingSetting {
 			setDefaultPaymentMethodAllocated(null);
 		} else {
 			deleteReference();
+			if(orderState != null) {
+				orderState.setSaved(withholdingAmount, getBaseAmount(), getProcessDescription(), getReferenceStamp());
+				putState(orderState);
+			}
 		}
 	}
 	
+	/**
+	 * Get stamp of pending credit memo references of order (quantity and last update), a reference
+	 * deleted, changed by other process or not committed change the stamp
+	 * @return
+	 */
+	private String getReferenceStamp() {
+		if(MTable.get(getContext(), "C_POSPaymentReference") == null) {
+			return "";
+		}
+		StringBuffer stamp = new StringBuffer();
+		List<Object> parameters = new ArrayList<Object>();
+		parameters.add(order.getC_Order_ID());
+		parameters.add(MPayment.TENDERTYPE_CreditMemo);
+		DB.runResultSet(getTransactionName(), "SELECT COUNT(*), MAX(Updated) "
+				+ "FROM C_POSPaymentReference "
+				+ "WHERE C_Order_ID = ? "
+				+ "AND TenderType = ? "
+				+ "AND Processed = 'N'", parameters, resultSet -> {
+			if(resultSet.next()) {
+				stamp.append(resultSet.getInt(1)).append("-").append(resultSet.getTimestamp(2));
+			}
+		}).onFailure(throwable -> {
+			throw new AdempiereException(throwable);
+		});
+		return stamp.toString();
+	}
+	
 	/**
 	 * Delete payment reference
 	 */
@@ -340,6 +611,102 @@ public class POSOrderIVABase extends AbstractWithholdingSetting {
 			}
 		}
 	}
+	
+	/**
+	 * Values of withholding calculation for a order, it is kept between changes of lines.
+	 * A state is changed only by the transaction that got it, the cache keeps copies.
+	 * Only identifiers and values are kept, not persistent objects
+	 */
+	static class OrderState {
+		/**	Header values used for calculation	*/
+		private final String headerKey;
+		/**	Order apply for withholding	*/
+		private boolean isApplicable = true;
+		private int businessPartnerId;
+		private boolean isManual;
+		private BigDecimal withholdingRate = Env.ZERO;
+		private Map<Integer, BigDecimal> taxes = new TreeMap<Integer, BigDecimal>();
+		/**	Values of last save of payment reference	*/
+		private String savedValues;
+		/**	Stamp of payment references after last save	*/
+		private String savedReferenceStamp;
+		
+		OrderState(String headerKey) {
+			this.headerKey = headerKey;
+		}
+		
+		/**
+		 * Copy of state with own taxes
+		 * @return
+		 */
+		synchronized OrderState copy() {
+			OrderState state = new OrderState(headerKey);
+			state.isApplicable = isApplicable;
+			state.businessPartnerId = businessPartnerId;
+			state.isManual = isManual;
+			state.withholdingRate = withholdingRate;
+			synchronized (taxes) {
+				state.taxes = new TreeMap<Integer, BigDecimal>(taxes);
+			}
+			state.savedValues = savedValues;
+			state.savedReferenceStamp = savedReferenceStamp;
+			return state;
+		}
+		
+		void setValues(int businessPartnerId, boolean isManual, BigDecimal withholdingRate, Map<Integer, BigDecimal> taxes) {
+			this.businessPartnerId = businessPartnerId;
+			this.isManual = isManual;
+			this.withholdingRate = withholdingRate;
+			this.taxes = taxes;
+		}
+		
+		String getHeaderKey() {
+			return headerKey;
+		}
+		
+		boolean isApplicable() {
+			return isApplicable;
+		}
+		
+		void setApplicable(boolean isApplicable) {
+			this.isApplicable = isApplicable;
+		}
+		
+		int getBusinessPartnerId() {
+			return businessPartnerId;
+		}
+		
+		boolean isManual() {
+			return isManual;
+		}
+		
+		BigDecimal getWithholdingRate() {
+			return withholdingRate;
+		}
+		
+		Map<Integer, BigDecimal> getTaxes() {
+			return taxes;
+		}
+		
+		private String getSavedValues(BigDecimal withholdingAmount, BigDecimal baseAmount, String description) {
+			return Optional.ofNullable(withholdingAmount).orElse(Env.ZERO).stripTrailingZeros().toPlainString()
+					+ "|" + Optional.ofNullable(baseAmount).orElse(Env.ZERO).stripTrailingZeros().toPlainString()
+					+ "|" + description;
+		}
+		
+		synchronized boolean isSaved(BigDecimal withholdingAmount, BigDecimal baseAmount, String description) {
+			return savedValues != null
+					&& savedValues.equals(getSavedValues(withholdingAmount, baseAmount, description));
+		}
+		
+		synchronized boolean isSavedReference(String referenceStamp) {
+			return savedReferenceStamp != null
+					&& savedReferenceStamp.equals(referenceStamp);
+		}
+		
+		synchronized void setSaved(BigDecimal withholdingAmount, BigDecimal baseAmount, String description, String referenceStamp) {
+			savedValues = getSavedValues(withholdingAmount, baseAmount, description);
+			savedReferenceStamp = referenceStamp;
+		}
+	}
 }
-
-
@@ -16,15 +16,19 @@
 package org.erpya.lve.util;
 
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 import org.adempiere.core.domains.models.I_C_Order;
+import org.adempiere.exceptions.AdempiereException;
 import org.compiere.model.MOrder;
 import org.compiere.model.MPayment;
 import org.compiere.model.MTable;
 import org.compiere.model.PO;
-import org.compiere.model.Query;
+import org.compiere.util.DB;
 import org.compiere.util.Util;
 import org.spin.model.I_WH_Withholding;
 import org.spin.model.MWHSetting;
@@ -41,7 +45,16 @@ import org.spin.util.AbstractWithholdingSetting;
 public class POSOrderIVAProcess extends AbstractWithholdingSetting {
 
 	/**	References	*/
-	private List<Integer> paymentReferences = new ArrayList<Integer>();
+	private List<PaymentReference> paymentReferences = new ArrayList<PaymentReference>();
+	/**	Query of references	*/
+	private static final String SQL_REFERENCES = "SELECT r.C_POSPaymentReference_ID, r.Rate, r.Base, r.Amount, r.C_Currency_ID, r.C_ConversionType_ID, "
+			+ "r.Description, r.PayDate, r.AD_Org_ID "
+			+ "FROM C_POSPaymentReference r "
+			+ "WHERE r.C_Order_ID = ? AND r.TenderType = ? "
+			+ "AND EXISTS(SELECT 1 FROM C_PaymentMethod pm "
+			+ "WHERE pm.C_PaymentMethod_ID = r.C_PaymentMethod_ID "
+			+ "AND pm.WH_Type_ID = ?) "
+			+ "ORDER BY r.C_POSPaymentReference_ID";
 	/**	Current order	*/
 	private MOrder order;
 	/**	Event	*/
@@ -60,9 +73,11 @@ public class POSOrderIVAProcess extends AbstractWithholdingSetting {
 	}
 	
 	public List<Integer> getPaymentReferences() {
-		return paymentReferences;
+		return paymentReferences.stream()
+				.map(PaymentReference::getC_POSPaymentReference_ID)
+				.collect(Collectors.toList());
 	}
-
+	
 	@Override
 	public boolean isValid() {
 		if(getDocument().get_ValueAsInt(I_C_Order.COLUMNNAME_C_POS_ID) <= 0) {
@@ -90,45 +105,80 @@ public class POSOrderIVAProcess extends AbstractWithholdingSetting {
 	}
 	
 	/**
-	 * Fill References from order
+	 * Fill References from order with values used for withholding
 	 */
 	private void fillReferences() {
-		paymentReferences = new Query(getContext(), "C_POSPaymentReference", 
-				"C_Order_ID = ? AND TenderType = ? "
-				+ "AND EXISTS(SELECT 1 FROM C_PaymentMethod pm "
-				+ "WHERE pm.C_PaymentMethod_ID = C_POSPaymentReference.C_PaymentMethod_ID "
-				+ "AND pm.WH_Type_ID = ?)", getTransactionName())
-				.setParameters(order.getC_Order_ID(), MPayment.TENDERTYPE_CreditMemo, getSetting().getWH_Type_ID())
-				.getIDsAsList();
+		List<PaymentReference> references = new ArrayList<PaymentReference>();
+		List<Object> parameters = new ArrayList<Object>();
+		parameters.add(order.getC_Order_ID());
+		parameters.add(MPayment.TENDERTYPE_CreditMemo);
+		parameters.add(getSetting().getWH_Type_ID());
+		DB.runResultSet(getTransactionName(), SQL_REFERENCES, parameters, resultSet -> {
+			while(resultSet.next()) {
+				PaymentReference reference = new PaymentReference();
+				reference.paymentReferenceId = resultSet.getInt("C_POSPaymentReference_ID");
+				reference.rate = resultSet.getBigDecimal("Rate");
+				reference.base = resultSet.getBigDecimal("Base");
+				reference.amount = resultSet.getBigDecimal("Amount");
+				reference.currencyId = resultSet.getInt("C_Currency_ID");
+				reference.conversionTypeId = resultSet.getInt("C_ConversionType_ID");
+				reference.description = resultSet.getString("Description");
+				reference.payDate = resultSet.getTimestamp("PayDate");
+				reference.orgId = resultSet.getInt("AD_Org_ID");
+				references.add(reference);
+			}
+		}).onFailure(throwable -> {
+			throw new AdempiereException(throwable);
+		});
+		paymentReferences = references;
 	}
 	
 	@Override
 	public String run() {
 		MTable paymentReferenceDefinition = MTable.get(getContext(), "C_POSPaymentReference");
-		if(paymentReferenceDefinition != null) {
-			int invoiceId = order.getC_Invoice_ID();
-			paymentReferences.forEach(paymentReferenceId -> {
-				PO paymentReference = paymentReferenceDefinition.getPO(paymentReferenceId, getTransactionName());
-				setWithholdingRate((BigDecimal) paymentReference.get_Value("Rate"));
-				addBaseAmount((BigDecimal) paymentReference.get_Value("Base"));
-				addWithholdingAmount((BigDecimal) paymentReference.get_Value("Amount"));
-				setReturnValue(I_WH_Withholding.COLUMNNAME_C_Currency_ID, paymentReference.get_ValueAsInt("C_Currency_ID"));
-				setReturnValue(I_WH_Withholding.COLUMNNAME_C_ConversionType_ID, paymentReference.get_ValueAsInt("C_ConversionType_ID"));
-				addDescription(paymentReference.get_ValueAsString("Description"));
-				setReturnValue(MWHWithholding.COLUMNNAME_IsManual, true);
-				setReturnValue(I_WH_Withholding.COLUMNNAME_DateAcct, paymentReference.get_Value("PayDate"));
-				setReturnValue(I_WH_Withholding.COLUMNNAME_AD_Org_ID, paymentReference.getAD_Org_ID());
-				if(invoiceId > 0) {
-					setReturnValue(I_WH_Withholding.COLUMNNAME_SourceInvoice_ID, invoiceId);
-				}
-				paymentReference.set_ValueOfColumn("IsPaid", true);
-				paymentReference.set_ValueOfColumn("Processed", true);
-				paymentReference.saveEx();
-				saveResult();
-			});
+		if(paymentReferenceDefinition == null) {
+			return null;
 		}
+		int invoiceId = order.getC_Invoice_ID();
+		paymentReferences.forEach(paymentReference -> {
+			setWithholdingRate(paymentReference.rate);
+			addBaseAmount(paymentReference.base);
+			addWithholdingAmount(paymentReference.amount);
+			setReturnValue(I_WH_Withholding.COLUMNNAME_C_Currency_ID, paymentReference.currencyId);
+			setReturnValue(I_WH_Withholding.COLUMNNAME_C_ConversionType_ID, paymentReference.conversionTypeId);
+			addDescription(Optional.ofNullable(paymentReference.description).orElse(""));
+			setReturnValue(MWHWithholding.COLUMNNAME_IsManual, true);
+			setReturnValue(I_WH_Withholding.COLUMNNAME_DateAcct, paymentReference.payDate);
+			setReturnValue(I_WH_Withholding.COLUMNNAME_AD_Org_ID, paymentReference.orgId);
+			if(invoiceId > 0) {
+				setReturnValue(I_WH_Withholding.COLUMNNAME_SourceInvoice_ID, invoiceId);
+			}
+			//	Mark as paid with save of reference for model validators
+			PO reference = paymentReferenceDefinition.getPO(paymentReference.paymentReferenceId, getTransactionName());
+			reference.set_ValueOfColumn("IsPaid", true);
+			reference.set_ValueOfColumn("Processed", true);
+			reference.saveEx();
+			saveResult();
+		});
 		return null;
 	}
+	
+	/**
+	 * Values of payment reference used for withholding
+	 */
+	private static class PaymentReference {
+		private int paymentReferenceId;
+		private BigDecimal rate;
+		private BigDecimal base;
+		private BigDecimal amount;
+		private int currencyId;
+		private int conversionTypeId;
+		private String description;
+		private Timestamp payDate;
+		private int orgId;
+		
+		private int getC_POSPaymentReference_ID() {
+			return paymentReferenceId;
+		}
+	}
 }
-
-
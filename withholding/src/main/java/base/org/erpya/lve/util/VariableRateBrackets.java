@@ -0,0 +1,204 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.compiere.util.CCache;
+import org.compiere.util.Env;
+import org.erpya.lve.model.MLVEListLine;
+import org.erpya.lve.model.MLVEListVersion;
+
+/**
+ * Brackets of a variable rate list version (I.S.L.R.) with minimum and maximum already multiplied
+ * by tribute unit. It is compiled once for each list version and tribute unit amount and it is
+ * shared by invoice and order. When the brackets don't overlap the bracket is found with a binary
+ * search by minimum, else the brackets are verified in sequence order.
+ * A bracket is valid for a amount if amount >= minimum and (amount <= maximum or maximum = 0),
+ * if more than one bracket is valid then the first by sequence is used.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class VariableRateBrackets {
+
+	/**	Brackets by list version and tribute unit, it is reset by LVE validator on change of version or line	*/
+	private static CCache<String, VariableRateBrackets> bracketsCache = new CCache<String, VariableRateBrackets>("LVE_VariableRateBrackets", 40, 5);	//	5 minutes
+	/**	Brackets ordered by sequence	*/
+	private final Bracket[] bracketsBySequence;
+	/**	Brackets ordered by minimum, null if brackets overlap	*/
+	private final Bracket[] bracketsByMinimum;
+	/**	Tribute Unit Amount	*/
+	private final BigDecimal tributeUnitAmount;
+
+	/**
+	 * Get brackets of list version for a tribute unit amount
+	 * @param listVersion
+	 * @param tributeUnitAmount
+	 * @return
+	 */
+	public static VariableRateBrackets get(MLVEListVersion listVersion, BigDecimal tributeUnitAmount) {
+		if(tributeUnitAmount == null) {
+			tributeUnitAmount = Env.ZERO;
+		}
+		String key = listVersion.getLVE_ListVersion_ID() + "|" + tributeUnitAmount.stripTrailingZeros().toPlainString();
+		VariableRateBrackets brackets = bracketsCache.get(key);
+		if(brackets == null) {
+			brackets = new VariableRateBrackets(listVersion.getListLine(), tributeUnitAmount);
+			bracketsCache.put(key, brackets);
+		}
+		return brackets;
+	}
+
+	/**
+	 * Compile brackets
+	 * @param listLines
+	 * @param tributeUnitAmount
+	 */
+	VariableRateBrackets(List<MLVEListLine> listLines, BigDecimal tributeUnitAmount) {
+		this.tributeUnitAmount = tributeUnitAmount;
+		List<Bracket> brackets = new ArrayList<Bracket>();
+		if(listLines != null) {
+			listLines.forEach(listLine -> brackets.add(new Bracket(listLine, tributeUnitAmount)));
+		}
+		//	Same order of previous stream: stable sort by sequence
+		brackets.sort(Comparator.comparing(bracket -> bracket.listLine.getSeqNo()));
+		bracketsBySequence = brackets.toArray(new Bracket[brackets.size()]);
+		for(int index = 0; index < bracketsBySequence.length; index++) {
+			bracketsBySequence[index].sequenceIndex = index;
+		}
+		brackets.sort(Comparator.comparing(bracket -> bracket.minimum));
+		boolean isOverlapped = false;
+		for(int index = 0; index < brackets.size() - 1; index++) {
+			Bracket current = brackets.get(index);
+			Bracket next = brackets.get(index + 1);
+			if(current.isOpen
+					|| current.minimum.compareTo(next.minimum) == 0
+					|| current.maximum.compareTo(next.minimum) > 0) {
+				isOverlapped = true;
+				break;
+			}
+		}
+		bracketsByMinimum = isOverlapped? null: brackets.toArray(new Bracket[brackets.size()]);
+	}
+
+	/**
+	 * Get list line (bracket) valid for amount
+	 * @param amount amount converted to currency of tribute unit
+	 * @return list line or null if amount is not in a bracket
+	 */
+	public MLVEListLine getBracket(BigDecimal amount) {
+		if(amount == null) {
+			return null;
+		}
+		if(bracketsByMinimum == null) {
+			for(Bracket bracket : bracketsBySequence) {
+				if(bracket.isValid(amount)) {
+					return bracket.listLine;
+				}
+			}
+			return null;
+		}
+		//	Last bracket with minimum <= amount
+		int low = 0;
+		int high = bracketsByMinimum.length - 1;
+		int found = -1;
+		while(low <= high) {
+			int middle = (low + high) >>> 1;
+			if(bracketsByMinimum[middle].minimum.compareTo(amount) <= 0) {
+				found = middle;
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		if(found < 0) {
+			return null;
+		}
+		Bracket bracket = null;
+		if(bracketsByMinimum[found].isValid(amount)) {
+			bracket = bracketsByMinimum[found];
+		}
+		//	The previous bracket is also valid when amount is equal to its maximum
+		if(found > 0
+				&& bracketsByMinimum[found - 1].isValid(amount)
+				&& (bracket == null
+						|| bracketsByMinimum[found - 1].sequenceIndex < bracket.sequenceIndex)) {
+			bracket = bracketsByMinimum[found - 1];
+		}
+		return bracket == null? null: bracket.listLine;
+	}
+
+	/**
+	 * Add to message the minimum and maximum of each bracket not valid for amount
+	 * @param message current message
+	 * @param amount amount converted to currency of tribute unit
+	 * @return
+	 */
+	public String addNotFoundMessage(String message, BigDecimal amount) {
+		StringBuilder resultMessage = new StringBuilder(message == null? "": message);
+		String baseAmt = NumberFormat.getInstance().format(amount);
+		for(Bracket bracket : bracketsBySequence) {
+			if(bracket.isValid(amount)) {
+				continue;
+			}
+			String minValue = NumberFormat.getInstance().format(bracket.listLine.getMinValue().multiply(tributeUnitAmount, MathContext.DECIMAL128));
+			String maxValue = NumberFormat.getInstance().format(bracket.listLine.getMaxValue().multiply(tributeUnitAmount, MathContext.DECIMAL128));
+			resultMessage.append(resultMessage.length() == 0 ? "" : "- ")
+				.append("@A_Base_Amount@ < @MinAmt@ @OR@ > @MaxAmt@ (@MinAmt@ = ").append(minValue)
+				.append(" - @MaxAmt@ = ").append(maxValue)
+				.append("  - @A_Base_Amount@ = ").append(baseAmt).append(") \n");
+		}
+		return resultMessage.toString();
+	}
+
+	/**
+	 * Bracket with amounts in currency
+	 */
+	private static class Bracket {
+		/**	List Line	*/
+		private final MLVEListLine listLine;
+		/**	Minimum	*/
+		private final BigDecimal minimum;
+		/**	Maximum	*/
+		private final BigDecimal maximum;
+		/**	Without maximum	*/
+		private final boolean isOpen;
+		/**	Index in sequence order	*/
+		private int sequenceIndex;
+
+		private Bracket(MLVEListLine listLine, BigDecimal tributeUnitAmount) {
+			this.listLine = listLine;
+			this.minimum = listLine.getMinValue().multiply(tributeUnitAmount);
+			this.maximum = listLine.getMaxValue().multiply(tributeUnitAmount);
+			this.isOpen = listLine.getMaxValue().compareTo(Env.ZERO) == 0;
+		}
+
+		/**
+		 * Verify if amount is in bracket
+		 * @param amount
+		 * @return
+		 */
+		private boolean isValid(BigDecimal amount) {
+			return amount.compareTo(minimum) >= 0
+					&& (isOpen
+							|| amount.compareTo(maximum) <= 0);
+		}
+	}
+}
@@ -0,0 +1,340 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+import org.adempiere.core.domains.models.I_C_Invoice;
+import org.adempiere.core.domains.models.I_C_Order;
+import org.compiere.model.MBPartner;
+import org.compiere.model.MCharge;
+import org.compiere.model.MClient;
+import org.compiere.model.MConversionRate;
+import org.compiere.model.MCurrency;
+import org.compiere.model.MDocType;
+import org.compiere.model.MInvoice;
+import org.compiere.model.MInvoiceLine;
+import org.compiere.model.MInvoiceTax;
+import org.compiere.model.MOrder;
+import org.compiere.model.MOrderLine;
+import org.compiere.model.MOrderTax;
+import org.compiere.model.MOrgInfo;
+import org.compiere.model.MProduct;
+import org.compiere.model.PO;
+import org.compiere.util.CCache;
+import org.compiere.util.Env;
+import org.erpya.lve.model.MLVEList;
+import org.erpya.lve.model.MLVEWithholdingTax;
+
+/**
+ * Values of a invoice or order shared by all withholding settings (I.V.A., I.S.L.R. and Municipal)
+ * run for the same document and event. Each value is loaded once on first use: business partner,
+ * document type, currency precision, lines, taxes, withholding definitions, tribute unit, rates
+ * and conversion to fiscal currency.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class WithholdingDocumentContext {
+
+	/**	Context by document, it is valid only for the same instance of document	*/
+	private static CCache<String, WithholdingDocumentContext> contextCache = new CCache<String, WithholdingDocumentContext>("LVE_WithholdingDocumentContext", 20, 1);	//	1 minute
+	/**	Document	*/
+	private final PO document;
+	/**	Updated of document when is loaded	*/
+	private final Timestamp updated;
+	/**	Business Partner of document	*/
+	private MBPartner businessPartner;
+	/**	Business Partner for withholding of organization	*/
+	private MBPartner withholdingBusinessPartner;
+	/**	Is Loaded withholding business partner	*/
+	private boolean isWithholdingBusinessPartnerLoaded = false;
+	/**	Organization info exists	*/
+	private boolean isOrgInfoFound = false;
+	/**	Currency Precision	*/
+	private Integer currencyPrecision;
+	/**	Conversion rate to fiscal currency	*/
+	private BigDecimal fiscalCurrencyRate;
+	/**	Is loaded conversion rate	*/
+	private boolean isFiscalCurrencyRateLoaded = false;
+	/**	Withholding definition by type	*/
+	private final Map<String, Optional<MLVEWithholdingTax>> withholdingTaxes = new HashMap<String, Optional<MLVEWithholdingTax>>();
+	/**	Tribute unit amount by type and date	*/
+	private final Map<String, BigDecimal> tributeUnitAmounts = new HashMap<String, BigDecimal>();
+	/**	Rate amount by list and date	*/
+	private final Map<String, BigDecimal> listVersionAmounts = new HashMap<String, BigDecimal>();
+	/**	Withholding rental concept by product or charge	*/
+	private final Map<String, Integer> rentalConcepts = new HashMap<String, Integer>();
+	/**	Invoice Taxes	*/
+	private List<MInvoiceTax> invoiceTaxes;
+	/**	Order Taxes	*/
+	private List<MOrderTax> orderTaxes;
+	/**	Invoice Lines	*/
+	private List<MInvoiceLine> invoiceLines;
+	/**	Order Lines	*/
+	private List<MOrderLine> orderLines;
+
+	/**
+	 * Get context for document, a new context is created if the document instance changed
+	 * @param document
+	 * @return
+	 */
+	public static WithholdingDocumentContext get(PO document) {
+		//	Document not saved (preview) is not cached
+		if(document.get_ID() <= 0) {
+			return new WithholdingDocumentContext(document);
+		}
+		String key = document.get_Table_ID() + "|" + document.get_ID() + "|" + document.get_TrxName();
+		WithholdingDocumentContext context = contextCache.get(key);
+		if(context != null
+				&& context.document == document
+				&& context.isSameVersion()) {
+			return context;
+		}
+		context = new WithholdingDocumentContext(document);
+		contextCache.put(key, context);
+		return context;
+	}
+
+	/**
+	 * Private constructor
+	 * @param document
+	 */
+	private WithholdingDocumentContext(PO document) {
+		this.document = document;
+		this.updated = document.getUpdated();
+	}
+
+	/**
+	 * Verify if document was not saved after load of context
+	 * @return
+	 */
+	private boolean isSameVersion() {
+		if(updated == null) {
+			return document.getUpdated() == null;
+		}
+		return updated.equals(document.getUpdated());
+	}
+
+	/**
+	 * Get Context
+	 * @return
+	 */
+	private Properties getCtx() {
+		return document.getCtx();
+	}
+
+	/**
+	 * Get Document
+	 * @return
+	 */
+	public PO getDocument() {
+		return document;
+	}
+
+	/**
+	 * Is Invoice
+	 * @return
+	 */
+	public boolean isInvoice() {
+		return document.get_Table_ID() == I_C_Invoice.Table_ID;
+	}
+
+	/**
+	 * Is Order
+	 * @return
+	 */
+	public boolean isOrder() {
+		return document.get_Table_ID() == I_C_Order.Table_ID;
+	}
+
+	/**
+	 * Get Business Partner of document
+	 * @return
+	 */
+	public synchronized MBPartner getBusinessPartner() {
+		if(businessPartner == null) {
+			businessPartner = new MBPartner(getCtx(), document.get_ValueAsInt(I_C_Invoice.COLUMNNAME_C_BPartner_ID), document.get_TrxName());
+		}
+		return businessPartner;
+	}
+
+	/**
+	 * Get Business Partner for withholding of sales documents, it is defined on organization
+	 * @param defaultBusinessPartner returned if organization info is not found
+	 * @return
+	 */
+	public synchronized MBPartner getWithholdingBusinessPartner(MBPartner defaultBusinessPartner) {
+		if(!isWithholdingBusinessPartnerLoaded) {
+			isWithholdingBusinessPartnerLoaded = true;
+			MOrgInfo orgInfo = MOrgInfo.get(getCtx(), document.getAD_Org_ID(), document.get_TrxName());
+			isOrgInfoFound = orgInfo != null;
+			if(isOrgInfoFound) {
+				withholdingBusinessPartner = MBPartner.get(getCtx(), orgInfo.get_ValueAsInt(LVEUtil.COLUMNNAME_WH_BPartner_ID));
+			}
+		}
+		if(!isOrgInfoFound) {
+			return defaultBusinessPartner;
+		}
+		return withholdingBusinessPartner;
+	}
+
+	/**
+	 * Get Target Document Type
+	 * @return
+	 */
+	public MDocType getDocumentType() {
+		return MDocType.get(getCtx(), document.get_ValueAsInt(I_C_Invoice.COLUMNNAME_C_DocTypeTarget_ID));
+	}
+
+	/**
+	 * Get Standard Precision of currency of document
+	 * @return
+	 */
+	public synchronized int getCurrencyPrecision() {
+		if(currencyPrecision == null) {
+			currencyPrecision = MCurrency.getStdPrecision(getCtx(), document.get_ValueAsInt(I_C_Invoice.COLUMNNAME_C_Currency_ID));
+		}
+		return currencyPrecision;
+	}
+
+	/**
+	 * Get Withholding Tax Definition of organization for a type
+	 * @param type
+	 * @return
+	 */
+	public synchronized MLVEWithholdingTax getWithholdingTax(String type) {
+		return withholdingTaxes.computeIfAbsent(type, key -> Optional.ofNullable(MLVEWithholdingTax.getFromClient(getCtx(), document.getAD_Org_ID(), type))).orElse(null);
+	}
+
+	/**
+	 * Get Tribute Unit Amount valid for a date
+	 * @param type
+	 * @param validFrom
+	 * @return zero if it is not found
+	 */
+	public synchronized BigDecimal getTributeUnitAmount(String type, Timestamp validFrom) {
+		MLVEWithholdingTax withholdingTax = getWithholdingTax(type);
+		if(withholdingTax == null) {
+			return Env.ZERO;
+		}
+		return tributeUnitAmounts.computeIfAbsent(type + "|" + validFrom, key -> withholdingTax.getValidTributeUnitAmount(validFrom));
+	}
+
+	/**
+	 * Get Amount of valid version of list
+	 * @param listId
+	 * @param validFrom
+	 * @return
+	 */
+	public synchronized BigDecimal getListVersionAmount(int listId, Timestamp validFrom) {
+		return listVersionAmounts.computeIfAbsent(listId + "|" + validFrom, key -> MLVEList.get(getCtx(), listId).getListVersionAmount(validFrom));
+	}
+
+	/**
+	 * Get Withholding Rental Concept of product or charge
+	 * @param productId
+	 * @param chargeId
+	 * @return 0 if it is not defined, the concept of charge has priority
+	 */
+	public synchronized int getWithholdingRentalConceptId(int productId, int chargeId) {
+		return rentalConcepts.computeIfAbsent(productId + "|" + chargeId, key -> {
+			int conceptId = 0;
+			if(productId != 0) {
+				MProduct product = MProduct.get(getCtx(), productId);
+				conceptId = product.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingRentalConcept_ID);
+			}
+			if(chargeId != 0) {
+				MCharge charge = MCharge.get(getCtx(), chargeId);
+				if(charge.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingRentalConcept_ID) != 0) {
+					conceptId = charge.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingRentalConcept_ID);
+				}
+			}
+			return conceptId;
+		});
+	}
+
+	/**
+	 * Get conversion rate from currency of document to fiscal currency of organization (or client currency)
+	 * @return null if conversion rate is not found
+	 */
+	public synchronized BigDecimal getFiscalCurrencyRate() {
+		if(!isFiscalCurrencyRateLoaded) {
+			isFiscalCurrencyRateLoaded = true;
+			MOrgInfo info = MOrgInfo.get(getCtx(), document.getAD_Org_ID(), null);
+			int currencyId = info.get_ValueAsInt(LVEUtil.COLUMNNAME_LVE_FiscalCurrency_ID);
+			if(currencyId <= 0) {
+				currencyId = MClient.get(getCtx()).getC_Currency_ID();
+			}
+			fiscalCurrencyRate = MConversionRate.getRate(document.get_ValueAsInt(I_C_Invoice.COLUMNNAME_C_Currency_ID),
+					currencyId,
+					(Timestamp) document.get_Value(I_C_Invoice.COLUMNNAME_DateAcct),
+					document.get_ValueAsInt(I_C_Invoice.COLUMNNAME_C_ConversionType_ID),
+					document.getAD_Client_ID(),
+					document.getAD_Org_ID());
+		}
+		return fiscalCurrencyRate;
+	}
+
+	/**
+	 * Get taxes of invoice
+	 * @return
+	 */
+	public synchronized List<MInvoiceTax> getInvoiceTaxes() {
+		if(invoiceTaxes == null) {
+			invoiceTaxes = Arrays.asList(((MInvoice) document).getTaxes(false));
+		}
+		return invoiceTaxes;
+	}
+
+	/**
+	 * Get taxes of order
+	 * @return
+	 */
+	public synchronized List<MOrderTax> getOrderTaxes() {
+		if(orderTaxes == null) {
+			orderTaxes = Arrays.asList(((MOrder) document).getTaxes(false));
+		}
+		return orderTaxes;
+	}
+
+	/**
+	 * Get lines of invoice
+	 * @return
+	 */
+	public synchronized List<MInvoiceLine> getInvoiceLines() {
+		if(invoiceLines == null) {
+			invoiceLines = Arrays.asList(((MInvoice) document).getLines());
+		}
+		return invoiceLines;
+	}
+
+	/**
+	 * Get lines of order
+	 * @return
+	 */
+	public synchronized List<MOrderLine> getOrderLines() {
+		if(orderLines == null) {
+			orderLines = Arrays.asList(((MOrder) document).getLines());
+		}
+		return orderLines;
+	}
+}
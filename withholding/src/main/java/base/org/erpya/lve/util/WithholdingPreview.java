@@ -0,0 +1,537 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.adempiere.core.domains.models.I_C_Invoice;
+import org.adempiere.core.domains.models.I_C_InvoiceLine;
+import org.adempiere.core.domains.models.I_C_Order;
+import org.compiere.model.MBPartner;
+import org.compiere.model.MDocType;
+import org.compiere.model.MInvoice;
+import org.compiere.model.MInvoiceLine;
+import org.compiere.model.MOrder;
+import org.compiere.model.MOrderLine;
+import org.compiere.model.MTax;
+import org.compiere.model.PO;
+import org.compiere.util.Env;
+import org.compiere.util.Util;
+import org.erpya.lve.model.MLVEList;
+import org.erpya.lve.model.MLVEListVersion;
+import org.erpya.lve.model.MLVEWithholdingTax;
+
+/**
+ * Preview of withholding (I.V.A., I.S.L.R. and Municipal) for a invoice or order that can be
+ * not saved, used from callouts and POS while the document is entered. It evaluates the rules
+ * of {@link WithholdingRule} used by {@link APInvoiceIVA}, {@link APInvoiceISLR} and {@link APInvoiceIM}
+ * (or the order settings) with the lines in memory, taxes are calculated from lines and definitions
+ * and rates are read from cache. Nothing is saved: withholding documents are not created and the
+ * POS references are not changed.
+ * The validation of generated documents is not done, a preview is only a estimate.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class WithholdingPreview {
+
+	/**	Document	*/
+	private final PO document;
+	/**	Lines	*/
+	private final List<? extends PO> lines;
+	/**	Shared values of document	*/
+	private final WithholdingDocumentContext context;
+	/**	Currency Precision	*/
+	private final int curPrecision;
+	/**	Manual withholding (sales document)	*/
+	private final boolean isManual;
+	/**	Results	*/
+	private final List<Result> results = new ArrayList<Result>();
+	/**	Messages (untranslated)	*/
+	private final List<String> messages = new ArrayList<String>();
+
+	/**
+	 * Preview withholding of invoice
+	 * @param invoice
+	 * @param invoiceLines lines in memory, if it is null the lines are read from database
+	 * @return
+	 */
+	public static WithholdingPreview get(MInvoice invoice, List<MInvoiceLine> invoiceLines) {
+		WithholdingDocumentContext context = WithholdingDocumentContext.get(invoice);
+		return new WithholdingPreview(context, invoiceLines == null? context.getInvoiceLines(): invoiceLines);
+	}
+
+	/**
+	 * Preview withholding of order
+	 * @param order
+	 * @param orderLines lines in memory, if it is null the lines are read from database
+	 * @return
+	 */
+	public static WithholdingPreview get(MOrder order, List<MOrderLine> orderLines) {
+		WithholdingDocumentContext context = WithholdingDocumentContext.get(order);
+		return new WithholdingPreview(context, orderLines == null? context.getOrderLines(): orderLines);
+	}
+
+	/**
+	 * Evaluate all types
+	 * @param context
+	 * @param lines
+	 */
+	private WithholdingPreview(WithholdingDocumentContext context, List<? extends PO> lines) {
+		this.context = context;
+		this.document = context.getDocument();
+		this.lines = lines;
+		this.curPrecision = context.getCurrencyPrecision();
+		this.isManual = WithholdingRule.isManual(document);
+		previewIVA();
+		previewISLR();
+		previewMunicipal();
+	}
+
+	/**
+	 * Get results of preview
+	 * @return
+	 */
+	public List<Result> getResults() {
+		return Collections.unmodifiableList(results);
+	}
+
+	/**
+	 * Get messages (untranslated) of withholding types not applied
+	 * @return
+	 */
+	public List<String> getMessages() {
+		return Collections.unmodifiableList(messages);
+	}
+
+	/**
+	 * Is Manual, the withholding of sales document is manual
+	 * @return
+	 */
+	public boolean isManual() {
+		return isManual;
+	}
+
+	/**
+	 * Get total of withholding
+	 * @return
+	 */
+	public BigDecimal getWithholdingAmt() {
+		return results.stream()
+				.map(Result::getWithholdingAmt)
+				.reduce(Env.ZERO, BigDecimal::add);
+	}
+
+	/**
+	 * Preview I.V.A.
+	 */
+	private void previewIVA() {
+		MBPartner businessPartner = context.getBusinessPartner();
+		if(!businessPartner.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsTaxpayer)
+				&& isSOTrx()) {
+			messages.add("@C_BPartner_ID@ @" + LVEUtil.COLUMNNAME_IsTaxpayer + "@ @NotFound@");
+			return;
+		}
+		MLVEWithholdingTax currentWHTax = getValidWithholdingTax(MLVEWithholdingTax.TYPE_IVA);
+		businessPartner = getWithholdingBusinessPartner();
+		if(currentWHTax == null
+				|| businessPartner == null) {
+			return;
+		}
+		if(document.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsWithholdingTaxExempt)) {
+			messages.add("@DocumentWithholdingTaxExempt@");
+			return;
+		}
+		if(businessPartner.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsWithholdingTaxExempt)) {
+			messages.add("@BPartnerWithholdingTaxExempt@");
+			return;
+		}
+		int withholdingRateId = WithholdingRule.getWithholdingTaxRateId(businessPartner, currentWHTax);
+		if(withholdingRateId == 0) {
+			messages.add("@" + LVEUtil.COLUMNNAME_WithholdingTaxRate_ID + "@ @NotFound@");
+			return;
+		}
+		BigDecimal withholdingRate = context.getListVersionAmount(withholdingRateId, getDocumentDate());
+		if(withholdingRate == null
+				|| withholdingRate.signum() == 0) {
+			messages.add("@LVE_WithholdingTax_ID@ (@Rate@ @NotFound@)");
+			return;
+		}
+		BigDecimal tributeUnitAmount = context.getTributeUnitAmount(MLVEWithholdingTax.TYPE_IVA, getDateAcct());
+		if(tributeUnitAmount.signum() == 0) {
+			messages.add("@TributeUnit@ (@Rate@ @NotFound@)");
+			return;
+		}
+		BigDecimal rate = WithholdingRule.getRate(withholdingRate);
+		Map<Integer, BigDecimal> taxes = getTaxes();
+		taxes.forEach((taxId, taxAmt) -> {
+			MTax tax = MTax.get(document.getCtx(), taxId);
+			if(!WithholdingRule.isTaxWithheld(tax, taxAmt)) {
+				return;
+			}
+			results.add(new Result(MLVEWithholdingTax.TYPE_IVA, tax.getName(), taxId, taxAmt, withholdingRate, WithholdingRule.getTaxWithholdingAmt(taxAmt, rate), Env.ZERO, false, false));
+		});
+		if(results.stream().noneMatch(result -> result.getType().equals(MLVEWithholdingTax.TYPE_IVA))) {
+			messages.add("@NoTaxesForWithholding@");
+		}
+	}
+
+	/**
+	 * Preview I.S.L.R.
+	 */
+	private void previewISLR() {
+		MLVEWithholdingTax currentWHTax = getValidWithholdingTax(MLVEWithholdingTax.TYPE_ISLR);
+		MBPartner businessPartner = getWithholdingBusinessPartner();
+		if(currentWHTax == null
+				|| businessPartner == null) {
+			return;
+		}
+		String bpartnerPersonType = businessPartner.get_ValueAsString(LVEUtil.COLUMNNAME_PersonType);
+		if(Util.isEmpty(bpartnerPersonType)) {
+			messages.add("@" + LVEUtil.COLUMNNAME_PersonType + "@ @NotFound@ @C_BPartner_ID@ " + businessPartner.getValue() + " - " + businessPartner.getName());
+			return;
+		}
+		if(businessPartner.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsWithholdingRentalExempt)) {
+			messages.add("@C_BPartner_ID@ @IsWithholdingRentalExempt@");
+			return;
+		}
+		//	Concepts
+		Map<Integer, BigDecimal> concepts = new LinkedHashMap<Integer, BigDecimal>();
+		int documentConceptId = document.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingRentalConcept_ID);
+		if(documentConceptId != 0) {
+			concepts.put(documentConceptId, getTotalLines());
+		} else {
+			lines.forEach(line -> {
+				int conceptId = context.getWithholdingRentalConceptId(line.get_ValueAsInt(I_C_InvoiceLine.COLUMNNAME_M_Product_ID), line.get_ValueAsInt(I_C_InvoiceLine.COLUMNNAME_C_Charge_ID));
+				if(conceptId != 0) {
+					concepts.merge(conceptId, getLineNetAmt(line), BigDecimal::add);
+				}
+			});
+		}
+		if(concepts.isEmpty()) {
+			messages.add("@NotFound@ @WithholdingRentalConcept_ID@");
+			return;
+		}
+		//	Tribute Unit: date invoiced for invoice and accounting date for order
+		BigDecimal tributeUnitAmount = context.getTributeUnitAmount(MLVEWithholdingTax.TYPE_ISLR, context.isInvoice()? getDocumentDate(): getDateAcct());
+		if(tributeUnitAmount.signum() == 0) {
+			messages.add("@TributeUnit@ (@Rate@ @NotFound@)");
+			return;
+		}
+		//	Only invoice is converted to fiscal currency
+		BigDecimal currencyRate = Env.ONE;
+		if(context.isInvoice()
+				&& context.getFiscalCurrencyRate() != null) {
+			currencyRate = context.getFiscalCurrencyRate();
+		}
+		BigDecimal fiscalCurrencyRate = currencyRate;
+		concepts.forEach((conceptId, amtBase) -> {
+			MLVEList concept = MLVEList.get(document.getCtx(), conceptId);
+			MLVEListVersion rateToApply = concept.getValidVersionInstance(getDocumentDate(), LVEUtil.COLUMNNAME_PersonType, bpartnerPersonType);
+			if(rateToApply == null) {
+				messages.add("@NotFound@ @WithholdingRentalRate_ID@");
+				return;
+			}
+			//	Invoice is evaluated in fiscal currency
+			BigDecimal amount = context.isInvoice()? fiscalCurrencyRate.multiply(amtBase): amtBase;
+			WithholdingRule.RentalRate rentalRate = WithholdingRule.getRentalRate(rateToApply, bpartnerPersonType, amount, tributeUnitAmount, curPrecision);
+			String message = rentalRate.addMessage("");
+			if(!Util.isEmpty(message)) {
+				messages.add(message);
+			}
+			Result result = getRentalResult(concept.getName(), rentalRate, amtBase, fiscalCurrencyRate, context.isInvoice(), curPrecision);
+			if(result != null) {
+				results.add(result);
+			}
+		});
+	}
+
+	/**
+	 * Get result of a rental concept (I.S.L.R.) evaluated, same amounts of rental setting for invoice
+	 * @param conceptName
+	 * @param rentalRate rate evaluated for concept
+	 * @param amtBase base amount in document currency
+	 * @param fiscalCurrencyRate rate from document currency to fiscal currency
+	 * @param isInvoice only invoice is converted to fiscal currency
+	 * @param precision currency precision
+	 * @return null if the concept does not generate withholding
+	 */
+	static Result getRentalResult(String conceptName, WithholdingRule.RentalRate rentalRate, BigDecimal amtBase, BigDecimal fiscalCurrencyRate, boolean isInvoice, int precision) {
+		BigDecimal rate = rentalRate.getRate();
+		if(!rentalRate.isGenerateDocument()
+				|| rate == null
+				|| rate.signum() == 0) {
+			return null;
+		}
+		BigDecimal subtrahend = rentalRate.getSubtrahend();
+		BigDecimal withholdingAmt = Env.ZERO;
+		if(isInvoice) {
+			subtrahend = WithholdingRule.convertSubtrahend(subtrahend, fiscalCurrencyRate);
+			if(rentalRate.isValid()) {
+				withholdingAmt = WithholdingRule.getRentalWithholdingAmt(amtBase, WithholdingRule.getRate(rate), rentalRate.getSubtrahend(), fiscalCurrencyRate);
+			}
+		} else if(rentalRate.isValid()) {
+			withholdingAmt = WithholdingRule.getOrderRentalWithholdingAmt(amtBase, WithholdingRule.getRate(rate), subtrahend, precision);
+		}
+		//	Below minimum and cumulative is a simulation without amount
+		return new Result(MLVEWithholdingTax.TYPE_ISLR, conceptName, 0, amtBase, rate, withholdingAmt, subtrahend, rentalRate.isCumulative(), !rentalRate.isValid());
+	}
+
+	/**
+	 * Preview Municipal
+	 */
+	private void previewMunicipal() {
+		MLVEWithholdingTax currentWHTax = getValidWithholdingTax(MLVEWithholdingTax.TYPE_ImpuestoMunicipal);
+		MBPartner businessPartner = getWithholdingBusinessPartner();
+		if(currentWHTax == null
+				|| businessPartner == null) {
+			return;
+		}
+		if(businessPartner.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsWithholdingMunicipalExempt)) {
+			messages.add("@C_BPartner_ID@ @IsWithholdingMunicipalExempt@");
+			return;
+		}
+		int activityId = businessPartner.get_ValueAsInt(LVEUtil.COLUMNNAME_BusinessActivity_ID);
+		if(activityId == 0) {
+			messages.add("@NotFound@ @BusinessActivity_ID@");
+			return;
+		}
+		int rateId = businessPartner.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingMunicipalRate_ID);
+		if(rateId == 0) {
+			messages.add("@NotFound@ @WithholdingMunicipalRate_ID@");
+			return;
+		}
+		MLVEListVersion rateToApply = new MLVEListVersion(document.getCtx(), rateId, null);
+		BigDecimal rate = rateToApply.getAmount();
+		if(rate == null
+				|| rate.signum() == 0) {
+			return;
+		}
+		BigDecimal baseAmount = getTotalLines();
+		BigDecimal withholdingAmt = WithholdingRule.getMunicipalWithholdingAmt(baseAmount, WithholdingRule.getRate(rate), curPrecision);
+		results.add(new Result(MLVEWithholdingTax.TYPE_ImpuestoMunicipal, MLVEList.get(document.getCtx(), activityId).getName(), 0, baseAmount, rate, withholdingAmt, Env.ZERO, false, false));
+	}
+
+	/**
+	 * Get Withholding Tax definition if it is valid for document
+	 * @param type
+	 * @return null if the type is not applied
+	 */
+	private MLVEWithholdingTax getValidWithholdingTax(String type) {
+		MLVEWithholdingTax currentWHTax = context.getWithholdingTax(type);
+		if(currentWHTax == null) {
+			return null;
+		}
+		if(currentWHTax.isClientExcluded()) {
+			messages.add("@IsClientExcluded@ " + currentWHTax.getName());
+			return null;
+		}
+		if(context.isInvoice()) {
+			if(((MInvoice) document).isReversal()) {
+				messages.add("@C_Invoice_ID@ @Voided@");
+				return null;
+			}
+			MDocType documentType = context.getDocumentType();
+			if(documentType == null
+					|| (!documentType.getDocBaseType().equals(MDocType.DOCBASETYPE_APInvoice)
+							&& !documentType.getDocBaseType().equals(MDocType.DOCBASETYPE_APCreditMemo)
+							&& !documentType.getDocBaseType().equals(MDocType.DOCBASETYPE_ARInvoice)
+							&& !documentType.getDocBaseType().equals(MDocType.DOCBASETYPE_ARCreditMemo))) {
+				messages.add("@APDocumentRequired@ / @ARDocumentRequired@");
+				return null;
+			}
+		}
+		return currentWHTax;
+	}
+
+	/**
+	 * Get Business Partner of withholding, for sales document it is the business partner of organization
+	 * @return
+	 */
+	private MBPartner getWithholdingBusinessPartner() {
+		MBPartner businessPartner = context.getBusinessPartner();
+		if(isSOTrx()) {
+			businessPartner = context.getWithholdingBusinessPartner(businessPartner);
+		}
+		if(businessPartner == null) {
+			messages.add("@C_BPartner_ID@ @NotFound@");
+		}
+		return businessPartner;
+	}
+
+	/**
+	 * Calculate tax amount of lines by tax, the summary taxes are calculated by child
+	 * @return
+	 */
+	private Map<Integer, BigDecimal> getTaxes() {
+		boolean isTaxIncluded = document.get_ValueAsBoolean(I_C_Invoice.COLUMNNAME_IsTaxIncluded);
+		Map<Integer, BigDecimal> baseByTax = new LinkedHashMap<Integer, BigDecimal>();
+		lines.forEach(line -> {
+			int taxId = line.get_ValueAsInt(I_C_InvoiceLine.COLUMNNAME_C_Tax_ID);
+			if(taxId > 0) {
+				baseByTax.merge(taxId, getLineNetAmt(line), BigDecimal::add);
+			}
+		});
+		Map<Integer, BigDecimal> taxes = new LinkedHashMap<Integer, BigDecimal>();
+		baseByTax.forEach((taxId, baseAmt) -> {
+			MTax tax = MTax.get(document.getCtx(), taxId);
+			if(tax.isSummary()) {
+				for(MTax childTax : tax.getChildTaxes(false)) {
+					taxes.merge(childTax.getC_Tax_ID(), childTax.calculateTax(baseAmt, isTaxIncluded, curPrecision), BigDecimal::add);
+				}
+			} else {
+				taxes.merge(taxId, tax.calculateTax(baseAmt, isTaxIncluded, curPrecision), BigDecimal::add);
+			}
+		});
+		return taxes;
+	}
+
+	/**
+	 * Get Total Lines from lines in memory
+	 * @return
+	 */
+	private BigDecimal getTotalLines() {
+		return lines.stream()
+				.map(this::getLineNetAmt)
+				.reduce(Env.ZERO, BigDecimal::add);
+	}
+
+	/**
+	 * Get Line Net Amount
+	 * @param line
+	 * @return
+	 */
+	private BigDecimal getLineNetAmt(PO line) {
+		BigDecimal lineNetAmt = (BigDecimal) line.get_Value(I_C_InvoiceLine.COLUMNNAME_LineNetAmt);
+		if(lineNetAmt == null) {
+			return Env.ZERO;
+		}
+		return lineNetAmt;
+	}
+
+	/**
+	 * Is Sales Transaction
+	 * @return
+	 */
+	private boolean isSOTrx() {
+		return document.get_ValueAsBoolean(I_C_Invoice.COLUMNNAME_IsSOTrx);
+	}
+
+	/**
+	 * Get Date Invoiced or Date Ordered
+	 * @return
+	 */
+	private Timestamp getDocumentDate() {
+		if(context.isInvoice()) {
+			return (Timestamp) document.get_Value(I_C_Invoice.COLUMNNAME_DateInvoiced);
+		}
+		return (Timestamp) document.get_Value(I_C_Order.COLUMNNAME_DateOrdered);
+	}
+
+	/**
+	 * Get Accounting Date
+	 * @return
+	 */
+	private Timestamp getDateAcct() {
+		return (Timestamp) document.get_Value(I_C_Invoice.COLUMNNAME_DateAcct);
+	}
+
+	/**
+	 * Result of a withholding type
+	 */
+	public static class Result {
+		/**	Type of Withholding Tax	*/
+		private final String type;
+		/**	Name of tax, concept or activity	*/
+		private final String name;
+		/**	Tax (only I.V.A.)	*/
+		private final int taxId;
+		/**	Base Amount	*/
+		private final BigDecimal baseAmt;
+		/**	Rate (percentage)	*/
+		private final BigDecimal rate;
+		/**	Withholding Amount	*/
+		private final BigDecimal withholdingAmt;
+		/**	Subtrahend (only I.S.L.R.)	*/
+		private final BigDecimal subtrahend;
+		/**	Cumulative (only I.S.L.R.)	*/
+		private final boolean isCumulative;
+		/**	Simulation, amount below minimum (only I.S.L.R.)	*/
+		private final boolean isSimulation;
+
+		private Result(String type, String name, int taxId, BigDecimal baseAmt, BigDecimal rate, BigDecimal withholdingAmt, BigDecimal subtrahend, boolean isCumulative, boolean isSimulation) {
+			this.type = type;
+			this.name = name;
+			this.taxId = taxId;
+			this.baseAmt = baseAmt;
+			this.rate = rate;
+			this.withholdingAmt = withholdingAmt;
+			this.subtrahend = subtrahend;
+			this.isCumulative = isCumulative;
+			this.isSimulation = isSimulation;
+		}
+
+		/**
+		 * Get Type (see {@link MLVEWithholdingTax#TYPE_IVA}, {@link MLVEWithholdingTax#TYPE_ISLR} and {@link MLVEWithholdingTax#TYPE_ImpuestoMunicipal})
+		 * @return
+		 */
+		public String getType() {
+			return type;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getC_Tax_ID() {
+			return taxId;
+		}
+
+		public BigDecimal getBaseAmt() {
+			return baseAmt;
+		}
+
+		public BigDecimal getRate() {
+			return rate;
+		}
+
+		public BigDecimal getWithholdingAmt() {
+			return withholdingAmt;
+		}
+
+		public BigDecimal getSubtrahend() {
+			return subtrahend;
+		}
+
+		public boolean isCumulative() {
+			return isCumulative;
+		}
+
+		public boolean isSimulation() {
+			return isSimulation;
+		}
+
+		@Override
+		public String toString() {
+			return "Result [type=" + type + ", name=" + name + ", baseAmt=" + baseAmt + ", rate=" + rate
+					+ ", withholdingAmt=" + withholdingAmt + ", subtrahend=" + subtrahend + ", isSimulation=" + isSimulation + "]";
+		}
+	}
+}
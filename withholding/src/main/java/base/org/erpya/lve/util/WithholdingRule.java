@@ -0,0 +1,295 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+import org.adempiere.core.domains.models.I_C_Invoice;
+import org.compiere.model.MBPartner;
+import org.compiere.model.MTax;
+import org.compiere.model.PO;
+import org.compiere.util.Env;
+import org.erpya.lve.model.MLVEListLine;
+import org.erpya.lve.model.MLVEListVersion;
+import org.erpya.lve.model.MLVEWithholdingTax;
+import org.erpya.lve.model.X_LVE_ListVersion;
+
+/**
+ * Rules of withholding (I.V.A., I.S.L.R. and Municipal) shared by withholding settings of invoice
+ * and order and by {@link WithholdingPreview}. The functions only evaluate the values received,
+ * they don't save and don't add log, then the setting and the preview get the same result.
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class WithholdingRule {
+
+	/**	Factor of tribute unit for minimum of resident natural person (I.S.L.R.)	*/
+	public static final BigDecimal FACTOR = new BigDecimal(83.3334);
+
+	/**
+	 * Withholding of a sales document is entered by customer, then it is manual
+	 * @param document
+	 * @return
+	 */
+	public static boolean isManual(PO document) {
+		return document.get_ValueAsBoolean(I_C_Invoice.COLUMNNAME_IsSOTrx);
+	}
+
+	/**
+	 * Get Withholding Rate (I.V.A.) of business partner or default of withholding tax definition
+	 * @param businessPartner
+	 * @param withholdingTax
+	 * @return 0 if not found
+	 */
+	public static int getWithholdingTaxRateId(MBPartner businessPartner, MLVEWithholdingTax withholdingTax) {
+		int withholdingRateId = businessPartner.get_ValueAsInt(LVEUtil.COLUMNNAME_WithholdingTaxRate_ID);
+		if(withholdingRateId == 0
+				&& withholdingTax != null) {
+			withholdingRateId = withholdingTax.getDefaultWithholdingRate_ID();
+		}
+		return withholdingRateId;
+	}
+
+	/**
+	 * Verify if the amount of a tax is withheld (I.V.A.)
+	 * @param tax
+	 * @param taxAmt
+	 * @return
+	 */
+	public static boolean isTaxWithheld(MTax tax, BigDecimal taxAmt) {
+		return tax.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsWithholdingTaxApplied)
+				&& taxAmt != null
+				&& taxAmt.signum() > 0;
+	}
+
+	/**
+	 * Get rate as fraction of a percentage
+	 * @param percentage
+	 * @return
+	 */
+	public static BigDecimal getRate(BigDecimal percentage) {
+		return percentage.divide(Env.ONEHUNDRED, MathContext.DECIMAL128);
+	}
+
+	/**
+	 * Get Withholding amount of a tax (I.V.A.)
+	 * @param taxAmt
+	 * @param rate rate as fraction
+	 * @return
+	 */
+	public static BigDecimal getTaxWithholdingAmt(BigDecimal taxAmt, BigDecimal rate) {
+		return taxAmt.multiply(rate);
+	}
+
+	/**
+	 * Get Withholding amount of municipal tax
+	 * @param baseAmt
+	 * @param rate rate as fraction
+	 * @param precision currency precision
+	 * @return
+	 */
+	public static BigDecimal getMunicipalWithholdingAmt(BigDecimal baseAmt, BigDecimal rate, int precision) {
+		return baseAmt.multiply(rate, MathContext.DECIMAL128)
+				.setScale(precision, RoundingMode.HALF_UP);
+	}
+
+	/**
+	 * Get Withholding amount of a rental concept (I.S.L.R.) of invoice
+	 * @param baseAmt amount in invoice currency
+	 * @param rate rate as fraction
+	 * @param subtrahend subtrahend in fiscal currency
+	 * @param currencyRate rate from invoice currency to fiscal currency, null for same currency
+	 * @return
+	 */
+	public static BigDecimal getRentalWithholdingAmt(BigDecimal baseAmt, BigDecimal rate, BigDecimal subtrahend, BigDecimal currencyRate) {
+		return baseAmt.multiply(rate, MathContext.DECIMAL128)
+				.subtract(convertSubtrahend(subtrahend, currencyRate));
+	}
+
+	/**
+	 * Get Withholding amount of a rental concept (I.S.L.R.) of order, the order is not converted
+	 * @param baseAmt
+	 * @param rate rate as fraction
+	 * @param subtrahend
+	 * @param precision currency precision
+	 * @return
+	 */
+	public static BigDecimal getOrderRentalWithholdingAmt(BigDecimal baseAmt, BigDecimal rate, BigDecimal subtrahend, int precision) {
+		return baseAmt.multiply(rate, MathContext.DECIMAL128)
+				.setScale(precision, RoundingMode.HALF_UP)
+				.subtract(subtrahend);
+	}
+
+	/**
+	 * Convert Subtrahend to invoice currency
+	 * @param subtrahend subtrahend in fiscal currency
+	 * @param currencyRate rate from invoice currency to fiscal currency, null for same currency
+	 * @return
+	 */
+	public static BigDecimal convertSubtrahend(BigDecimal subtrahend, BigDecimal currencyRate) {
+		if(currencyRate == null) {
+			return subtrahend;
+		}
+		return subtrahend.divide(currencyRate, MathContext.DECIMAL128);
+	}
+
+	/**
+	 * Get minimum amount of resident natural person (I.S.L.R.)
+	 * @param tributeUnitAmount
+	 * @param precision currency precision
+	 * @return
+	 */
+	public static BigDecimal getMinimumAmt(BigDecimal tributeUnitAmount, int precision) {
+		return tributeUnitAmount.multiply(FACTOR, MathContext.DECIMAL128).setScale(precision, RoundingMode.HALF_UP);
+	}
+
+	/**
+	 * Get Subtrahend of resident natural person (I.S.L.R.)
+	 * @param minimumAmt
+	 * @param percentage
+	 * @param precision currency precision
+	 * @return
+	 */
+	public static BigDecimal getSubtrahend(BigDecimal minimumAmt, BigDecimal percentage, int precision) {
+		return minimumAmt.multiply(getRate(percentage), MathContext.DECIMAL128)
+				.setScale(precision, RoundingMode.HALF_UP);
+	}
+
+	/**
+	 * Evaluate rate of a rental concept (I.S.L.R.)
+	 * @param rateToApply valid version of concept for person type
+	 * @param personType person type of business partner
+	 * @param amount base amount of concept, converted to fiscal currency for invoice
+	 * @param tributeUnitAmount
+	 * @param precision currency precision
+	 * @return
+	 */
+	public static RentalRate getRentalRate(MLVEListVersion rateToApply, String personType, BigDecimal amount, BigDecimal tributeUnitAmount, int precision) {
+		RentalRate rentalRate = new RentalRate(rateToApply, amount);
+		if(rateToApply.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsVariableRate)) {
+			rentalRate.brackets = VariableRateBrackets.get(rateToApply, tributeUnitAmount);
+			rentalRate.varRateToApply = rentalRate.brackets.getBracket(amount);
+			if(rentalRate.varRateToApply != null) {
+				rentalRate.rate = (BigDecimal) rentalRate.varRateToApply.get_Value(LVEUtil.COLUMNNAME_VariableRate);
+				rentalRate.isGenerateDocument = true;
+			}
+		} else if(personType.equals(X_LVE_ListVersion.PERSONTYPE_ResidentNaturalPerson)) {
+			rentalRate.minimumAmt = getMinimumAmt(tributeUnitAmount, precision);
+			rentalRate.subtrahend = getSubtrahend(rentalRate.minimumAmt, rateToApply.getAmount(), precision);
+			if(amount.compareTo(rentalRate.minimumAmt) >= 0) {
+				rentalRate.isGenerateDocument = true;
+			} else if(rentalRate.isCumulative) {
+				//	Below minimum is generated as simulation for accumulate it
+				rentalRate.isGenerateDocument = true;
+				rentalRate.isValid = false;
+			}
+		} else {
+			rentalRate.isGenerateDocument = true;
+		}
+		return rentalRate;
+	}
+
+	/**
+	 * Result of rate evaluation of a rental concept (I.S.L.R.)
+	 */
+	public static class RentalRate {
+		/**	Version of concept	*/
+		private final MLVEListVersion rateToApply;
+		/**	Base Amount evaluated	*/
+		private final BigDecimal amount;
+		/**	Is Cumulative	*/
+		private final boolean isCumulative;
+		/**	Bracket of variable rate	*/
+		private MLVEListLine varRateToApply = null;
+		/**	Brackets of variable rate	*/
+		private VariableRateBrackets brackets = null;
+		/**	Rate (percentage)	*/
+		private BigDecimal rate;
+		/**	Subtrahend	*/
+		private BigDecimal subtrahend = Env.ZERO;
+		/**	Minimum of resident natural person	*/
+		private BigDecimal minimumAmt = null;
+		/**	Generate withholding	*/
+		private boolean isGenerateDocument = false;
+		/**	False when it is a simulation	*/
+		private boolean isValid = true;
+
+		private RentalRate(MLVEListVersion rateToApply, BigDecimal amount) {
+			this.rateToApply = rateToApply;
+			this.amount = amount;
+			this.rate = rateToApply.getAmount();
+			this.isCumulative = rateToApply.isCumulativeWithholding();
+		}
+
+		/**
+		 * Add message of rule to current message (untranslated)
+		 * @param message
+		 * @return message with not found brackets or below minimum
+		 */
+		public String addMessage(String message) {
+			if(brackets != null
+					&& varRateToApply == null) {
+				return brackets.addNotFoundMessage(message, amount);
+			}
+			if(minimumAmt != null
+					&& amount.compareTo(minimumAmt) < 0) {
+				return "@A_Base_Amount@ < @MinimumAmt@ ( @MinimumAmt@ = " + minimumAmt + " @A_Base_Amount@ = " + amount + ") \n";
+			}
+			return message;
+		}
+
+		public MLVEListVersion getRateToApply() {
+			return rateToApply;
+		}
+
+		public MLVEListLine getVarRateToApply() {
+			return varRateToApply;
+		}
+
+		/**
+		 * Get Rate (percentage) of version or bracket
+		 * @return
+		 */
+		public BigDecimal getRate() {
+			return rate;
+		}
+
+		public BigDecimal getSubtrahend() {
+			return subtrahend;
+		}
+
+		public boolean isCumulative() {
+			return isCumulative;
+		}
+
+		/**
+		 * Verify if the withholding is generated (also as simulation)
+		 * @return
+		 */
+		public boolean isGenerateDocument() {
+			return isGenerateDocument;
+		}
+
+		/**
+		 * Is Valid, false when the amount is below minimum and it is generated as simulation
+		 * @return
+		 */
+		public boolean isValid() {
+			return isValid;
+		}
+	}
+}
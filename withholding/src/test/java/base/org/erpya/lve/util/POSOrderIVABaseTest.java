@@ -0,0 +1,152 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.erpya.lve.util.POSOrderIVABase.OrderState;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Withholding state of a POS order is changed by the transaction of order and it is read as a copy
+ * by other transactions: a copy is not changed by the owner and it is not read while taxes are updated
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class POSOrderIVABaseTest {
+
+	/**	Time out of waits	*/
+	private static final long TIMEOUT = 10;
+
+	@Test
+	public void testCopyIsIsolated() {
+		OrderState state = getState();
+		state.setSaved(new BigDecimal("7.5"), new BigDecimal("10"), "IVA", "1-2024-01-01 10:00:00");
+		OrderState copy = state.copy();
+		copy.getTaxes().put(3, new BigDecimal("99"));
+		copy.setApplicable(false);
+		copy.setSaved(BigDecimal.ZERO, BigDecimal.ZERO, "", "0-");
+		//	Owner is not changed
+		assertEquals(2, state.getTaxes().size());
+		assertTrue(state.isApplicable());
+		assertTrue(state.isSaved(new BigDecimal("7.5"), new BigDecimal("10"), "IVA"));
+		assertTrue(state.isSavedReference("1-2024-01-01 10:00:00"));
+		//	Values of copy
+		OrderState otherCopy = state.copy();
+		assertEquals(state.getHeaderKey(), otherCopy.getHeaderKey());
+		assertEquals(state.getWithholdingRate(), otherCopy.getWithholdingRate());
+		assertEquals(state.getTaxes(), otherCopy.getTaxes());
+		assertEquals(10, otherCopy.getBusinessPartnerId());
+		assertTrue(otherCopy.isManual());
+		assertTrue(otherCopy.isSaved(new BigDecimal("7.5"), new BigDecimal("10"), "IVA"));
+		assertTrue(otherCopy.isSavedReference("1-2024-01-01 10:00:00"));
+	}
+
+	@Test
+	public void testSavedValues() {
+		OrderState state = getState();
+		assertFalse(state.isSaved(new BigDecimal("7.5"), new BigDecimal("10"), "IVA"));
+		state.setSaved(new BigDecimal("7.50"), new BigDecimal("10.00"), "IVA", "1-2024-01-01 10:00:00");
+		//	Same amount with other scale
+		assertTrue(state.isSaved(new BigDecimal("7.5"), new BigDecimal("1E+1"), "IVA"));
+		assertFalse(state.isSaved(new BigDecimal("7.51"), new BigDecimal("10"), "IVA"));
+		assertFalse(state.isSaved(new BigDecimal("7.5"), new BigDecimal("10"), "IVA 16%"));
+		//	Without amounts
+		state.setSaved(null, null, null, "0-");
+		assertTrue(state.isSaved(BigDecimal.ZERO, new BigDecimal("0.00"), null));
+	}
+
+	@Test
+	public void testSavedReference() {
+		OrderState state = getState();
+		assertFalse(state.isSavedReference("0-"));
+		state.setSaved(new BigDecimal("7.5"), new BigDecimal("10"), "IVA", "1-2024-01-01 10:00:00");
+		assertTrue(state.isSavedReference("1-2024-01-01 10:00:00"));
+		//	Reference deleted
+		assertFalse(state.isSavedReference("0-"));
+		//	Reference changed by other process
+		assertFalse(state.isSavedReference("1-2024-01-01 10:05:00"));
+		//	Reference not found
+		assertFalse(state.isSavedReference(null));
+	}
+
+	@Test
+	public void testCopyWhileTaxesAreUpdated() throws Exception {
+		OrderState state = getState();
+		AtomicBoolean isRunning = new AtomicBoolean(true);
+		ExecutorService executor = Executors.newFixedThreadPool(5);
+		try {
+			//	Owner replace taxes of changed line, same as update of state from a line
+			Future<?> owner = executor.submit(() -> {
+				for(int change = 0; change < 20000; change++) {
+					Map<Integer, BigDecimal> taxes = state.getTaxes();
+					synchronized (taxes) {
+						taxes.remove(1);
+						taxes.remove(2);
+						taxes.put(1, BigDecimal.valueOf(change));
+						taxes.put(2, BigDecimal.valueOf(change));
+					}
+				}
+				isRunning.set(false);
+			});
+			List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+			for(int reader = 0; reader < 4; reader++) {
+				readers.add(executor.submit(() -> {
+					int copies = 0;
+					while(isRunning.get()) {
+						OrderState copy = state.copy();
+						//	A copy has all taxes of a change
+						assertEquals(2, copy.getTaxes().size());
+						assertEquals(copy.getTaxes().get(1), copy.getTaxes().get(2));
+						copies++;
+					}
+					return copies;
+				}));
+			}
+			owner.get(TIMEOUT, TimeUnit.SECONDS);
+			for(Future<Integer> reader : readers) {
+				reader.get(TIMEOUT, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Get state with two taxes
+	 * @return
+	 */
+	private OrderState getState() {
+		OrderState state = new OrderState("100|200|0|true");
+		Map<Integer, BigDecimal> taxes = new TreeMap<Integer, BigDecimal>();
+		taxes.put(1, new BigDecimal("16"));
+		taxes.put(2, new BigDecimal("16"));
+		state.setValues(10, true, new BigDecimal("75"), taxes);
+		return state;
+	}
+}
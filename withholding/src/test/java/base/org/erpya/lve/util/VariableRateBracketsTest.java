@@ -0,0 +1,186 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.compiere.util.Env;
+import org.erpya.lve.model.MLVEListLine;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Brackets of variable rate (I.S.L.R.) give the same bracket and message of previous search by stream
+ * in sequence order, for brackets without overlap (binary search) and with overlap (sequence order)
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class VariableRateBracketsTest {
+
+	@Test
+	public void testBracketsWithoutOverlap() {
+		List<MLVEListLine> listLines = Arrays.asList(
+				getListLine(30, "0", "100"),
+				getListLine(10, "100", "500"),
+				getListLine(20, "500", "0"));
+		BigDecimal tributeUnitAmount = new BigDecimal("2");
+		VariableRateBrackets brackets = new VariableRateBrackets(listLines, tributeUnitAmount);
+		assertSame(listLines.get(0), brackets.getBracket(new BigDecimal("10")));
+		//	Maximum of a bracket is minimum of next: first by sequence
+		assertSame(listLines.get(1), brackets.getBracket(new BigDecimal("200")));
+		assertSame(listLines.get(1), brackets.getBracket(new BigDecimal("1000")));
+		assertSame(listLines.get(2), brackets.getBracket(new BigDecimal("1500")));
+		assertSame(listLines.get(2), brackets.getBracket(new BigDecimal("999999")));
+		assertNull(brackets.getBracket(new BigDecimal("-1")));
+		assertNull(brackets.getBracket(null));
+		assertBrackets(listLines, tributeUnitAmount);
+	}
+
+	@Test
+	public void testBracketsWithOverlap() {
+		List<MLVEListLine> listLines = Arrays.asList(
+				getListLine(20, "0", "0"),
+				getListLine(10, "100", "500"),
+				getListLine(10, "300", "400"));
+		BigDecimal tributeUnitAmount = Env.ONE;
+		VariableRateBrackets brackets = new VariableRateBrackets(listLines, tributeUnitAmount);
+		assertSame(listLines.get(0), brackets.getBracket(new BigDecimal("50")));
+		assertSame(listLines.get(1), brackets.getBracket(new BigDecimal("350")));
+		assertBrackets(listLines, tributeUnitAmount);
+	}
+
+	@Test
+	public void testBracketNotFoundMessage() {
+		List<MLVEListLine> listLines = Arrays.asList(
+				getListLine(10, "100", "200"),
+				getListLine(20, "300", "400"));
+		BigDecimal tributeUnitAmount = new BigDecimal("1.5");
+		VariableRateBrackets brackets = new VariableRateBrackets(listLines, tributeUnitAmount);
+		BigDecimal amount = new BigDecimal("350");
+		assertNull(brackets.getBracket(amount));
+		assertEquals(getPreviousMessage("", listLines, amount, tributeUnitAmount), brackets.addNotFoundMessage("", amount));
+		assertEquals(getPreviousMessage("@Error@", listLines, amount, tributeUnitAmount), brackets.addNotFoundMessage("@Error@", amount));
+	}
+
+	@Test
+	public void testRandomBrackets() {
+		Random random = new Random(20201015);
+		BigDecimal[] tributeUnitAmounts = {Env.ZERO, Env.ONE, new BigDecimal("2.5")};
+		for(int listVersion = 0; listVersion < 300; listVersion++) {
+			List<MLVEListLine> listLines = new ArrayList<MLVEListLine>();
+			int lines = random.nextInt(6);
+			for(int line = 0; line < lines; line++) {
+				int minimum = random.nextInt(10) * 10;
+				int maximum = random.nextInt(4) == 0? 0: minimum + random.nextInt(4) * 10 - 5;
+				listLines.add(getListLine(random.nextInt(4) * 10, String.valueOf(minimum), String.valueOf(maximum)));
+			}
+			assertBrackets(listLines, tributeUnitAmounts[random.nextInt(tributeUnitAmounts.length)]);
+		}
+	}
+
+	/**
+	 * Compare brackets with previous search for amounts from -5 to 300
+	 * @param listLines
+	 * @param tributeUnitAmount
+	 */
+	private void assertBrackets(List<MLVEListLine> listLines, BigDecimal tributeUnitAmount) {
+		VariableRateBrackets brackets = new VariableRateBrackets(listLines, tributeUnitAmount);
+		for(BigDecimal amount = new BigDecimal("-5"); amount.compareTo(new BigDecimal("300")) <= 0; amount = amount.add(new BigDecimal("2.5"))) {
+			MLVEListLine expected = getPreviousBracket(listLines, amount, tributeUnitAmount);
+			assertSame(expected, brackets.getBracket(amount), "Amount " + amount);
+			if(expected == null) {
+				assertEquals(getPreviousMessage("", listLines, amount, tributeUnitAmount), brackets.addNotFoundMessage("", amount));
+			}
+		}
+	}
+
+	/**
+	 * Previous search of bracket
+	 * @param listLines
+	 * @param amount
+	 * @param tributeUnitAmount
+	 * @return
+	 */
+	private MLVEListLine getPreviousBracket(List<MLVEListLine> listLines, BigDecimal amount, BigDecimal tributeUnitAmount) {
+		return listLines.stream()
+				.filter(listLine -> isValid(listLine, amount, tributeUnitAmount))
+				.sorted(Comparator.comparing(MLVEListLine::getSeqNo))
+				.findFirst()
+				.orElse(null);
+	}
+
+	/**
+	 * Previous message of bracket not found
+	 * @param message
+	 * @param listLines
+	 * @param amount
+	 * @param tributeUnitAmount
+	 * @return
+	 */
+	private String getPreviousMessage(String message, List<MLVEListLine> listLines, BigDecimal amount, BigDecimal tributeUnitAmount) {
+		StringBuilder resultMessage = new StringBuilder(message);
+		listLines.stream()
+				.filter(listLine -> !isValid(listLine, amount, tributeUnitAmount))
+				.sorted(Comparator.comparing(MLVEListLine::getSeqNo))
+				.forEach(listLine -> {
+					String minValue = NumberFormat.getInstance().format(listLine.getMinValue().multiply(tributeUnitAmount, MathContext.DECIMAL128));
+					String maxValue = NumberFormat.getInstance().format(listLine.getMaxValue().multiply(tributeUnitAmount, MathContext.DECIMAL128));
+					String baseAmt = NumberFormat.getInstance().format(amount);
+					resultMessage.append((resultMessage.length() == 0 ? "" : "- ")
+							+ "@A_Base_Amount@ < @MinAmt@ @OR@ > @MaxAmt@ (@MinAmt@ = " + minValue + " - @MaxAmt@ = " + maxValue + "  - @A_Base_Amount@ = " + baseAmt + ") \n");
+				});
+		return resultMessage.toString();
+	}
+
+	/**
+	 * Previous validation of bracket
+	 * @param listLine
+	 * @param amount
+	 * @param tributeUnitAmount
+	 * @return
+	 */
+	private boolean isValid(MLVEListLine listLine, BigDecimal amount, BigDecimal tributeUnitAmount) {
+		return amount.compareTo(listLine.getMinValue().multiply(tributeUnitAmount)) >= 0
+				&& (amount.compareTo(listLine.getMaxValue().multiply(tributeUnitAmount)) <= 0
+						|| listLine.getMaxValue().compareTo(Env.ZERO) == 0);
+	}
+
+	/**
+	 * Get list line (bracket)
+	 * @param sequence
+	 * @param minValue
+	 * @param maxValue
+	 * @return
+	 */
+	private MLVEListLine getListLine(int sequence, String minValue, String maxValue) {
+		MLVEListLine listLine = mock(MLVEListLine.class);
+		when(listLine.getSeqNo()).thenReturn(sequence);
+		when(listLine.getMinValue()).thenReturn(new BigDecimal(minValue));
+		when(listLine.getMaxValue()).thenReturn(new BigDecimal(maxValue));
+		return listLine;
+	}
+}
@@ -0,0 +1,131 @@
+/*************************************************************************************
+ * Product: Adempiere ERP & CRM Smart Business Solution                              *
+ * Copyright (C) 2012-2018 E.R.P. Consultores y Asociados, C.A.                      *
+ * Contributor(s): Yamel Senih ysenih@erpya.com                                      *
+ * This program is free software: you can redistribute it and/or modify              *
+ * it under the terms of the GNU General Public License as published by              *
+ * the Free Software Foundation, either version 3 of the License, or                 *
+ * (at your option) any later version.                                               *
+ * This program is distributed in the hope that it will be useful,                   *
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of                    *
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the                     *
+ * GNU General Public License for more details.                                      *
+ * You should have received a copy of the GNU General Public License                 *
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.            *
+ ************************************************************************************/
+package org.erpya.lve.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+
+import org.compiere.util.Env;
+import org.erpya.lve.model.MLVEListVersion;
+import org.erpya.lve.model.X_LVE_ListVersion;
+import org.erpya.lve.util.WithholdingPreview.Result;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Preview of rental withholding (I.S.L.R.) of invoice give the same rate, amount, subtrahend
+ * and simulation of rental setting ({@link APInvoiceISLR}) for the same document
+ * @author Yamel Senih, ysenih@erpya.com, ERPCyA http://www.erpya.com
+ */
+public class WithholdingPreviewTest {
+
+	/**	Precision	*/
+	private static final int PRECISION = 2;
+	/**	Tribute Unit	*/
+	private static final BigDecimal TRIBUTE_UNIT = new BigDecimal("9");
+
+	@Test
+	public void testJuridicalPerson() {
+		MLVEListVersion rateToApply = getRateToApply("5", false);
+		assertSameAsSetting(rateToApply, X_LVE_ListVersion.PERSONTYPE_LegalPersonDomiciled, new BigDecimal("1250.35"), null);
+	}
+
+	@Test
+	public void testNaturalPersonAboveMinimum() {
+		MLVEListVersion rateToApply = getRateToApply("3", false);
+		Result result = assertSameAsSetting(rateToApply, X_LVE_ListVersion.PERSONTYPE_ResidentNaturalPerson, new BigDecimal("2000"), null);
+		assertNotNull(result);
+		assertEquals(false, result.isSimulation());
+		assertEquals(1, result.getSubtrahend().signum());
+	}
+
+	@Test
+	public void testNaturalPersonBelowMinimum() {
+		//	Cumulative is a simulation without amount
+		Result result = assertSameAsSetting(getRateToApply("3", true), X_LVE_ListVersion.PERSONTYPE_ResidentNaturalPerson, new BigDecimal("100"), null);
+		assertNotNull(result);
+		assertEquals(true, result.isSimulation());
+		assertEquals(0, result.getWithholdingAmt().signum());
+		//	Not cumulative is not generated
+		assertNull(assertSameAsSetting(getRateToApply("3", false), X_LVE_ListVersion.PERSONTYPE_ResidentNaturalPerson, new BigDecimal("100"), null));
+	}
+
+	@Test
+	public void testForeignCurrency() {
+		assertSameAsSetting(getRateToApply("3", false), X_LVE_ListVersion.PERSONTYPE_ResidentNaturalPerson, new BigDecimal("80"), new BigDecimal("36.5"));
+		assertSameAsSetting(getRateToApply("2", true), X_LVE_ListVersion.PERSONTYPE_ResidentNaturalPerson, new BigDecimal("10"), new BigDecimal("36.5"));
+		assertSameAsSetting(getRateToApply("5", false), X_LVE_ListVersion.PERSONTYPE_LegalPersonDomiciled, new BigDecimal("1250.35"), new BigDecimal("36.5"));
+	}
+
+	/**
+	 * Compare preview of invoice with values saved by rental setting
+	 * @param rateToApply
+	 * @param personType
+	 * @param amtBase
+	 * @param currencyRate null for fiscal currency
+	 * @return preview result
+	 */
+	private Result assertSameAsSetting(MLVEListVersion rateToApply, String personType, BigDecimal amtBase, BigDecimal currencyRate) {
+		//	Setting: same sequence of APInvoiceISLR.setRates and APInvoiceISLR.run
+		WHConceptSetting conceptSetting = new WHConceptSetting(currencyRate, amtBase);
+		WithholdingRule.RentalRate settingRate = WithholdingRule.getRentalRate(rateToApply, personType, conceptSetting.getAmtBaseConverted(), TRIBUTE_UNIT, PRECISION);
+		conceptSetting.setGenerateDocument(settingRate.isGenerateDocument());
+		conceptSetting.setValid(settingRate.isValid());
+		conceptSetting.setAmtSubtract(settingRate.getSubtrahend());
+		conceptSetting.setCumulative(settingRate.isCumulative());
+		conceptSetting.setRate(settingRate.getRate());
+		//	Preview: currency rate is one for fiscal currency
+		BigDecimal fiscalCurrencyRate = currencyRate == null? Env.ONE: currencyRate;
+		WithholdingRule.RentalRate previewRate = WithholdingRule.getRentalRate(rateToApply, personType, fiscalCurrencyRate.multiply(amtBase), TRIBUTE_UNIT, PRECISION);
+		Result result = WithholdingPreview.getRentalResult("Concept", previewRate, amtBase, fiscalCurrencyRate, true, PRECISION);
+		if(!conceptSetting.isGenerateDocument()
+				|| conceptSetting.getRate() == null
+				|| conceptSetting.getRate().signum() == 0) {
+			assertNull(result);
+			return result;
+		}
+		assertNotNull(result);
+		BigDecimal withholdingAmt = Env.ZERO;
+		if(conceptSetting.isValid()) {
+			withholdingAmt = WithholdingRule.getRentalWithholdingAmt(conceptSetting.getAmtBase(), WithholdingRule.getRate(conceptSetting.getRate()), conceptSetting.getAmtSubtract(), conceptSetting.getCurrencyRate());
+		}
+		assertEquals(0, conceptSetting.getRate().compareTo(result.getRate()));
+		assertEquals(0, conceptSetting.getAmtBase().compareTo(result.getBaseAmt()));
+		assertEquals(0, withholdingAmt.compareTo(result.getWithholdingAmt()));
+		assertEquals(0, WithholdingRule.convertSubtrahend(conceptSetting.getAmtSubtract(), conceptSetting.getCurrencyRate()).compareTo(result.getSubtrahend()));
+		assertEquals(conceptSetting.isCumulative(), result.isCumulative());
+		assertEquals(!conceptSetting.isValid(), result.isSimulation());
+		return result;
+	}
+
+	/**
+	 * Get a version of concept with fixed rate
+	 * @param rate percentage
+	 * @param isCumulative
+	 * @return
+	 */
+	private MLVEListVersion getRateToApply(String rate, boolean isCumulative) {
+		MLVEListVersion rateToApply = mock(MLVEListVersion.class);
+		when(rateToApply.get_ValueAsBoolean(LVEUtil.COLUMNNAME_IsVariableRate)).thenReturn(false);
+		when(rateToApply.getAmount()).thenReturn(new BigDecimal(rate));
+		when(rateToApply.isCumulativeWithholding()).thenReturn(isCumulative);
+		return rateToApply;
+	}
+}